@@ -234,18 +234,34 @@ public class DatasetServiceBean implements java.io.Serializable {
      * @see DataverseServiceBean#findAllOrSubset(long, long, boolean)
      */
     public List<Long> findAllOrSubsetOrderByFilesOwned(boolean skipIndexed) {
+        return findAllOrSubsetOrderByFilesOwned(1, 0, skipIndexed);
+    }
+
+    /**
+     * Same as {@link #findAllOrSubsetOrderByFilesOwned(boolean)}, but only
+     * for the datasets of one partition, as in {@link #findAllOrSubset(long, long, boolean)}.
+     * @param numPartitions
+     * @param partitionId
+     * @param skipIndexed
+     * @return ids of the datasets in the partition, with the fewest files first
+     */
+    public List<Long> findAllOrSubsetOrderByFilesOwned(long numPartitions, long partitionId, boolean skipIndexed) {
         /*
         Disregards deleted or replaced files when determining 'size' of dataset.
         Could possibly make more efficient by getting file metadata counts
         of latest published/draft version.
-        Also disregards partitioning which is no longer supported.
         SEK - 11/09/2021
         */
+        if (numPartitions < 1) {
+            numPartitions = 1;
+        }
 
         String skipClause = skipIndexed ? "AND o.indexTime is null " : "";
+        String partitionClause = numPartitions > 1 ? "AND MOD(o.id, " + numPartitions + ") = " + partitionId + " " : "";
         Query query = em.createNativeQuery(" Select distinct(o.id), count(f.id) as numFiles FROM dvobject o " +
             "left join dvobject f on f.owner_id = o.id  where o.dtype = 'Dataset' "
                 + skipClause
+                + partitionClause
                 + " group by o.id "
                 + "ORDER BY count(f.id) asc, o.id");
 
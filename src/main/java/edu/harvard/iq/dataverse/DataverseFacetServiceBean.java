@@ -1,6 +1,6 @@
 package edu.harvard.iq.dataverse;
 
-import edu.harvard.iq.dataverse.util.LruCache;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
 import java.util.List;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
@@ -17,7 +17,10 @@ import javax.persistence.PersistenceContext;
 @Named
 public class DataverseFacetServiceBean implements java.io.Serializable {
     
-    public static final LruCache<Long,List<DataverseFacet>> cache = new LruCache<>();
+    public static final NamedCache<Long, List<DataverseFacet>> cache = NamedCache.<Long, List<DataverseFacet>>builder("dataverse-facets")
+            .weigher((dataverseId, values) -> 1 + values.size())
+            .maxSize(10000)
+            .build();
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
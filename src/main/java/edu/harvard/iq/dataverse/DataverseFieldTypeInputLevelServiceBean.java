@@ -5,7 +5,7 @@
  */
 package edu.harvard.iq.dataverse;
 
-import edu.harvard.iq.dataverse.util.LruCache;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
 import java.util.List;
 import java.util.logging.Logger;
 import javax.ejb.Stateless;
@@ -24,7 +24,10 @@ import javax.persistence.Query;
 public class DataverseFieldTypeInputLevelServiceBean {
 
 //    private static final Logger logger = Logger.getLogger(DataverseFieldTypeInputLevelServiceBean.class.getCanonicalName());
-    public static final LruCache<Long, List<DataverseFieldTypeInputLevel>> cache = new LruCache<>();
+    public static final NamedCache<Long, List<DataverseFieldTypeInputLevel>> cache = NamedCache.<Long, List<DataverseFieldTypeInputLevel>>builder("dataverse-field-type-input-levels")
+            .weigher((dataverseId, values) -> 1 + values.size())
+            .maxSize(10000)
+            .build();
 
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
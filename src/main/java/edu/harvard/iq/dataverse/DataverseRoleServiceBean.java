@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse;
 
 import edu.harvard.iq.dataverse.authorization.DataverseRole;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.authorization.RoleAssignmentSet;
@@ -60,6 +61,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             /**
              * @todo update permissionModificationTime here.
              */
+            PermissionCache.invalidate();
             IndexResponse indexDefinitionPountResult = indexDefinitionPoint(merged.getOwner());
             logger.info("aRole getId was not null. Indexing result: " + indexDefinitionPountResult);
             return merged;
@@ -79,6 +81,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         /**
          * @todo update permissionModificationTime here.
          */
+        PermissionCache.invalidate();
         if ( createIndex ) {
             indexAsync.indexRole(assignment);
         }
@@ -106,6 +109,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         em.createNamedQuery("DataverseRole.deleteById", DataverseRole.class)
             .setParameter("id", id)
             .executeUpdate();
+        PermissionCache.invalidate();
     }
 
     public List<DataverseRole> findByOwnerId(Long ownerId) {
@@ -142,6 +146,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             em.refresh(role);
         }
         em.refresh(assignee);
+        PermissionCache.invalidate();
     }
 
     public void revoke(RoleAssignment ra) {
@@ -152,6 +157,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         /**
          * @todo update permissionModificationTime here.
          */
+        PermissionCache.invalidate();
         indexAsync.indexRole(ra);
     }
 
@@ -170,6 +176,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
 
             reindexSet.add(ra.getDefinitionPoint());
         }
+        PermissionCache.invalidate();
 
         indexAsync.indexRoles(reindexSet);
     }
@@ -178,6 +178,24 @@ public class DataverseServiceBean implements java.io.Serializable {
         return em.createQuery("SELECT o.id FROM Dataverse o ORDER BY o.id", Long.class).getResultList();
         
     }
+    
+    /**
+     * Same as {@link #findDataverseIdsForIndexing(boolean)}, but only for the
+     * dataverses of one partition. See {@link #findAllOrSubset(long, long, boolean)}
+     * for the meaning of the partition parameters.
+     */
+    public List<Long> findDataverseIdsForIndexing(long numPartitions, long partitionId, boolean skipIndexed) {
+        if (numPartitions <= 1) {
+            return findDataverseIdsForIndexing(skipIndexed);
+        }
+        String skipClause = skipIndexed ? "AND o.indexTime IS null " : "";
+        return em.createQuery("SELECT o.id FROM Dataverse o WHERE MOD( o.id, :numPartitions) = :partitionId " +
+                skipClause +
+                "ORDER BY o.id", Long.class)
+                .setParameter("numPartitions", numPartitions)
+                .setParameter("partitionId", partitionId)
+                .getResultList();
+    }
 
     public List<Dataverse> findByCreatorId(Long creatorId) {
         return em.createNamedQuery("Dataverse.findByCreatorId").setParameter("creatorId", creatorId).getResultList();
@@ -3,8 +3,11 @@ package edu.harvard.iq.dataverse;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,7 +81,34 @@ public class DvObjectServiceBean implements java.io.Serializable {
         query.setParameter("id", id);
         Long result =(Long)query.getSingleResult();
         return result > 0;
-    }   
+    }
+
+    /**
+     * A page of the ids of one type of objects, in ascending order, for
+     * going through all of them without loading them at once.
+     * @param dtype "Dataverse", "Dataset" or "DataFile".
+     * @param afterId the last id of the previous page, 0 for the first one.
+     */
+    public List<Long> findIdsAfter(String dtype, long afterId, int max) {
+        return em.createQuery("SELECT o.id FROM DvObject o WHERE o.dtype = :dtype AND o.id > :afterId ORDER BY o.id", Long.class)
+                .setParameter("dtype", dtype)
+                .setParameter("afterId", afterId)
+                .setMaxResults(max)
+                .getResultList();
+    }
+
+    /**
+     * @return those of {@code ids} that belong to an object in the database.
+     */
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(em.createQuery("SELECT o.id FROM DvObject o WHERE o.id IN :ids", Long.class)
+                .setParameter("ids", ids)
+                .getResultList());
+    }
+
     // FIXME This type-by-string has to go, in favor of passing a class parameter.
     public DvObject findByGlobalId(String globalIdString, String typeString) {
         return findByGlobalId(globalIdString, typeString, false);
@@ -157,6 +187,28 @@ public class DvObjectServiceBean implements java.io.Serializable {
         return savedDvObject;
     }
 
+    /**
+     * Sets the permission index time of many objects at once, without loading
+     * them.
+     *
+     * @param alsoOwned whether to update the objects owned by these too, e.g.
+     * the files of datasets.
+     * @return the number of objects updated.
+     */
+    public int updatePermissionIndexTimes(List<Long> dvObjectIds, boolean alsoOwned) {
+        Timestamp now = new Timestamp(new Date().getTime());
+        String query = "UPDATE DvObject o SET o.permissionIndexTime = :now WHERE o.id IN :ids"
+                + (alsoOwned ? " OR o.owner.id IN :ids" : "");
+        int numRowsUpdated = 0;
+        for (int i = 0; i < dvObjectIds.size(); i += 1000) {
+            numRowsUpdated += em.createQuery(query)
+                    .setParameter("now", now)
+                    .setParameter("ids", dvObjectIds.subList(i, Math.min(i + 1000, dvObjectIds.size())))
+                    .executeUpdate();
+        }
+        return numRowsUpdated;
+    }
+
     @TransactionAttribute(REQUIRES_NEW)
     public int clearAllIndexTimes() {
         Query clearIndexTimes = em.createQuery("UPDATE DvObject o SET o.indexTime = NULL, o.permissionIndexTime = NULL");
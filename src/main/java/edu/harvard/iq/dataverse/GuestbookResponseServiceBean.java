@@ -9,8 +9,12 @@ import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.externaltools.ExternalTool;
 import edu.harvard.iq.dataverse.util.StringUtil;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -133,24 +137,54 @@ public class GuestbookResponseServiceBean {
      */
     private static final String SEPARATOR = ",";
     private static final String NEWLINE = "\n";
+    private static final String CSV_HEADER = "Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n";
+    // responses read from the database at a time:
+    static final int CSV_PAGE_SIZE = 1000;
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+
     public void streamResponsesByDataverseIdAndGuestbookId(OutputStream out, Long dataverseId, Long guestbookId) throws IOException {
         
-        // Before we do anything else, create a map of all the custom question responses
-        // available for this dataverse (or, this individual guestbook within the
-        // dataverse; see the comment below, how it's saving us a metric f-ton
-        // of queries now) -- L.A. 
-        
-        Map<Integer, Object> customQandAs = mapCustomQuestionAnswersAsStrings(dataverseId, guestbookId);
+        // The titles are looked up once for every dataset in the dataverse,
+        // rather than once per response. The responses, on the other hand, 
+        // may run into millions: they are read a page at a time, newest first,
+        // each page followed by the custom question answers of the same 
+        // responses, in the same order, so that the two can be merged as they 
+        // are written out, without holding either in memory. 
         Map<Integer, String> datasetTitles = mapDatasetTitles(dataverseId);
-                
-        List<Object[]> guestbookResults = getGuestbookResults( dataverseId,  guestbookId );
-        // the CSV header:
-        out.write("Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n".getBytes());
-        for (Object[] result : guestbookResults) {
-            StringBuilder sb = convertGuestbookResponsesToCSV(customQandAs, datasetTitles, result);
-            out.write(sb.toString().getBytes());
-            out.flush();
-        }
+
+        // not closed, the output stream belongs to the caller:
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
+        writer.write(CSV_HEADER);
+
+        Integer beforeResponseId = null;
+        List<Object[]> page;
+        do {
+            page = getGuestbookResultsPage(dataverseId, guestbookId, beforeResponseId, CSV_PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            Integer newest = (Integer) page.get(0)[0];
+            Integer oldest = (Integer) page.get(page.size() - 1)[0];
+            Iterator<Object[]> answers = getCustomQuestionAnswersPage(dataverseId, guestbookId, oldest, newest).iterator();
+            Object[] answer = answers.hasNext() ? answers.next() : null;
+
+            StringBuilder customQandAs = new StringBuilder();
+            for (Object[] result : page) {
+                Integer guestbookResponseId = (Integer) result[0];
+                // both sorted by the response id, descending:
+                customQandAs.setLength(0);
+                while (answer != null && (Integer) answer[2] >= guestbookResponseId) {
+                    if (guestbookResponseId.equals(answer[2])) {
+                        customQandAs.append(formatCustomQuestionAnswer(answer));
+                    }
+                    answer = answers.hasNext() ? answers.next() : null;
+                }
+                writer.append(convertGuestbookResponseToCSV(customQandAs, datasetTitles, result));
+            }
+            writer.flush();
+            beforeResponseId = oldest;
+        } while (page.size() == CSV_PAGE_SIZE);
+        writer.flush();
     }
     
     public List<Object[]> getGuestbookResults(Long dataverseId, Long guestbookId ){
@@ -169,11 +203,59 @@ public class GuestbookResponseServiceBean {
         return  em.createNativeQuery(queryString).getResultList();
         
     }
+
+    /*
+      One page of the results above: at most max responses older than 
+      beforeResponseId (the oldest of the previous page), or the newest 
+      ones if it is null. 
+    */
+    private List<Object[]> getGuestbookResultsPage(Long dataverseId, Long guestbookId, Integer beforeResponseId, int max) {
+        
+        String queryString = BASE_QUERY_STRING_FOR_DOWNLOAD_AS_CSV
+                + " and  o.owner_id = " 
+                + dataverseId.toString();
+        
+        if (guestbookId != null) {
+            queryString+= (" and r.guestbook_id = " + guestbookId.toString());
+        }
+        
+        if (beforeResponseId != null) {
+            queryString += (" and r.id < " + beforeResponseId);
+        }
+        
+        queryString += " ORDER by r.id DESC LIMIT " + max + ";";
+        logger.fine("stream responses query: " + queryString);
+        
+        return em.createNativeQuery(queryString).getResultList();
+    }
+
+    /*
+      The custom question answers of the responses between firstResponseId 
+      and lastResponseId, sorted like the responses above, and by question 
+      within each response. 
+    */
+    private List<Object[]> getCustomQuestionAnswersPage(Long dataverseId, Long guestbookId, Integer firstResponseId, Integer lastResponseId) {
+        String cqString = BASE_QUERY_CUSTOM_QUESTION_ANSWERS
+                + "and o.owner_id = " + dataverseId;
+                
+        if (guestbookId != null) {
+            cqString += ( " and g.guestbook_id = " + guestbookId);
+        }
+        
+        cqString += (" and g.id >= " + firstResponseId + " and g.id <= " + lastResponseId);
+        cqString += " order by g.id desc, q.id;";
+        logger.fine("custom questions query: " + cqString);
+
+        return em.createNativeQuery(cqString).getResultList();
+    }
     
     public StringBuilder convertGuestbookResponsesToCSV ( Map<Integer, Object> customQandAs, Map<Integer, String> datasetTitles, Object[] result) throws IOException {
+        Integer guestbookResponseId = (Integer)result[0];
+        return convertGuestbookResponseToCSV((CharSequence) customQandAs.get(guestbookResponseId), datasetTitles, result);
+    }
+
+    private StringBuilder convertGuestbookResponseToCSV(CharSequence customQandAs, Map<Integer, String> datasetTitles, Object[] result) {
 
-            Integer guestbookResponseId = (Integer)result[0];
-            
             StringBuilder sb = new StringBuilder();
             
             // Since we are formatting the output as comma-separated values, 
@@ -237,8 +319,8 @@ public class GuestbookResponseServiceBean {
             // Finally, custom questions and answers, if present:
             
             
-            if (customQandAs.containsKey(guestbookResponseId)) {
-                sb.append(customQandAs.get(guestbookResponseId)); 
+            if (customQandAs != null) {
+                sb.append(customQandAs); 
             } 
 
             sb.append(NEWLINE);
@@ -397,7 +479,7 @@ public class GuestbookResponseServiceBean {
                 if (asString) {
                     // as combined strings of comma-separated question and answer values
                     //assuming the strings are only being created for writing out to csv which seems to be the case
-                    String qa = SEPARATOR + StringEscapeUtils.escapeCsv((String)response[0]) + SEPARATOR + (response[1] == null ? "" : StringEscapeUtils.escapeCsv((String)response[1]));                   
+                    String qa = formatCustomQuestionAnswer(response);
                     if (ret.containsKey(responseId)) {
                         ret.put(responseId, ret.get(responseId) + qa);
                     } else {
@@ -948,6 +1030,10 @@ public class GuestbookResponseServiceBean {
         return (Long) query.getSingleResult();
     }
     
+    private static String formatCustomQuestionAnswer(Object[] response) {
+        return SEPARATOR + StringEscapeUtils.escapeCsv((String)response[0]) + SEPARATOR + (response[1] == null ? "" : StringEscapeUtils.escapeCsv((String)response[1]));
+    }
+    
     public List<GuestbookResponse> findByAuthenticatedUserId(AuthenticatedUser user) {
         Query query = em.createNamedQuery("GuestbookResponse.findByAuthenticatedUserId"); 
         query.setParameter("authenticatedUserId", user.getId());
@@ -6,6 +6,7 @@ import edu.harvard.iq.dataverse.authorization.DataverseRole;
 import edu.harvard.iq.dataverse.authorization.providers.builtin.BuiltinUserServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.GuestUser;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.groups.Group;
 import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
@@ -30,6 +31,7 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.exception.IllegalCommandException;
 import edu.harvard.iq.dataverse.engine.command.impl.PublishDatasetCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.UpdateDatasetVersionCommand;
+import edu.harvard.iq.dataverse.util.BitSet;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 import edu.harvard.iq.dataverse.workflow.PendingWorkflowInvocation;
 import edu.harvard.iq.dataverse.workflow.WorkflowServiceBean;
@@ -324,9 +326,8 @@ public class PermissionServiceBean {
             }
         }
         
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(user);
-        return hasGroupPermissionsFor(ras, dvo, required);
+        required.removeAll(grantedPermissions(req, dvo));
+        return required.isEmpty();
     }
 
     public boolean hasPermissionsFor(RoleAssignee ra, DvObject dvo, Set<Permission> required) {
@@ -347,15 +348,7 @@ public class PermissionServiceBean {
             return true;
         }
         
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
-        ras.add(ra);
-        return hasGroupPermissionsFor(ras, dvo, required);
-    }
-    
-    private boolean hasGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> required) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            required.removeAll(asmnt.getRole().permissions());
-        }
+        required.removeAll(grantedPermissions(ra, dvo));
         return required.isEmpty();
     }
 
@@ -375,9 +368,7 @@ public class PermissionServiceBean {
         Set<Permission> permissions = getInferredPermissions(dvo);
 
         // Add permissions gained from ras
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(req.getUser());
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(grantedPermissions(req, dvo));
 
         if (!req.getUser().isAuthenticated()) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -401,9 +392,7 @@ public class PermissionServiceBean {
 
         Set<Permission> permissions = getInferredPermissions(dvo);
 
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
-        ras.add(ra);
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(grantedPermissions(ra, dvo));
 
         if ((ra instanceof User) && (!((User) ra).isAuthenticated())) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -411,10 +400,36 @@ public class PermissionServiceBean {
         return permissions;
     }
     
-    private void addGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> permissions) {
+    /**
+     * The permissions granted by roles to the user of {@code req}, and to the
+     * groups the user is in, on {@code dvo}.
+     *
+     * @see PermissionCache
+     */
+    private Set<Permission> grantedPermissions(DataverseRequest req, DvObject dvo) {
+        long bits = PermissionCache.granted(req, dvo, () -> {
+            Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
+            ras.add(req.getUser());
+            return grantedPermissionBits(ras, dvo);
+        });
+        return new BitSet(bits).asSetOf(Permission.class);
+    }
+
+    private Set<Permission> grantedPermissions(RoleAssignee ra, DvObject dvo) {
+        long bits = PermissionCache.granted(ra, dvo, () -> {
+            Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
+            ras.add(ra);
+            return grantedPermissionBits(ras, dvo);
+        });
+        return new BitSet(bits).asSetOf(Permission.class);
+    }
+
+    private long grantedPermissionBits(Set<RoleAssignee> ras, DvObject dvo) {
+        long bits = 0;
         for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            permissions.addAll(asmnt.getRole().permissions());
+            bits |= asmnt.getRole().getPermissionsBits();
         }
+        return bits;
     }
 
 
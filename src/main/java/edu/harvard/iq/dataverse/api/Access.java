@@ -852,6 +852,9 @@ public class Access extends AbstractApiBean {
                 DataFileZipper zipper = null; 
                 String fileManifest = "";
                 long sizeTotal = 0L;
+                // the files are zipped once all of them have been checked,
+                // so that the zipper can read the next one ahead
+                List<DataFile> filesToZip = new ArrayList<>();
                 
                 if (fileIdParams != null && fileIdParams.length > 0) {
                     logger.fine(fileIdParams.length + " tokens;");
@@ -922,7 +925,8 @@ public class Access extends AbstractApiBean {
                                         size = file.getFilesize();
                                     }
                                     if (sizeTotal + size < zipDownloadSizeLimit) {
-                                        sizeTotal += zipper.addFileToZipStream(file, getOriginal);
+                                        filesToZip.add(file);
+                                        sizeTotal += size;
                                     } else {
                                         String fileName = file.getFileMetadata().getLabel();
                                         String mimeType = file.getContentType();
@@ -968,6 +972,8 @@ public class Access extends AbstractApiBean {
                     throw new ForbiddenException();
                 }
 
+                zipper.addFilesToZipStream(filesToZip, getOriginal);
+
                 // This will add the generated File Manifest to the zipped output, 
                 // then flush and close the stream:
                 zipper.finalizeZipStream();
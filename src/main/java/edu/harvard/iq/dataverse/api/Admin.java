@@ -42,10 +42,13 @@ import edu.harvard.iq.dataverse.confirmemail.ConfirmEmailException;
 import edu.harvard.iq.dataverse.confirmemail.ConfirmEmailInitResponse;
 import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.DataAccessOption;
+import edu.harvard.iq.dataverse.dataaccess.FormatConversionService;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.engine.command.impl.AbstractSubmitToArchiveCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.PublishDataverseCommand;
+import edu.harvard.iq.dataverse.rserve.RserveConnectionPool;
 import edu.harvard.iq.dataverse.settings.Setting;
+import edu.harvard.iq.dataverse.settings.SettingsCache;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObjectBuilder;
@@ -103,6 +106,8 @@ import edu.harvard.iq.dataverse.util.BundleUtil;
 import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import edu.harvard.iq.dataverse.util.UrlSignerUtil;
+import edu.harvard.iq.dataverse.util.cache.CacheRegistry;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -219,7 +224,67 @@ public class Admin extends AbstractApiBean {
 		settingsSvc.delete(name, lang);
 		return ok("Setting " + name + " - " + lang + " deleted.");
 	}
+
+	@Path("settings/cache/stats")
+	@GET
+	public Response getSettingsCacheStats() {
+		SettingsCache cache = SettingsServiceBean.getCache();
+		return ok(jsonObjectBuilder()
+				.add("version", cache.getVersion())
+				.add("size", cache.size())
+				.add("hits", cache.getHits())
+				.add("misses", cache.getMisses())
+				.add("versionChecks", cache.getVersionChecks())
+				.add("checkIntervalMillis", cache.getCheckIntervalMillis()));
+	}
+
+	@Path("settings/cache/invalidate")
+	@POST
+	public Response invalidateSettingsCache() {
+		settingsSvc.invalidateCache();
+		return ok("Settings cache invalidated.");
+	}
+
+	@Path("caches")
+	@GET
+	public Response listCaches() {
+		JsonArrayBuilder caches = Json.createArrayBuilder();
+		CacheRegistry.list().forEach(c -> caches.add(c.toJson()));
+		return ok(caches);
+	}
+
+	@Path("caches/{name}")
+	@GET
+	public Response getCache(@PathParam("name") String name) {
+		NamedCache<?, ?> cache = CacheRegistry.get(name);
+		return (cache != null) ? ok(cache.toJson()) : notFound("Cache " + name + " not found");
+	}
+
+	@Path("caches/invalidate")
+	@POST
+	public Response invalidateCaches() {
+		CacheRegistry.invalidateAll();
+		return ok("All caches invalidated.");
+	}
+
+	@Path("caches/{name}/invalidate")
+	@POST
+	public Response invalidateCache(@PathParam("name") String name) {
+		NamedCache<?, ?> cache = CacheRegistry.get(name);
+		if (cache == null) {
+			return notFound("Cache " + name + " not found");
+		}
+		cache.invalidate();
+		return ok("Cache " + name + " invalidated.");
+	}
         
+	@Path("formatConversions")
+	@GET
+	public Response getFormatConversions() {
+		return ok(FormatConversionService.getStatus()
+				.add("rserveSessions", RserveConnectionPool.getInstance().getStatus()));
+	}
+
     @Path("template/{id}")
     @DELETE
     public Response deleteTemplate(@PathParam("id") long id) {
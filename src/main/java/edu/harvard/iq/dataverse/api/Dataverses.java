@@ -1075,16 +1075,7 @@ public class Dataverses extends AbstractApiBean {
                     WebApplicationException {
 
                 Dataverse dv = dataverseService.findByAlias(dvIdtf);
-                Map<Integer, Object> customQandAs = guestbookResponseService.mapCustomQuestionAnswersAsStrings(dv.getId(), gbId);
-                Map<Integer, String> datasetTitles = guestbookResponseService.mapDatasetTitles(dv.getId());
-                
-                List<Object[]> guestbookResults = guestbookResponseService.getGuestbookResults(dv.getId(), gbId);
-                os.write("Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n".getBytes());
-                for (Object[] result : guestbookResults) {
-                    StringBuilder sb = guestbookResponseService.convertGuestbookResponsesToCSV(customQandAs, datasetTitles, result);
-                    os.write(sb.toString().getBytes());
-
-                }
+                guestbookResponseService.streamResponsesByDataverseIdAndGuestbookId(os, dv.getId(), gbId);
             }
         };
         return Response.ok(stream).build();
@@ -33,8 +33,6 @@ import edu.harvard.iq.dataverse.makedatacount.MakeDataCountLoggingServiceBean.Ma
 import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
@@ -320,6 +318,7 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                             if (di.getExtraArguments() != null && di.getExtraArguments().size() > 0) {
                                 logger.fine("processing extra arguments list of length " + di.getExtraArguments().size());
                                 List<Integer> variablePositionIndex = new ArrayList<>();
+                                List<DataVariable> subsetVariables = new ArrayList<>();
                                 String subsetVariableHeader = null;
                                 for (int i = 0; i < di.getExtraArguments().size(); i++) {
                                     DataVariable variable = (DataVariable) di.getExtraArguments().get(i);
@@ -327,6 +326,7 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                                         if (variable.getDataTable().getDataFile().getId().equals(dataFile.getId())) {
                                             logger.fine("adding variable id " + variable.getId() + " to the list.");
                                             variablePositionIndex.add(variable.getFileOrder());
+                                            subsetVariables.add(variable);
                                             if (subsetVariableHeader == null) {
                                                 subsetVariableHeader = variable.getName();
                                             } else {
@@ -342,15 +342,39 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                                 if (variablePositionIndex.size() > 0) {
 
                                     try {
-                                        File tempSubsetFile = File.createTempFile("tempSubsetFile", ".tmp");
-                                        TabularSubsetGenerator tabularSubsetGenerator = new TabularSubsetGenerator();
-                                        tabularSubsetGenerator.subsetFile(storageIO.getInputStream(), tempSubsetFile.getAbsolutePath(), variablePositionIndex, dataFile.getDataTable().getCaseQuantity(), "\t");
-
-                                        if (tempSubsetFile.exists()) {
-                                            FileInputStream subsetStream = new FileInputStream(tempSubsetFile);
-                                            long subsetSize = tempSubsetFile.length();
+                                        InputStreamIO subsetStreamIO = null;
+                                        if (TabularSubsetGenerator.findColumnStore(storageIO) != null) {
+                                            // only the requested columns are read, from the
+                                            // column-major copy of the file saved at ingest:
+                                            storageIO.closeInputStream();
+                                            TabularSubsetInputStream subsetStream = new TabularSubsetInputStream(dataFile, subsetVariables);
+                                            subsetStreamIO = new InputStreamIO(subsetStream, subsetStream.getLength());
+                                        } else {
+                                            // the requested columns are projected out of the 
+                                            // tab file as it is streamed: 
+                                            String rowOffsetsKey = TabularProjectionInputStream.getRowOffsetsKey(dataFile, variablePositionIndex);
+                                            long caseQuantity = dataFile.getDataTable().getCaseQuantity();
+                                            TabularProjectionInputStream subsetStream = new TabularProjectionInputStream(storageIO.getInputStream(), 
+                                                    variablePositionIndex, caseQuantity, rowOffsetsKey);
+                                            // (the size of the subset is only known once it 
+                                            // has been read through once on this server; for 
+                                            // a Range request, it is read through first)
+                                            long subsetLength = subsetStream.getLength();
+                                            if (subsetLength < 0 && di.getRequestHttpHeaders() != null 
+                                                    && di.getRequestHttpHeaders().getHeaderString("Range") != null) {
+                                                StorageIO<DataFile> countingIO = DataAccess.getStorageIO(dataFile);
+                                                countingIO.open();
+                                                try (InputStream countingStream = countingIO.getInputStream()) {
+                                                    subsetLength = TabularProjectionInputStream.recordRowOffsets(countingStream, 
+                                                            variablePositionIndex, caseQuantity, rowOffsetsKey);
+                                                }
+                                                subsetStream = new TabularProjectionInputStream(storageIO.getInputStream(), 
+                                                        variablePositionIndex, caseQuantity, rowOffsetsKey);
+                                            }
+                                            subsetStreamIO = new InputStreamIO(subsetStream, subsetLength);
+                                        }
 
-                                            InputStreamIO subsetStreamIO = new InputStreamIO(subsetStream, subsetSize);
+                                        if (subsetStreamIO != null) {
                                             logger.fine("successfully created subset output stream.");
                                             subsetVariableHeader = subsetVariableHeader.concat("\n");
                                             subsetStreamIO.setVarHeader(subsetVariableHeader);
@@ -538,7 +562,7 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                             // This is a rangeHeader request, and we still have bytes to read 
                             // (for a tabular file, we may have already written enough
                             // bytes from the variable header!)
-                            storageIO.setOffset(offset);
+                            storageIO.setRange(new Range(offset, offset + leftToRead - 1));
                             // Thinking about it, we could just do instream.skip(offset) 
                             // here... But I would like to have this offset functionality 
                             // in StorageIO, for any future cases where we may not 
@@ -26,6 +26,7 @@ import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
 import edu.harvard.iq.dataverse.search.DvObjectSolrDoc;
 import edu.harvard.iq.dataverse.search.FacetCategory;
 import edu.harvard.iq.dataverse.search.FileView;
+import edu.harvard.iq.dataverse.search.IndexBatchProgress;
 import edu.harvard.iq.dataverse.search.IndexBatchServiceBean;
 import edu.harvard.iq.dataverse.search.IndexResponse;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
@@ -204,6 +205,21 @@ public class Index extends AbstractApiBean {
         }
     }
 
+    /**
+     * Reports the progress of the running (or last finished) "index all" on
+     * this server: datasets done, failures, throughput and the estimated time
+     * remaining.
+     */
+    @GET
+    @Path("progress")
+    public Response indexAllProgress() {
+        IndexBatchProgress progress = indexBatchService.getIndexAllProgress();
+        if (progress == null) {
+            return notFound("No index all job has been run on this server since it started.");
+        }
+        return ok(progress.toJson());
+    }
+
     @GET
     @Path("clear")
     public Response clearSolrIndex() {
@@ -360,8 +376,22 @@ public class Index extends AbstractApiBean {
     @GET
     @Path("perms")
     public Response indexAllPermissions() {
-        IndexResponse indexResponse = solrIndexService.indexAllPermissions();
-        return ok(indexResponse.getMessage());
+        indexBatchService.indexAllPermissions();
+        return ok("Indexing the permissions of all dataverses, datasets and files has begun. See /api/admin/index/perms/progress");
+    }
+
+    /**
+     * Reports the progress of the running (or last finished) indexing of all
+     * permissions on this server.
+     */
+    @GET
+    @Path("perms/progress")
+    public Response indexAllPermissionsProgress() {
+        IndexBatchProgress progress = indexBatchService.getPermissionIndexProgress();
+        if (progress == null) {
+            return notFound("The permissions have not been indexed on this server since it started.");
+        }
+        return ok(progress.toJson());
     }
 
     @GET
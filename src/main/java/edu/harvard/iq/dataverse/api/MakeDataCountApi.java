@@ -6,6 +6,7 @@ import edu.harvard.iq.dataverse.makedatacount.DatasetExternalCitations;
 import edu.harvard.iq.dataverse.makedatacount.DatasetExternalCitationsServiceBean;
 import edu.harvard.iq.dataverse.makedatacount.DatasetMetrics;
 import edu.harvard.iq.dataverse.makedatacount.DatasetMetricsServiceBean;
+import edu.harvard.iq.dataverse.makedatacount.MakeDataCountLogWriter;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 
 import java.io.FileReader;
@@ -24,6 +25,7 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -47,6 +49,8 @@ public class MakeDataCountApi extends AbstractApiBean {
     DatasetServiceBean datasetService;
     @EJB
     SystemConfig systemConfig;
+    @EJB
+    MakeDataCountLogWriter logWriter;
 
     /**
      * TODO: For each dataset, send the following:
@@ -78,6 +82,16 @@ public class MakeDataCountApi extends AbstractApiBean {
         return ok(msg);
     }
 
+    /**
+     * How the background writer of the logs is keeping up: entries queued,
+     * written, dropped because the queue was full, etc.
+     */
+    @GET
+    @Path("logWriter")
+    public Response getLogWriterStatus() {
+        return ok(logWriter.getStatus());
+    }
+
     @POST
     @Path("{id}/addUsageMetricsFromSushiReport")
     public Response addUsageMetricsFromSushiReport(@PathParam("id") String id, @QueryParam("reportOnDisk") String reportOnDisk) {
@@ -198,14 +198,13 @@ public class ImportServiceBean {
         }
     }
 
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
-        if (harvestingClient == null || harvestingClient.getDataverse() == null) {
-            throw new ImportException("importHarvestedDataset called wiht a null harvestingClient, or an invalid harvestingClient.");
-        }
-        Dataverse owner = harvestingClient.getDataverse();
-        Dataset importedDataset = null;
-
+    /**
+     * Reads a harvested metadata record into the native Dataverse JSON. This
+     * needs no transaction, so that the harvester can parse the records in
+     * parallel, ahead of importing them one at a time.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public String parseHarvestedMetadata(String metadataFormat, File metadataFile) throws ImportException, IOException {
         DatasetDTO dsDTO = null;
         String json = null;
         
@@ -259,6 +258,30 @@ public class ImportServiceBean {
                 throw new ImportException("Failed to transform XML metadata format "+metadataFormat+" into a DatasetDTO");
             }
         }
+        return json;
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
+        return doImportHarvestedDataset(dataverseRequest, harvestingClient, harvestIdentifier, metadataFormat, metadataFile, null, oaiDateStamp, cleanupLog);
+    }
+
+    /**
+     * @param json the metadata record, as returned by
+     * {@link #parseHarvestedMetadata(String, File)}; if {@code null}, the
+     * metadata file is parsed here.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, String json, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
+        if (harvestingClient == null || harvestingClient.getDataverse() == null) {
+            throw new ImportException("importHarvestedDataset called wiht a null harvestingClient, or an invalid harvestingClient.");
+        }
+        Dataverse owner = harvestingClient.getDataverse();
+        Dataset importedDataset = null;
+
+        if (json == null) {
+            json = parseHarvestedMetadata(metadataFormat, metadataFile);
+        }
         
         JsonReader jsonReader = Json.createReader(new StringReader(json));
         JsonObject obj = jsonReader.readObject();
@@ -0,0 +1,188 @@
+package edu.harvard.iq.dataverse.authorization;
+
+import edu.harvard.iq.dataverse.DvObject;
+import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Remembers the permissions granted by role assignments to a user (or group)
+ * on a {@link DvObject}, so that the groups of the user and the assignments on
+ * the ancestors of the object are not looked up again for every check.
+ *
+ * There are two levels: a map held by the {@link DataverseRequest}, for the
+ * checks of a single request, and a {@link NamedCache} shared by all
+ * requests, whose entries expire after a few seconds. The groups a user
+ * belongs to depend on the user and on the address of the request only, so
+ * these two make the key, along with the id of the object.
+ *
+ * Any change to role assignments, roles, group memberships, the definitions
+ * of the groups users are matched to (IP, mail domain and Shibboleth
+ * groups) or to the hierarchy of objects must call {@link #invalidate()}. Every entry carries
+ * the generation it was calculated in, and entries from an older generation
+ * are ignored. As the database is only changed when the transaction commits,
+ * the generation is bumped again at that point. Other servers of a cluster
+ * see the change once the entries expire, see
+ * {@code dataverse.cache.permissions.expire-after-write}. So do all servers
+ * for changes of a user that move them into or out of a group without
+ * changing the group, e.g. a new email address matched by a mail domain
+ * group.
+ *
+ * Superusers and the permissions inferred from the state of an object (e.g.
+ * downloading public files) are handled by the caller, and are not cached.
+ *
+ * @see edu.harvard.iq.dataverse.PermissionServiceBean
+ */
+public class PermissionCache {
+
+    private static final Logger logger = Logger.getLogger(PermissionCache.class.getCanonicalName());
+
+    public static final Duration DEFAULT_EXPIRY = Duration.ofSeconds(10);
+
+    private static final AtomicLong generation = new AtomicLong();
+
+    static final NamedCache<Key, Granted> shared = NamedCache.<Key, Granted>builder("permissions")
+            .maxSize(100000)
+            .expireAfterWrite(DEFAULT_EXPIRY)
+            .build();
+
+    /**
+     * The permission bits granted by roles, as calculated in a generation.
+     */
+    public static final class Granted {
+
+        final long bits;
+        final long generation;
+        final long createTime = System.currentTimeMillis();
+
+        Granted(long bits, long generation) {
+            this.bits = bits;
+            this.generation = generation;
+        }
+
+        /**
+         * Entries of a request never outlive the shared ones, in case the
+         * request itself lives long (e.g. a batch job).
+         */
+        boolean isCurrent(long currentGeneration) {
+            Duration expiry = shared.getExpireAfterWrite();
+            return generation == currentGeneration
+                    && (expiry == null || System.currentTimeMillis() - createTime < expiry.toMillis());
+        }
+    }
+
+    static final class Key {
+
+        final String assignee;
+        final String address;
+        final long dvObjectId;
+
+        Key(String assignee, String address, long dvObjectId) {
+            this.assignee = assignee;
+            this.address = address;
+            this.dvObjectId = dvObjectId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return dvObjectId == other.dvObjectId && Objects.equals(assignee, other.assignee) && Objects.equals(address, other.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(assignee, address, dvObjectId);
+        }
+    }
+
+    private PermissionCache() {
+    }
+
+    /**
+     * @param req the request, whose user and address decide the groups.
+     * @param compute calculates the permission bits if they are not cached.
+     * @return the permission bits granted by roles to the user of
+     * {@code req} on {@code dvo}.
+     */
+    public static long granted(DataverseRequest req, DvObject dvo, LongSupplier compute) {
+        if (dvo.getId() == null) {
+            return compute.getAsLong();
+        }
+        long current = generation.get();
+        Map<Long, Granted> memo = req.getGrantedPermissions();
+        Granted granted = memo.get(dvo.getId());
+        if (granted == null || !granted.isCurrent(current)) {
+            granted = lookup(new Key(req.getUser().getIdentifier(), String.valueOf(req.getSourceAddress()), dvo.getId()), current, compute);
+            memo.put(dvo.getId(), granted);
+        }
+        return granted.bits;
+    }
+
+    /**
+     * @return the permission bits granted by roles to {@code ra} on
+     * {@code dvo}, not taking request level groups into account.
+     */
+    public static long granted(RoleAssignee ra, DvObject dvo, LongSupplier compute) {
+        if (dvo.getId() == null) {
+            return compute.getAsLong();
+        }
+        return lookup(new Key(ra.getIdentifier(), null, dvo.getId()), generation.get(), compute).bits;
+    }
+
+    private static Granted lookup(Key key, long current, LongSupplier compute) {
+        Granted granted = shared.get(key);
+        if (granted == null || granted.generation != current) {
+            // the generation is read before calculating, so that a result
+            // based on data changed in the meantime is not used later on
+            granted = new Granted(compute.getAsLong(), current);
+            shared.put(key, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Forgets all permissions, on this server; to be called whenever role
+     * assignments, roles, groups or the hierarchy of objects change.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        shared.invalidate();
+        try {
+            TransactionSynchronizationRegistry registry = (TransactionSynchronizationRegistry) new InitialContext().lookup("java:comp/TransactionSynchronizationRegistry");
+            if (registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                registry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        generation.incrementAndGet();
+                        shared.invalidate();
+                    }
+                });
+            }
+        } catch (NamingException | RuntimeException e) {
+            // not in a container, e.g. in unit tests
+            logger.log(Level.FINE, "No transaction to invalidate the permission cache after", e);
+        }
+    }
+
+    static long getGeneration() {
+        return generation.get();
+    }
+}
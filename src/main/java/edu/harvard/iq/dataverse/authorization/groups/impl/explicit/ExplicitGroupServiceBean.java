@@ -3,6 +3,7 @@ package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import java.util.Collections;
 import java.util.HashSet;
@@ -76,6 +77,7 @@ public class ExplicitGroupServiceBean {
     }
     
     public ExplicitGroup persist( ExplicitGroup g ) {
+        PermissionCache.invalidate();
         if ( g.getId() == null ) {
             em.persist( g );
             return g;
@@ -127,6 +129,7 @@ public class ExplicitGroupServiceBean {
 
     public void removeGroup(ExplicitGroup explicitGroup) {
         em.remove( explicitGroup );
+        PermissionCache.invalidate();
     }
     
     /**
@@ -278,6 +281,7 @@ public class ExplicitGroupServiceBean {
         } else if (assignee instanceof ExplicitGroup) {
             em.createNativeQuery("DELETE FROM explicitgroup_explicitgroup WHERE containedexplicitgroups_id=" + ((ExplicitGroup) assignee).getId()).executeUpdate();
         }
+        PermissionCache.invalidate();
     }
     
     
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.authorization.groups.impl.maildomain;
 
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.confirmemail.ConfirmEmailServiceBean;
 
@@ -62,6 +63,7 @@ public class MailDomainGroupServiceBean {
                 mg -> mg,
                 mg -> Pattern.compile(mg.getEmailDomains().replace(";","|"))
             ));
+        PermissionCache.invalidate();
     }
     
     @Lock(LockType.READ)
@@ -152,6 +154,7 @@ public class MailDomainGroupServiceBean {
             // (triggering persistence once we leave the function)
             if (old.isPresent()) {
                 old.get().update(grp);
+                PermissionCache.invalidate();
                 
                 alr.setActionSubType("mailDomainUpdate");
                 actionLogSvc.log( alr );
@@ -167,6 +170,7 @@ public class MailDomainGroupServiceBean {
         }
         // or add new ...
         em.persist(grp);
+        PermissionCache.invalidate();
         actionLogSvc.log( alr );
         
         return grp;
@@ -184,6 +188,7 @@ public class MailDomainGroupServiceBean {
     
         Optional<MailDomainGroup> tbd = findByAlias(groupAlias);
         em.remove(tbd.orElseThrow(() -> new NotFoundException("Cannot find a group with alias "+groupAlias)));
+        PermissionCache.invalidate();
         actionLogSvc.log( alr );
     }
     
@@ -163,6 +163,18 @@ public class DataAccess {
     	return System.getProperty("dataverse.files." + driverId + ".type", "Undefined");
     }
     
+    /**
+     * @return how many files of the store are opened and read at the same
+     * time when several files are zipped for download. The latency of
+     * opening a file only matters for remote stores.
+     */
+    public static int getZipPrefetch(String driverId) {
+        if (S3.equals(getDriverType(driverId))) {
+            return S3AccessIO.getZipPrefetch(driverId);
+        }
+        return 1;
+    }
+
     //This 
     public static String getDriverPrefix(String driverId) throws IOException {
         if(driverId.isEmpty() || driverId.equals("tmp")) {
@@ -102,39 +102,28 @@ public class DataConverter {
             convertedFileStream = null;
         }
 
-        // If not cached, run the conversion:
+        // If not cached, run the conversion: 
+        // (or wait for the same conversion requested by someone else)
         if (convertedFileStream == null) {
-
-            File tabFile = downloadFromStorageIO(storageIO);
-
-            if (tabFile == null) {
+            StorageIO<DataFile> conversionIO;
+            try {
+                conversionIO = prepareFormatConversion(file);
+            } catch (IOException ioex) {
+                logger.warning("Failed to access " + file.getStorageIdentifier() + " for format " + formatRequested);
                 return null;
             }
+            File formatConvertedFile = FormatConversionService.convert(file.getId() + ":" + formatRequested,
+                    () -> runAndCacheFormatConversion(file, conversionIO, formatRequested));
 
-            if (tabFile.length() > 0) {
-                File formatConvertedFile = runFormatConversion(file, tabFile, formatRequested);
-
-                // cache the result for future use:
-                if (formatConvertedFile != null && formatConvertedFile.exists()) {
-
-                    try {
-                        storageIO.savePathAsAux(Paths.get(formatConvertedFile.getAbsolutePath()), formatRequested);
-
-                    } catch (IOException ex) {
-                        logger.warning("failed to save cached format " + formatRequested + " for " + file.getStorageIdentifier());
-                        // We'll assume that this is a non-fatal condition.
-                    }
-
-                    // re-open the generated file:
-                    try {
-                        convertedFileStream = new FileInputStream(formatConvertedFile);
-                        convertedFileSize = formatConvertedFile.length();
-                    } catch (FileNotFoundException ioex) {
-                        logger.warning("Failed to open generated format " + formatRequested + " for " + file.getStorageIdentifier());
-                        return null;
-                    }
+            if (formatConvertedFile != null && formatConvertedFile.exists()) {
+                // re-open the generated file:
+                try {
+                    convertedFileStream = new FileInputStream(formatConvertedFile);
+                    convertedFileSize = formatConvertedFile.length();
+                } catch (FileNotFoundException ioex) {
+                    logger.warning("Failed to open generated format " + formatRequested + " for " + file.getStorageIdentifier());
+                    return null;
                 }
-
             }
         }
 
@@ -163,6 +152,56 @@ public class DataConverter {
         return null;
     }
 
+    /*
+     * Loads, on the request thread, what the conversion needs from the 
+     * database - the storage driver of the dataset, the variables and 
+     * their categories - since it runs on another thread, outside of the 
+     * persistence context of the request. 
+     */
+    private static StorageIO<DataFile> prepareFormatConversion(DataFile file) throws IOException {
+        file.getOriginalFileFormat();
+        for (DataVariable dataVariable : file.getDataTable().getDataVariables()) {
+            dataVariable.getCategories().size();
+        }
+        return DataAccess.getStorageIO(file);
+    }
+
+    /*
+     * Runs on the conversion pool of FormatConversionService, with a 
+     * StorageIO of its own: the request that started it may not be the 
+     * only one waiting for it. 
+     */
+    private static File runAndCacheFormatConversion(DataFile file, StorageIO<DataFile> storageIO, String formatRequested) throws IOException {
+        File tabFile = downloadFromStorageIO(storageIO);
+
+        if (tabFile == null) {
+            return null;
+        }
+
+        File formatConvertedFile = null;
+        if (tabFile.length() > 0) {
+            formatConvertedFile = runFormatConversion(file, storageIO, tabFile, formatRequested);
+
+            // cache the result for future use:
+            if (formatConvertedFile != null && formatConvertedFile.exists()) {
+
+                try {
+                    storageIO.savePathAsAux(Paths.get(formatConvertedFile.getAbsolutePath()), formatRequested);
+
+                } catch (IOException ex) {
+                    logger.warning("failed to save cached format " + formatRequested + " for " + file.getStorageIdentifier());
+                    // We'll assume that this is a non-fatal condition.
+                }
+            }
+        }
+
+        // the temp copy of a remote tab file: 
+        if (!storageIO.isLocalFile() && !tabFile.equals(formatConvertedFile)) {
+            tabFile.delete();
+        }
+        return formatConvertedFile;
+    }
+
     public static File downloadFromStorageIO(StorageIO<DataFile> storageIO) {
         if (storageIO.isLocalFile()){
             try {
@@ -208,7 +247,7 @@ public class DataConverter {
     // (possibly running on a remote host) and gets back the transformed copy,
     // providing error-checking and diagnostics in the process.
     // This is mostly Akio Sone's code from DVN3.
-    private static File runFormatConversion (DataFile file, File tabFile, String formatRequested) {
+    private static File runFormatConversion (DataFile file, StorageIO<DataFile> storageIO, File tabFile, String formatRequested) {
 
         if ( formatRequested.equals (FILE_TYPE_TAB) ) {
             // if the *requested* format is TAB-delimited, we don't
@@ -241,7 +280,6 @@ public class DataConverter {
                 }
                     
                 try {
-                    StorageIO<DataFile> storageIO = file.getStorageIO();
                     long size = storageIO.getAuxObjectSize("orig");
                     try (ReadableByteChannel origChannel = (ReadableByteChannel) storageIO.openAuxChannel("orig")) {
                       File origFile = downloadFromByteChannel(origChannel, size);
@@ -24,12 +24,29 @@ import java.io.IOException;
 
 
 import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.util.ContainerThreadFactory;
+import edu.harvard.iq.dataverse.util.FileUtil;
+import java.io.BufferedOutputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -42,6 +59,67 @@ public class DataFileZipper {
     
     private static final Logger logger = Logger.getLogger(DataFileZipper.class.getCanonicalName());
     private static final String MANIFEST_FILE_NAME = "MANIFEST.TXT";
+
+    /**
+     * Size of the buffers the files are read into.
+     */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Number of buffers a file is read ahead of the zip stream.
+     */
+    static final int READ_AHEAD_BUFFERS = 4;
+
+    /**
+     * Threads reading files ahead of the zip streams, shared by all the
+     * downloads. A file is only read ahead if one of them is free: a reader
+     * waits for its download to take what it has read, so the downloads of
+     * slow clients may hold all of them. The files of the other downloads are
+     * then read by the request thread, without read-ahead, rather than wait
+     * for a thread.
+     */
+    static final int READ_AHEAD_THREADS = 64;
+
+    private static ThreadPoolExecutor readAheadExecutor;
+    static final Semaphore readAheadPermits = new Semaphore(READ_AHEAD_THREADS);
+
+    /**
+     * The buffers kept for later downloads, at most 32 MB.
+     */
+    private static final BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(32);
+
+    /**
+     * The zip stream writes out whatever it has compressed in small pieces.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Content types whose files hardly get any smaller when deflated.
+     * Video types are added by {@link #isCompressed(String)}.
+     */
+    private static final Set<String> COMPRESSED_MIME_TYPES = Set.of(
+            FileUtil.MIME_TYPE_ZIP,
+            FileUtil.MIME_TYPE_GEO_SHAPE,
+            "application/gzip",
+            "application/x-gzip",
+            "application/x-bzip2",
+            "application/x-xz",
+            "application/zstd",
+            "application/x-7z-compressed",
+            "application/rar",
+            "application/x-rar-compressed",
+            "application/vnd.apache.parquet",
+            "application/x-parquet",
+            FileUtil.MIME_TYPE_XLSX,
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "image/png",
+            "image/jpeg",
+            "image/gif",
+            "image/webp",
+            "audio/mpeg",
+            "audio/mp4",
+            "audio/ogg");
     
     private OutputStream outputStream = null; 
     private ZipOutputStream zipOutputStream = null;
@@ -86,7 +164,7 @@ public class DataFileZipper {
         if (outputStream == null) {
             throw new IOException("Attempted to create a ZipOutputStream from a NULL OutputStream.");
         }
-        this.zipOutputStream = new ZipOutputStream(outputStream);
+        this.zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE));
     }
     
     public long addFileToZipStream(DataFile dataFile) throws IOException {
@@ -94,117 +172,376 @@ public class DataFileZipper {
     }
     
     public long addFileToZipStream(DataFile dataFile, boolean getOriginal) throws IOException {
+        return addFilesToZipStream(Collections.singletonList(dataFile), getOriginal);
+    }
+
+    private static synchronized ThreadPoolExecutor getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_AHEAD_THREADS, READ_AHEAD_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ContainerThreadFactory("zip-read-ahead"));
+            executor.allowCoreThreadTimeOut(true);
+            readAheadExecutor = executor;
+        }
+        return readAheadExecutor;
+    }
+
+    /**
+     * Adds the files to the zip stream, in order. The files are read by
+     * separate threads, up to {@link #READ_AHEAD_BUFFERS} buffers ahead of
+     * the zip stream. The following files are opened and read at the same
+     * time, as many as {@link DataAccess#getZipPrefetch(String)} allows for
+     * their stores, and at least the next one, so that the latency of a remote
+     * store is only paid once for a whole batch of small files.
+     * @return the number of bytes written, before compression.
+     */
+    public long addFilesToZipStream(List<DataFile> dataFiles, boolean getOriginal) throws IOException {
         if (zipOutputStream == null) {
             openZipStream();
         }
+        if (dataFiles.isEmpty()) {
+            return 0L;
+        }
+
+        int prefetch = 1;
+        for (DataFile dataFile : dataFiles) {
+            if (dataFile.getStorageIdentifier() != null) {
+                prefetch = Math.max(prefetch, DataAccess.getZipPrefetch(DataAccess.getStorageDriverFromIdentifier(dataFile.getStorageIdentifier())));
+            }
+        }
+        ThreadPoolExecutor reader = getReadAheadExecutor();
+        // several files at once are enough; parts of each of them on top
+        // of that would hold too much in memory
+        boolean singleRequests = prefetch > 1;
+        List<Source> sources = new ArrayList<>();
+        for (DataFile dataFile : dataFiles) {
+            // on this thread, see Source
+            sources.add(new Source(dataFile));
+        }
+        List<Future<?>> reads = new ArrayList<>();
+        int started = 0;
+        try {
+            long byteSize = 0;
+            for (int i = 0; i < sources.size(); i++) {
+                // the files are started in order, so the one being written
+                // is always being read, however many are waiting; and the
+                // next one is opened while this one is written
+                while (started < Math.min(i + Math.max(2, prefetch), sources.size())) {
+                    Source source = sources.get(started++);
+                    if (readAheadPermits.tryAcquire()) {
+                        source.readAhead = true;
+                        FutureTask<Void> read = new FutureTask<Void>(() -> source.read(getOriginal, singleRequests), null) {
+                            @Override
+                            protected void done() {
+                                // also when cancelled before it ran
+                                readAheadPermits.release();
+                            }
+                        };
+                        reads.add(read);
+                        reader.execute(read);
+                    }
+                }
+                Source source = sources.get(i);
+                if (!source.readAhead) {
+                    source.openHere(getOriginal, singleRequests);
+                }
+                try {
+                    byteSize += writeEntry(source);
+                } finally {
+                    source.closeHere();
+                }
+            }
+            return byteSize;
+        } finally {
+            // stops reading, if writing failed (e.g. the client went away)
+            for (Future<?> read : reads) {
+                read.cancel(true);
+            }
+        }
+    }
 
+    private long writeEntry(Source source) throws IOException {
+        source.awaitOpened();
+        if (source.accessObject == null) {
+            return 0L;
+        }
         boolean createManifest = fileManifest != null;
-        
-        DataAccessRequest daReq = new DataAccessRequest();
-        StorageIO<DataFile> accessObject = DataAccess.getStorageIO(dataFile, daReq);
+        DataFile dataFile = source.dataFile;
+        String fileName = source.fileName;
+        String mimeType = source.mimeType;
 
-        if (accessObject != null) {
-            Boolean gotOriginal = false;
-            if(getOriginal) {
-                StoredOriginalFile sof = new StoredOriginalFile();
-                StorageIO<DataFile> tempAccessObject = sof.retreive(accessObject);
-                if(null != tempAccessObject) { //If there is an original, use it
-                    gotOriginal = true;
-                    accessObject = tempAccessObject; 
-                } 
+        long byteSize = 0;
+
+        if (source.instream == null) {
+            if (createManifest) {
+                addToManifest(fileName
+                        + " (" + mimeType
+                        + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
             }
-            if(!gotOriginal) { //if we didn't get this from sof.retreive we have to open it
-                accessObject.open();
+            return byteSize;
+        }
+
+        // If any of the files have non-empty DirectoryLabels we'll 
+        // use them to re-create the folders in the Zipped bundle:
+        String folderName = dataFile.getFileMetadata().getDirectoryLabel(); 
+        if (folderName != null) {
+            // If any of the saved folder names start with with slashes,
+            // we want to remove them: 
+            // (i.e., ///foo/bar will become foo/bar)
+            while (folderName.startsWith("/")) {
+                folderName = folderName.substring(1);
+            }
+            if (!"".equals(folderName)) {
+                if (!zippedFolders.contains(folderName)) {
+                    ZipEntry d = new ZipEntry(folderName + "/");
+                    zipOutputStream.putNextEntry(d);
+                    zipOutputStream.closeEntry();
+                    zippedFolders.add(folderName);
+                }
+                fileName = folderName + "/" + fileName;
             }
+        }
 
-            long byteSize = 0;
+        String zipEntryName = checkZipEntryName(fileName);
 
-            String fileName = accessObject.getFileName();
-            String mimeType = accessObject.getMimeType();
-            if (mimeType == null || mimeType.equals("")) {
-                mimeType = "application/octet-stream";
-            }
+        ZipEntry e = new ZipEntry(zipEntryName);
+        logger.fine("created new zip entry for " + zipEntryName);
 
-            //if (sizeTotal + fileSize < sizeLimit) {
-            Boolean Success = true;
+        // Files that are compressed already are not deflated again. (True
+        // STORED entries would need their size and checksum up front.)
+        zipOutputStream.setLevel(isCompressed(mimeType) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zipOutputStream.putNextEntry(e);
 
-            InputStream instream = accessObject.getInputStream();
-            if (instream == null) {
-                if (createManifest) {
-                    addToManifest(fileName
-                            + " (" + mimeType
-                            + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
-                }
+        // before writing out any bytes from the input stream, flush
+        // any extra content, such as the variable header for the 
+        // subsettable files:
+        String varHeaderLine = source.varHeader;
+        if (varHeaderLine != null) {
+            zipOutputStream.write(varHeaderLine.getBytes());
+            byteSize += (varHeaderLine.getBytes().length);
+        }
 
-                Success = false;
-            } else {
-                // If any of the files have non-empty DirectoryLabels we'll 
-                // use them to re-create the folders in the Zipped bundle:
-                String folderName = dataFile.getFileMetadata().getDirectoryLabel(); 
-                if (folderName != null) {
-                    // If any of the saved folder names start with with slashes,
-                    // we want to remove them: 
-                    // (i.e., ///foo/bar will become foo/bar)
-                    while (folderName.startsWith("/")) {
-                        folderName = folderName.substring(1);
-                    }
-                    if (!"".equals(folderName)) {
-                        if (!zippedFolders.contains(folderName)) {
-                            ZipEntry d = new ZipEntry(folderName + "/");
-                            zipOutputStream.putNextEntry(d);
-                            zipOutputStream.closeEntry();
-                            zippedFolders.add(folderName);
+        Chunk chunk;
+        while ((chunk = source.nextChunk()) != Chunk.END) {
+            zipOutputStream.write(chunk.data, 0, chunk.length);
+            byteSize += chunk.length;
+            releaseBuffer(chunk.data);
+        }
+        zipOutputStream.closeEntry();
+        logger.fine("closed zip entry for " + zipEntryName + ", " + byteSize + " bytes");
+
+        if (createManifest) {
+            addToManifest(zipEntryName + " (" + mimeType + ") " + byteSize + " bytes.\r\n");
+        }
+
+        if (byteSize > 0) {
+            zippedFilesList.add(dataFile.getId());
+        }
+        return byteSize;
+    }
+
+    static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        int parameters = mimeType.indexOf(';');
+        String baseType = (parameters < 0 ? mimeType : mimeType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+        return COMPRESSED_MIME_TYPES.contains(baseType) || baseType.startsWith("video/");
+    }
+
+    /**
+     * @param expectedSize the size of the file, if known; a small file gets
+     * a buffer of its own size (plus one byte, to see its end in one read).
+     */
+    static byte[] takeBuffer(long expectedSize) {
+        if (expectedSize > 0 && expectedSize < BUFFER_SIZE) {
+            return new byte[(int) expectedSize + 1];
+        }
+        byte[] buffer = bufferPool.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    static void releaseBuffer(byte[] buffer) {
+        if (buffer.length == BUFFER_SIZE) {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    /**
+     * A part of a file, read into a pooled buffer.
+     */
+    private static final class Chunk {
+
+        static final Chunk END = new Chunk(null, 0, null);
+
+        final byte[] data;
+        final int length;
+        final IOException failure;
+
+        Chunk(byte[] data, int length, IOException failure) {
+            this.data = data;
+            this.length = length;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * A file being read ahead of the zip stream. Opened and read by the
+     * reader thread, written by the thread of the zipper; or, if no reader
+     * thread was free, opened and read by the thread of the zipper as it
+     * writes it.
+     *
+     * It is created on the thread of the zipper, the request thread, and
+     * loads there the associations of the DataFile that opening the file
+     * reads (its dataset, metadata and data table), so that the reader
+     * thread does not lazy-load them through the persistence context of the
+     * request.
+     */
+    private static final class Source {
+
+        final DataFile dataFile;
+        final CountDownLatch opened = new CountDownLatch(1);
+        final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(READ_AHEAD_BUFFERS);
+        volatile StorageIO<DataFile> accessObject;
+        volatile InputStream instream;
+        volatile String fileName;
+        volatile String mimeType;
+        volatile String varHeader;
+        volatile IOException openFailure;
+        boolean readAhead;
+
+        Source(DataFile dataFile) {
+            this.dataFile = dataFile;
+            dataFile.getOwner();
+            dataFile.getFileMetadata();
+            DataTable dataTable = dataFile.getDataTable();
+            if (dataTable != null) {
+                dataTable.getDataVariables().size();
+            }
+        }
+
+        void read(boolean getOriginal, boolean singleRequest) {
+            openHere(getOriginal, singleRequest);
+            if (instream == null) {
+                return;
+            }
+            try {
+                try (InputStream in = instream) {
+                    while (true) {
+                        byte[] buffer = takeBuffer(accessObject.getSize());
+                        int length = in.readNBytes(buffer, 0, buffer.length);
+                        if (length > 0) {
+                            chunks.put(new Chunk(buffer, length, null));
+                        } else {
+                            releaseBuffer(buffer);
+                        }
+                        if (length < buffer.length) {
+                            chunks.put(Chunk.END);
+                            return;
                         }
-                        fileName = folderName + "/" + fileName;
                     }
+                } catch (IOException | RuntimeException ex) {
+                    chunks.put(new Chunk(null, 0, ex instanceof IOException ? (IOException) ex : new IOException(ex)));
                 }
-                
-                String zipEntryName = checkZipEntryName(fileName);
-                
-                ZipEntry e = new ZipEntry(zipEntryName);
-                logger.fine("created new zip entry for " + zipEntryName);
-
-                zipOutputStream.putNextEntry(e);
-
-                // before writing out any bytes from the input stream, flush
-                // any extra content, such as the variable header for the 
-                // subsettable files:
-                String varHeaderLine = accessObject.getVarHeader();
-                if (varHeaderLine != null) {
-                    zipOutputStream.write(varHeaderLine.getBytes());
-                    byteSize += (varHeaderLine.getBytes().length);
+            } catch (InterruptedException ex) {
+                // the zipper gave up
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Opens the file on the current thread; failures are thrown by
+         * {@link #awaitOpened()}.
+         */
+        void openHere(boolean getOriginal, boolean singleRequest) {
+            try {
+                open(getOriginal);
+                if (singleRequest && instream instanceof RangedInputStream) {
+                    ((RangedInputStream) instream).setConnections(1);
                 }
+            } catch (IOException | RuntimeException ex) {
+                openFailure = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+            } finally {
+                opened.countDown();
+            }
+        }
 
-                byte[] data = new byte[8192];
+        /**
+         * Closes the file, if it was not read ahead (the reader closes it
+         * otherwise).
+         */
+        void closeHere() {
+            if (!readAhead && instream != null) {
+                try {
+                    instream.close();
+                } catch (IOException ex) {
+                    logger.fine("Failed to close " + dataFile.getId() + ": " + ex.getMessage());
+                }
+            }
+        }
 
-                int i = 0;
-                while ((i = instream.read(data)) > 0) {
-                    zipOutputStream.write(data, 0, i);
-                    logger.fine("wrote " + i + " bytes;");
+        private void open(boolean getOriginal) throws IOException {
+            DataAccessRequest daReq = new DataAccessRequest();
+            StorageIO<DataFile> storageIO = DataAccess.getStorageIO(dataFile, daReq);
+            if (storageIO == null) {
+                return;
+            }
+            Boolean gotOriginal = false;
+            if(getOriginal) {
+                StoredOriginalFile sof = new StoredOriginalFile();
+                StorageIO<DataFile> tempAccessObject = sof.retreive(storageIO);
+                if(null != tempAccessObject) { //If there is an original, use it
+                    gotOriginal = true;
+                    storageIO = tempAccessObject; 
+                } 
+            }
+            if(!gotOriginal) { //if we didn't get this from sof.retreive we have to open it
+                storageIO.open();
+            }
 
-                    byteSize += i;
-                    zipOutputStream.flush();
-                }
-                instream.close();
-                zipOutputStream.closeEntry();
-                logger.fine("closed zip entry for " + zipEntryName);
+            fileName = storageIO.getFileName();
+            String type = storageIO.getMimeType();
+            mimeType = type == null || type.equals("") ? "application/octet-stream" : type;
+            varHeader = storageIO.getVarHeader();
+            instream = storageIO.getInputStream();
+            accessObject = storageIO;
+        }
 
-                if (createManifest) {
-                    addToManifest(zipEntryName + " (" + mimeType + ") " + byteSize + " bytes.\r\n");
-                }
+        void awaitOpened() throws IOException {
+            try {
+                opened.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while opening " + dataFile.getId());
+            }
+            if (openFailure != null) {
+                throw openFailure;
+            }
+        }
 
-                if (byteSize > 0) {
-                    zippedFilesList.add(dataFile.getId());
+        Chunk nextChunk() throws IOException {
+            if (!readAhead) {
+                byte[] buffer = takeBuffer(accessObject.getSize());
+                int length = instream.readNBytes(buffer, 0, buffer.length);
+                if (length > 0) {
+                    return new Chunk(buffer, length, null);
                 }
+                releaseBuffer(buffer);
+                return Chunk.END;
             }
-            //} else if (createManifest) {
-            //    addToManifest(fileName + " (" + mimeType + ") " + " skipped because the total size of the download bundle exceeded the limit of " + sizeLimit + " bytes.\r\n");
-            //}
-            return byteSize;
+            Chunk chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + dataFile.getId());
+            }
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            return chunk;
         }
-        return 0L;
     }
-    
+
     public void finalizeZipStream() throws IOException {
         boolean createManifest = fileManifest != null;
         
@@ -48,6 +48,10 @@ import java.nio.channels.Channel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.io.input.BoundedInputStream;
 
 
 public class FileAccessIO<T extends DvObject> extends StorageIO<T> {
@@ -652,6 +656,17 @@ public class FileAccessIO<T extends DvObject> extends StorageIO<T> {
         }
         return in;
     }
+
+    @Override
+    public InputStream getAuxFileAsInputStream(String auxItemTag, long offset, long length) throws IOException {
+        if (!this.isAuxObjectCached(auxItemTag)) {
+            return null;
+        }
+        FileChannel auxChannel = FileChannel.open(getAuxObjectAsPath(auxItemTag), StandardOpenOption.READ);
+        auxChannel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(auxChannel), length);
+    }
+
     private String stripDriverId(String storageIdentifier) {
         int separatorIndex = storageIdentifier.indexOf(DataAccess.SEPARATOR);
         if(separatorIndex>0) {
@@ -0,0 +1,159 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.ContainerThreadFactory;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Runs the format conversions of tabular files (to RData, and the "prep"
+ * metadata) on a small pool of threads, so that no more of them run at the
+ * same time than Rserve is expected to handle; the others wait in a queue.
+ *
+ * Requests for a conversion that is already queued or running wait for the
+ * same conversion rather than starting another one, so that ten users
+ * asking for the same file in the same format start one R job.
+ *
+ * A request waits for its conversion for at most
+ * {@code dataverse.rserve.conversion-timeout} seconds, queued or running; the
+ * conversion is left to finish and be cached for the next request.
+ *
+ * The queue depth, the number of conversions and the time they took are
+ * reported by {@link #getStatus()}.
+ */
+public class FormatConversionService {
+
+    private static final Logger logger = Logger.getLogger(FormatConversionService.class.getCanonicalName());
+
+    static final int DEFAULT_MAX_CONVERSIONS = 4;
+    // beyond that, conversion requests fail right away
+    static final int MAX_QUEUED = 100;
+    static final int DEFAULT_CONVERSION_TIMEOUT = 600;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+    private static ThreadPoolExecutor conversionExecutor;
+
+    private static final AtomicLong requested = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong completed = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong timedOut = new AtomicLong();
+    private static final AtomicLong totalQueueMillis = new AtomicLong();
+    private static final AtomicLong totalConversionMillis = new AtomicLong();
+    private static final AtomicLong maxConversionMillis = new AtomicLong();
+
+    private FormatConversionService() {
+    }
+
+    private static synchronized ThreadPoolExecutor getConversionExecutor() {
+        if (conversionExecutor == null) {
+            int threads = Math.max(1, JvmSettings.RSERVE_MAX_CONVERSIONS.lookupOptional(Integer.class).orElse(DEFAULT_MAX_CONVERSIONS));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(MAX_QUEUED), new ContainerThreadFactory("format-conversion"));
+            executor.allowCoreThreadTimeOut(true);
+            conversionExecutor = executor;
+        }
+        return conversionExecutor;
+    }
+
+    /**
+     * Runs {@code conversion}, unless a conversion with the same key is
+     * already queued or running, and waits for it. The conversion runs on
+     * another thread: whatever it needs from the database has to be loaded
+     * before.
+     *
+     * @param key the file, and the format it is converted to.
+     * @param conversion returns the converted file, or null if it failed.
+     * @return the converted file; null if the conversion failed, if too
+     * many conversions are queued already, or if it did not finish in time.
+     */
+    public static File convert(String key, Callable<File> conversion) {
+        int timeout = JvmSettings.RSERVE_CONVERSION_TIMEOUT.lookupOptional(Integer.class).orElse(DEFAULT_CONVERSION_TIMEOUT);
+        return await(key, submit(key, conversion, getConversionExecutor()), TimeUnit.SECONDS.toMillis(timeout));
+    }
+
+    static CompletableFuture<File> submit(String key, Callable<File> conversion, ExecutorService executor) {
+        requested.incrementAndGet();
+        CompletableFuture<File> result = new CompletableFuture<>();
+        CompletableFuture<File> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running;
+        }
+        long submitted = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                long start = System.currentTimeMillis();
+                totalQueueMillis.addAndGet(start - submitted);
+                try {
+                    File converted = conversion.call();
+                    (converted != null ? completed : failed).incrementAndGet();
+                    result.complete(converted);
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Format conversion " + key + " failed", t);
+                    failed.incrementAndGet();
+                    result.complete(null);
+                } finally {
+                    long millis = System.currentTimeMillis() - start;
+                    totalConversionMillis.addAndGet(millis);
+                    maxConversionMillis.accumulateAndGet(millis, Math::max);
+                    inFlight.remove(key, result);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.warning("Too many format conversions queued, rejecting " + key);
+            rejected.incrementAndGet();
+            inFlight.remove(key, result);
+            result.complete(null);
+        }
+        return result;
+    }
+
+    static File await(String key, CompletableFuture<File> result, long timeoutMillis) {
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (TimeoutException ex) {
+            logger.warning("Format conversion " + key + " did not finish within " + timeoutMillis + " ms, giving up waiting for it");
+            timedOut.incrementAndGet();
+            return null;
+        }
+    }
+
+    public static JsonObjectBuilder getStatus() {
+        ThreadPoolExecutor executor = getConversionExecutor();
+        long conversions = completed.get() + failed.get();
+        return Json.createObjectBuilder()
+                .add("maxConversions", executor.getMaximumPoolSize())
+                .add("running", executor.getActiveCount())
+                .add("queued", executor.getQueue().size())
+                .add("requested", requested.get())
+                .add("coalesced", coalesced.get())
+                .add("rejected", rejected.get())
+                .add("completed", completed.get())
+                .add("failed", failed.get())
+                .add("timedOut", timedOut.get())
+                .add("averageQueueMillis", conversions == 0 ? 0 : totalQueueMillis.get() / conversions)
+                .add("averageConversionMillis", conversions == 0 ? 0 : totalConversionMillis.get() / conversions)
+                .add("maxConversionMillis", maxConversionMillis.get());
+    }
+}
@@ -24,7 +24,9 @@ import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import java.awt.Graphics2D;
 import java.awt.Image;
@@ -175,6 +177,59 @@ public class ImageThumbConverter {
         }
     }
 
+    /**
+     * Starts generating the thumbnails of a new file, in all the standard
+     * sizes, in the background - so that they are there by the time the
+     * file shows up on a page.
+     */
+    public static void generateThumbnailsInBackground(DataFile file) {
+        if (file == null || !FileUtil.isThumbnailSupported(file) || file.isHarvested()) {
+            return;
+        }
+        StorageIO<DataFile> storageIO;
+        try {
+            storageIO = file.getStorageIO();
+        } catch (IOException ioex) {
+            return;
+        }
+        if (file.getContentType().substring(0, 6).equalsIgnoreCase("image/")) {
+            if (!isImageOverSizeLimit(file.getFilesize())) {
+                ThumbnailGenerator.submit(generationKey(storageIO, DEFAULT_PREVIEW_SIZE),
+                        () -> generateImageThumbnails(storageIO, DEFAULT_PREVIEW_SIZE));
+            }
+        } else if (file.getContentType().equalsIgnoreCase("application/pdf")) {
+            if (!isPdfFileOverSizeLimit(file.getFilesize()) && isImageMagickInstalled()) {
+                for (int size : getStandardSizes()) {
+                    ThumbnailGenerator.submit(generationKey(storageIO, size), 
+                            () -> isThumbnailCached(storageIO, size) || generatePDFThumbnailNow(storageIO, size));
+                }
+            }
+        }
+    }
+
+    private static int[] getStandardSizes() {
+        return new int[]{DEFAULT_PREVIEW_SIZE, DEFAULT_DATASETLOGO_SIZE, DEFAULT_THUMBNAIL_SIZE, DEFAULT_CARDIMAGE_SIZE};
+    }
+
+    /*
+     * Requests for the same thumbnail of the same file share one generation. 
+     * The standard sizes of an image are all generated together, so they 
+     * share the same key. The file is identified by its storage identifier 
+     * alone, since a new file has no id yet when its thumbnails are started. 
+     */
+    private static String generationKey(StorageIO<DataFile> storageIO, int size) {
+        DataFile file = storageIO.getDataFile();
+        String key = file.getStorageIdentifier();
+        if (file.getContentType().substring(0, 6).equalsIgnoreCase("image/")) {
+            for (int s : getStandardSizes()) {
+                if (s == size) {
+                    return key;
+                }
+            }
+        }
+        return key + ":" + size;
+    }
+
     private static boolean generatePDFThumbnail(StorageIO<DataFile> storageIO, int size) {
         if (isPdfFileOverSizeLimit(storageIO.getDataFile().getFilesize())) {
             logger.fine("PDF file too large (" + storageIO.getDataFile().getFilesize() + " bytes) - skipping");
@@ -187,6 +242,21 @@ public class ImageThumbConverter {
             return false;
         }
 
+        // on the render threads, with a StorageIO of their own (the one of 
+        // the request may be used by the request again, if it gives up waiting), 
+        // made here, where the owner of the file can still be loaded:
+        StorageIO<DataFile> renderIO;
+        try {
+            renderIO = DataAccess.getStorageIO(storageIO.getDataFile());
+        } catch (IOException ioex) {
+            return false;
+        }
+        return ThumbnailGenerator.generate(generationKey(storageIO, size), 
+                () -> generatePDFThumbnailNow(renderIO, size));
+    }
+
+    private static boolean generatePDFThumbnailNow(StorageIO<DataFile> storageIO, int size) {
+
         File sourcePdfFile = null;
 
         // We'll to get a local Path for this file - but if that is not available 
@@ -270,10 +340,41 @@ public class ImageThumbConverter {
             return false;
         }
 
+        // on the render threads, as above:
+        StorageIO<DataFile> renderIO;
+        try {
+            renderIO = DataAccess.getStorageIO(storageIO.getDataFile());
+        } catch (IOException ioex) {
+            return false;
+        }
+        return ThumbnailGenerator.generate(generationKey(storageIO, size), 
+                () -> generateImageThumbnails(renderIO, size));
+    }
+
+    /*
+     * Generates the thumbnail of the requested size, and, from the same 
+     * decoded image, those of the standard sizes that are not there yet. 
+     */
+    private static boolean generateImageThumbnails(StorageIO<DataFile> storageIO, int size) {
+
+        List<Integer> sizes = new ArrayList<>();
+        sizes.add(size);
+        for (int s : getStandardSizes()) {
+            if (s != size) {
+                sizes.add(s);
+            }
+        }
+        sizes.removeIf(s -> isThumbnailCached(storageIO, s));
+        if (!sizes.contains(size)) {
+            // generated in the meantime (e.g. by another server), and 
+            // so are the others, most likely: 
+            return true;
+        }
+
         try {
             storageIO.open();
             try(InputStream inputStream = storageIO.getInputStream()) {
-              return generateImageThumbnailFromInputStream(storageIO, size, inputStream);
+              return generateImageThumbnailFromInputStream(storageIO, sizes, inputStream);
             }
         } catch (IOException ioex) {
             logger.warning("caught IOException trying to open an input stream for " + storageIO.getDataFile().getStorageIdentifier() + ioex);
@@ -284,9 +385,10 @@ public class ImageThumbConverter {
 
     /*
      * This is the actual workhorse method that does the rescaling of the full 
-     * size image: 
+     * size image, into each of the sizes requested; the first one is the one
+     * that matters, the others are a bonus: 
      */
-    private static boolean generateImageThumbnailFromInputStream(StorageIO<DataFile> storageIO, int size, InputStream inputStream) {
+    private static boolean generateImageThumbnailFromInputStream(StorageIO<DataFile> storageIO, List<Integer> sizes, InputStream inputStream) {
 
         BufferedImage fullSizeImage;
 
@@ -308,6 +410,19 @@ public class ImageThumbConverter {
 
         logger.fine("image dimensions: " + width + "x" + height + "(" + storageIO.getDataFile().getStorageIdentifier() + ")");
 
+        if (!saveImageThumbnail(storageIO, fullSizeImage, width, height, sizes.get(0))) {
+            return false;
+        }
+        // while we are at it, let's make sure other size thumbnails are 
+        // generated too (the full size image is decoded once):
+        for (int size : sizes.subList(1, sizes.size())) {
+            saveImageThumbnail(storageIO, fullSizeImage, width, height, size);
+        }
+        return true;
+    }
+
+    private static boolean saveImageThumbnail(StorageIO<DataFile> storageIO, BufferedImage fullSizeImage, int width, int height, int size) {
+
         OutputStream outputStream = null;
 
         // With some storage drivers, we can open a WritableChannel, or OutputStream 
@@ -341,15 +456,7 @@ public class ImageThumbConverter {
         try {
 
             rescaleImage(fullSizeImage, width, height, size, outputStream);
-            /*
-            // while we are at it, let's make sure other size thumbnails are 
-            // generated too:
-            for (int s : (new int[]{DEFAULT_PREVIEW_SIZE, DEFAULT_THUMBNAIL_SIZE, DEFAULT_CARDIMAGE_SIZE})) {
-                if (size != s && !thumbnailFileExists(fileLocation, s)) {
-                    rescaleImage(fullSizeImage, width, height, s, fileLocation);
-                }
-            }
-             */
+            outputStream.close();
 
             if (tempFileRequired) {
                 storageIO.savePathAsAux(Paths.get(tempFile.getAbsolutePath()), THUMBNAIL_SUFFIX + size);
@@ -358,6 +465,11 @@ public class ImageThumbConverter {
         } catch (Exception ioex) {
             logger.warning("Failed to rescale and/or save the image: " + ioex.getMessage());
             return false;
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
         }
 
         return true;
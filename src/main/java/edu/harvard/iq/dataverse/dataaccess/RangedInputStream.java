@@ -0,0 +1,247 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads an object of a remote store through requests for byte ranges. The
+ * request is only sent on the first read, so that {@link #seek(long)} and
+ * {@link #limit(long)} (e.g. for an HTTP Range download) do not fetch bytes
+ * that are thrown away.
+ *
+ * Large objects are fetched in parts, several at the same time: the parts
+ * following the one being read are requested ahead, and are handed out in
+ * order as they arrive. Up to {@code connections} parts requested ahead are
+ * held in memory, in addition to the part being read.
+ *
+ * @see S3AccessIO#getInputStream()
+ */
+public class RangedInputStream extends InputStream {
+
+    /**
+     * Opens a byte range of the object.
+     */
+    @FunctionalInterface
+    public interface RangeOpener {
+
+        /**
+         * @param end the last byte, inclusive; -1 for the end of the object.
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    /**
+     * Skipping fewer bytes than this reads through them, rather than
+     * starting a new request.
+     */
+    private static final long SKIP_BY_READING = 64 * 1024;
+
+    private final RangeOpener opener;
+    private final long size;
+    private int connections;
+    private final int partSize;
+    private final ExecutorService executor;
+
+    private long position = 0;
+    private long end;
+    private boolean opened = false;
+
+    // a single request, for small objects or ranges
+    private InputStream current;
+
+    // the parts requested ahead, in order
+    private final Deque<Future<byte[]>> parts = new ArrayDeque<>();
+    private long nextPartStart;
+    private byte[] part;
+    private int partPosition;
+
+    /**
+     * @param size the size of the object, -1 if unknown.
+     * @param connections the most parts fetched at the same time; 1 for a
+     * single request.
+     * @param partSize the size of a part; ranges of less than two parts are
+     * fetched with a single request.
+     */
+    public RangedInputStream(RangeOpener opener, long size, int connections, int partSize, ExecutorService executor) {
+        this.opener = opener;
+        this.size = size;
+        this.end = size;
+        this.connections = connections;
+        this.partSize = partSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Moves to a position of the object; only starts new requests if
+     * reading has begun already.
+     */
+    public void seek(long newPosition) throws IOException {
+        if (opened && newPosition == position) {
+            return;
+        }
+        release();
+        position = newPosition;
+    }
+
+    /**
+     * Reads no further than {@code newEnd} (exclusive).
+     */
+    public void limit(long newEnd) throws IOException {
+        long limited = size >= 0 ? Math.min(newEnd, size) : newEnd;
+        if (limited == end) {
+            return;
+        }
+        release();
+        end = limited;
+    }
+
+    /**
+     * Changes the number of parts fetched at the same time, for the requests
+     * started from now on.
+     */
+    public void setConnections(int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (end >= 0 && position >= end) {
+            return -1;
+        }
+        if (!opened) {
+            open();
+        }
+        int n;
+        if (current != null) {
+            n = current.read(b, off, len);
+            if (n < 0) {
+                return -1;
+            }
+        } else {
+            if (part == null || partPosition == part.length) {
+                if (!nextPart()) {
+                    return -1;
+                }
+            }
+            n = Math.min(len, part.length - partPosition);
+            System.arraycopy(part, partPosition, b, off, n);
+            partPosition += n;
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = end >= 0 ? Math.min(n, end - position) : n;
+        if (skipped <= 0) {
+            return 0;
+        }
+        if (opened && skipped < SKIP_BY_READING) {
+            return super.skip(skipped);
+        }
+        seek(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (current != null) {
+            return current.available();
+        }
+        return part == null ? 0 : part.length - partPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+    }
+
+    private void open() throws IOException {
+        opened = true;
+        if (end >= 0 && connections > 1 && end - position >= 2L * partSize) {
+            nextPartStart = position;
+            requestParts();
+        } else {
+            current = opener.open(position, end >= 0 ? end - 1 : -1);
+        }
+    }
+
+    private void requestParts() {
+        while (parts.size() < connections && nextPartStart < end) {
+            long start = nextPartStart;
+            long last = Math.min(start + partSize, end) - 1;
+            parts.add(executor.submit(() -> fetch(start, last)));
+            nextPartStart = last + 1;
+        }
+    }
+
+    private byte[] fetch(long start, long last) throws IOException {
+        int length = (int) (last - start + 1);
+        try (InputStream in = opener.open(start, last)) {
+            byte[] data = in.readNBytes(length);
+            if (data.length != length) {
+                throw new IOException("Expected " + length + " bytes at " + start + ", got " + data.length);
+            }
+            return data;
+        }
+    }
+
+    private boolean nextPart() throws IOException {
+        Future<byte[]> next = parts.poll();
+        if (next == null) {
+            return false;
+        }
+        try {
+            part = next.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading at " + position);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+        partPosition = 0;
+        requestParts();
+        return true;
+    }
+
+    private void release() throws IOException {
+        opened = false;
+        part = null;
+        for (Future<byte[]> pending : parts) {
+            pending.cancel(true);
+        }
+        parts.clear();
+        if (current != null) {
+            InputStream closing = current;
+            current = null;
+            closing.close();
+        }
+    }
+}
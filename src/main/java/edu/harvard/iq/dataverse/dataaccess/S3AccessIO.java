@@ -60,6 +60,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import org.apache.commons.io.IOUtils;
 import org.eclipse.microprofile.config.Config;
@@ -87,8 +91,31 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
     
     private boolean mainDriver = true;
 
+    /**
+     * Files opened at the same time by a zip download, unless set with
+     * {@code dataverse.files.<id>.zip-prefetch}.
+     */
+    static final int DEFAULT_ZIP_PREFETCH = 8;
+
+    /**
+     * Parts of a large object fetched at the same time, unless set with
+     * {@code dataverse.files.<id>.parallel-reads}: a single request, parallel
+     * reads are opt-in.
+     */
+    static final int DEFAULT_PARALLEL_READ_CONNECTIONS = 1;
+
+    static final long DEFAULT_PARALLEL_READ_PART_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Objects smaller than this are read with a single request even if
+     * parallel reads are enabled, unless set with
+     * {@code dataverse.files.<id>.parallel-read-min-size}.
+     */
+    static final long DEFAULT_PARALLEL_READ_MIN_SIZE = 256L * 1024 * 1024;
+
     private static HashMap<String, AmazonS3> driverClientMap = new HashMap<String,AmazonS3>();
     private static HashMap<String, TransferManager> driverTMMap = new HashMap<String,TransferManager>();
+    private static HashMap<String, ExecutorService> driverReadExecutorMap = new HashMap<String,ExecutorService>();
 
     public S3AccessIO(T dvObject, DataAccessRequest req, String driverId) {
         super(dvObject, req, driverId);
@@ -283,11 +310,10 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
     @Override
     public InputStream getInputStream() throws IOException {
         if(super.getInputStream()==null) {
-            try {
-                setInputStream(s3.getObject(new GetObjectRequest(bucketName, key)).getObjectContent());
-            } catch (SdkClientException sce) {
-                throw new IOException("Cannot get S3 object " + key + " ("+sce.getMessage()+")");
-            }
+            // if enabled, large objects are read in parts, several at the same time
+            int connections = getSize() >= getParallelReadMinSize(driverId) ? getParallelReadConnections(driverId) : 1;
+            setInputStream(new RangedInputStream(this::openRange, getSize() > 0 ? getSize() : -1,
+                    connections, getParallelReadPartSize(driverId), getReadExecutor(driverId)));
         }
 
         if (super.getInputStream() == null) {
@@ -299,6 +325,20 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         return super.getInputStream();
     }
     
+    private InputStream openRange(long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucketName, key);
+        if (end >= 0) {
+            request.setRange(start, end);
+        } else if (start > 0) {
+            request.setRange(start);
+        }
+        try {
+            return s3.getObject(request).getObjectContent();
+        } catch (SdkClientException sce) {
+            throw new IOException("Cannot get S3 object " + key + " ("+sce.getMessage()+")");
+        }
+    }
+
     @Override
     public Channel getChannel() throws IOException {
         if(super.getChannel()==null) {
@@ -784,6 +824,18 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         }
     }
 
+    @Override
+    public InputStream getAuxFileAsInputStream(String auxItemTag, long offset, long length) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucketName, getDestinationKey(auxItemTag));
+        request.setRange(offset, offset + length - 1);
+        try {
+            return s3.getObject(request).getObjectContent();
+        } catch (AmazonClientException ase) {
+            logger.fine("Caught an AmazonClientException in S3AccessIO.getAuxFileAsInputStream() (object not cached?):    " + ase.getMessage());
+            return null;
+        }
+    }
+
     // Rename this getAuxiliaryKey(), maybe? 
     String getDestinationKey(String auxItemTag) throws IOException {
         if (isDirectAccess() || dvObject instanceof DataFile) {
@@ -1112,6 +1164,65 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
     }
 
 
+    private static int getConnectionPoolSize(String driverId) {
+        return Integer.getInteger("dataverse.files." + driverId + ".connection-pool-size", 256);
+    }
+
+    /**
+     * @return how many files of the store a zip download opens and reads
+     * at the same time. Never more than the connections of the client, which
+     * all downloads share.
+     */
+    static int getZipPrefetch(String driverId) {
+        int prefetch = Integer.getInteger("dataverse.files." + driverId + ".zip-prefetch", DEFAULT_ZIP_PREFETCH);
+        return Math.max(1, Math.min(prefetch, getConnectionPoolSize(driverId)));
+    }
+
+    /**
+     * @return how many parts of a large object are fetched at the same time
+     * ({@code dataverse.files.<id>.parallel-reads}); 1 reads every
+     * object with a single request.
+     */
+    static int getParallelReadConnections(String driverId) {
+        int connections = Integer.getInteger("dataverse.files." + driverId + ".parallel-reads", DEFAULT_PARALLEL_READ_CONNECTIONS);
+        return Math.max(1, Math.min(connections, getConnectionPoolSize(driverId)));
+    }
+
+    /**
+     * @return the size of the parts of large objects, in bytes
+     * ({@code dataverse.files.<id>.read-part-size}).
+     */
+    static int getParallelReadPartSize(String driverId) {
+        long partSize = Long.getLong("dataverse.files." + driverId + ".read-part-size", DEFAULT_PARALLEL_READ_PART_SIZE);
+        return (int) Math.max(1024 * 1024, Math.min(partSize, Integer.MAX_VALUE - 8));
+    }
+
+    /**
+     * @return the size from which objects are read in parallel parts, if
+     * enabled ({@code dataverse.files.<id>.parallel-read-min-size}).
+     */
+    static long getParallelReadMinSize(String driverId) {
+        return Long.getLong("dataverse.files." + driverId + ".parallel-read-min-size", DEFAULT_PARALLEL_READ_MIN_SIZE);
+    }
+
+    /**
+     * The threads fetching parts, shared by all the streams of a store: no
+     * more than the connections of its client. Once as many parts are
+     * queued, the reading thread fetches the next part itself.
+     */
+    private static synchronized ExecutorService getReadExecutor(String driverId) {
+        return driverReadExecutorMap.computeIfAbsent(driverId, id -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(getConnectionPoolSize(id), getConnectionPoolSize(id),
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(getConnectionPoolSize(id)), r -> {
+                        Thread thread = new Thread(r, "s3-read-" + id);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
     private static TransferManager getTransferManager(String driverId) {
         if(driverTMMap.containsKey(driverId)) {
             return driverTMMap.get(driverId);
@@ -1134,8 +1245,7 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             AmazonS3ClientBuilder s3CB = AmazonS3ClientBuilder.standard();
 
             ClientConfiguration cc = new ClientConfiguration();
-            Integer poolSize = Integer.getInteger("dataverse.files." + driverId + ".connection-pool-size", 256);
-            cc.setMaxConnections(poolSize);
+            cc.setMaxConnections(getConnectionPoolSize(driverId));
             s3CB.setClientConfiguration(cc);
             
             /**
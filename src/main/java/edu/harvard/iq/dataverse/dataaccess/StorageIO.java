@@ -27,6 +27,7 @@ import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.apache.commons.io.input.BoundedInputStream;
 
 
 /**
@@ -140,6 +142,39 @@ public abstract class StorageIO<T extends DvObject> {
    
     //This function retrieves auxiliary files related to datasets, and returns them as inputstream
     public abstract InputStream getAuxFileAsInputStream(String auxItemTag) throws IOException ;
+
+    /**
+     * Retrieves {@code length} bytes of an auxiliary file, starting at
+     * {@code offset}. Drivers that can request a byte range from their store
+     * override this; by default, the bytes before the offset are read and
+     * skipped.
+     */
+    public InputStream getAuxFileAsInputStream(String auxItemTag, long offset, long length) throws IOException {
+        InputStream in = getAuxFileAsInputStream(auxItemTag);
+        if (in == null) {
+            return null;
+        }
+        skipFully(in, offset);
+        return new BoundedInputStream(in, length);
+    }
+
+    /**
+     * Skips {@code n} bytes, with {@link InputStream#skip(long)}: unlike
+     * {@code IOUtils.skipFully}, which reads through them, this lets streams
+     * that can seek (files, remote objects read in ranges) do so.
+     */
+    static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Could not skip " + n + " more bytes");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
     
     public abstract Channel openAuxChannel(String auxItemTag, DataAccessOption... option) throws IOException;
     
@@ -408,7 +443,12 @@ public abstract class StorageIO<T extends DvObject> {
     // open() has already been called. Now we can skip, if need be.
     public void setOffset(long offset) throws IOException {
         InputStream inputStream = getInputStream();
-        if (inputStream != null) {
+        if (inputStream instanceof RangedInputStream) {
+            // a remote object: start reading there, rather than download
+            // the bytes before it
+            ((RangedInputStream) inputStream).seek(offset);
+            this.offset = offset;
+        } else if (inputStream != null) {
             inputStream.skip(offset);
             // The skip has already been done. Why not record it.
             this.offset = offset;
@@ -417,6 +457,18 @@ public abstract class StorageIO<T extends DvObject> {
         }
     }
 
+    /**
+     * Positions the input stream at the start of the range. Streams of remote
+     * objects will not read past its end either.
+     */
+    public void setRange(Range range) throws IOException {
+        InputStream inputStream = getInputStream();
+        if (inputStream instanceof RangedInputStream) {
+            ((RangedInputStream) inputStream).limit(range.getEnd() + 1);
+        }
+        setOffset(range.getStart());
+    }
+
     public void setInputStream(InputStream is) {
         in = is;
     }
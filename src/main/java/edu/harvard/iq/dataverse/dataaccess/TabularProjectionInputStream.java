@@ -0,0 +1,350 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Streams a subset of the columns of a tab-delimited file, projecting each
+ * row as it is read from the file, so that a subset download does not go
+ * through a temp file. The rows are scanned for tabs and newlines in a
+ * reused buffer; only the requested fields are copied out.
+ *
+ * While a subset is read from start to end, the offsets of a row every
+ * megabyte or so of output are recorded, in the file and in the subset, and
+ * kept in the {@code tabular-subset-offsets} cache along with the size of the
+ * subset. The next request of the same subset then knows its size, which
+ * allows HTTP Range requests, and skipping to a range starts reading the file
+ * at the last recorded row before it (with a ranged request, on S3) rather
+ * than at its start.
+ *
+ * The cache is held by each server: a Range request of a subset that has not
+ * been read through on the same server first reads it through once, see
+ * {@link #recordRowOffsets}.
+ */
+public class TabularProjectionInputStream extends InputStream {
+
+    private static final Logger logger = Logger.getLogger(TabularProjectionInputStream.class.getCanonicalName());
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    private static final NamedCache<String, RowOffsets> rowOffsetsCache = NamedCache.<String, RowOffsets>builder("tabular-subset-offsets")
+            .weigher((String key, RowOffsets offsets) -> offsets.getWeight())
+            .maxSize(16L * 1024 * 1024)
+            .build();
+
+    /**
+     * Recorded rows of a subset: their number, and where they start in the
+     * file and in the subset.
+     */
+    static class RowOffsets {
+
+        final long[] rows;
+        final long[] inputOffsets;
+        final long[] outputOffsets;
+        final long length;
+
+        RowOffsets(long[] rows, long[] inputOffsets, long[] outputOffsets, long length) {
+            this.rows = rows;
+            this.inputOffsets = inputOffsets;
+            this.outputOffsets = outputOffsets;
+            this.length = length;
+        }
+
+        int getWeight() {
+            return 64 + rows.length * 24;
+        }
+    }
+
+    private final InputStream in;
+    private final int[] columns;
+    private final int lastColumn;
+    private final long numCases;
+    private final String key;
+    private final RowOffsets rowOffsets;
+
+    private final byte[] inBuffer = new byte[BUFFER_SIZE];
+    private int inPos = 0;
+    private int inLength = 0;
+    // bytes of the file read into inBuffer so far:
+    private long inputPosition = 0;
+    private boolean inputDone = false;
+
+    // the current line of the file, and where its fields start and end:
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+
+    // the current row of the subset:
+    private byte[] row = new byte[1024];
+    private int rowPos = 0;
+    private int rowLength = 0;
+    private long rowsRead = 0;
+    // bytes of the subset produced so far, including the current row:
+    private long produced = 0;
+
+    private boolean recording;
+    private long[] recorded = new long[3 * 16];
+    private int recordedCount = 0;
+
+    /**
+     * @param in the tab-delimited file.
+     * @param columns the columns of the subset, in the order requested.
+     * @param key identifies the subset in the cache of row offsets; null not
+     * to cache them.
+     */
+    public TabularProjectionInputStream(InputStream in, List<Integer> columns, long numCases, String key) {
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("No columns in subset request");
+        }
+        this.in = in;
+        this.columns = columns.stream().mapToInt(Integer::intValue).toArray();
+        this.lastColumn = Arrays.stream(this.columns).max().getAsInt();
+        this.fieldStarts = new int[lastColumn + 1];
+        this.fieldEnds = new int[lastColumn + 1];
+        this.numCases = numCases;
+        this.key = key;
+        this.rowOffsets = key == null ? null : rowOffsetsCache.get(key);
+        this.recording = key != null && rowOffsets == null;
+    }
+
+    /**
+     * Identifies a subset of a datafile, as long as the file is not changed
+     * (re-ingested).
+     */
+    public static String getRowOffsetsKey(DataFile dataFile, List<Integer> columns) {
+        return dataFile.getId() + ":" + dataFile.getFilesize() + ":" + columns;
+    }
+
+    /**
+     * Reads a subset through, discarding it, to record its row offsets.
+     *
+     * @param in the tab-delimited file; not closed.
+     * @return the number of bytes of the subset.
+     */
+    public static long recordRowOffsets(InputStream in, List<Integer> columns, long numCases, String key) throws IOException {
+        TabularProjectionInputStream pass = new TabularProjectionInputStream(in, columns, numCases, key);
+        if (pass.getLength() >= 0) {
+            return pass.getLength();
+        }
+        pass.skip(Long.MAX_VALUE);
+        return pass.produced;
+    }
+
+    /**
+     * @return the number of bytes of the subset, if known from a previous
+     * read of it; -1 otherwise.
+     */
+    public long getLength() {
+        return rowOffsets == null ? -1 : rowOffsets.length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (rowPos >= rowLength && !nextRow()) {
+            return -1;
+        }
+        return row[rowPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len) {
+            if (rowPos >= rowLength && !nextRow()) {
+                break;
+            }
+            int count = Math.min(len - n, rowLength - rowPos);
+            System.arraycopy(row, rowPos, b, off + n, count);
+            rowPos += count;
+            n += count;
+        }
+        return n > 0 ? n : -1;
+    }
+
+    /**
+     * Skips all {@code n} bytes, unless the subset ends before.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long start = getPosition();
+        long target = start + n;
+
+        if (rowOffsets != null) {
+            int i = Arrays.binarySearch(rowOffsets.outputOffsets, target);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            if (i >= 0 && rowOffsets.outputOffsets[i] > produced) {
+                // past the current row: start reading the file at the
+                // recorded row
+                seekInput(rowOffsets.inputOffsets[i]);
+                rowsRead = rowOffsets.rows[i];
+                produced = rowOffsets.outputOffsets[i];
+                rowPos = rowLength = 0;
+            }
+        }
+
+        while (getPosition() < target) {
+            if (rowPos >= rowLength && !nextRow()) {
+                break;
+            }
+            rowPos += (int) Math.min(rowLength - rowPos, target - getPosition());
+        }
+        return getPosition() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long getPosition() {
+        return produced - (rowLength - rowPos);
+    }
+
+    /*
+     * Moves forward to this offset in the file.
+     */
+    private void seekInput(long offset) throws IOException {
+        long bufferStart = inputPosition - inLength;
+        if (offset <= inputPosition) {
+            inPos = (int) (offset - bufferStart);
+        } else {
+            StorageIO.skipFully(in, offset - inputPosition);
+            inputPosition = offset;
+            inPos = inLength = 0;
+        }
+    }
+
+    /*
+     * Projects the next line of the file into the row buffer.
+     */
+    private boolean nextRow() throws IOException {
+        if (rowsRead >= numCases) {
+            if (recording) {
+                recording = false;
+                saveRowOffsets();
+            }
+            return false;
+        }
+        if (recording && (recordedCount == 0 || produced - recorded[3 * recordedCount - 1] >= CHECKPOINT_BYTES)) {
+            record(rowsRead, inputPosition - inLength + inPos, produced);
+        }
+        if (!readLine()) {
+            throw new IOException("Tab file has fewer rows than the determined number of cases.");
+        }
+
+        int field = 0;
+        int fieldStart = 0;
+        for (int i = 0; field <= lastColumn; i++) {
+            if (i == lineLength || line[i] == '\t') {
+                fieldStarts[field] = fieldStart;
+                fieldEnds[field] = i;
+                field++;
+                fieldStart = i + 1;
+                if (i == lineLength) {
+                    break;
+                }
+            }
+        }
+        if (field <= lastColumn) {
+            throw new IOException("Row " + (rowsRead + 1) + " of the tab file has fewer than " + (lastColumn + 1) + " columns.");
+        }
+
+        rowLength = 0;
+        for (int c = 0; c < columns.length; c++) {
+            int start = fieldStarts[columns[c]];
+            int length = fieldEnds[columns[c]] - start;
+            if (rowLength + length + 1 > row.length) {
+                row = Arrays.copyOf(row, Math.max(2 * row.length, rowLength + length + 1));
+            }
+            System.arraycopy(line, start, row, rowLength, length);
+            rowLength += length;
+            row[rowLength++] = (byte) (c < columns.length - 1 ? '\t' : '\n');
+        }
+        rowPos = 0;
+        rowsRead++;
+        produced += rowLength;
+        return true;
+    }
+
+    /*
+     * Reads the file up to the next newline (not included) into the line
+     * buffer; false at the end of the file.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean read = false;
+        while (true) {
+            if (inPos >= inLength) {
+                if (inputDone || !fillInput()) {
+                    return read;
+                }
+            }
+            read = true;
+            int end = inPos;
+            while (end < inLength && inBuffer[end] != '\n') {
+                end++;
+            }
+            int count = end - inPos;
+            if (lineLength + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(2 * line.length, lineLength + count));
+            }
+            System.arraycopy(inBuffer, inPos, line, lineLength, count);
+            lineLength += count;
+            if (end < inLength) {
+                inPos = end + 1;
+                return true;
+            }
+            inPos = inLength;
+        }
+    }
+
+    private boolean fillInput() throws IOException {
+        int n = in.read(inBuffer, 0, inBuffer.length);
+        if (n < 0) {
+            inputDone = true;
+            return false;
+        }
+        inPos = 0;
+        inLength = n;
+        inputPosition += n;
+        return true;
+    }
+
+    private void record(long rowNumber, long inputOffset, long outputOffset) {
+        if (3 * recordedCount + 3 > recorded.length) {
+            recorded = Arrays.copyOf(recorded, 2 * recorded.length);
+        }
+        recorded[3 * recordedCount] = rowNumber;
+        recorded[3 * recordedCount + 1] = inputOffset;
+        recorded[3 * recordedCount + 2] = outputOffset;
+        recordedCount++;
+    }
+
+    private void saveRowOffsets() {
+        long[] rows = new long[recordedCount];
+        long[] inputOffsets = new long[recordedCount];
+        long[] outputOffsets = new long[recordedCount];
+        for (int i = 0; i < recordedCount; i++) {
+            rows[i] = recorded[3 * i];
+            inputOffsets[i] = recorded[3 * i + 1];
+            outputOffsets[i] = recorded[3 * i + 2];
+        }
+        rowOffsetsCache.put(key, new RowOffsets(rows, inputOffsets, outputOffsets, produced));
+        logger.fine("Recorded " + recordedCount + " row offsets of subset " + key);
+    }
+}
@@ -22,6 +22,7 @@ package edu.harvard.iq.dataverse.dataaccess;
 
 import edu.harvard.iq.dataverse.DataFile;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -33,6 +34,7 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -46,8 +48,12 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.StringUtils;
 
 
@@ -69,6 +75,11 @@ public class TabularSubsetGenerator implements SubsetGenerator {
     
     private static int MAX_COLUMN_BUFFER = 8192;
     
+    // the rotated image of the tab file, saved as an auxiliary object: 
+    public static final String COLUMN_STORE_TAG = "90d";
+    // the same, with each column vector compressed separately: 
+    public static final String GZIP_COLUMN_STORE_TAG = "90d.gz";
+    
     private FileChannel fileChannel = null; 
     
     private int varcount; 
@@ -86,11 +97,19 @@ public class TabularSubsetGenerator implements SubsetGenerator {
     private long[] columnTotalOffsets;
     private long[] columnTotalLengths;
     
+    // copies of the subset columns fetched from the column store, if it is not 
+    // a local file: 
+    private File columnTempFile = null;
+    
     public TabularSubsetGenerator() {
         
     }
     
     public TabularSubsetGenerator (DataFile datafile, List<DataVariable> variables) throws IOException {
+        this(datafile, datafile.getStorageIO(), variables);
+    }
+    
+    TabularSubsetGenerator (DataFile datafile, StorageIO<DataFile> dataAccess, List<DataVariable> variables) throws IOException {
         if (!datafile.isTabularData()) {
             throw new IOException("DataFile is not tabular data.");
         }
@@ -98,55 +117,57 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         setVarCount(datafile.getDataTable().getVarQuantity().intValue()); 
         setCaseCount(datafile.getDataTable().getCaseQuantity().intValue()); 
         
-           
-        
-        StorageIO<DataFile> dataAccess = datafile.getStorageIO();
-        if (!dataAccess.isLocalFile()) {
-            throw new IOException("Subsetting is supported on local files only!");
-        }
-        
-        //File tabfile = datafile.getFileSystemLocation().toFile();
-        File tabfile = dataAccess.getFileSystemPath().toFile();
-        
-        File rotatedImageFile = getRotatedImage(tabfile, getVarCount(), getCaseCount());
-        long[] columnEndOffsets = extractColumnOffsets(rotatedImageFile, getVarCount(), getCaseCount()); 
-        
-        fileChannel = (FileChannel.open(Paths.get(rotatedImageFile.getAbsolutePath()), StandardOpenOption.READ));
-        
         if (variables == null || variables.size() < 1 || variables.size() > getVarCount()) {
             throw new IOException("Illegal number of variables in the subset request");
         }
         
+        String columnStoreTag = findColumnStore(dataAccess);
+        if (columnStoreTag == null) {
+            if (!dataAccess.isLocalFile()) {
+                throw new IOException("Subsetting is supported on local files, or on files with a column store saved at ingest, only!");
+            }
+            // a local file ingested before the column store was saved at 
+            // ingest; the rotated image is generated on the first request: 
+            getRotatedImage(dataAccess.getFileSystemPath().toFile(), getVarCount(), getCaseCount());
+            columnStoreTag = COLUMN_STORE_TAG;
+        }
+        
+        long[] columnEndOffsets = readColumnOffsets(dataAccess, columnStoreTag, getVarCount()); 
+        
         subsetcount = variables.size();
         columnTotalOffsets = new long[subsetcount];
         columnTotalLengths = new long[subsetcount];
+        columnStartOffsets = new long[subsetcount];
         columnByteBuffers = new ByteBuffer[subsetcount];
 
-
-        
-        if (subsetcount == 1) {
-            if (!datafile.getDataTable().getId().equals(variables.get(0).getDataTable().getId())) {
+        for (int i = 0; i < subsetcount; i++) {
+            DataVariable var = variables.get(i);
+            if (!datafile.getDataTable().getId().equals(var.getDataTable().getId())) {
                 throw new IOException("Variable in the subset request does not belong to the datafile.");
             }
-            dbgLog.fine("single variable subset; setting fileChannel position to "+extractColumnOffset(columnEndOffsets, variables.get(0).getFileOrder()));
-            fileChannel.position(extractColumnOffset(columnEndOffsets, variables.get(0).getFileOrder()));
-            columnTotalLengths[0] = extractColumnLength(columnEndOffsets, variables.get(0).getFileOrder());
+            columnStartOffsets[i] = extractColumnOffset(columnEndOffsets, var.getFileOrder());
+            columnTotalLengths[i] = extractColumnLength(columnEndOffsets, var.getFileOrder());
+        }
+        
+        if (dataAccess.isLocalFile() && COLUMN_STORE_TAG.equals(columnStoreTag)) {
+            fileChannel = FileChannel.open(dataAccess.getAuxObjectAsPath(columnStoreTag), StandardOpenOption.READ);
+        } else {
+            // only the requested columns are copied over, one ranged read each: 
+            fetchColumns(dataAccess, columnStoreTag);
+        }
+        
+        if (subsetcount == 1) {
+            dbgLog.fine("single variable subset; setting fileChannel position to "+columnStartOffsets[0]);
+            fileChannel.position(columnStartOffsets[0]);
             columnTotalOffsets[0] = 0;
         } else {
             columnEntries = new byte[subsetcount][];
 
             columnBufferSizes = new int[subsetcount];
             columnBufferOffsets = new int[subsetcount];
-            columnStartOffsets = new long[subsetcount];
 
-            int i = 0;
-            for (DataVariable var : variables) {
-                if (!datafile.getDataTable().getId().equals(var.getDataTable().getId())) {
-                    throw new IOException("Variable in the subset request does not belong to the datafile.");
-                }
+            for (int i = 0; i < subsetcount; i++) {
                 columnByteBuffers[i] = ByteBuffer.allocate(MAX_COLUMN_BUFFER);
-                columnTotalLengths[i] = extractColumnLength(columnEndOffsets, var.getFileOrder());
-                columnStartOffsets[i] = extractColumnOffset(columnEndOffsets, var.getFileOrder());
                 if (columnTotalLengths[i] < MAX_COLUMN_BUFFER) {
                     columnByteBuffers[i].limit((int)columnTotalLengths[i]);
                 }
@@ -154,11 +175,87 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                 columnBufferSizes[i] = fileChannel.read(columnByteBuffers[i]);
                 columnBufferOffsets[i] = 0;
                 columnTotalOffsets[i] = columnBufferSizes[i];
-                i++;
             }
         }
     }
     
+    /**
+     * Saves the rotated (column-major) image of a tab file as an auxiliary 
+     * object of the datafile, so that subsets of it can be read without 
+     * reading the whole file. With the gzip compression configured, each 
+     * column vector is compressed separately. 
+     * 
+     * @param tabfile the local copy of the tab file, as produced by the ingest.
+     */
+    public static void saveColumnStore(StorageIO<DataFile> storageIO, File tabfile, int varcount, int casecount) throws IOException {
+        if (!JvmSettings.INGEST_COLUMN_STORE_ENABLED.lookupOptional(Boolean.class).orElse(true)) {
+            return;
+        }
+        String compression = JvmSettings.INGEST_COLUMN_STORE_COMPRESSION.lookupOptional().orElse("none");
+        boolean compressed = "gzip".equalsIgnoreCase(compression);
+        if (!compressed && !"none".equalsIgnoreCase(compression)) {
+            dbgLog.warning("Unknown column store compression " + compression + ", saving the column store uncompressed");
+        }
+        
+        File rotatedImageFile = generateRotatedImage(tabfile, varcount, casecount, compressed);
+        try {
+            storageIO.savePathAsAux(rotatedImageFile.toPath(), compressed ? GZIP_COLUMN_STORE_TAG : COLUMN_STORE_TAG);
+        } finally {
+            rotatedImageFile.delete();
+        }
+    }
+    
+    /**
+     * @return the tag of the column store saved for the file, or null if 
+     * there is none. 
+     */
+    public static String findColumnStore(StorageIO<DataFile> storageIO) throws IOException {
+        if (storageIO.isAuxObjectCached(COLUMN_STORE_TAG)) {
+            return COLUMN_STORE_TAG;
+        }
+        if (storageIO.isAuxObjectCached(GZIP_COLUMN_STORE_TAG)) {
+            return GZIP_COLUMN_STORE_TAG;
+        }
+        return null;
+    }
+    
+    /*
+     * Copies the column vectors of the subset from the column store into a 
+     * local temp file, in the order of the subset request, and points the 
+     * offsets and lengths at the copies. 
+     */
+    private void fetchColumns(StorageIO<DataFile> storageIO, String columnStoreTag) throws IOException {
+        boolean compressed = GZIP_COLUMN_STORE_TAG.equals(columnStoreTag);
+        columnTempFile = File.createTempFile("columnSubsetFile", ".90d");
+        
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(columnTempFile))) {
+            long position = 0; 
+            for (int i = 0; i < subsetcount; i++) {
+                long length = 0; 
+                if (columnTotalLengths[i] > 0) {
+                    InputStream columnIn = storageIO.getAuxFileAsInputStream(columnStoreTag, columnStartOffsets[i], columnTotalLengths[i]);
+                    if (columnIn == null) {
+                        throw new IOException("Could not read column vector from the column store "+columnStoreTag);
+                    }
+                    if (compressed) {
+                        columnIn = new GZIPInputStream(columnIn, MAX_COLUMN_BUFFER);
+                    }
+                    try (InputStream in = columnIn) {
+                        length = IOUtils.copyLarge(in, out);
+                    }
+                }
+                columnStartOffsets[i] = position;
+                columnTotalLengths[i] = length;
+                position += length;
+            }
+        } catch (IOException ioe) {
+            columnTempFile.delete();
+            throw ioe;
+        }
+        
+        fileChannel = FileChannel.open(columnTempFile.toPath(), StandardOpenOption.READ);
+    }
+    
     private int getVarCount() {
         return varcount;
     }
@@ -303,6 +400,30 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         return ret;
     }
     
+    /**
+     * @return the number of bytes of the subset (without the variable 
+     * header): every entry of a column vector ends in a newline, which is 
+     * replaced with a tab in all but the last column of the subset. 
+     */
+    public long getSubsetLength() {
+        long length = 0;
+        for (int i = 0; i < subsetcount; i++) {
+            length += columnTotalLengths[i];
+        }
+        return length;
+    }
+    
+    /**
+     * Skips bytes of a single column subset, without reading them. 
+     * @return the number of bytes skipped.
+     */
+    public long skipSingleColumnSubset(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, columnTotalLengths[0] - columnTotalOffsets[0]));
+        fileChannel.position(fileChannel.position() + skipped);
+        columnTotalOffsets[0] += skipped;
+        return skipped;
+    }
+    
     public int readSingleColumnSubset(byte[] buffer) throws IOException {
         if (columnTotalOffsets[0] == columnTotalLengths[0]) {
             return -1;
@@ -357,6 +478,9 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                 // don't care.
             }
         }
+        if (columnTempFile != null) {
+            columnTempFile.delete();
+        }
     }
     
     public void subsetFile(String infile, String outfile, List<Integer> columns, Long numCases) {
@@ -568,51 +692,7 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
             if (scanner.hasNext()) {
                 String[] line = (scanner.next()).split("\t", -1);
-                retVector[caseIndex] = line[column];
-                
-                
-                if ("".equals(line[column])) {
-                    // An empty string is a string missing value!
-                    // An empty string in quotes is an empty string!
-                    retVector[caseIndex] = null;
-                } else {
-                    // Strip the outer quotes:
-                    line[column] = line[column].replaceFirst("^\\\"", "");
-                    line[column] = line[column].replaceFirst("\\\"$", "");
-
-                    // We need to restore the special characters that 
-                    // are stored in tab files escaped - quotes, new lines 
-                    // and tabs. Before we do that however, we need to 
-                    // take care of any escaped backslashes stored in 
-                    // the tab file. I.e., "foo\t" should be transformed 
-                    // to "foo<TAB>"; but "foo\\t" should be transformed 
-                    // to "foo\t". This way new lines and tabs that were
-                    // already escaped in the original data are not 
-                    // going to be transformed to unescaped tab and 
-                    // new line characters!
-                    String[] splitTokens = line[column].split(Matcher.quoteReplacement("\\\\"), -2);
-
-                    // (note that it's important to use the 2-argument version 
-                    // of String.split(), and set the limit argument to a
-                    // negative value; otherwise any trailing backslashes 
-                    // are lost.)
-                    for (int i = 0; i < splitTokens.length; i++) {
-                        splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
-                        splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
-                        splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
-                        splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
-                    }
-                    // TODO: 
-                    // Make (some of?) the above optional; for ex., we 
-                    // do need to restore the newlines when calculating UNFs;
-                    // But if we are subsetting these vectors in order to 
-                    // create a new tab-delimited file, they will 
-                    // actually break things! -- L.A. Jul. 28 2014
-
-                    line[column] = StringUtils.join(splitTokens, '\\');
-
-                    retVector[caseIndex] = line[column];
-                }
+                retVector[caseIndex] = restoreStringValue(line[column]);
 
             } else {
                 scanner.close();
@@ -635,6 +715,61 @@ public class TabularSubsetGenerator implements SubsetGenerator {
 
     }
 
+    /**
+     * Restores a character value as it was before it was stored in a tab
+     * file: strips the outer quotes and unescapes quotes, tabs and new lines.
+     *
+     * @param entry the value as stored in the tab file.
+     * @return the original value, or {@code null} for an empty entry (the
+     * missing value; an empty string is stored in quotes).
+     */
+    public static String restoreStringValue(String entry) {
+        if ("".equals(entry)) {
+            return null;
+        }
+        if (entry.indexOf('\\') < 0) {
+            // Nothing escaped, only the outer quotes to strip (this is 
+            // the same as what follows, without the regular expressions):
+            int begin = entry.startsWith("\"") ? 1 : 0;
+            int end = entry.length() > begin && entry.endsWith("\"") ? entry.length() - 1 : entry.length();
+            return entry.substring(begin, end);
+        }
+        // Strip the outer quotes:
+        entry = entry.replaceFirst("^\\\"", "");
+        entry = entry.replaceFirst("\\\"$", "");
+
+        // We need to restore the special characters that 
+        // are stored in tab files escaped - quotes, new lines 
+        // and tabs. Before we do that however, we need to 
+        // take care of any escaped backslashes stored in 
+        // the tab file. I.e., "foo\t" should be transformed 
+        // to "foo<TAB>"; but "foo\\t" should be transformed 
+        // to "foo\t". This way new lines and tabs that were
+        // already escaped in the original data are not 
+        // going to be transformed to unescaped tab and 
+        // new line characters!
+        String[] splitTokens = entry.split(Matcher.quoteReplacement("\\\\"), -2);
+
+        // (note that it's important to use the 2-argument version 
+        // of String.split(), and set the limit argument to a
+        // negative value; otherwise any trailing backslashes 
+        // are lost.)
+        for (int i = 0; i < splitTokens.length; i++) {
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
+        }
+        // TODO: 
+        // Make (some of?) the above optional; for ex., we 
+        // do need to restore the newlines when calculating UNFs;
+        // But if we are subsetting these vectors in order to 
+        // create a new tab-delimited file, they will 
+        // actually break things! -- L.A. Jul. 28 2014
+
+        return StringUtils.join(splitTokens, '\\');
+    }
+
     /*
      * Straightforward method for subsetting a tab-delimited data file, extracting
      * all the columns representing continuous variables and returning them as 
@@ -1079,6 +1214,32 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         return retVector; 
     }
     
+    /*
+     * Reads the offset header of the rotated image, with a ranged read; i.e., 
+     * without fetching the column vectors, if the image is not stored locally.
+     */
+    private static long[] readColumnOffsets (StorageIO<DataFile> storageIO, String columnStoreTag, int varcount) throws IOException {
+        long[] byteOffsets = new long[varcount];
+        
+        try (InputStream headerIn = storageIO.getAuxFileAsInputStream(columnStoreTag, 0, varcount * 8L)) {
+            if (headerIn == null) {
+                throw new IOException("Could not open the rotated file "+columnStoreTag);
+            }
+            byte[] offsetHeader = IOUtils.toByteArray(headerIn);
+
+            if (offsetHeader.length != varcount * 8) {
+                throw new IOException ("Could not read "+varcount*8+" header bytes from the rotated file.");
+            }
+
+            ByteBuffer offsetByteBuffer = ByteBuffer.wrap(offsetHeader);
+            for (int varindex = 0; varindex < varcount; varindex++) {
+                byteOffsets[varindex] = offsetByteBuffer.getLong();
+            }
+        }
+        
+        return byteOffsets; 
+    }
+    
     private long[] extractColumnOffsets (File rotatedImageFile, int varcount, int casecount) throws IOException {
          BufferedInputStream rotfileStream = new BufferedInputStream(new FileInputStream(rotatedImageFile));
         
@@ -1116,11 +1277,11 @@ public class TabularSubsetGenerator implements SubsetGenerator {
             return rotatedImageFile;
         }
         
-        return generateRotatedImage(tabfile, varcount, casecount);
+        return generateRotatedImage(tabfile, varcount, casecount, false);
         
     }
     
-    private File generateRotatedImage (File tabfile, int varcount, int casecount) throws IOException {
+    private static File generateRotatedImage (File tabfile, int varcount, int casecount, boolean compressed) throws IOException {
         // TODO: throw exceptions if bad file, zero varcount, etc. ...
         
         String fileName = tabfile.getAbsolutePath();
@@ -1235,28 +1396,25 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         // We now need to go through all these buffers and create the final 
         // rotated image file. 
         
-        BufferedOutputStream finalOut = new BufferedOutputStream(new FileOutputStream (new File(rotatedImageFileName)));
+        FileOutputStream finalFileOut = new FileOutputStream (new File(rotatedImageFileName));
+        FileChannel finalChannel = finalFileOut.getChannel();
         
-        // but first we should create the offset header and write it out into 
-        // the final file; because it should be at the head, doh!
+        // The offset header goes at the head of the file; but the offsets of 
+        // compressed column vectors are only known once they have been 
+        // written. So we leave room for the header, and write it last. 
+        // (the first column vector starts right after the header, i.e. at 
+        // varcount * 8 bytes)
         
-        long columnOffset = varcount * 8;
-        // (this is the offset of the first column vector; it is equal to the
-        // size of the offset header, i.e. varcount * 8 bytes)
-      
-        for (int varindex = 0; varindex < varcount; varindex++) {
-            long totalColumnBytes = cachedfileSizes[varindex] + bufferedSizes[varindex];
-            columnOffset+=totalColumnBytes;
-            //totalColumnBytes;
-            byte[] columnOffsetByteArray = ByteBuffer.allocate(8).putLong(columnOffset).array();
-            System.arraycopy(columnOffsetByteArray, 0, offsetHeader, varindex * 8, 8);
-        }
-        
-        finalOut.write(offsetHeader, 0, varcount * 8);
+        finalChannel.position(varcount * 8);
         
         for (int varindex = 0; varindex < varcount; varindex++) {
             long cachedBytesRead = 0; 
             
+            OutputStream finalOut = new BufferedOutputStream(CloseShieldOutputStream.wrap(finalFileOut), MAX_COLUMN_BUFFER);
+            if (compressed) {
+                finalOut = new GZIPOutputStream(finalOut, MAX_COLUMN_BUFFER);
+            }
+            
             // check if there is a cached temp file:
             
             File cachedTempFile = columnTempFiles[varindex]; 
@@ -1275,7 +1433,7 @@ public class TabularSubsetGenerator implements SubsetGenerator {
             }
             
             if (cachedBytesRead != cachedfileSizes[varindex]) {
-                finalOut.close();
+                finalFileOut.close();
                 throw new IOException("Could not read the correct number of bytes cached for column "+varindex+"; "+
                         cachedfileSizes[varindex] + " bytes expected, "+cachedBytesRead+" read.");
             }
@@ -1286,9 +1444,17 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                 finalOut.write(bufferedColumns[varindex], 0, bufferedSizes[varindex]);
             }
             
+            // (closing finishes the compressed vector, but leaves the file open)
+            finalOut.close();
+            
+            byte[] columnOffsetByteArray = ByteBuffer.allocate(8).putLong(finalChannel.position()).array();
+            System.arraycopy(columnOffsetByteArray, 0, offsetHeader, varindex * 8, 8);
         }
         
-        finalOut.close();
+        finalChannel.position(0);
+        finalFileOut.write(offsetHeader, 0, varcount * 8);
+        
+        finalFileOut.close();
         return new File(rotatedImageFileName);
 
     }
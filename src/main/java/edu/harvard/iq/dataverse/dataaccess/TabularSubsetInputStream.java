@@ -27,6 +27,10 @@ public class TabularSubsetInputStream extends InputStream {
     private byte[] leftoverBytes = null; 
     
     public TabularSubsetInputStream(DataFile datafile, List<DataVariable> variables) throws IOException {
+        this(datafile, null, variables);
+    }
+    
+    TabularSubsetInputStream(DataFile datafile, StorageIO<DataFile> dataAccess, List<DataVariable> variables) throws IOException {
         if (datafile == null) {
             throw new IOException("Null datafile in subset request");
         }
@@ -39,10 +43,18 @@ public class TabularSubsetInputStream extends InputStream {
             throw new IOException("Null or empty list of variables in subset request.");
         }
         numberOfSubsetVariables = variables.size();
-        subsetGenerator = new TabularSubsetGenerator(datafile, variables);
+        subsetGenerator = dataAccess == null ? new TabularSubsetGenerator(datafile, variables)
+                : new TabularSubsetGenerator(datafile, dataAccess, variables);
 
     }
     
+    /**
+     * @return the number of bytes of the subset, known from the column store.
+     */
+    public long getLength() {
+        return subsetGenerator.getSubsetLength();
+    }
+    
     //@Override
     public int read() throws IOException {
         throw new IOException("read() method not implemented; do not use.");
@@ -105,6 +117,32 @@ public class TabularSubsetInputStream extends InputStream {
         return bytesread > 0 ? bytesread : -1;
     }
     
+    /**
+     * Skips {@code n} bytes, or to the end of the subset; a single column 
+     * subset is skipped without reading it. 
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (numberOfSubsetVariables == 1) {
+            return subsetGenerator.skipSingleColumnSubset(n);
+        }
+        long skipped = 0;
+        byte[] skipBuffer = new byte[(int) Math.min(n, 64 * 1024)];
+        while (skipped < n) {
+            int wanted = (int) Math.min(n - skipped, skipBuffer.length);
+            byte[] b = wanted == skipBuffer.length ? skipBuffer : new byte[wanted];
+            int count = read(b);
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+    
     //@Override
     public void close() {
         if (subsetGenerator != null) {
@@ -0,0 +1,114 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.ContainerThreadFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the generation of thumbnails on a small pool of threads, instead of on
+ * the request threads that need them: decoding a large image, or converting a
+ * PDF, takes a lot of memory and CPU time, and the first view of a dataset
+ * with hundreds of images would otherwise do as many of them at once as there
+ * are HTTP threads.
+ *
+ * Requests for a thumbnail that is already being generated wait for the same
+ * generation rather than starting another one. They wait a few seconds at
+ * most: the generation carries on, and the thumbnail is there for the next
+ * request.
+ */
+class ThumbnailGenerator {
+
+    private static final Logger logger = Logger.getLogger(ThumbnailGenerator.class.getCanonicalName());
+
+    static final int DEFAULT_RENDER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    // beyond that, uploads do not pre-generate thumbnails, and requests do without
+    static final int MAX_QUEUED = 1000;
+    static final long WAIT_SECONDS = 10;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private static ExecutorService renderExecutor;
+
+    private ThumbnailGenerator() {
+    }
+
+    private static synchronized ExecutorService getRenderExecutor() {
+        if (renderExecutor == null) {
+            int threads = Math.max(1, JvmSettings.THUMBNAILS_RENDER_THREADS.lookupOptional(Integer.class).orElse(DEFAULT_RENDER_THREADS));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(MAX_QUEUED), new ContainerThreadFactory("thumbnail-render"));
+            executor.allowCoreThreadTimeOut(true);
+            renderExecutor = executor;
+        }
+        return renderExecutor;
+    }
+
+    /**
+     * Starts {@code render}, unless a generation with the same key is
+     * already queued or running.
+     *
+     * @param key the file, and the size(s) generated.
+     * @param render returns whether the thumbnail was generated.
+     * @return the generation with that key.
+     */
+    static CompletableFuture<Boolean> submit(String key, Callable<Boolean> render) {
+        return submit(key, render, getRenderExecutor());
+    }
+
+    static CompletableFuture<Boolean> submit(String key, Callable<Boolean> render, ExecutorService executor) {
+        CompletableFuture<Boolean> generation = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(key, generation);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generation.complete(Boolean.TRUE.equals(render.call()));
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Failed to generate thumbnail " + key, t);
+                    generation.complete(false);
+                } finally {
+                    inFlight.remove(key, generation);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.fine("Too many thumbnails queued, skipping " + key);
+            inFlight.remove(key, generation);
+            generation.complete(false);
+        }
+        return generation;
+    }
+
+    /**
+     * @return whether the thumbnail was generated, false if it is still being
+     * generated after a few seconds.
+     */
+    static boolean generate(String key, Callable<Boolean> render) {
+        return await(submit(key, render), WAIT_SECONDS);
+    }
+
+    static boolean await(CompletableFuture<Boolean> generation, long seconds) {
+        try {
+            return generation.get(seconds, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            logger.fine("Thumbnail still being generated, not waiting any longer");
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            return false;
+        }
+    }
+}
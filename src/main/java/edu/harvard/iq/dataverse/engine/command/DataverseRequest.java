@@ -2,12 +2,15 @@ package edu.harvard.iq.dataverse.engine.command;
 
 import edu.harvard.iq.dataverse.api.AbstractApiBean;
 import edu.harvard.iq.dataverse.api.batchjob.FileRecordJobResource;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -25,6 +28,8 @@ public class DataverseRequest {
     private final IpAddress sourceAddress;
     private final String invocationId;
     
+    private final Map<Long, PermissionCache.Granted> grantedPermissions = new ConcurrentHashMap<>();
+    
     private final static String undefined = "0.0.0.0";
     
     private static final Logger logger = Logger.getLogger(DataverseRequest.class.getName());
@@ -164,6 +169,15 @@ public class DataverseRequest {
         return sourceAddress;
     }
 
+    /**
+     * @return The permissions granted by roles on the objects checked during
+     * this request, by object id.
+     * @see PermissionCache
+     */
+    public Map<Long, PermissionCache.Granted> getGrantedPermissions() {
+        return grantedPermissions;
+    }
+
     @Override
     public String toString() {
         return "[DataverseRequest user:" + getUser() + "@" + getSourceAddress() + "]";                
@@ -8,6 +8,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.RoleAssignment;
 import edu.harvard.iq.dataverse.authorization.AuthenticatedUserLookup;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.authorization.providers.builtin.BuiltinUser;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.engine.command.AbstractVoidCommand;
@@ -90,6 +91,7 @@ public class ChangeUserIdentifierCommand extends AbstractVoidCommand {
         for(RoleAssignment ra : raList) {
             ra.setAssigneeIdentifier("@" + newIdentifier);
         }
+        PermissionCache.invalidate();
     }
     
     @Override
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.PermissionCache;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
@@ -33,6 +34,7 @@ public class UpdatePermissionRootCommand extends AbstractCommand<Dataverse> {
 
         } else {
 			dvoc.setPermissionRoot(newValue);
+            PermissionCache.invalidate();
             return ctxt.dataverses().save(dvoc);
 		}
 	}
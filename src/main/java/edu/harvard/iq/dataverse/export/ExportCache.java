@@ -0,0 +1,277 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.SystemConfig;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies of the cached metadata exports of datasets, so that serving them
+ * again (e.g. to OAI-PMH harvesters, page after page) does not read them from
+ * the storage of the dataset every time, which is one remote request per
+ * export with S3. Small exports are kept in memory, and all of them in a
+ * directory on the local disk of this server.
+ *
+ * The copies are keyed by the last export time of the dataset, so an export
+ * is never served from the copy of an older one, and servers of a cluster do
+ * not need to tell each other.
+ *
+ * The directory is kept under a maximum size: when a new copy takes it over,
+ * the copies read least recently (the time of a copy is set again whenever it
+ * is read from disk) are deleted, until it is back under 90% of the maximum.
+ */
+class ExportCache {
+
+    private static final Logger logger = Logger.getLogger(ExportCache.class.getCanonicalName());
+
+    /**
+     * Exports larger than this are only kept on disk.
+     */
+    static final int MAX_MEMORY_ENTRY_SIZE = 1024 * 1024;
+
+    static final long DEFAULT_MAX_DISK_SIZE = 1024L * 1024 * 1024;
+
+    private static final NamedCache<String, byte[]> memory = NamedCache.<String, byte[]>builder("export-metadata")
+            .weigher((String key, byte[] bytes) -> bytes.length)
+            .maxSize(64L * 1024 * 1024)
+            .build();
+
+    /**
+     * Opens the export in the storage of the dataset; {@code null} if there
+     * is none.
+     */
+    @FunctionalInterface
+    interface Source {
+
+        InputStream open() throws ExportException, IOException;
+    }
+
+    private final Path directory;
+    private final long maxDiskSize;
+    // total size of the copies on disk, -1 until the directory has been scanned
+    private final AtomicLong diskSize = new AtomicLong(-1);
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    /**
+     * @param directory the directory of the copies on disk, {@code null} to
+     * only keep them in memory.
+     */
+    ExportCache(Path directory) {
+        this(directory, DEFAULT_MAX_DISK_SIZE);
+    }
+
+    /**
+     * @param maxDiskSize the maximum total size of the copies on disk, in
+     * bytes.
+     */
+    ExportCache(Path directory, long maxDiskSize) {
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    static ExportCache fromSettings() {
+        String directory = JvmSettings.EXPORT_CACHE_DIRECTORY.lookupOptional().orElseGet(() -> {
+            String filesRootDirectory = System.getProperty(SystemConfig.FILES_DIRECTORY);
+            if (filesRootDirectory == null || filesRootDirectory.equals("")) {
+                filesRootDirectory = "/tmp/files";
+            }
+            return Paths.get(filesRootDirectory, "export-cache").toString();
+        });
+        return new ExportCache(Paths.get(directory),
+                JvmSettings.EXPORT_CACHE_MAX_SIZE.lookupOptional(Long.class).orElse(DEFAULT_MAX_DISK_SIZE));
+    }
+
+    /**
+     * @return the export, from a copy if there is one for the last export
+     * time of the dataset, otherwise from {@code source} (copying it on the
+     * way); {@code null} if {@code source} has none.
+     */
+    InputStream open(Dataset dataset, String format, Source source) throws ExportException, IOException {
+        Date lastExportTime = dataset.getLastExportTime();
+        if (lastExportTime == null || dataset.getId() == null) {
+            // not exported yet, or being exported right now
+            return source.open();
+        }
+        String key = dataset.getId() + "/" + format + "/" + lastExportTime.getTime();
+        byte[] bytes = memory.get(key);
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        Path file = directory == null ? null : directory.resolve(dataset.getId().toString())
+                .resolve("export_" + format + "." + lastExportTime.getTime() + ".cached");
+        if (file != null && Files.isRegularFile(file)) {
+            return fromFile(key, file);
+        }
+
+        InputStream in = source.open();
+        if (in == null) {
+            return null;
+        }
+        if (file != null) {
+            try {
+                store(in, file, format);
+                return fromFile(key, file);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Could not keep a copy of export " + key + " in " + directory, ex);
+                in.close();
+                return source.open();
+            }
+        }
+        byte[] head = in.readNBytes(MAX_MEMORY_ENTRY_SIZE + 1);
+        if (head.length > MAX_MEMORY_ENTRY_SIZE) {
+            return new SequenceInputStream(new ByteArrayInputStream(head), in);
+        }
+        in.close();
+        memory.put(key, head);
+        return new ByteArrayInputStream(head);
+    }
+
+    /**
+     * Drops the copies of an export that is being deleted or replaced.
+     */
+    void invalidate(Dataset dataset, String format) {
+        if (dataset.getId() == null) {
+            return;
+        }
+        if (dataset.getLastExportTime() != null) {
+            memory.invalidate(dataset.getId() + "/" + format + "/" + dataset.getLastExportTime().getTime());
+        }
+        if (directory != null) {
+            deleteCopies(directory.resolve(dataset.getId().toString()), format, null);
+        }
+    }
+
+    private InputStream fromFile(String key, Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            logger.log(Level.FINE, "Could not set the time of " + file, ex);
+        }
+        if (Files.size(file) > MAX_MEMORY_ENTRY_SIZE) {
+            return Files.newInputStream(file);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        memory.put(key, bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private void store(InputStream in, Path file, String format) throws IOException {
+        Path datasetDirectory = file.getParent();
+        Files.createDirectories(datasetDirectory);
+        // Written next to the copy and moved in place, so that other requests
+        // never read a partial copy:
+        Path temp = Files.createTempFile(datasetDirectory, "export_" + format, ".tmp");
+        try (in) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        deleteCopies(datasetDirectory, format, file);
+        added(Files.size(file));
+    }
+
+    /**
+     * Counts a new copy, and prunes the directory if it is now too large (or
+     * has not been looked at yet), unless another request is already at it.
+     */
+    private void added(long size) {
+        long total = diskSize.updateAndGet(current -> current < 0 ? current : current + size);
+        if ((total < 0 || total > maxDiskSize) && pruning.compareAndSet(false, true)) {
+            try {
+                prune();
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+
+    private static final class Copy {
+
+        final Path path;
+        final long size;
+        final long lastModified;
+
+        Copy(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private void prune() {
+        List<Copy> copies = new ArrayList<>();
+        try (Stream<Path> files = Files.find(directory, 2,
+                (path, attributes) -> attributes.isRegularFile() && path.getFileName().toString().endsWith(".cached"))) {
+            files.forEach(path -> {
+                try {
+                    copies.add(new Copy(path, Files.readAttributes(path, BasicFileAttributes.class)));
+                } catch (IOException ex) {
+                    // deleted in the meantime
+                }
+            });
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not look for export copies to delete in " + directory, ex);
+            return;
+        }
+        long total = copies.stream().mapToLong(copy -> copy.size).sum();
+        if (total > maxDiskSize) {
+            long target = maxDiskSize / 10 * 9;
+            copies.sort(Comparator.comparingLong(copy -> copy.lastModified));
+            for (Copy copy : copies) {
+                if (total <= target) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(copy.path);
+                    total -= copy.size;
+                } catch (IOException ex) {
+                    logger.log(Level.FINE, "Could not delete export copy " + copy.path, ex);
+                }
+            }
+            logger.fine("Pruned the export copies in " + directory + " to " + total + " bytes");
+        }
+        diskSize.set(total);
+    }
+
+    private void deleteCopies(Path datasetDirectory, String format, Path keep) {
+        if (!Files.isDirectory(datasetDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> copies = Files.newDirectoryStream(datasetDirectory, "export_" + format + ".*.cached")) {
+            for (Path copy : copies) {
+                if (!copy.equals(keep)) {
+                    Files.deleteIfExists(copy);
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.FINE, "Could not delete older copies of export " + format + " in " + datasetDirectory, ex);
+        }
+    }
+}
@@ -51,9 +51,11 @@ public class ExportService {
 
     private static ExportService service;
     private ServiceLoader<Exporter> loader;
+    private final ExportCache exportCache;
 
     private ExportService() {
         loader = ServiceLoader.load(Exporter.class);
+        exportCache = ExportCache.fromSettings();
     }
 
     public static synchronized ExportService getInstance() {
@@ -80,7 +82,7 @@ public class ExportService {
         // first we will try to locate an already existing, cached export 
         // for this format: 
         
-        InputStream exportInputStream = getCachedExportFormat(dataset, formatName);
+        InputStream exportInputStream = exportCache.open(dataset, formatName, () -> getCachedExportFormat(dataset, formatName));
 
         // The DDI export is limited for restricted and actively embargoed files (no
         // data/file description sections).and when an embargo ends, we need to refresh
@@ -144,7 +146,7 @@ public class ExportService {
         exportFormat(dataset, formatName);
 
         // and then try again:
-        exportInputStream = getCachedExportFormat(dataset, formatName);
+        exportInputStream = exportCache.open(dataset, formatName, () -> getCachedExportFormat(dataset, formatName));
 
         if (exportInputStream != null) {
             return exportInputStream;
@@ -345,6 +347,7 @@ public class ExportService {
     }
 
     private void clearCachedExport(Dataset dataset, String format) throws IOException {
+        exportCache.invalidate(dataset, format);
         try {
             StorageIO<Dataset> storageIO = getStorageIO(dataset);
             storageIO.deleteAuxObject("export_" + format + ".cached");
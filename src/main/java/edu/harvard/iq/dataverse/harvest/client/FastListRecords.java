@@ -0,0 +1,293 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipInputStream;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.namespace.QName;
+
+/**
+ * Client-side ListRecords verb: harvests the records of a remote OAI server a
+ * page at a time (as many records as the server returns in one response,
+ * following its resumption tokens), instead of sending one GetRecord request
+ * per record.
+ *
+ * As in {@link FastGetRecord}, the metadata of each record is saved in a temp
+ * file to be parsed when it is imported. It is copied there event by event,
+ * so that a page of large records is never held in memory.
+ */
+public class FastListRecords {
+
+    private static final DateTimeFormatter FROM_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String baseURL;
+    private final String metadataPrefix;
+    private final String setName;
+    private final Date fromDate;
+
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private String resumptionToken = null;
+    private boolean done = false;
+
+    public FastListRecords(String baseURL, String metadataPrefix, String setName, Date fromDate) {
+        this.baseURL = baseURL;
+        this.metadataPrefix = metadataPrefix;
+        this.setName = setName;
+        this.fromDate = fromDate;
+        // the metadata records may use prefixes declared on the enclosing
+        // OAI-PMH elements, these are declared again where they are used:
+        xmlOutputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+    }
+
+    public boolean hasMorePages() {
+        return !done;
+    }
+
+    /**
+     * @return the records of the next page; the caller deletes their
+     * metadata files.
+     * @throws IOException if the request failed, or the server returned an
+     * error (other than "noRecordsMatch", which is an empty list).
+     */
+    List<HarvestedRecord> nextPage() throws IOException {
+        if (done) {
+            return Collections.emptyList();
+        }
+        String requestURL = getRequestURL();
+
+        HttpURLConnection con = (HttpURLConnection) new URL(requestURL).openConnection();
+        con.setRequestProperty("User-Agent", "Dataverse Harvesting Client v5");
+        con.setRequestProperty("Accept-Encoding", "compress, gzip, identify");
+        int responseCode;
+        try {
+            responseCode = con.getResponseCode();
+        } catch (FileNotFoundException e) {
+            responseCode = HttpURLConnection.HTTP_UNAVAILABLE;
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IOException("ListRecords request failed. HTTP error code " + responseCode + "; " + requestURL);
+        }
+
+        String contentEncoding = con.getHeaderField("Content-Encoding");
+        InputStream in;
+        if ("compress".equals(contentEncoding)) {
+            ZipInputStream zis = new ZipInputStream(con.getInputStream());
+            zis.getNextEntry();
+            in = zis;
+        } else if ("gzip".equals(contentEncoding)) {
+            in = new GZIPInputStream(con.getInputStream());
+        } else if ("deflate".equals(contentEncoding)) {
+            in = new InflaterInputStream(con.getInputStream());
+        } else {
+            in = con.getInputStream();
+        }
+
+        try (in) {
+            return parsePage(in);
+        }
+    }
+
+    String getRequestURL() {
+        StringBuilder requestURL = new StringBuilder(baseURL);
+        requestURL.append("?verb=ListRecords");
+        if (resumptionToken != null) {
+            requestURL.append("&resumptionToken=").append(URLEncoder.encode(resumptionToken, StandardCharsets.UTF_8));
+            return requestURL.toString();
+        }
+        requestURL.append("&metadataPrefix=").append(metadataPrefix);
+        if (setName != null && !setName.isEmpty()) {
+            requestURL.append("&set=").append(URLEncoder.encode(setName, StandardCharsets.UTF_8));
+        }
+        if (fromDate != null) {
+            requestURL.append("&from=").append(FROM_FORMAT.format(fromDate.toInstant()));
+        }
+        return requestURL.toString();
+    }
+
+    /**
+     * Reads a ListRecords response, and remembers its resumption token for
+     * the next page.
+     */
+    List<HarvestedRecord> parsePage(InputStream in) throws IOException {
+        List<HarvestedRecord> records = new ArrayList<>();
+        String nextToken = null;
+        boolean parsed = false;
+        try {
+            XMLEventReader xmlr = xmlInputFactory.createXMLEventReader(in);
+            while (xmlr.hasNext()) {
+                XMLEvent event = xmlr.nextEvent();
+                if (!event.isStartElement()) {
+                    continue;
+                }
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
+                if (name.equals("error")) {
+                    String errorCode = attribute(element, "code");
+                    String errorMessageText = xmlr.getElementText();
+                    if ("noRecordsMatch".equals(errorCode)) {
+                        break;
+                    }
+                    throw new IOException("ListRecords error code: " + errorCode + "; ListRecords error message: " + errorMessageText);
+                } else if (name.equals("record")) {
+                    records.add(parseRecord(xmlr));
+                } else if (name.equals("resumptionToken")) {
+                    nextToken = xmlr.getElementText().trim();
+                }
+            }
+            parsed = true;
+        } catch (XMLStreamException ex) {
+            throw new IOException("Malformed ListRecords response; baseURL=" + baseURL + ", metadataPrefix=" + metadataPrefix + ": " + ex.getMessage(), ex);
+        } finally {
+            if (!parsed) {
+                records.forEach(HarvestedRecord::deleteMetadataFile);
+            }
+        }
+
+        resumptionToken = nextToken == null || nextToken.isEmpty() ? null : nextToken;
+        done = resumptionToken == null;
+        return records;
+    }
+
+    private HarvestedRecord parseRecord(XMLEventReader xmlr) throws XMLStreamException, IOException {
+        String identifier = null;
+        Date dateStamp = null;
+        boolean deleted = false;
+        File metadataFile = null;
+        try {
+            while (xmlr.hasNext()) {
+                XMLEvent event = xmlr.nextEvent();
+                if (event.isEndElement() && event.asEndElement().getName().getLocalPart().equals("record")) {
+                    break;
+                }
+                if (!event.isStartElement()) {
+                    continue;
+                }
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
+                if (name.equals("header")) {
+                    deleted = "deleted".equals(attribute(element, "status"));
+                } else if (name.equals("identifier")) {
+                    identifier = xmlr.getElementText().trim();
+                } else if (name.equals("datestamp")) {
+                    dateStamp = parseDatestamp(xmlr.getElementText().trim());
+                } else if (name.equals("metadata")) {
+                    metadataFile = saveMetadata(xmlr);
+                } else if (name.equals("about")) {
+                    skipElement(xmlr);
+                }
+            }
+        } catch (XMLStreamException | IOException ex) {
+            if (metadataFile != null) {
+                metadataFile.delete();
+            }
+            throw ex;
+        }
+
+        HarvestedRecord record = new HarvestedRecord(identifier, dateStamp);
+        record.metadataFile = metadataFile;
+        if (deleted) {
+            record.deleted = true;
+            record.deletedPer = "ListRecords";
+        } else if (metadataFile == null) {
+            record.errorMessage = "No metadata in the ListRecords response for " + identifier;
+        }
+        return record;
+    }
+
+    /**
+     * Copies the element enclosed in {@code <metadata>}, up to the closing
+     * {@code </metadata>}.
+     */
+    private File saveMetadata(XMLEventReader xmlr) throws XMLStreamException, IOException {
+        File metadataFile = File.createTempFile("meta", ".tmp");
+        try (OutputStream out = new FileOutputStream(metadataFile)) {
+            XMLEventWriter writer = xmlOutputFactory.createXMLEventWriter(out, "UTF-8");
+            int depth = 0;
+            while (true) {
+                XMLEvent event = xmlr.nextEvent();
+                if (event.isEndElement() && depth == 0) {
+                    break;
+                }
+                if (event.isStartElement()) {
+                    depth++;
+                }
+                if (depth > 0) {
+                    writer.add(event);
+                }
+                if (event.isEndElement()) {
+                    depth--;
+                }
+            }
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException | IOException ex) {
+            metadataFile.delete();
+            throw ex;
+        }
+        return metadataFile;
+    }
+
+    private static void skipElement(XMLEventReader xmlr) throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            XMLEvent event = xmlr.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            }
+        }
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    static Date parseDatestamp(String datestamp) {
+        if (datestamp == null || datestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return Date.from(Instant.parse(datestamp));
+        } catch (DateTimeParseException ex) {
+            // day granularity
+        }
+        try {
+            return Date.from(LocalDate.parse(datestamp).atStartOfDay(ZoneOffset.UTC).toInstant());
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
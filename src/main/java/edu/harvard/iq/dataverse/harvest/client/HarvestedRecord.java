@@ -0,0 +1,41 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import java.io.File;
+import java.util.Date;
+
+/**
+ * A record of a remote OAI server on its way through a harvest: fetched and
+ * parsed on a worker thread, then imported (or deleted) on the harvesting
+ * thread, in the order in which the server listed the records.
+ */
+class HarvestedRecord {
+
+    final String identifier;
+    final Date dateStamp;
+
+    boolean deleted = false;
+    // the OAI verb that reported the record as deleted, for the harvest log
+    String deletedPer;
+    File metadataFile;
+    // an error returned by the remote server
+    String errorMessage;
+    // an exception fetching or parsing the record
+    Throwable exception;
+    // the metadata, parsed into the native json
+    String json;
+
+    HarvestedRecord(String identifier, Date dateStamp) {
+        this.identifier = identifier;
+        this.dateStamp = dateStamp;
+    }
+
+    void deleteMetadataFile() {
+        if (metadataFile != null) {
+            try {
+                metadataFile.delete();
+            } catch (SecurityException ex) {
+                // the temp directory is cleaned up eventually
+            }
+        }
+    }
+}
@@ -14,10 +14,23 @@ import edu.harvard.iq.dataverse.timer.DataverseTimerServiceBean;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,6 +40,7 @@ import javax.ejb.EJB;
 import javax.ejb.EJBException;
 import javax.ejb.Stateless;
 import javax.ejb.Timer;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.inject.Named;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -40,6 +54,8 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandlerException;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
+import edu.harvard.iq.dataverse.search.SolrUpdateBatch;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
@@ -80,8 +96,16 @@ public class HarvesterServiceBean {
     EjbDataverseEngine engineService;
     @EJB
     IndexServiceBean indexService;
+    @Resource
+    ManagedThreadFactory threadFactory;
     
     private static final Logger logger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.client.HarvesterServiceBean");
+    
+    private static final int DEFAULT_HARVEST_CONNECTIONS = 4;
+    private static final int RECORDS_READ_AHEAD_PER_CONNECTION = 4;
+    // how long a harvest that ends waits for the records still being fetched
+    private static final int WORKERS_SHUTDOWN_SECONDS = 30;
+    private static final Map<String, Semaphore> remoteServerPermits = new ConcurrentHashMap<>();
     private static final SimpleDateFormat logFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
     
     public static final String HARVEST_RESULT_SUCCESS="success";
@@ -172,7 +196,16 @@ public class HarvesterServiceBean {
 
                
                 if (harvestingClientConfig.isOai()) {
-                    harvestOAI(dataverseRequest, harvestingClientConfig, hdLogger, importCleanupLog, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+                    // The harvested datasets are sent to Solr in batches, rather than one by one:
+                    SolrUpdateBatch indexBatch = indexService.beginBatch();
+                    try {
+                        harvestOAI(dataverseRequest, harvestingClientConfig, hdLogger, importCleanupLog, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+                    } finally {
+                        Set<Long> notIndexed = indexService.endBatch(indexBatch);
+                        if (!notIndexed.isEmpty()) {
+                            hdLogger.log(Level.WARNING, "Failed to send " + notIndexed.size() + " harvested datasets to Solr, they will be indexed by the next \"index all\": " + notIndexed);
+                        }
+                    }
 
                 } else {
                     throw new IOException("Unsupported harvest type");
@@ -234,105 +267,229 @@ public class HarvesterServiceBean {
             httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
         }
         
+        int connections = getHarvestConnections();
+        boolean listRecords = httpClient == null 
+                && JvmSettings.HARVEST_CLIENT_LIST_RECORDS.lookupOptional(Boolean.class).orElse(false);
+        Semaphore remoteServerPermits = getRemoteServerPermits(harvestingClient.getHarvestingUrl(), connections);
+        
+        // The records are fetched and parsed by several workers at the same time,
+        // a little ahead; and imported, or deleted, one at a time here, in the order
+        // the remote server listed them:
+        ExecutorService workers = Executors.newFixedThreadPool(connections, threadFactory);
+        Deque<Future<HarvestedRecord>> pending = new ArrayDeque<>();
+        int readAhead = connections * RECORDS_READ_AHEAD_PER_CONNECTION;
+        AtomicBoolean ended = new AtomicBoolean();
+        
         try {
-            for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
-                // Before each iteration, check if this harvesting job needs to be aborted:
-                if (checkIfStoppingJob(harvestingClient)) {
-                    throw new StopHarvestException("Harvesting stopped by external request");
+            if (listRecords) {
+                FastListRecords listRecordsPages = oaiHandler.runListRecords();
+                while (listRecordsPages.hasMorePages()) {
+                    if (checkIfStoppingJob(harvestingClient)) {
+                        throw new StopHarvestException("Harvesting stopped by external request");
+                    }
+                    List<HarvestedRecord> page;
+                    acquire(remoteServerPermits);
+                    try {
+                        page = listRecordsPages.nextPage();
+                    } finally {
+                        remoteServerPermits.release();
+                    }
+                    for (HarvestedRecord record : page) {
+                        pending.add(workers.submit(() -> unlessEnded(parseRecord(oaiHandler, record), ended)));
+                        importRecords(pending, readAhead, dataverseRequest, harvestingClient, hdLogger, importCleanupLog, oaiHandler, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+                    }
                 }
-
-                Header h = idIter.next();
-                String identifier = h.getIdentifier();
-                Date dateStamp = Date.from(h.getDatestamp());
-                
-                hdLogger.info("processing identifier: " + identifier + ", date: " + dateStamp);
-                
-                if (h.isDeleted()) {
-                    hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
-
-                    deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
-                    continue;
-                }
-
-                MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
-
-                // Retrieve and process this record with a separate GetRecord call:
-                
-                Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, getRecordErrorOccurred, deletedIdentifiers, dateStamp, httpClient);
-                
-                if (datasetId != null) {
-                    harvestedDatasetIds.add(datasetId);
-                }
-                
-                if (getRecordErrorOccurred.booleanValue() == true) {
-                    failedIdentifiers.add(identifier);
-                    //can be uncommented out for testing failure handling:
-                    //throw new IOException("Exception occured, stopping harvest");
+            } else {
+                // (whether this harvesting job needs to be aborted is checked
+                // before each record is imported)
+                for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
+                    Header h = idIter.next();
+                    HarvestedRecord record = new HarvestedRecord(h.getIdentifier(), Date.from(h.getDatestamp()));
+                    
+                    if (h.isDeleted()) {
+                        record.deleted = true;
+                        record.deletedPer = "ListIdentifiers";
+                        pending.add(CompletableFuture.completedFuture(record));
+                    } else {
+                        // Retrieve this record with a separate GetRecord call:
+                        final HttpClient recordHttpClient = httpClient;
+                        pending.add(workers.submit(() -> unlessEnded(fetchRecord(oaiHandler, record, recordHttpClient, remoteServerPermits, hdLogger), ended)));
+                    }
+                    importRecords(pending, readAhead, dataverseRequest, harvestingClient, hdLogger, importCleanupLog, oaiHandler, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
                 }
             }
+            importRecords(pending, 0, dataverseRequest, harvestingClient, hdLogger, importCleanupLog, oaiHandler, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
         } catch (OaiHandlerException e) {
             throw new IOException("Failed to run ListIdentifiers: " + e.getMessage());
+        } finally {
+            ended.set(true);
+            workers.shutdownNow();
+            // the records still being fetched clean up after themselves, 
+            // but may not have finished yet:
+            try {
+                if (!workers.awaitTermination(WORKERS_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                    hdLogger.warning("Records still being fetched at the end of the harvest, they will be deleted when they are");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            // the records fetched ahead of a failure, or of a stop request:
+            for (Future<HarvestedRecord> fetched : pending) {
+                if (fetched.isDone() && !fetched.isCancelled()) {
+                    try {
+                        fetched.get().deleteMetadataFile();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        // nothing to clean up
+                    }
+                }
+            }
         }
 
         logCompletedOaiHarvest(hdLogger, harvestingClient);
 
     }    
     
-    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp, HttpClient httpClient) {
-        String errMessage = null;
+    /**
+     * Imports the records at the head of the queue, waiting for them to be
+     * fetched if need be, until no more than {@code readAhead} are left.
+     */
+    private void importRecords(Deque<Future<HarvestedRecord>> pending, int readAhead, DataverseRequest dataverseRequest, HarvestingClient harvestingClient, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds) 
+            throws IOException, StopHarvestException {
+        while (pending.size() > readAhead) {
+            HarvestedRecord record;
+            try {
+                record = pending.peek().get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while harvesting");
+            } catch (ExecutionException ex) {
+                // the workers catch everything
+                throw new IOException("Failed to fetch a record: " + ex.getCause());
+            }
+            pending.poll();
+            
+            if (checkIfStoppingJob(harvestingClient)) {
+                record.deleteMetadataFile();
+                throw new StopHarvestException("Harvesting stopped by external request");
+            }
+            
+            hdLogger.info("processing identifier: " + record.identifier + ", date: " + record.dateStamp);
+            
+            MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
+
+            Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, record, getRecordErrorOccurred, deletedIdentifiers);
+
+            if (datasetId != null) {
+                harvestedDatasetIds.add(datasetId);
+            }
+
+            if (getRecordErrorOccurred.booleanValue() == true) {
+                failedIdentifiers.add(record.identifier);
+                //can be uncommented out for testing failure handling:
+                //throw new IOException("Exception occured, stopping harvest");
+            }
+        }
+    }
+    
+    /**
+     * Runs on a worker, once a record is fetched: the metadata file of a
+     * record fetched after the harvest ended is deleted, since it will not
+     * be imported.
+     */
+    private HarvestedRecord unlessEnded(HarvestedRecord record, AtomicBoolean ended) {
+        if (ended.get()) {
+            record.deleteMetadataFile();
+        }
+        return record;
+    }
+    
+    /**
+     * Runs on a worker: retrieves the metadata of a record, with a GetRecord
+     * call or from the native API of a remote Dataverse; then parses it.
+     */
+    private HarvestedRecord fetchRecord(OaiHandler oaiHandler, HarvestedRecord record, HttpClient httpClient, Semaphore remoteServerPermits, Logger hdLogger) {
+        logGetRecord(hdLogger, oaiHandler, record.identifier);
+        try {
+            acquire(remoteServerPermits);
+            try {
+                if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
+                    // Make direct call to obtain the proprietary Dataverse metadata
+                    // in JSON from the remote Dataverse server:
+                    String metadataApiUrl = oaiHandler.getProprietaryDataverseMetadataURL(record.identifier);
+                    logger.fine("calling "+metadataApiUrl);
+                    record.metadataFile = retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl);
+
+                } else {
+                    FastGetRecord getRecord = oaiHandler.runGetRecord(record.identifier);
+                    record.errorMessage = getRecord.getErrorMessage();
+                    record.deleted = getRecord.isDeleted();
+                    record.deletedPer = "GetRecord";
+                    record.metadataFile = getRecord.getMetadataFile();
+                }
+            } finally {
+                remoteServerPermits.release();
+            }
+        } catch (Throwable e) {
+            record.exception = e;
+            return record;
+        }
+        return parseRecord(oaiHandler, record);
+    }
+    
+    /**
+     * Runs on a worker: parses the metadata of a record ahead of its import.
+     */
+    private HarvestedRecord parseRecord(OaiHandler oaiHandler, HarvestedRecord record) {
+        if (!record.deleted && record.errorMessage == null && record.exception == null) {
+            try {
+                record.json = importService.parseHarvestedMetadata(oaiHandler.getMetadataPrefix(), record.metadataFile);
+            } catch (Throwable e) {
+                record.exception = e;
+            }
+        }
+        return record;
+    }
+    
+    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, HarvestedRecord record, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers) {
+        String errMessage = record.errorMessage;
         Dataset harvestedDataset = null;
-        logGetRecord(hdLogger, oaiHandler, identifier);
-        File tempFile = null;
+        String identifier = record.identifier;
         
         try {
-            boolean deleted = false;
-            
-            if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
-                // Make direct call to obtain the proprietary Dataverse metadata
-                // in JSON from the remote Dataverse server:
-                String metadataApiUrl = oaiHandler.getProprietaryDataverseMetadataURL(identifier);
-                logger.fine("calling "+metadataApiUrl);
-                tempFile = retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl);
-                
-            } else {
-                FastGetRecord record = oaiHandler.runGetRecord(identifier);
-                errMessage = record.getErrorMessage();
-                deleted = record.isDeleted();
-                tempFile = record.getMetadataFile();
+            if (record.exception != null) {
+                throw record.exception;
             }
 
             if (errMessage != null) {
                 hdLogger.log(Level.SEVERE, "Error calling GetRecord - " + errMessage);
                 
-            } else if (deleted) {
-                hdLogger.info("Deleting harvesting dataset for "+identifier+", per GetRecord.");
+            } else if (record.deleted) {
+                hdLogger.info("Deleting harvesting dataset for "+identifier+", per "+record.deletedPer+".");
                 
                 deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger); 
             } else {
                 hdLogger.info("Successfully retrieved GetRecord response.");
 
-                PrintWriter cleanupLog;
                 harvestedDataset = importService.doImportHarvestedDataset(dataverseRequest, 
                         oaiHandler.getHarvestingClient(),
                         identifier,
                         oaiHandler.getMetadataPrefix(), 
-                        tempFile,
-                        dateStamp,
+                        record.metadataFile,
+                        record.json,
+                        record.dateStamp,
                         importCleanupLog);
                 
                 hdLogger.fine("Harvest Successful for identifier " + identifier);
-                hdLogger.fine("Size of this record: " + tempFile.length());
+                hdLogger.fine("Size of this record: " + record.metadataFile.length());
             }
         } catch (Throwable e) {
             logGetRecordException(hdLogger, oaiHandler, identifier, e);
             errMessage = "Caught exception while executing GetRecord on "+identifier;
                 
         } finally {
-            if (tempFile != null) {
-                // temporary - let's not delete the temp metadata file if anything went wrong, for now:
-                if (errMessage == null) {
-                    try{tempFile.delete();}catch(Throwable t){};
-                }
+            // temporary - let's not delete the temp metadata file if anything went wrong, for now:
+            if (errMessage == null) {
+                record.deleteMetadataFile();
             }
         }
 
@@ -351,6 +508,39 @@ public class HarvesterServiceBean {
         return harvestedDataset != null ? harvestedDataset.getId() : null;
     }
     
+    /**
+     * @return the number of records fetched from a remote server at the same
+     * time, see the JVM option {@code dataverse.harvest.client.connections}.
+     */
+    int getHarvestConnections() {
+        int connections = JvmSettings.HARVEST_CLIENT_CONNECTIONS.lookupOptional(Integer.class).orElse(DEFAULT_HARVEST_CONNECTIONS);
+        return Math.max(1, connections);
+    }
+    
+    /**
+     * The requests sent to one remote server are limited across all the
+     * harvests running on this server, as several clients may harvest
+     * different sets of the same server.
+     */
+    static Semaphore getRemoteServerPermits(String harvestingUrl, int connections) {
+        String remoteServer;
+        try {
+            remoteServer = URI.create(harvestingUrl).getHost();
+        } catch (IllegalArgumentException ex) {
+            remoteServer = null;
+        }
+        return remoteServerPermits.computeIfAbsent(remoteServer == null ? harvestingUrl : remoteServer, server -> new Semaphore(connections));
+    }
+    
+    private static void acquire(Semaphore permits) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to send a request to the remote server");
+        }
+    }
+    
     File retrieveProprietaryDataverseMetadata (HttpClient client, String remoteApiUrl) throws IOException {
         
         if (client == null) {
@@ -13,6 +13,7 @@ import io.gdcc.xoai.serviceprovider.exceptions.IdDoesNotExistException;
 import io.gdcc.xoai.serviceprovider.model.Context;
 import io.gdcc.xoai.serviceprovider.parameters.ListIdentifiersParameters;
 import edu.harvard.iq.dataverse.harvest.client.FastGetRecord;
+import edu.harvard.iq.dataverse.harvest.client.FastListRecords;
 import static edu.harvard.iq.dataverse.harvest.client.HarvesterServiceBean.DATAVERSE_PROPRIETARY_METADATA_API;
 import edu.harvard.iq.dataverse.harvest.client.HarvestingClient;
 import java.io.IOException;
@@ -257,6 +258,17 @@ public class OaiHandler implements Serializable {
     }
     
     
+    public FastListRecords runListRecords() throws OaiHandlerException {
+        if (StringUtils.isEmpty(this.baseOaiUrl)) {
+            throw new OaiHandlerException("Attempted to execute ListRecords without server URL specified.");
+        }
+        if (StringUtils.isEmpty(this.metadataPrefix)) {
+            throw new OaiHandlerException("Attempted to execute ListRecords without metadataPrefix specified");
+        }
+        
+        return new FastListRecords(this.baseOaiUrl, this.metadataPrefix, this.setName, this.fromDate);
+    }
+    
     private ListIdentifiersParameters buildListIdentifiersParams() throws OaiHandlerException {
         ListIdentifiersParameters mip = ListIdentifiersParameters.request();
         
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -296,12 +297,61 @@ public class OAIRecordServiceBean implements java.io.Serializable {
     }
     
     public List<OAIRecord> findOaiRecordsBySetName(String setName, Instant from, Instant until, boolean excludeSet) {
+        TypedQuery<OAIRecord> query = createSetQuery("SELECT object(h)", setName, from, until, excludeSet, null, null);
+                
+        try {
+            return query.getResultList();      
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
+        }
+    }
+    
+    /**
+     * One page of the records in a set, sorted by global id. With
+     * {@code afterGlobalId}, the page starts right after that record (keyset
+     * paging, which the database can serve from the index); otherwise it
+     * starts at {@code offset}.
+     *
+     * @param max the most records to return.
+     */
+    public List<OAIRecord> findOaiRecordsPageBySetName(String setName, Instant from, Instant until, String afterGlobalId, int offset, int max) {
+        TypedQuery<OAIRecord> query = createSetQuery("SELECT object(h)", setName, from, until, false, afterGlobalId, null);
+        if (afterGlobalId == null) {
+            query.setFirstResult(offset);
+        }
+        query.setMaxResults(max);
+        return query.getResultList();
+    }
+    
+    public long countOaiRecordsBySetName(String setName, Instant from, Instant until) {
+        return createSetQuery("SELECT count(h)", setName, from, until, false, null, null, Long.class).getSingleResult();
+    }
+    
+    /**
+     * The records in other sets than {@code setName} for the given global ids
+     * only, sorted by global id.
+     */
+    public List<OAIRecord> findOaiRecordsNotInThisSet(String setName, Instant from, Instant until, Collection<String> globalIds) {
+        if (globalIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return createSetQuery("SELECT object(h)", setName, from, until, true, null, globalIds).getResultList();
+    }
+    
+    private TypedQuery<OAIRecord> createSetQuery(String select, String setName, Instant from, Instant until, 
+            boolean excludeSet, String afterGlobalId, Collection<String> globalIds) {
+        return createSetQuery(select, setName, from, until, excludeSet, afterGlobalId, globalIds, OAIRecord.class);
+    }
+    
+    private <T> TypedQuery<T> createSetQuery(String select, String setName, Instant from, Instant until, 
+            boolean excludeSet, String afterGlobalId, Collection<String> globalIds, Class<T> resultClass) {
                 
         if (setName == null) {
             setName = "";
         }
         
-        String queryString = "SELECT object(h) from OAIRecord h where h.id is not null";
+        String queryString = select + " from OAIRecord h where h.id is not null";
         if (excludeSet) {
             queryString += " and h.setName is not null and h.setName != '' and h.setName != :setName";
         } else {
@@ -310,14 +360,16 @@ public class OAIRecordServiceBean implements java.io.Serializable {
         
         queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
         queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
-        queryString += " order by h.globalId";
+        queryString += afterGlobalId != null ? " and h.globalId > :afterGlobalId" : "";
+        queryString += globalIds != null ? " and h.globalId in :globalIds" : "";
+        if (resultClass == OAIRecord.class) {
+            queryString += " order by h.globalId";
+        }
 
         logger.fine("Query: "+queryString);
         
-        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
-        if (setName != null) { 
-            query.setParameter("setName",setName); 
-        }
+        TypedQuery<T> query = em.createQuery(queryString, resultClass);
+        query.setParameter("setName",setName); 
         // TODO: review and phase out the use of java.util.Date throughout this service.
         
         if (from != null) { 
@@ -328,13 +380,15 @@ public class OAIRecordServiceBean implements java.io.Serializable {
             Date untilDate = Date.from(until);
             query.setParameter("until",untilDate,TemporalType.TIMESTAMP); 
         }
-                
-        try {
-            return query.getResultList();      
-        } catch (Exception ex) {
-            logger.fine("Caught exception; returning null.");
-            return null;
+        
+        if (afterGlobalId != null) {
+            query.setParameter("afterGlobalId", afterGlobalId);
+        }
+        
+        if (globalIds != null) {
+            query.setParameter("globalIds", globalIds);
         }
+        return query;
     }
     
     // This method is to only get the records NOT marked as "deleted":
@@ -14,6 +14,7 @@ import edu.harvard.iq.dataverse.export.ExportService;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecord;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
 import edu.harvard.iq.dataverse.util.StringUtil;
+import edu.harvard.iq.dataverse.util.cache.NamedCache;
 import io.gdcc.xoai.dataprovider.exceptions.handler.HandlerException;
 import io.gdcc.xoai.dataprovider.exceptions.handler.NoMetadataFormatsException;
 import io.gdcc.xoai.dataprovider.repository.ResultsPage;
@@ -23,6 +24,7 @@ import io.gdcc.xoai.xml.EchoElement;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.logging.Logger;
@@ -38,6 +40,31 @@ import java.util.logging.Logger;
 public class DataverseXoaiItemRepository implements ItemRepository {
     private static final Logger logger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.server.xoai.DataverseXoaiItemRepository");
     
+    /**
+     * Where a page of a list ended: the global id of its last record, and the
+     * complete list size. The XOAI resumption token only carries an offset,
+     * so this is kept here, under the list and the offset of the next page.
+     */
+    static final class PageCursor {
+
+        final String lastGlobalId;
+        final long total;
+
+        PageCursor(String lastGlobalId, long total) {
+            this.lastGlobalId = lastGlobalId;
+            this.total = total;
+        }
+
+        static String key(String setSpec, Instant from, Instant until, long offset) {
+            return setSpec + "|" + from + "|" + until + "|" + offset;
+        }
+    }
+
+    static final NamedCache<String, PageCursor> pageCursors = NamedCache.<String, PageCursor>builder("oai-page-cursors")
+            .maxSize(10000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
     private final OAIRecordServiceBean recordService;
     private final DatasetServiceBean datasetService;
     private final String serverUrl; 
@@ -124,8 +151,6 @@ public class DataverseXoaiItemRepository implements ItemRepository {
         Instant from = resumptionToken.getFrom();
         Instant until = resumptionToken.getUntil();
         
-        boolean hasMore = false; 
-        
         logger.fine("calling " + (fullItems ? "getItems" : "getItemIdentifiers")
                 + "; offset=" + offset
                 + ", length=" + maxResponseLength
@@ -133,73 +158,101 @@ public class DataverseXoaiItemRepository implements ItemRepository {
                 + ", from=" + from
                 + ", until=" + until);
 
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until);
+        // Where the previous page ended, if it was served by this server
+        // not too long ago; the database then starts right after that record,
+        // instead of counting its way through all the records up to the offset.
+        PageCursor cursor = offset == 0 ? null : pageCursors.get(PageCursor.key(setSpec, from, until, offset));
+        
+        // One more record than asked for, to know whether there are more:
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsPageBySetName(setSpec, from, until, 
+                cursor == null ? null : cursor.lastGlobalId, offset, maxResponseLength + 1);
+        
+        boolean hasMore = oaiRecords.size() > maxResponseLength; 
+        if (hasMore) {
+            oaiRecords = oaiRecords.subList(0, maxResponseLength);
+        }
         
         List<DataverseXoaiItem> xoaiItems = new ArrayList<>();
+        if (oaiRecords.isEmpty()) {
+            return new ResultsPage(resumptionToken, false, xoaiItems, 0);
+        }
+        
+        for (OAIRecord record : oaiRecords) {
+            DataverseXoaiItem xoaiItem = new DataverseXoaiItem(record);
 
-        if (oaiRecords != null && !oaiRecords.isEmpty()) {
-            logger.fine("total " + oaiRecords.size() + " records returned");
-            
-            for (int i = offset; i < offset + maxResponseLength && i < oaiRecords.size(); i++) {
-                OAIRecord record = oaiRecords.get(i);
-                DataverseXoaiItem xoaiItem = new DataverseXoaiItem(record);
-                
-                if (fullItems) {
-                    // If we are cooking "full" Items (for the ListRecords verb),
-                    // add the metadata to the item object (if not a deleted
-                    // record, if available, etc.):
-                    xoaiItem = addMetadata(xoaiItem, metadataFormat);
-                }
-                
-                xoaiItems.add(xoaiItem);
+            if (fullItems) {
+                // If we are cooking "full" Items (for the ListRecords verb),
+                // add the metadata to the item object (if not a deleted
+                // record, if available, etc.):
+                xoaiItem = addMetadata(xoaiItem, metadataFormat);
             }
-            
-            // Run a second pass, looking for records in this set that occur
-            // in *other* sets. Then we'll add these multiple sets to the 
-            // formatted output in the header:
-            addExtraSets(xoaiItems, setSpec, from, until);
-            
-            hasMore = offset + maxResponseLength < oaiRecords.size();
-            
-            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, oaiRecords.size());
-            logger.fine("returning result with " + xoaiItems.size() + " items.");
-            return result;
+
+            xoaiItems.add(xoaiItem);
         }
 
-        return new ResultsPage(resumptionToken, false, xoaiItems, 0);
+        // Run a second pass, looking for records in this set that occur
+        // in *other* sets. Then we'll add these multiple sets to the 
+        // formatted output in the header:
+        addExtraSets(xoaiItems, setSpec, from, until);
+        
+        // The complete list size is only counted once per list, on the first 
+        // page (or when the cursor was lost); the later pages pass it on.
+        long total;
+        if (!hasMore) {
+            total = offset + oaiRecords.size();
+        } else if (cursor != null) {
+            total = Math.max(cursor.total, offset + oaiRecords.size() + 1);
+        } else {
+            total = recordService.countOaiRecordsBySetName(setSpec, from, until);
+        }
+        
+        if (hasMore) {
+            int nextOffset = offset + oaiRecords.size();
+            String lastGlobalId = oaiRecords.get(oaiRecords.size() - 1).getGlobalId();
+            pageCursors.put(PageCursor.key(setSpec, from, until, nextOffset), new PageCursor(lastGlobalId, total));
+        }
+
+        ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, (int) total);
+        logger.fine("returning result with " + xoaiItems.size() + " items.");
+        return result;
     }
     
     private void addExtraSets(Object xoaiItemsList, String setSpec, Instant from, Instant until) {
         
         List<DataverseXoaiItem> xoaiItems = (List<DataverseXoaiItem>)xoaiItemsList;
         
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until);
+        List<String> globalIds = new ArrayList<>(xoaiItems.size());
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            globalIds.add(xoaiItem.getIdentifier());
+        }
         
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until, globalIds);
+
         if (oaiRecords == null || oaiRecords.isEmpty()) {
             return;
         }
-                
-        // Make a second pass through the list of xoaiItems already found for this set, 
+
+        // Make a second pass through the list of xoaiItems already found for this set,
         // and add any other sets in which this item occurs:
-        
+
         int j = 0;
         for (int i = 0; i < xoaiItems.size(); i++) {
-            // fast-forward the second list, until we find a oaiRecord with this identifier, 
+            // fast-forward the second list, until we find a oaiRecord with this identifier,
             // or until we are past this oaiRecord (both lists are sorted alphabetically by
             // the identifier:
             DataverseXoaiItem xitem = xoaiItems.get(i);
-            
+
             while (j < oaiRecords.size() && xitem.getIdentifier().compareTo(oaiRecords.get(j).getGlobalId()) > 0) {
                 j++;
             }
-            
+
             while (j < oaiRecords.size() && xitem.getIdentifier().equals(oaiRecords.get(j).getGlobalId())) {
                 xoaiItems.get(i).getSets().add(new Set(oaiRecords.get(j).getSetName()));
                 j++;
             }
         }
     }
-    
+
     private DataverseXoaiItem addMetadata(DataverseXoaiItem xoaiItem, MetadataFormat metadataFormat) {
         // This may be a "deleted" record - i.e., a oaiRecord kept in 
         // the OAI set for a dataset that's no longer in this Dataverse. 
@@ -0,0 +1,218 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Counts how often the declared categories of the categorical variables of a
+ * tabular file occur in its tab file, in a single pass over the file.
+ *
+ * Only the values of the declared {@link VariableCategory categories} are
+ * counted; any other value is looked up and dropped. Numeric values are
+ * matched as floats (the same way as
+ * {@code new Float(cat.getValue()).equals(value)}) through a map keyed by the
+ * bits of the float, so that no value of the file is boxed.
+ *
+ * @see IngestServiceBean#produceFrequencies(File, List)
+ */
+public class CategoryFrequencyCounter {
+
+    private static final Logger logger = Logger.getLogger(CategoryFrequencyCounter.class.getCanonicalName());
+
+    /**
+     * The counts of the categories of one variable.
+     */
+    private static class VariableCounts {
+
+        final int column;
+        final boolean numeric;
+        final List<VariableCategory> categories = new ArrayList<>();
+        final long[] counts;
+        // numeric variables: float bits -> slot in counts
+        final FloatSlots floatSlots;
+        // character variables: value -> slot in counts
+        final Map<String, Integer> stringSlots;
+        // the slot of each category, -1 if the value of the category cannot
+        // occur (not a number for a numeric variable)
+        final int[] categorySlots;
+
+        VariableCounts(int column, DataVariable var) {
+            this.column = column;
+            this.numeric = var.isTypeNumeric();
+            categories.addAll(var.getCategories());
+            categorySlots = new int[categories.size()];
+            floatSlots = numeric ? new FloatSlots(categories.size()) : null;
+            stringSlots = numeric ? null : new HashMap<>();
+
+            int slots = 0;
+            for (int i = 0; i < categories.size(); i++) {
+                String value = categories.get(i).getValue();
+                int slot;
+                if (numeric) {
+                    try {
+                        slot = floatSlots.putIfAbsent(Float.parseFloat(value), slots);
+                    } catch (NumberFormatException | NullPointerException ex) {
+                        logger.warning("Category value " + value + " of numeric variable " + var.getName() + " is not a number");
+                        slot = -1;
+                    }
+                } else if (value == null) {
+                    slot = -1;
+                } else {
+                    Integer existing = stringSlots.putIfAbsent(value, slots);
+                    slot = existing == null ? slots : existing;
+                }
+                if (slot == slots) {
+                    slots++;
+                }
+                categorySlots[i] = slot;
+            }
+            counts = new long[slots];
+        }
+
+        void count(String entry) {
+            int slot;
+            if (numeric) {
+                try {
+                    slot = floatSlots.get(TabularColumnReader.parseFloat(entry));
+                } catch (NumberFormatException ex) {
+                    // missing value
+                    return;
+                }
+            } else {
+                String value = TabularSubsetGenerator.restoreStringValue(entry);
+                if (value == null) {
+                    return;
+                }
+                Integer s = stringSlots.get(value);
+                slot = s == null ? -1 : s;
+            }
+            if (slot >= 0) {
+                counts[slot]++;
+            }
+        }
+
+        void assignFrequencies() {
+            for (int i = 0; i < categories.size(); i++) {
+                int slot = categorySlots[i];
+                categories.get(i).setFrequency(slot < 0 ? 0D : (double) counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * An open addressing map from the bits of a float to an int. Floats are
+     * compared the way {@link Float#equals(Object)} does: all NaNs are equal,
+     * 0.0 and -0.0 are not.
+     */
+    static class FloatSlots {
+
+        private final int[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        FloatSlots(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        private int indexOf(int bits) {
+            // spread the bits (floats of small integers differ in the high
+            // bits only), as in the finalizer of MurmurHash3:
+            int h = bits ^ (bits >>> 16);
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            int i = h & mask;
+            while (used[i] && keys[i] != bits) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * @return the value now mapped to the key.
+         */
+        int putIfAbsent(float key, int value) {
+            int bits = Float.floatToIntBits(key);
+            int i = indexOf(bits);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = bits;
+                values[i] = value;
+            }
+            return values[i];
+        }
+
+        /**
+         * @return the value mapped to the key, or -1.
+         */
+        int get(float key) {
+            int i = indexOf(Float.floatToIntBits(key));
+            return used[i] ? values[i] : -1;
+        }
+    }
+
+    private final List<VariableCounts> variables = new ArrayList<>();
+
+    /**
+     * @param vars all the variables of the file, in the order of its columns.
+     */
+    public CategoryFrequencyCounter(List<DataVariable> vars) {
+        for (int i = 0; i < vars.size(); i++) {
+            if (!vars.get(i).getCategories().isEmpty()) {
+                variables.add(new VariableCounts(i, vars.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if none of the variables has categories.
+     */
+    public boolean isEmpty() {
+        return variables.isEmpty();
+    }
+
+    /**
+     * Counts the categories in the tab file, in one pass, and sets the
+     * frequencies of all of them; to 0 for the categories that do not occur.
+     */
+    public void count(File tabFile, int numCases) throws IOException {
+        if (variables.isEmpty()) {
+            return;
+        }
+        int[] columns = new int[variables.size()];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = variables.get(j).column;
+        }
+        new TabularColumnReader(tabFile, numCases, TabularColumnReader.DEFAULT_MAX_CELLS_PER_PASS)
+                .scan(columns, (slot, caseIndex, entry) -> variables.get(slot).count(entry));
+
+        for (VariableCounts variable : variables) {
+            variable.assignFrequencies();
+        }
+        logger.fine("counted the frequencies of " + variables.size() + " categorical variables in " + tabFile.getName());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CategoryFrequencyCounter{");
+        for (VariableCounts variable : variables) {
+            sb.append(variable.column).append('=').append(Arrays.toString(variable.counts)).append(' ');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -21,7 +21,6 @@
 package edu.harvard.iq.dataverse.ingest;
 
 import edu.harvard.iq.dataverse.ControlledVocabularyValue;
-import edu.harvard.iq.dataverse.datavariable.VariableCategory;
 import edu.harvard.iq.dataverse.datavariable.VariableServiceBean;
 import edu.harvard.iq.dataverse.DatasetServiceBean;
 import edu.harvard.iq.dataverse.Dataset;
@@ -53,6 +52,7 @@ import edu.harvard.iq.dataverse.ingest.metadataextraction.FileMetadataIngest;
 import edu.harvard.iq.dataverse.ingest.metadataextraction.impl.plugins.fits.FITSFileMetadataExtractor;
 import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.DTAFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.NewDTAFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.DTAFileReaderSpi;
@@ -99,7 +99,6 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.ListIterator;
 import java.util.logging.Logger;
-import java.util.Hashtable;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.inject.Named;
@@ -311,6 +310,11 @@ public class IngestServiceBean {
 				}
 
 				logger.fine("Done! Finished saving new files in permanent storage and adding them to the dataset.");
+				if (savedSuccess && !unattached) {
+					// The thumbnails, in all the standard sizes, are generated in the
+					// background:
+					ImageThumbConverter.generateThumbnailsInBackground(dataFile);
+				}
 				boolean belowLimit = false;
 
 				try {
@@ -570,77 +574,18 @@ public class IngestServiceBean {
         /*
         logger.info("Skipping summary statistics and UNF.");
          */
-        produceDiscreteNumericSummaryStatistics(dataFile, generatedTabularFile); 
-        produceContinuousSummaryStatistics(dataFile, generatedTabularFile);
-        produceCharacterSummaryStatistics(dataFile, generatedTabularFile);
+        produceSummaryStatistics(dataFile, generatedTabularFile, true, true, true);
         
         recalculateDataFileUNF(dataFile);
         recalculateDatasetVersionUNF(dataFile.getFileMetadata().getDatasetVersion());
     }
     
     public void produceContinuousSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
-
-        /* 
-        // quick, but memory-inefficient way:
-        // - this method just loads the entire file-worth of continuous vectors 
-        // into a Double[][] matrix. 
-        //Double[][] variableVectors = subsetContinuousVectors(dataFile);
-        //calculateContinuousSummaryStatistics(dataFile, variableVectors);
-        
-        // A more sophisticated way: this subsets one column at a time, using 
-        // the new optimized subsetting that does not have to read any extra 
-        // bytes from the file to extract the column:
-        
-        TabularSubsetGenerator subsetGenerator = new TabularSubsetGenerator();
-        */
-        
-        for (int i = 0; i < dataFile.getDataTable().getVarQuantity(); i++) {
-            if (dataFile.getDataTable().getDataVariables().get(i).isIntervalContinuous()) {
-                logger.fine("subsetting continuous vector");
-
-                if ("float".equals(dataFile.getDataTable().getDataVariables().get(i).getFormat())) {
-                    Float[] variableVector = TabularSubsetGenerator.subsetFloatVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
-                    logger.fine("Calculating summary statistics on a Float vector;");
-                    calculateContinuousSummaryStatistics(dataFile, i, variableVector);
-                    // calculate the UNF while we are at it:
-                    logger.fine("Calculating UNF on a Float vector;");
-                    calculateUNF(dataFile, i, variableVector);
-                    variableVector = null; 
-                } else {
-                    Double[] variableVector = TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
-                    logger.fine("Calculating summary statistics on a Double vector;");
-                    calculateContinuousSummaryStatistics(dataFile, i, variableVector);
-                    // calculate the UNF while we are at it:
-                    logger.fine("Calculating UNF on a Double vector;");
-                    calculateUNF(dataFile, i, variableVector);
-                    variableVector = null; 
-                }
-                logger.fine("Done! (continuous);");
-            }
-        }
+        produceSummaryStatistics(dataFile, generatedTabularFile, false, true, false);
     }
     
     public void produceDiscreteNumericSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
-        
-        //TabularSubsetGenerator subsetGenerator = new TabularSubsetGenerator();
-        
-        for (int i = 0; i < dataFile.getDataTable().getVarQuantity(); i++) {
-            if (dataFile.getDataTable().getDataVariables().get(i).isIntervalDiscrete()
-                    && dataFile.getDataTable().getDataVariables().get(i).isTypeNumeric()) {
-                logger.fine("subsetting discrete-numeric vector");
-
-                Long[] variableVector = TabularSubsetGenerator.subsetLongVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
-                // We are discussing calculating the same summary stats for 
-                // all numerics (the same kind of sumstats that we've been calculating
-                // for numeric continuous type)  -- L.A. Jul. 2014
-                calculateContinuousSummaryStatistics(dataFile, i, variableVector);
-                // calculate the UNF while we are at it:
-                logger.fine("Calculating UNF on a Long vector");
-                calculateUNF(dataFile, i, variableVector);
-                logger.fine("Done! (discrete numeric)");
-                variableVector = null; 
-            }
-        }
+        produceSummaryStatistics(dataFile, generatedTabularFile, true, false, false);
     }
     
     public void produceCharacterSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
@@ -655,23 +600,78 @@ public class IngestServiceBean {
             largest in the production database. With no evidence whatsoever, 
             that this information is at all useful. 
                 -- L.A. Jul. 2014 
-        
-        TabularSubsetGenerator subsetGenerator = new TabularSubsetGenerator();
         */
+        produceSummaryStatistics(dataFile, generatedTabularFile, false, false, true);
+    }
+    
+    /*
+     * Calculates the summary statistics and the UNFs of the selected kinds of 
+     * variables. Rather than subsetting the tab file once per variable, the 
+     * columns are read in as few passes as the memory budget allows (see 
+     * TabularColumnReader), and kept in primitive arrays. 
+     */
+    private void produceSummaryStatistics(DataFile dataFile, File generatedTabularFile, 
+            boolean discreteNumeric, boolean continuous, boolean character) throws IOException {
+        List<DataVariable> vars = dataFile.getDataTable().getDataVariables();
+        TabularColumnReader.ColumnType[] columnTypes = new TabularColumnReader.ColumnType[vars.size()];
         
-        for (int i = 0; i < dataFile.getDataTable().getVarQuantity(); i++) {
-            if (dataFile.getDataTable().getDataVariables().get(i).isTypeCharacter()) {
-
-                logger.fine("subsetting character vector");
-                String[] variableVector = TabularSubsetGenerator.subsetStringVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
-                //calculateCharacterSummaryStatistics(dataFile, i, variableVector);
-                // calculate the UNF while we are at it:
-                logger.fine("Calculating UNF on a String vector");
-                calculateUNF(dataFile, i, variableVector);
-                logger.fine("Done! (character)");
-                variableVector = null; 
+        for (int i = 0; i < vars.size(); i++) {
+            DataVariable var = vars.get(i);
+            if (var.isIntervalDiscrete() && var.isTypeNumeric()) {
+                if (discreteNumeric) {
+                    columnTypes[i] = TabularColumnReader.ColumnType.LONG;
+                }
+            } else if (var.isIntervalContinuous()) {
+                if (continuous) {
+                    columnTypes[i] = "float".equals(var.getFormat()) ? TabularColumnReader.ColumnType.FLOAT : TabularColumnReader.ColumnType.DOUBLE;
+                }
+            } else if (var.isTypeCharacter()) {
+                if (character) {
+                    columnTypes[i] = TabularColumnReader.ColumnType.STRING;
+                }
             }
         }
+        
+        long maxCellsPerPass = JvmSettings.INGEST_MAX_CELLS_PER_PASS.lookupOptional(Long.class)
+                .orElse(TabularColumnReader.DEFAULT_MAX_CELLS_PER_PASS);
+        long maxStringCellsPerPass = JvmSettings.INGEST_MAX_STRING_CELLS_PER_PASS.lookupOptional(Long.class)
+                .orElse(TabularColumnReader.DEFAULT_MAX_STRING_CELLS_PER_PASS);
+        TabularColumnReader columnReader = new TabularColumnReader(generatedTabularFile, dataFile.getDataTable().getCaseQuantity().intValue(), 
+                maxCellsPerPass, maxStringCellsPerPass);
+        
+        columnReader.read(columnTypes, column -> {
+            int i = column.getIndex();
+            switch (column.getType()) {
+                case LONG:
+                    // We are discussing calculating the same summary stats for 
+                    // all numerics (the same kind of sumstats that we've been calculating
+                    // for numeric continuous type)  -- L.A. Jul. 2014
+                    calculateContinuousSummaryStatistics(dataFile, i, column.toDoublesWithNaN());
+                    // calculate the UNF while we are at it:
+                    logger.fine("Calculating UNF on a Long vector");
+                    calculateUNF(dataFile, i, column.toLongArray());
+                    logger.fine("Done! (discrete numeric)");
+                    break;
+                case FLOAT:
+                    logger.fine("Calculating summary statistics on a Float vector;");
+                    calculateContinuousSummaryStatistics(dataFile, i, column.toDoublesWithNaN());
+                    logger.fine("Calculating UNF on a Float vector;");
+                    calculateUNF(dataFile, i, column.toFloatArray());
+                    logger.fine("Done! (continuous);");
+                    break;
+                case DOUBLE:
+                    logger.fine("Calculating summary statistics on a Double vector;");
+                    calculateContinuousSummaryStatistics(dataFile, i, column.toDoublesWithNaN());
+                    logger.fine("Calculating UNF on a Double vector;");
+                    calculateUNF(dataFile, i, column.toDoubleArray());
+                    logger.fine("Done! (continuous);");
+                    break;
+                default:
+                    logger.fine("Calculating UNF on a String vector");
+                    calculateUNF(dataFile, i, column.getStrings());
+                    logger.fine("Done! (character)");
+            }
+        });
     }
 
     public static void produceFrequencyStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
@@ -682,60 +682,13 @@ public class IngestServiceBean {
     }
 
     public static void produceFrequencies( File generatedTabularFile, List<DataVariable> vars) throws IOException {
-
-        for (int i = 0; i < vars.size(); i++) {
-
-            Collection<VariableCategory> cats = vars.get(i).getCategories();
-            int caseQuantity = vars.get(i).getDataTable().getCaseQuantity().intValue();
-            boolean isNumeric = vars.get(i).isTypeNumeric();
-            Object[] variableVector = null;
-            if (cats.size() > 0) {
-                if (isNumeric) {
-                    variableVector = TabularSubsetGenerator.subsetFloatVector(new FileInputStream(generatedTabularFile), i, caseQuantity);
-                }
-                else {
-                    variableVector = TabularSubsetGenerator.subsetStringVector(new FileInputStream(generatedTabularFile), i, caseQuantity);
-                }
-                if (variableVector != null) {
-                    Hashtable<Object, Double> freq = calculateFrequency(variableVector);
-                    for (VariableCategory cat : cats) {
-                        Object catValue;
-                        if (isNumeric) {
-                            catValue = new Float(cat.getValue());
-                        } else {
-                            catValue = cat.getValue();
-                        }
-                        Double numberFreq = freq.get(catValue);
-                        if (numberFreq != null) {
-                            cat.setFrequency(numberFreq);
-                        } else {
-                            cat.setFrequency(0D);
-                        }
-                    }
-                } else {
-                    logger.fine("variableVector is null for variable " + vars.get(i).getName());
-                }
-            }
+        // Counts the declared categories of all the categorical variables 
+        // in one pass over the file: 
+        CategoryFrequencyCounter counter = new CategoryFrequencyCounter(vars);
+        if (!counter.isEmpty()) {
+            counter.count(generatedTabularFile, vars.get(0).getDataTable().getCaseQuantity().intValue());
         }
     }
-
-    public static Hashtable<Object, Double> calculateFrequency( Object[] variableVector) {
-        Hashtable<Object, Double> freq = new Hashtable<Object, Double>();
-
-        for (int j = 0; j < variableVector.length; j++) {
-            if (variableVector[j] != null) {
-                Double freqNum = freq.get(variableVector[j]);
-                if (freqNum != null) {
-                    freq.put(variableVector[j], freqNum + 1);
-                } else {
-                    freq.put(variableVector[j], 1D);
-                }
-            }
-        }
-
-        return freq;
-
-    }
     
     public void recalculateDataFileUNF(DataFile dataFile) {
         String[] unfValues = new String[dataFile.getDataTable().getVarQuantity().intValue()];
@@ -1020,6 +973,15 @@ public class IngestServiceBean {
                     dataAccess.savePath(Paths.get(tabFile.getAbsolutePath()));
                     // Reset the file size: 
                     dataFile.setFilesize(dataAccess.getSize());
+
+                    // and the column-major copy of it, for subsetting: 
+                    try {
+                        TabularSubsetGenerator.saveColumnStore(dataAccess, tabFile, 
+                                dataFile.getDataTable().getVarQuantity().intValue(), 
+                                dataFile.getDataTable().getCaseQuantity().intValue());
+                    } catch (IOException iox) {
+                        logger.warning("Failed to save the column store of the tabular file; " + iox.getMessage());
+                    }
                     
                     dataFile = fileService.save(dataFile);
                     logger.fine("saved data file after updating the size");
@@ -1546,7 +1508,7 @@ public class IngestServiceBean {
         return contVarFields;
     }
     
-    private void calculateContinuousSummaryStatistics(DataFile dataFile, int varnum, Number[] dataVector) throws IOException {
+    private void calculateContinuousSummaryStatistics(DataFile dataFile, int varnum, double[] dataVector) throws IOException {
         double[] sumStats = SumStatCalculator.calculateSummaryStatistics(dataVector);
         assignContinuousSummaryStatistics(dataFile.getDataTable().getDataVariables().get(varnum), sumStats);
     }
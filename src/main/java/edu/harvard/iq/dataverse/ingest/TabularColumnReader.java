@@ -0,0 +1,389 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Reads the columns of a generated tab file in as few passes as possible,
+ * instead of reading the whole file once per column.
+ *
+ * The columns asked for are split into batches whose number of cells stays
+ * within a budget. Character values take much more memory than numbers, and
+ * as much as their length, so the cells of character columns have a smaller
+ * budget of their own (within the overall one). Each batch is filled in one pass over the file and handed
+ * to a {@link ColumnConsumer}, one column at a time, before the next batch is
+ * read. With the default budget a file of a few million cells is read once.
+ *
+ * Values are kept in primitive arrays, with a separate mask of missing values.
+ * They are parsed exactly as by the
+ * {@link TabularSubsetGenerator#subsetDoubleVector(java.io.InputStream, int, int)}
+ * family of methods, so that summary statistics and UNFs do not change.
+ */
+public class TabularColumnReader {
+
+    private static final Logger logger = Logger.getLogger(TabularColumnReader.class.getCanonicalName());
+
+    public static final long DEFAULT_MAX_CELLS_PER_PASS = 10000000L;
+    public static final long DEFAULT_MAX_STRING_CELLS_PER_PASS = 1000000L;
+
+    public enum ColumnType {
+        DOUBLE, FLOAT, LONG, STRING
+    }
+
+    /**
+     * The values of one column of the tab file.
+     */
+    public static class Column {
+
+        private final int index;
+        private final ColumnType type;
+        private final int numCases;
+        private final BitSet missing;
+        private double[] doubles;
+        private float[] floats;
+        private long[] longs;
+        private String[] strings;
+
+        Column(int index, ColumnType type, int numCases) {
+            this.index = index;
+            this.type = type;
+            this.numCases = numCases;
+            this.missing = new BitSet(numCases);
+            switch (type) {
+                case DOUBLE:
+                    doubles = new double[numCases];
+                    break;
+                case FLOAT:
+                    floats = new float[numCases];
+                    break;
+                case LONG:
+                    longs = new long[numCases];
+                    break;
+                default:
+                    strings = new String[numCases];
+            }
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public ColumnType getType() {
+            return type;
+        }
+
+        public int getNumCases() {
+            return numCases;
+        }
+
+        public boolean isMissing(int caseIndex) {
+            return missing.get(caseIndex);
+        }
+
+        public double[] getDoubles() {
+            return doubles;
+        }
+
+        public float[] getFloats() {
+            return floats;
+        }
+
+        public long[] getLongs() {
+            return longs;
+        }
+
+        /**
+         * @return the values of a character column, {@code null} for missing.
+         */
+        public String[] getStrings() {
+            return strings;
+        }
+
+        /**
+         * @return the values of a numeric column as doubles, with the missing
+         * values as {@code Double.NaN}; as expected by
+         * {@link edu.harvard.iq.dataverse.util.SumStatCalculator#calculateSummaryStatistics(double[])}.
+         */
+        public double[] toDoublesWithNaN() {
+            double[] x = new double[numCases];
+            for (int i = 0; i < numCases; i++) {
+                if (missing.get(i)) {
+                    x[i] = Double.NaN;
+                } else if (type == ColumnType.DOUBLE) {
+                    x[i] = doubles[i];
+                } else if (type == ColumnType.FLOAT) {
+                    x[i] = floats[i];
+                } else {
+                    x[i] = longs[i];
+                }
+            }
+            return x;
+        }
+
+        public Double[] toDoubleArray() {
+            Double[] x = new Double[numCases];
+            for (int i = 0; i < numCases; i++) {
+                x[i] = missing.get(i) ? null : doubles[i];
+            }
+            return x;
+        }
+
+        public Float[] toFloatArray() {
+            Float[] x = new Float[numCases];
+            for (int i = 0; i < numCases; i++) {
+                x[i] = missing.get(i) ? null : floats[i];
+            }
+            return x;
+        }
+
+        public Long[] toLongArray() {
+            Long[] x = new Long[numCases];
+            for (int i = 0; i < numCases; i++) {
+                x[i] = missing.get(i) ? null : longs[i];
+            }
+            return x;
+        }
+
+        void set(int caseIndex, String entry) {
+            try {
+                switch (type) {
+                    case DOUBLE:
+                        doubles[caseIndex] = parseDouble(entry);
+                        break;
+                    case FLOAT:
+                        floats[caseIndex] = parseFloat(entry);
+                        break;
+                    case LONG:
+                        longs[caseIndex] = Long.parseLong(entry);
+                        break;
+                    default:
+                        strings[caseIndex] = TabularSubsetGenerator.restoreStringValue(entry);
+                        if (strings[caseIndex] == null) {
+                            missing.set(caseIndex);
+                        }
+                }
+            } catch (NumberFormatException ex) {
+                // missing value
+                missing.set(caseIndex);
+            }
+        }
+    }
+
+    /**
+     * Parses a numeric entry of a tab file. Unlike {@link Double#parseDouble(String)}
+     * this accepts "[+-]inf", the way infinite values are stored.
+     *
+     * @throws NumberFormatException for a missing value (an empty entry) or an
+     * entry that is not a number.
+     */
+    public static double parseDouble(String entry) {
+        if ("inf".equalsIgnoreCase(entry) || "+inf".equalsIgnoreCase(entry)) {
+            return Double.POSITIVE_INFINITY;
+        } else if ("-inf".equalsIgnoreCase(entry)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.parseDouble(entry);
+    }
+
+    /**
+     * @see #parseDouble(String)
+     */
+    public static float parseFloat(String entry) {
+        if ("inf".equalsIgnoreCase(entry) || "+inf".equalsIgnoreCase(entry)) {
+            return Float.POSITIVE_INFINITY;
+        } else if ("-inf".equalsIgnoreCase(entry)) {
+            return Float.NEGATIVE_INFINITY;
+        }
+        return Float.parseFloat(entry);
+    }
+
+    @FunctionalInterface
+    public interface ColumnConsumer {
+        void accept(Column column) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface CellVisitor {
+        /**
+         * @param slot position of the column in the array given to
+         * {@link #scan(int[], CellVisitor)}.
+         * @param entry the raw entry, as stored in the tab file.
+         */
+        void accept(int slot, int caseIndex, String entry);
+    }
+
+    private final File tabFile;
+    private final int numCases;
+    private final long maxCellsPerPass;
+    private final long maxStringCellsPerPass;
+    private int passes = 0;
+
+    public TabularColumnReader(File tabFile, int numCases, long maxCellsPerPass) {
+        this(tabFile, numCases, maxCellsPerPass, DEFAULT_MAX_STRING_CELLS_PER_PASS);
+    }
+
+    public TabularColumnReader(File tabFile, int numCases, long maxCellsPerPass, long maxStringCellsPerPass) {
+        this.tabFile = tabFile;
+        this.numCases = numCases;
+        this.maxCellsPerPass = Math.max(1, maxCellsPerPass);
+        this.maxStringCellsPerPass = Math.max(1, maxStringCellsPerPass);
+    }
+
+    /**
+     * Reads the columns with a type and hands each one to the consumer, in
+     * the order of the columns.
+     *
+     * @param columnTypes the type of every column of the file, {@code null}
+     * for the columns to skip.
+     * @throws IOException if the file cannot be read, or does not have the
+     * expected number of rows or columns.
+     */
+    public void read(ColumnType[] columnTypes, ColumnConsumer consumer) throws IOException {
+        List<Integer> wanted = new ArrayList<>();
+        for (int i = 0; i < columnTypes.length; i++) {
+            if (columnTypes[i] != null) {
+                wanted.add(i);
+            }
+        }
+        int from = 0;
+        while (from < wanted.size()) {
+            // at least one column per batch, however large
+            int to = from + 1;
+            long cells = numCases;
+            long stringCells = columnTypes[wanted.get(from)] == ColumnType.STRING ? numCases : 0;
+            while (to < wanted.size() && cells + numCases <= maxCellsPerPass) {
+                if (columnTypes[wanted.get(to)] == ColumnType.STRING) {
+                    if (stringCells + numCases > maxStringCellsPerPass) {
+                        break;
+                    }
+                    stringCells += numCases;
+                }
+                cells += numCases;
+                to++;
+            }
+            List<Integer> batch = wanted.subList(from, to);
+            from = to;
+            Column[] columns = new Column[batch.size()];
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = new Column(batch.get(j), columnTypes[batch.get(j)], numCases);
+            }
+            readPass(columns);
+            for (int j = 0; j < columns.length; j++) {
+                consumer.accept(columns[j]);
+                // let the garbage collector have it before the next column:
+                columns[j] = null;
+            }
+        }
+        logger.fine("read " + wanted.size() + " columns of " + tabFile.getName() + " in " + passes + " passes");
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    private void readPass(Column[] columns) throws IOException {
+        int[] indexes = new int[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            indexes[j] = columns[j].getIndex();
+        }
+        scan(indexes, (slot, caseIndex, entry) -> columns[slot].set(caseIndex, entry));
+    }
+
+    /**
+     * Makes one pass over the file, handing the raw entries of the given
+     * columns to the visitor, row by row, without keeping them.
+     *
+     * @param columns indexes of the columns, in ascending order.
+     * @throws IOException if the file cannot be read, or does not have the
+     * expected number of rows or columns.
+     */
+    public void scan(int[] columns, CellVisitor visitor) throws IOException {
+        passes++;
+        try (Reader reader = new InputStreamReader(new FileInputStream(tabFile), StandardCharsets.UTF_8)) {
+            LineReader lines = new LineReader(reader);
+            for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+                String line = lines.next();
+                if (line == null) {
+                    throw new IOException("Tab file has fewer rows than the stored number of cases!");
+                }
+                // Walk the tabs of the line, picking up the wanted columns 
+                // only:
+                int column = 0;
+                int start = 0;
+                for (int slot = 0; slot < columns.length; slot++) {
+                    while (column < columns[slot]) {
+                        start = line.indexOf('\t', start) + 1;
+                        if (start == 0) {
+                            throw new IOException("Row " + caseIndex + " of the tab file has only " + (column + 1) + " columns!");
+                        }
+                        column++;
+                    }
+                    int end = line.indexOf('\t', start);
+                    visitor.accept(slot, caseIndex, end < 0 ? line.substring(start) : line.substring(start, end));
+                }
+            }
+
+            int tailIndex = numCases;
+            String nextLine;
+            while ((nextLine = lines.next()) != null) {
+                if (!"".equals(nextLine)) {
+                    throw new IOException("Tab file has more nonempty rows than the stored number of cases (" + numCases + ")! current index: " + tailIndex + ", line: " + nextLine);
+                }
+                tailIndex++;
+            }
+        }
+    }
+
+    /**
+     * Splits on new lines only; a carriage return is part of a value, the
+     * same as for the {@code Scanner} used by {@link TabularSubsetGenerator}.
+     */
+    static class LineReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[65536];
+        private int position = 0;
+        private int limit = 0;
+        private final StringBuilder line = new StringBuilder();
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return the next line, without its new line; or {@code null} at
+         * the end of the input. A last line that is empty is not returned.
+         */
+        String next() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return line.length() > 0 ? line.toString() : null;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                line.append(buffer, start, position - start);
+                if (position < limit) {
+                    position++;
+                    return line.toString();
+                }
+            }
+        }
+    }
+}
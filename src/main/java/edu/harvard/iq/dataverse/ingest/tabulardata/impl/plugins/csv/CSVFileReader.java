@@ -19,7 +19,6 @@
  */
 package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv;
 
-import java.io.FileReader;
 import java.io.InputStreamReader;
 
 import edu.harvard.iq.dataverse.DataTable;
@@ -31,13 +30,24 @@ import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
@@ -52,7 +62,6 @@ import java.util.logging.Logger;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
 /**
@@ -69,6 +78,10 @@ public class CSVFileReader extends TabularDataFileReader {
     private static final Logger logger = Logger.getLogger(CSVFileReader.class.getPackage().getName());
     private static final int DIGITS_OF_PRECISION_DOUBLE = 15;
     private static final String FORMAT_IEEE754 = "%+#." + DIGITS_OF_PRECISION_DOUBLE + "e";
+    // characters buffered reading the upload and the first pass file:
+    private static final int PASS_BUFFER_SIZE = 256 * 1024;
+    // bytes buffered writing the tab file:
+    private static final int TAB_FILE_BUFFER_SIZE = 1024 * 1024;
     private MathContext doubleMathContext;
     private CSVFormat inFormat;
     //private final Set<Character> firstNumCharSet = new HashSet<>();
@@ -119,10 +132,14 @@ public class CSVFileReader extends TabularDataFileReader {
         TabularDataIngest ingesteddata = new TabularDataIngest();
         DataTable dataTable = new DataTable();
 
-        BufferedReader localBufferedReader = new BufferedReader(new InputStreamReader(stream));
+        BufferedReader localBufferedReader = new BufferedReader(new InputStreamReader(stream), PASS_BUFFER_SIZE);
 
         File tabFileDestination = File.createTempFile("data-", ".tab");
-        PrintWriter tabFileWriter = new PrintWriter(tabFileDestination.getAbsolutePath());
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        PrintWriter tabFileWriter = new PrintWriter(Channels.newWriter(
+                FileChannel.open(tabFileDestination.toPath(), StandardOpenOption.WRITE), encoder, TAB_FILE_BUFFER_SIZE));
 
         int lineCount = readFile(localBufferedReader, dataTable, tabFileWriter);
 
@@ -181,18 +198,19 @@ public class CSVFileReader extends TabularDataFileReader {
         }
 
         // First, "learning" pass.
-        // (we'll save the incoming stream in another temp file:)
+        // The records are parsed one at a time, and saved in another temp
+        // file, one per line, with their values separated by tabs; the
+        // backslashes, tabs, newlines and carriage returns in the values are
+        // escaped, so that the final pass can split the lines on tabs
+        // instead of parsing the CSV again.
         SimpleDateFormat[] selectedDateTimeFormat = new SimpleDateFormat[headers.size()];
         SimpleDateFormat[] selectedDateFormat = new SimpleDateFormat[headers.size()];
 
-        File firstPassTempFile = File.createTempFile("firstpass-", ".csv");
+        File firstPassTempFile = File.createTempFile("firstpass-", ".tab");
 
-        try (CSVPrinter csvFilePrinter = new CSVPrinter(
-                // TODO allow other parsers of tabular data to use this parser by changin inFormat
-                new FileWriter(firstPassTempFile.getAbsolutePath()), inFormat)) {
-            //Write  headers
-            csvFilePrinter.printRecord(headers.keySet());
-            for (CSVRecord record : parser.getRecords()) {
+        try (Writer firstPassWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(firstPassTempFile), StandardCharsets.UTF_8), PASS_BUFFER_SIZE)) {
+            for (CSVRecord record : parser) {
                 // Checks if #records = #columns in header
                 if (!record.isConsistent()) {
                     List<String> args = Arrays.asList(new String[]{"" + (parser.getCurrentLineNumber() - 1),
@@ -208,7 +226,7 @@ public class CSVFileReader extends TabularDataFileReader {
                                            && (varString.isEmpty()
                                                || varString.equals("null")
                                                || (StringUtils.isNumeric(varString)
-                                                    || (varString.substring(0,1).matches("[+-]") 
+                                                    || ((varString.charAt(0) == '+' || varString.charAt(0) == '-')
                                                         && StringUtils.isNumeric(varString.substring(1)))));
                     if (isNumericVariable[i]) {
                         // If variable might be "numeric" test to see if this value is a parsable number:
@@ -226,7 +244,7 @@ public class CSVFileReader extends TabularDataFileReader {
                                 continue;
                             } else {
                                 try {
-                                    Double testDoubleValue = new Double(varString);
+                                    Double.parseDouble(varString);
                                     continue;
                                 } catch (NumberFormatException ex) {
                                     // the token failed to parse as a double
@@ -310,8 +328,18 @@ public class CSVFileReader extends TabularDataFileReader {
                     }
                 }
 
-                csvFilePrinter.printRecord(record);
+                for (i = 0; i < headers.size(); i++) {
+                    if (i > 0) {
+                        firstPassWriter.write('\t');
+                    }
+                    writeEscaped(firstPassWriter, record.get(i));
+                }
+                firstPassWriter.write('\n');
             }
+        } catch (IOException | RuntimeException ex) {
+            finalOut.close();
+            firstPassTempFile.delete();
+            throw ex;
         }
         dataTable.setCaseQuantity(parser.getRecordNumber());
         parser.close();
@@ -339,20 +367,32 @@ public class CSVFileReader extends TabularDataFileReader {
             }
         }
         // Second, final pass.
-        try (BufferedReader secondPassReader = new BufferedReader(new FileReader(firstPassTempFile))) {
-            parser = new CSVParser(secondPassReader, inFormat.withHeader());
+        long linecount = 0;
+        try (BufferedReader secondPassReader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(firstPassTempFile), StandardCharsets.UTF_8), PASS_BUFFER_SIZE)) {
             String[] caseRow = new String[headers.size()];
+            String line;
 
-            for (CSVRecord record : parser) {
-                if (!record.isConsistent()) {
-                    List<String> args = Arrays.asList(new String[]{"" + (parser.getCurrentLineNumber() - 1),
-                                                                   "" + headers.size(),
-                                                                   "" + record.size()});
-                    throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.recordMismatch", args));
-                }
+            while ((line = secondPassReader.readLine()) != null) {
+                linecount++;
+                int start = 0;
 
                 for (i = 0; i < headers.size(); i++) {
-                    String varString = record.get(i);
+                    if (start > line.length()) {
+                        List<String> args = Arrays.asList(new String[]{"" + linecount,
+                                                                       "" + headers.size(),
+                                                                       "" + i});
+                        throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.recordMismatch", args));
+                    }
+                    // the value ends at the next tab, or at the end of the line:
+                    int end = start;
+                    boolean escaped = false;
+                    while (end < line.length() && line.charAt(end) != '\t') {
+                        escaped = escaped || line.charAt(end) == '\\';
+                        end++;
+                    }
+                    String varString = escaped ? unescape(line, start, end) : line.substring(start, end);
+                    start = end + 1;
                     if (isNumericVariable[i]) {
                         if (varString == null || varString.isEmpty() || varString.equalsIgnoreCase("NA")) {
                             // Missing value - represented as an empty string in
@@ -448,21 +488,87 @@ public class CSVFileReader extends TabularDataFileReader {
                         }
                     }
                 }
-                finalOut.println(StringUtils.join(caseRow, "\t"));
+                for (i = 0; i < headers.size(); i++) {
+                    if (i > 0) {
+                        finalOut.write('\t');
+                    }
+                    finalOut.write(caseRow[i]);
+                }
+                finalOut.write('\n');
             }
+        } finally {
+            finalOut.close();
+            logger.fine("Tmp File: " + firstPassTempFile);
+            // Firstpass file is deleted to prevent tmp from filling up.
+            firstPassTempFile.delete();
+        }
+        if (finalOut.checkError()) {
+            throw new IOException("Failed to write the tab file");
         }
-        long linecount = parser.getRecordNumber();
-        finalOut.close();
-        parser.close();
-        logger.fine("Tmp File: " + firstPassTempFile);
-        // Firstpass file is deleted to prevent tmp from filling up.
-        firstPassTempFile.delete();
         if (dataTable.getCaseQuantity().intValue() != linecount) {
             List<String> args = Arrays.asList(new String[]{"" + dataTable.getCaseQuantity().intValue(),
                                                            "" + linecount});
-            throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.line_mismatch", args));
+            throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.lineMismatch", args));
         }
         return (int) linecount;
     }
 
+    /*
+     * Writes a value to the first pass file, escaping the backslashes, tabs,
+     * newlines and carriage returns.
+     */
+    private static void writeEscaped(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        int start = 0;
+        for (int j = 0; j < value.length(); j++) {
+            char escape;
+            switch (value.charAt(j)) {
+                case '\\':
+                    escape = '\\';
+                    break;
+                case '\t':
+                    escape = 't';
+                    break;
+                case '\n':
+                    escape = 'n';
+                    break;
+                case '\r':
+                    escape = 'r';
+                    break;
+                default:
+                    continue;
+            }
+            out.write(value, start, j - start);
+            out.write('\\');
+            out.write(escape);
+            start = j + 1;
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    /*
+     * Reads back a value escaped by writeEscaped, from start to end of the
+     * line.
+     */
+    private static String unescape(String line, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int j = start; j < end; j++) {
+            char c = line.charAt(j);
+            if (c == '\\' && j + 1 < end) {
+                c = line.charAt(++j);
+                if (c == 't') {
+                    c = '\t';
+                } else if (c == 'n') {
+                    c = '\n';
+                } else if (c == 'r') {
+                    c = '\r';
+                }
+            }
+            value.append(c);
+        }
+        return value.toString();
+    }
+
 }
@@ -0,0 +1,263 @@
+package edu.harvard.iq.dataverse.makedatacount;
+
+import static edu.harvard.iq.dataverse.makedatacount.MakeDataCountUtil.LOG_HEADER;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Writes the Make Data Count log entries of all requests in the background:
+ * requests only queue their entries, and a single thread appends them to the
+ * log of the day in batches, through a channel that stays open until the day
+ * (or the log directory) changes, and is synced to disk once a second at
+ * most, instead of opening, appending to and closing the log for every view
+ * and download.
+ *
+ * The queue is bounded: when the writer falls behind, requests wait for a
+ * moment, and then drop the entry rather than pile up; see
+ * {@link #getStatus()}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MakeDataCountLogWriter {
+
+    private static final Logger logger = Logger.getLogger(MakeDataCountLogWriter.class.getCanonicalName());
+
+    static final int QUEUE_CAPACITY = 16384;
+    static final int MAX_BATCH_SIZE = 1024;
+    private static final long OFFER_TIMEOUT_MILLIS = 50;
+    private static final long FSYNC_INTERVAL_MILLIS = 1000;
+
+    private static class Entry {
+
+        final Path logFile;
+        final String line;
+
+        Entry(Path logFile, String line) {
+            this.logFile = logFile;
+            this.line = line;
+        }
+    }
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final BlockingQueue<Entry> queue;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    private Path currentFile;
+    private FileChannel channel;
+    private boolean synced = true;
+    private long lastSync = 0;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public MakeDataCountLogWriter() {
+        this(QUEUE_CAPACITY);
+    }
+
+    MakeDataCountLogWriter(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void init() {
+        start(threadFactory);
+    }
+
+    void start(ThreadFactory threads) {
+        running = true;
+        writerThread = threads.newThread(this::writeEntries);
+        writerThread.setName("mdc-log-writer");
+        writerThread.start();
+    }
+
+    /**
+     * Writes what is left in the queue, and closes the log.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread != null) {
+            // not interrupted: that would close the channel in the middle of a write
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queues a line for the log {@code logFileName} in {@code logDirectory},
+     * which is created, with the header of the logs, if it does not exist.
+     *
+     * @return false if the queue was full, and the line was dropped.
+     */
+    public boolean log(String logDirectory, String logFileName, String line) {
+        Entry entry = new Entry(Path.of(logDirectory, logFileName), line);
+        boolean offered = queue.offer(entry);
+        if (!offered && running) {
+            try {
+                offered = queue.offer(entry, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!offered) {
+            // only the first of a run of drops is logged, the rest are counted
+            if (dropped.getAndIncrement() % 1000 == 0) {
+                logger.warning("The Make Data Count log writer is falling behind, dropped " + dropped.get() + " log entries so far");
+            }
+            return false;
+        }
+        queued.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    public JsonObjectBuilder getStatus() {
+        return Json.createObjectBuilder()
+                .add("running", running)
+                .add("queueCapacity", queue.size() + queue.remainingCapacity())
+                .add("queueDepth", queue.size())
+                .add("maxQueueDepth", maxQueueDepth.get())
+                .add("queued", queued.get())
+                .add("written", written.get())
+                .add("dropped", dropped.get())
+                .add("failed", failed.get())
+                .add("batches", batches.get());
+    }
+
+    private void writeEntries() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Entry first = queue.poll(FSYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                        writeBatch(batch);
+                        batch.clear();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                sync(false);
+            }
+        } finally {
+            closeLog();
+        }
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        StringBuilder lines = new StringBuilder();
+        int count = 0;
+        Path file = batch.get(0).logFile;
+        for (Entry entry : batch) {
+            if (!entry.logFile.equals(file)) {
+                append(file, lines, count);
+                lines.setLength(0);
+                count = 0;
+                file = entry.logFile;
+            }
+            lines.append(entry.line);
+            count++;
+        }
+        append(file, lines, count);
+        batches.incrementAndGet();
+    }
+
+    private void append(Path file, CharSequence lines, int count) {
+        try {
+            if (!file.equals(currentFile) || channel == null) {
+                openLog(file);
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            synced = false;
+            written.addAndGet(count);
+        } catch (IOException ex) {
+            failed.addAndGet(count);
+            logger.log(Level.SEVERE, "Could not write " + count + " Make Data Count log entries to " + file, ex);
+            // reopened for the next batch
+            closeLog();
+        }
+    }
+
+    /**
+     * Rotates to another log: a new day, or a new {@code :MDCLogPath}.
+     */
+    private void openLog(Path file) throws IOException {
+        closeLog();
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentFile = file;
+        if (channel.size() == 0) {
+            channel.write(StandardCharsets.UTF_8.encode(LOG_HEADER));
+            synced = false;
+        }
+    }
+
+    private void sync(boolean now) {
+        if (channel == null || synced) {
+            return;
+        }
+        if (now || System.currentTimeMillis() - lastSync >= FSYNC_INTERVAL_MILLIS) {
+            try {
+                channel.force(false);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Could not sync the Make Data Count log " + currentFile, ex);
+            }
+            synced = true;
+            lastSync = System.currentTimeMillis();
+        }
+    }
+
+    private void closeLog() {
+        if (channel == null) {
+            return;
+        }
+        sync(true);
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not close the Make Data Count log " + currentFile, ex);
+        }
+        channel = null;
+        currentFile = null;
+    }
+}
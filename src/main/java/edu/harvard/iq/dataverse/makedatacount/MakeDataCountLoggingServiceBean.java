@@ -9,8 +9,6 @@ import edu.harvard.iq.dataverse.DataFile;
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.DataverseRequestServiceBean;
-import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
-import static edu.harvard.iq.dataverse.makedatacount.MakeDataCountUtil.LOG_HEADER;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
@@ -36,10 +34,13 @@ public class MakeDataCountLoggingServiceBean {
     
     @EJB
     SystemConfig systemConfig;
+    @EJB
+    MakeDataCountLogWriter logWriter;
 
     public void logEntry(MakeDataCountEntry entry) {
         if(systemConfig.getMDCLogPath() != null) {
-            LoggingUtil.saveLogFileAppendWithHeader(entry.toString(), systemConfig.getMDCLogPath(), getLogFileName() , LOG_HEADER);
+            // queued, written to the log in the background
+            logWriter.log(systemConfig.getMDCLogPath(), getLogFileName(), entry.toString());
         }
     }
     
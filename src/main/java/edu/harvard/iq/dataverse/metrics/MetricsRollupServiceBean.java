@@ -0,0 +1,148 @@
+package edu.harvard.iq.dataverse.metrics;
+
+import edu.harvard.iq.dataverse.util.SystemConfig;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+/**
+ * Keeps the rollup tables behind the download and file metrics up to date:
+ * guestbook responses per dataset and day ({@code downloadrollup}), and files
+ * per dataset, content type and month ({@code filerollup}).
+ *
+ * The rollups of past months do not change as responses and files are added,
+ * so a refresh only recomputes them from the start of the month of the
+ * previous refresh on, with a range scan of the rows added since. They are
+ * rebuilt from scratch every night by a timer on the timer server, which takes
+ * care of what has been deleted in the meantime (e.g. destroyed datasets), so
+ * that metrics requests never wait for a full rebuild, except for the very
+ * first one, before the rollups exist.
+ */
+@Stateless
+public class MetricsRollupServiceBean {
+
+    private static final Logger logger = Logger.getLogger(MetricsRollupServiceBean.class.getCanonicalName());
+
+    // refreshed at most this often, when metrics are computed:
+    static final int REFRESH_INTERVAL_SECONDS = 60;
+    // transaction-level advisory lock, so that one server refreshes at a time
+    private static final long LOCK_KEY = 5714101;
+
+    static volatile long lastRefresh = 0;
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+    @EJB
+    SystemConfig systemConfig;
+
+    /**
+     * Brings the rollups up to date, unless that was done less than a minute
+     * ago, or is being done by another request (or server), in which case the
+     * metrics are computed from the rollups as they are.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void refreshIfStale() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh < REFRESH_INTERVAL_SECONDS * 1000L) {
+            return;
+        }
+        lastRefresh = now;
+
+        Object locked = em.createNativeQuery("SELECT pg_try_advisory_xact_lock(" + LOCK_KEY + ")").getSingleResult();
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        List<Object[]> state = em.createNativeQuery(""
+                + "SELECT date_trunc('month', refreshtime - interval '1' day),\n"
+                + "refreshtime > now() - interval '" + REFRESH_INTERVAL_SECONDS + "' second,\n"
+                + "rebuildtime IS NOT NULL\n"
+                + "FROM metricsrollupstate WHERE id = 1;").getResultList();
+        if (state.isEmpty()) {
+            return;
+        }
+        Timestamp from = (Timestamp) state.get(0)[0];
+        boolean refreshed = Boolean.TRUE.equals(state.get(0)[1]);
+        boolean built = Boolean.TRUE.equals(state.get(0)[2]);
+        if (built && refreshed) {
+            // by another server
+            return;
+        }
+        refresh(built ? from : null);
+    }
+
+    /**
+     * Rebuilds the rollups from scratch, every night on the timer server.
+     */
+    @Schedule(hour = "3", minute = "15", persistent = false)
+    public void rebuildTimer() {
+        if (systemConfig.isTimerServer()) {
+            // waits for a refresh in progress
+            em.createNativeQuery("SELECT true FROM pg_advisory_xact_lock(" + LOCK_KEY + ");").getSingleResult();
+            refresh(null);
+        }
+    }
+
+    /**
+     * @param from the first day to recompute, {@code null} to rebuild all of
+     * them.
+     */
+    private void refresh(Timestamp from) {
+        long start = System.currentTimeMillis();
+        refreshDownloads(from);
+        refreshFiles(from, false);
+        refreshFiles(from, true);
+        em.createNativeQuery("UPDATE metricsrollupstate SET refreshtime = now()"
+                + (from == null ? ", rebuildtime = now()" : "") + " WHERE id = 1;").executeUpdate();
+        logger.log(Level.FINE, "Metrics rollups {0} in {1} ms", new Object[]{from == null ? "rebuilt" : "refreshed from " + from, System.currentTimeMillis() - start});
+    }
+
+    /**
+     * @param from the first day to recompute, {@code null} for all of them.
+     */
+    private void refreshDownloads(Timestamp from) {
+        Query delete = em.createNativeQuery("DELETE FROM downloadrollup"
+                + (from == null ? ";" : " WHERE day >= ?1;"));
+        Query insert = em.createNativeQuery(""
+                + "INSERT INTO downloadrollup (day, dataset_id, count)\n"
+                + "SELECT CAST(responsetime AS date), dataset_id, count(id)\n"
+                + "FROM guestbookresponse\n"
+                + (from == null ? "" : "WHERE responsetime >= ?1\n")
+                + "GROUP BY CAST(responsetime AS date), dataset_id;");
+        execute(from, delete, insert);
+    }
+
+    /**
+     * @param published by month of publication instead of creation.
+     */
+    private void refreshFiles(Timestamp from, boolean published) {
+        String date = published ? "ob.publicationdate" : "ob.createdate";
+        Query delete = em.createNativeQuery("DELETE FROM filerollup WHERE published = " + published
+                + (from == null ? ";" : " AND month >= to_char(?1, 'YYYY-MM');"));
+        Query insert = em.createNativeQuery(""
+                + "INSERT INTO filerollup (month, published, dataset_id, contenttype, count, size)\n"
+                + "SELECT to_char(" + date + ", 'YYYY-MM'), " + published + ", ob.owner_id, df.contenttype, count(df.id), coalesce(sum(df.filesize), 0)\n"
+                + "FROM datafile df JOIN dvobject ob ON ob.id = df.id\n"
+                + "WHERE " + date + " IS NOT NULL\n"
+                + (from == null ? "" : "AND " + date + " >= ?1\n")
+                + "GROUP BY to_char(" + date + ", 'YYYY-MM'), ob.owner_id, df.contenttype;");
+        execute(from, delete, insert);
+    }
+
+    private static void execute(Timestamp from, Query delete, Query insert) {
+        if (from != null) {
+            delete.setParameter(1, from);
+            insert.setParameter(1, from);
+        }
+        delete.executeUpdate();
+        insert.executeUpdate();
+    }
+}
@@ -10,7 +10,6 @@ import static edu.harvard.iq.dataverse.metrics.MetricsUtil.*;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.io.Serializable;
 import java.math.BigDecimal;
-import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -48,6 +47,8 @@ public class MetricsServiceBean implements Serializable {
     private EntityManager em;
     @EJB
     SystemConfig systemConfig;
+    @EJB
+    MetricsRollupServiceBean rollups;
 
     /** Dataverses */
 
@@ -367,11 +368,12 @@ public class MetricsServiceBean implements Serializable {
     public JsonArray filesByType(Dataverse d) {
         // SELECT DISTINCT df.contenttype, sum(df.filesize) FROM datafile df, dvObject ob where ob.id = df.id and dob.owner_id< group by df.contenttype
         // ToDo - published only?
-        Query query = em.createNativeQuery("SELECT DISTINCT df.contenttype, count(df.id), coalesce(sum(df.filesize), 0) "
-                + " FROM DataFile df, DvObject ob"
-                + " where ob.id = df.id "
-                + ((d == null) ? "" : "and ob.owner_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")\n")
-                + "group by df.contenttype;");
+        rollups.refreshIfStale();
+        Query query = em.createNativeQuery("SELECT contenttype, CAST(sum(count) AS BIGINT), sum(size) "
+                + " FROM filerollup"
+                + " where published = false "
+                + ((d == null) ? "" : "and dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")\n")
+                + "group by contenttype;");
         JsonArrayBuilder jab = Json.createArrayBuilder();
         try {
             List<Object[]> results = query.getResultList();
@@ -391,13 +393,12 @@ public class MetricsServiceBean implements Serializable {
     }
     
     public JsonArray filesByTypeTimeSeries(Dataverse d, boolean published) {
-        Query query = em.createNativeQuery("SELECT DISTINCT to_char(" + (published ? "ob.publicationdate" : "ob.createdate") + ",'YYYY-MM') as date, df.contenttype, count(df.id), coalesce(sum(df.filesize),0) "
-                + " FROM DataFile df, DvObject ob"
-                + " where ob.id = df.id "
-                + (published ? "and publicationdate is not null\n" : " and createdate is not null\n")
-                + ((d == null) ? "" : "and ob.owner_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")\n")
-                + "group by df.contenttype,\n"
-                + (published ? " to_char(ob.publicationdate,'YYYY-MM') order by  to_char(ob.publicationdate,'YYYY-MM');" : " to_char(ob.createdate,'YYYY-MM') order by  to_char(ob.createdate,'YYYY-MM');")
+        rollups.refreshIfStale();
+        Query query = em.createNativeQuery("SELECT month as date, contenttype, CAST(sum(count) AS BIGINT), sum(size) "
+                + " FROM filerollup"
+                + " where published = " + published + "\n"
+                + ((d == null) ? "" : "and dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")\n")
+                + "group by month, contenttype order by month;"
                 );
         logger.log(Level.FINE, "Metric query: {0}", query);
         List<Object[]> results = query.getResultList();
@@ -411,21 +412,21 @@ public class MetricsServiceBean implements Serializable {
     
     public JsonArray downloadsTimeSeries(Dataverse d) {
         // ToDo - published only?
+        rollups.refreshIfStale();
         Query earlyDateQuery = em.createNativeQuery(""
-                + "select responsetime from guestbookresponse\n"
-                + "ORDER BY responsetime LIMIT 1;");
+                + "select min(day) from downloadrollup;");
 
-        Timestamp earlyDateTimestamp = (Timestamp) earlyDateQuery.getSingleResult();
-        LocalDate earliestDate = earlyDateTimestamp.toLocalDateTime().toLocalDate().minusMonths(1);
+        java.sql.Date earlyDate = (java.sql.Date) earlyDateQuery.getSingleResult();
+        LocalDate earliestDate = (earlyDate == null ? LocalDate.now() : earlyDate.toLocalDate()).minusMonths(1);
         String earliest = earliestDate.format(DateTimeFormatter.ofPattern(YEAR_AND_MONTH_PATTERN));
 
         // Counts historic guestbook records without date as occurring in the month
         // prior to the first dated counts
         Query query = em.createNativeQuery(""
-                + "select  distinct COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "') as date, count(id)\n"
-                + "from guestbookresponse\n"
+                + "select COALESCE(to_char(day, 'YYYY-MM'),'" + earliest + "') as date, CAST(sum(count) AS BIGINT)\n"
+                + "from downloadrollup\n"
                 + ((d == null) ? "" : "where dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")")
-                + " group by COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "') order by  COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "');");
+                + " group by COALESCE(to_char(day, 'YYYY-MM'),'" + earliest + "') order by  COALESCE(to_char(day, 'YYYY-MM'),'" + earliest + "');");
 
         logger.log(Level.FINE, "Metric query: {0}", query);
         List<Object[]> results = query.getResultList();
@@ -440,23 +441,26 @@ public class MetricsServiceBean implements Serializable {
      */
     public long downloadsToMonth(String yyyymm, Dataverse d) throws ParseException {
         // ToDo - published only?
+        rollups.refreshIfStale();
         Query earlyDateQuery = em.createNativeQuery(""
-                + "select responsetime from guestbookresponse\n"
-               + "ORDER BY responsetime LIMIT 1;"
+                + "select min(day) from downloadrollup;"
         );
 
         try {
-            Timestamp earlyDateTimestamp = (Timestamp) earlyDateQuery.getSingleResult();
-            Date earliestDate = new Date(earlyDateTimestamp.getTime());
+            java.sql.Date earlyDate = (java.sql.Date) earlyDateQuery.getSingleResult();
+            if (earlyDate == null) {
+                throw new NoResultException();
+            }
+            Date earliestDate = new Date(earlyDate.getTime());
 
             Date dateQueried = yyyymmFormat.parse(yyyymm);
 
             if (!dateQueried.before(earliestDate)) {
                 Query query = em.createNativeQuery(""
-                        + "select count(id)\n"
-                        + "from guestbookresponse\n"
-                        + "where date_trunc('month', responsetime) <=  to_date('" + yyyymm + "','YYYY-MM')"
-                        + "or responsetime is NULL\n" // includes historic guestbook records without date
+                        + "select COALESCE(CAST(sum(count) AS BIGINT), 0)\n"
+                        + "from downloadrollup\n"
+                        + "where (date_trunc('month', day) <=  to_date('" + yyyymm + "','YYYY-MM')"
+                        + " or day is NULL)\n" // includes historic guestbook records without date
                     + ((d==null) ? ";": "AND dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ");") 
                 );
                 logger.log(Level.FINE, "Metric query: {0}", query);
@@ -474,10 +478,11 @@ public class MetricsServiceBean implements Serializable {
 
     public long downloadsPastDays(int days, Dataverse d) {
         // ToDo - published only?
+        rollups.refreshIfStale();
         Query query = em.createNativeQuery(""
-                + "select count(id)\n"
-                + "from guestbookresponse\n"
-                + "where responsetime > current_date - interval '" + days + "' day\n"
+                + "select COALESCE(CAST(sum(count) AS BIGINT), 0)\n"
+                + "from downloadrollup\n"
+                + "where day >= current_date - " + days + "\n"
                 + ((d==null) ? ";": "AND dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ");")
         );
         logger.log(Level.FINE, "Metric query: {0}", query);
@@ -24,7 +24,6 @@ import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.dataaccess.DataAccessRequest;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -85,6 +84,10 @@ public class RemoteDataFrameService {
     private static String DATAVERSE_R_FUNCTIONS = "scripts/dataverse_r_functions.R";
     private static String DATAVERSE_R_PREPROCESSING = "scripts/preprocess.R";
     
+    // files are sent to Rserve in chunks of this size, each chunk being
+    // a round trip:
+    private static final int TRANSFER_CHUNK_SIZE = 256 * 1024;
+    
     public String PID = null;
     public String tempFileNameIn = null;
     public String tempFileNameOut = null;
@@ -117,18 +120,17 @@ public class RemoteDataFrameService {
     public Map<String, String> directConvert(File originalFile, String fmt){
         
         Map<String, String> result = new HashMap<>();
+        RserveConnectionPool pool = RserveConnectionPool.getInstance();
+        RConnection connection = null;
+        boolean reuse = false;
         try {
-            RConnection connection = setupConnection();
+            // a session with the custom R code library already loaded:
+            connection = pool.borrow();
             // send the data file to the Rserve side:
-            InputStream inFile = new BufferedInputStream(new FileInputStream(originalFile));
+            InputStream inFile = new FileInputStream(originalFile);
 
             RFileOutputStream rOutFile = connection.createFile(tempFileNameIn);
-            copyWithBuffer(inFile, rOutFile, 1024);
-                        
-            // We need to initialize our R session:
-            // send custom R code library over to the Rserve and load the code:
-            String rscript = readLocalResource(DATAVERSE_R_FUNCTIONS);
-            connection.voidEval(rscript);
+            copyWithBuffer(inFile, rOutFile, TRANSFER_CHUNK_SIZE);
             
             String dataFileName = "Data." + PID + ".RData";
             
@@ -157,12 +159,13 @@ public class RemoteDataFrameService {
             
             String deleteLine = "file.remove('"+tempFileNameIn+"')";
             connection.eval(deleteLine);
- 
-            connection.close();
+            reuse = true;
         
         } catch (IOException | REXPMismatchException | RserveException e) {
             logger.severe(e.getMessage());
             result.put("RexecError", "true");
+        } finally {
+            pool.release(connection, reuse);
         }
         
         return result;
@@ -183,23 +186,21 @@ public class RemoteDataFrameService {
         logger.fine("RemoteDataFrameService: execute() starts here.");
     
         Map<String, String> result = new HashMap<>();
+        RserveConnectionPool pool = RserveConnectionPool.getInstance();
+        RConnection connection = null;
+        boolean reuse = false;
         
         try {
-            RConnection connection = setupConnection();
+            // a session with the custom R code library already loaded:
+            connection = pool.borrow();
             // send the data file to the Rserve side:
-            InputStream inFile = new BufferedInputStream(new FileInputStream(
-                                     jobRequest.getTabularDataFileName()));
+            InputStream inFile = new FileInputStream(jobRequest.getTabularDataFileName());
 
             RFileOutputStream rOutFile = connection.createFile(tempFileNameIn);
-            copyWithBuffer(inFile, rOutFile, 1024);
+            copyWithBuffer(inFile, rOutFile, TRANSFER_CHUNK_SIZE);
             
             // Rserve code starts here
             logger.fine("wrkdir="+RSERVE_TMP_DIR);
-                        
-            // We need to initialize our R session:
-            // send custom R code library over to the Rserve and load the code:
-            String rscript = readLocalResource(DATAVERSE_R_FUNCTIONS);
-            connection.voidEval(rscript);
             logger.fine("raw variable type="+Arrays.toString(jobRequest.getVariableTypes()));
             connection.assign("vartyp", new REXPInteger(jobRequest.getVariableTypes()));
         
@@ -461,9 +462,12 @@ public class RemoteDataFrameService {
             logger.fine("wbFileSize="+wbFileSize);
             
             result.putAll(buildResult(connection, dsnprfx, wbFileSize, result));
+            reuse = true;
         } catch (Exception e) {
             logger.severe(e.getMessage());
             result.put("RexecError", "true");
+        } finally {
+            pool.release(connection, reuse);
         }
         
         return result;
@@ -490,23 +494,38 @@ public class RemoteDataFrameService {
         
         String deleteLine = "file.remove('"+tempFileNameIn+"')";
         connection.eval(deleteLine);
-        connection.close();
         return result;
     }
 
-    private RConnection setupConnection() throws REXPMismatchException, RserveException {
+    /*
+     * Opens a new session for the RserveConnectionPool, with the working
+     * directory set up and the custom R code library loaded.
+     */
+    static RConnection openSession() throws RserveException {
+        return new RemoteDataFrameService().setupConnection();
+    }
+
+    private RConnection setupConnection() throws RserveException {
         // Set up an Rserve connection
         logger.fine("RSERVE_USER="+RSERVE_USER+"[default=rserve]");
         logger.fine("RSERVE_PASSWORD="+RSERVE_PWD+"[default=rserve]");
         logger.fine("RSERVE_PORT="+RSERVE_PORT+"[default=6311]");
         logger.fine("RSERVE_HOST="+RSERVE_HOST);
         RConnection connection = new RConnection(RSERVE_HOST, RSERVE_PORT);
-        connection.login(RSERVE_USER, RSERVE_PWD);
-        logger.fine(">" + connection.eval("R.version$version.string").asString() + "<");
-        // check working directories
-        // This needs to be done *before* we try to create any files
-        // there!
-        setupWorkingDirectory(connection);
+        try {
+            connection.login(RSERVE_USER, RSERVE_PWD);
+            // check working directories
+            // This needs to be done *before* we try to create any files
+            // there!
+            setupWorkingDirectory(connection);
+            // We need to initialize our R session:
+            // send custom R code library over to the Rserve and load the code:
+            String rscript = readLocalResource(DATAVERSE_R_FUNCTIONS);
+            connection.voidEval(rscript);
+        } catch (RserveException e) {
+            connection.close();
+            throw e;
+        }
         return connection;
     }
     
@@ -532,18 +551,15 @@ public class RemoteDataFrameService {
         }
 
         File preprocessedDataFile = null; 
+        RserveConnectionPool pool = RserveConnectionPool.getInstance();
+        RConnection connection = null;
+        boolean reuse = false;
         
         try {
             
-            // Set up an Rserve connection
+            // Borrow an Rserve connection
             
-            RConnection connection = new RConnection(RSERVE_HOST, RSERVE_PORT);
-
-            connection.login(RSERVE_USER, RSERVE_PWD);            
-            // check working directories
-            // This needs to be done *before* we try to create any files 
-            // there!
-            setupWorkingDirectory(connection);
+            connection = pool.borrow();
             
             // send the tabular data file to the Rserve side:
             
@@ -572,7 +588,7 @@ public class RemoteDataFrameService {
                 rOutStream.write(accessObject.getVarHeader().getBytes());
             }
 
-            copyWithBuffer(is, rOutStream, 4*8192); 
+            copyWithBuffer(is, rOutStream, TRANSFER_CHUNK_SIZE); 
             
             // Rserve code starts here
             logger.fine("wrkdir="+RSERVE_TMP_DIR);
@@ -602,11 +618,14 @@ public class RemoteDataFrameService {
             
             String deleteLine = "file.remove('"+tempFileNameOut+"')";
             connection.eval(deleteLine);
-            
-            connection.close();
+            deleteLine = "file.remove('"+tempFileNameIn+"')";
+            connection.eval(deleteLine);
+            reuse = true;
         } catch (Exception ex){
             ex.printStackTrace();
             return null ;
+        } finally {
+            pool.release(connection, reuse);
         }
 
             
@@ -614,15 +633,16 @@ public class RemoteDataFrameService {
     }
 
     private void copyWithBuffer(InputStream is, RFileOutputStream rOutStream, int bufSize) throws IOException {
-        byte[] buffer = new byte[bufSize];
-       bufSize = is.read(buffer);
-        while (bufSize != -1) {
-            rOutStream.write(buffer, 0, bufSize);
-            bufSize = is.read(buffer);
+        // each write is sent to Rserve as is, so the buffer is filled
+        // completely (but for the last one) rather than sending what a
+        // single read returned:
+        try (InputStream in = is; RFileOutputStream out = rOutStream) {
+            byte[] buffer = new byte[bufSize];
+            int count;
+            while ((count = IOUtils.read(in, buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
         }
-        
-        is.close();
-        rOutStream.close();
     }
     
     // utilitiy methods:
@@ -0,0 +1,226 @@
+package edu.harvard.iq.dataverse.rserve;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import org.rosuda.REngine.Rserve.RConnection;
+import org.rosuda.REngine.Rserve.RserveException;
+
+/**
+ * Keeps Rserve sessions open between format conversions, so that a
+ * conversion does not have to connect, log in and load the Dataverse R
+ * functions before it can start.
+ *
+ * At most {@code dataverse.rserve.pool-size} sessions are open at a time;
+ * borrowing one waits for another to be returned for up to
+ * {@code dataverse.rserve.pool-borrow-timeout} seconds. An idle session is
+ * checked with a trivial eval before it is lent again, and closed once it
+ * has been idle for {@code dataverse.rserve.pool-max-idle} seconds.
+ *
+ * A returned session is reset to what it was when it was opened: whatever
+ * the conversion defined in the R workspace is removed, the functions loaded
+ * when the session was opened are kept.
+ */
+public class RserveConnectionPool {
+
+    private static final Logger logger = Logger.getLogger(RserveConnectionPool.class.getCanonicalName());
+
+    static final int DEFAULT_POOL_SIZE = 4;
+    static final int DEFAULT_BORROW_TIMEOUT = 60;
+    static final int DEFAULT_MAX_IDLE = 300;
+
+    // run once a session is opened, and when it is returned:
+    static final String SAVE_WORKSPACE = ".dataverse.workspace <- ls(all.names = TRUE)";
+    static final String RESET_WORKSPACE = "rm(list = setdiff(ls(all.names = TRUE), c(.dataverse.workspace, '.dataverse.workspace')))";
+    static final String PING = "NULL";
+
+    interface SessionFactory {
+        RConnection open() throws RserveException;
+    }
+
+    private static class IdleSession {
+
+        final RConnection connection;
+        final long since = System.currentTimeMillis();
+
+        IdleSession(RConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private static RserveConnectionPool instance;
+
+    private final int size;
+    private final long borrowTimeoutMillis;
+    private final long maxIdleMillis;
+    private final SessionFactory factory;
+    private final Semaphore permits;
+    // the most recently returned session first:
+    private final LinkedBlockingDeque<IdleSession> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong failedChecks = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * @param size the maximum number of open sessions; 0 not to pool them, and
+     * to open and close a session for each conversion.
+     */
+    RserveConnectionPool(int size, long borrowTimeoutMillis, long maxIdleMillis, SessionFactory factory) {
+        this.size = Math.max(0, size);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.factory = factory;
+        this.permits = new Semaphore(this.size, true);
+    }
+
+    public static synchronized RserveConnectionPool getInstance() {
+        if (instance == null) {
+            int size = JvmSettings.RSERVE_POOL_SIZE.lookupOptional(Integer.class)
+                    .orElse(JvmSettings.RSERVE_MAX_CONVERSIONS.lookupOptional(Integer.class).orElse(DEFAULT_POOL_SIZE));
+            int borrowTimeout = JvmSettings.RSERVE_POOL_BORROW_TIMEOUT.lookupOptional(Integer.class).orElse(DEFAULT_BORROW_TIMEOUT);
+            int maxIdle = JvmSettings.RSERVE_POOL_MAX_IDLE.lookupOptional(Integer.class).orElse(DEFAULT_MAX_IDLE);
+            instance = new RserveConnectionPool(size, TimeUnit.SECONDS.toMillis(borrowTimeout),
+                    TimeUnit.SECONDS.toMillis(maxIdle), RemoteDataFrameService::openSession);
+        }
+        return instance;
+    }
+
+    /**
+     * Lends an idle session, or opens a new one if there is none and fewer
+     * than the maximum are open.
+     *
+     * @return a session, to be given back with {@link #release}.
+     * @throws RserveException if no session could be opened, or none was
+     * returned within the borrow timeout.
+     */
+    public RConnection borrow() throws RserveException {
+        if (size == 0) {
+            return open();
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timedOut.incrementAndGet();
+                throw new RserveException(null, "Timed out waiting for one of the " + size + " Rserve sessions");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RserveException(null, "Interrupted waiting for an Rserve session");
+        }
+
+        try {
+            closeExpired();
+            IdleSession session;
+            while ((session = idle.pollFirst()) != null) {
+                if (isHealthy(session.connection)) {
+                    reused.incrementAndGet();
+                    return session.connection;
+                }
+                failedChecks.incrementAndGet();
+                close(session.connection);
+            }
+            return open();
+        } catch (RserveException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gives back a session lent by {@link #borrow}.
+     *
+     * @param reuse false if the session failed, or may be left in a state
+     * that cannot be reset; it is closed then.
+     */
+    public void release(RConnection connection, boolean reuse) {
+        if (connection == null) {
+            return;
+        }
+        if (size == 0) {
+            close(connection);
+            return;
+        }
+        try {
+            if (reuse && connection.isConnected()) {
+                try {
+                    connection.voidEval(RESET_WORKSPACE);
+                    idle.offerFirst(new IdleSession(connection));
+                    return;
+                } catch (RserveException ex) {
+                    logger.warning("Could not reset Rserve session, closing it: " + ex.getMessage());
+                }
+            }
+            close(connection);
+        } finally {
+            permits.release();
+            closeExpired();
+        }
+    }
+
+    private RConnection open() throws RserveException {
+        RConnection connection = factory.open();
+        try {
+            connection.voidEval(SAVE_WORKSPACE);
+        } catch (RserveException ex) {
+            connection.close();
+            throw ex;
+        }
+        opened.incrementAndGet();
+        return connection;
+    }
+
+    private boolean isHealthy(RConnection connection) {
+        if (!connection.isConnected()) {
+            return false;
+        }
+        try {
+            connection.voidEval(PING);
+            return true;
+        } catch (RserveException ex) {
+            logger.fine("Idle Rserve session failed the check: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /*
+     * Closes the sessions idle for longer than the maximum, the least
+     * recently returned being at the end.
+     */
+    private void closeExpired() {
+        long now = System.currentTimeMillis();
+        for (Iterator<IdleSession> it = idle.descendingIterator(); it.hasNext();) {
+            IdleSession session = it.next();
+            if (now - session.since <= maxIdleMillis) {
+                break;
+            }
+            if (idle.removeLastOccurrence(session)) {
+                close(session.connection);
+            }
+        }
+    }
+
+    private void close(RConnection connection) {
+        closed.incrementAndGet();
+        connection.close();
+    }
+
+    public JsonObjectBuilder getStatus() {
+        return Json.createObjectBuilder()
+                .add("poolSize", size)
+                .add("idle", idle.size())
+                .add("borrowed", size - permits.availablePermits())
+                .add("opened", opened.get())
+                .add("reused", reused.get())
+                .add("closed", closed.get())
+                .add("failedChecks", failedChecks.get())
+                .add("timedOut", timedOut.get());
+    }
+}
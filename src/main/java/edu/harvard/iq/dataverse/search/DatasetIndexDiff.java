@@ -0,0 +1,82 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of an incremental reindex of one dataset: which of the file
+ * documents already in Solr can stay as they are, which have to be sent again
+ * and which are no longer wanted.
+ *
+ * @see IndexServiceBean#indexDataset(edu.harvard.iq.dataverse.Dataset, boolean)
+ */
+class DatasetIndexDiff {
+
+    private final Map<String, String> fingerprintsInSolr;
+    private final Set<String> kept = new HashSet<>();
+    private final Set<Long> changedFileIds = new HashSet<>();
+    private int unchangedCount = 0;
+
+    /**
+     * @param fingerprintsInSolr the file documents of the dataset found in
+     * Solr, by id, with their fingerprint (or {@code null} for documents
+     * indexed before there were fingerprints).
+     */
+    DatasetIndexDiff(Map<String, String> fingerprintsInSolr) {
+        this.fingerprintsInSolr = fingerprintsInSolr;
+    }
+
+    /**
+     * @return {@code true} if Solr already has this document, with this
+     * fingerprint. The document is then kept.
+     */
+    boolean isUnchanged(String solrId, String fingerprint) {
+        if (fingerprint.equals(fingerprintsInSolr.get(solrId))) {
+            kept.add(solrId);
+            unchangedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a document that is (re)sent to Solr.
+     */
+    void sent(String solrId, Long fileId) {
+        kept.add(solrId);
+        changedFileIds.add(fileId);
+    }
+
+    /**
+     * @return ids of the files whose documents were sent.
+     */
+    Set<Long> getChangedFileIds() {
+        return changedFileIds;
+    }
+
+    int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * @return ids of the documents in Solr that were neither kept nor sent
+     * again, e.g. those of files removed from the dataset.
+     */
+    List<String> getStaleSolrIds() {
+        List<String> stale = new ArrayList<>();
+        for (String solrId : fingerprintsInSolr.keySet()) {
+            if (!kept.contains(solrId)) {
+                stale.add(solrId);
+            }
+        }
+        return stale;
+    }
+
+    @Override
+    public String toString() {
+        return "filesSent: " + changedFileIds.size() + ", unchanged: " + unchangedCount + ", stale: " + getStaleSolrIds().size();
+    }
+}
@@ -0,0 +1,117 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.util.BitSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The dataverses and datasets of the installation, with their owners and the
+ * role assignments on them, loaded at once for indexing all permissions.
+ * Who may discover an object is then found in memory, instead of with a
+ * query per ancestor of every object, as in
+ * {@link SearchPermissionsServiceBean#findDvObjectPerms(edu.harvard.iq.dataverse.DvObject)}.
+ *
+ * Filled by a single thread, then read by many: the permissions found for
+ * an object are remembered, so each ancestor is only looked at once per
+ * required permission.
+ *
+ * @see SearchPermissionsServiceBean#loadDiscoverabilityTree()
+ */
+public class DiscoverabilityTree {
+
+    private static final class Grant {
+
+        final long permissionBits;
+        final String indexableString;
+
+        Grant(long permissionBits, String indexableString) {
+            this.permissionBits = permissionBits;
+            this.indexableString = indexableString;
+        }
+    }
+
+    private final Map<Long, Long> owners = new HashMap<>();
+    private final Set<Long> permissionRoots = new HashSet<>();
+    private final Set<Long> released = new HashSet<>();
+    private final List<Long> dataverseIds = new ArrayList<>();
+    private final Map<Long, List<Grant>> grants = new HashMap<>();
+    private final Map<Permission, Map<Long, List<String>>> found = new EnumMap<>(Permission.class);
+
+    public DiscoverabilityTree() {
+        found.put(Permission.ViewUnpublishedDataverse, new ConcurrentHashMap<>());
+        found.put(Permission.ViewUnpublishedDataset, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param ownerId id of the owner, {@code null} for the root dataverse.
+     */
+    public void addDataverse(long id, Long ownerId, boolean permissionRoot, boolean isReleased) {
+        owners.put(id, ownerId);
+        dataverseIds.add(id);
+        if (permissionRoot) {
+            permissionRoots.add(id);
+        }
+        if (isReleased) {
+            released.add(id);
+        }
+    }
+
+    public void addDataset(long id, Long ownerId) {
+        owners.put(id, ownerId);
+    }
+
+    /**
+     * @param indexableString the user or group, as indexed in Solr.
+     */
+    public void addAssignment(long definitionPointId, long permissionBits, String indexableString) {
+        grants.computeIfAbsent(definitionPointId, k -> new ArrayList<>()).add(new Grant(permissionBits, indexableString));
+    }
+
+    public List<Long> getDataverseIds() {
+        return dataverseIds;
+    }
+
+    public boolean isReleased(long dataverseId) {
+        return released.contains(dataverseId);
+    }
+
+    /**
+     * @param required {@link Permission#ViewUnpublishedDataverse} for
+     * dataverses, {@link Permission#ViewUnpublishedDataset} for datasets.
+     * @return the users and groups that have a role with {@code required} on
+     * the object or on one of its owners, up to the first permission root.
+     * Does not include the public group.
+     */
+    public List<String> findPerms(long id, Permission required) {
+        Map<Long, List<String>> known = found.get(required);
+        if (known == null) {
+            throw new IllegalArgumentException("Not a search permission: " + required);
+        }
+        List<String> perms = known.get(id);
+        if (perms != null) {
+            return perms;
+        }
+        Set<String> collected = new LinkedHashSet<>();
+        for (Grant grant : grants.getOrDefault(id, Collections.emptyList())) {
+            if (new BitSet(grant.permissionBits).isSet(required.ordinal())) {
+                collected.add(grant.indexableString);
+            }
+        }
+        Long ownerId = owners.get(id);
+        if (ownerId != null && !permissionRoots.contains(id)) {
+            collected.addAll(findPerms(ownerId, required));
+        }
+        perms = Collections.unmodifiableList(new ArrayList<>(collected));
+        known.putIfAbsent(id, perms);
+        return perms;
+    }
+}
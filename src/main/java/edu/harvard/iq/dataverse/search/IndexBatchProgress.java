@@ -0,0 +1,167 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Progress of a running (or the last finished) "index all" job on this server.
+ * Updated concurrently by the indexing workers, read by the API.
+ *
+ * @see IndexBatchServiceBean#indexAllOrSubset(long, long, boolean)
+ * @see IndexBatchServiceBean#indexAllPermissions()
+ */
+public class IndexBatchProgress {
+
+    private final long numPartitions;
+    private final long partitionId;
+    private final int workers;
+    private final long startTime = System.currentTimeMillis();
+    private volatile long endTime = 0;
+
+    private volatile int dataverseCount;
+    private volatile int datasetCount;
+    private final AtomicInteger dataversesIndexed = new AtomicInteger();
+    private final AtomicInteger dataverseFailures = new AtomicInteger();
+    private final AtomicInteger datasetsIndexed = new AtomicInteger();
+    private final AtomicInteger datasetFailures = new AtomicInteger();
+
+    public IndexBatchProgress(long numPartitions, long partitionId, int workers) {
+        this.numPartitions = numPartitions;
+        this.partitionId = partitionId;
+        this.workers = workers;
+    }
+
+    public void setDataverseCount(int dataverseCount) {
+        this.dataverseCount = dataverseCount;
+    }
+
+    public void setDatasetCount(int datasetCount) {
+        this.datasetCount = datasetCount;
+    }
+
+    public int dataverseIndexed() {
+        return dataversesIndexed.incrementAndGet();
+    }
+
+    public int dataverseFailed() {
+        dataverseFailures.incrementAndGet();
+        return dataversesIndexed.incrementAndGet();
+    }
+
+    public int datasetIndexed() {
+        return datasetsIndexed.incrementAndGet();
+    }
+
+    public int datasetFailed() {
+        datasetFailures.incrementAndGet();
+        return datasetsIndexed.incrementAndGet();
+    }
+
+    public int dataversesIndexed(int count) {
+        return dataversesIndexed.addAndGet(count);
+    }
+
+    public int dataversesFailed(int count) {
+        dataverseFailures.addAndGet(count);
+        return dataversesIndexed.addAndGet(count);
+    }
+
+    public int datasetsIndexed(int count) {
+        return datasetsIndexed.addAndGet(count);
+    }
+
+    public int datasetsFailed(int count) {
+        datasetFailures.addAndGet(count);
+        return datasetsIndexed.addAndGet(count);
+    }
+
+    /**
+     * Datasets counted as indexed could not be sent to Solr after all, see
+     * {@link SolrUpdateBatch}.
+     */
+    public void datasetsNotSent(int count) {
+        datasetFailures.addAndGet(count);
+    }
+
+    public void finish() {
+        endTime = System.currentTimeMillis();
+    }
+
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+
+    public int getDataverseCount() {
+        return dataverseCount;
+    }
+
+    public int getDatasetCount() {
+        return datasetCount;
+    }
+
+    /**
+     * @return Number of dataverses processed so far, including failures.
+     */
+    public int getDataversesIndexed() {
+        return dataversesIndexed.get();
+    }
+
+    public int getDataverseFailures() {
+        return dataverseFailures.get();
+    }
+
+    /**
+     * @return Number of datasets processed so far, including failures.
+     */
+    public int getDatasetsIndexed() {
+        return datasetsIndexed.get();
+    }
+
+    public int getDatasetFailures() {
+        return datasetFailures.get();
+    }
+
+    public long getElapsedMillis() {
+        return (isFinished() ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * @return Datasets processed per minute since the job started.
+     */
+    public double getDatasetsPerMinute() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? getDatasetsIndexed() * 60000.0 / elapsed : 0;
+    }
+
+    public JsonObjectBuilder toJson() {
+        JsonObjectBuilder job = Json.createObjectBuilder()
+                .add("numPartitions", numPartitions)
+                .add("partitionId", partitionId)
+                .add("workers", workers)
+                .add("finished", isFinished())
+                .add("elapsedMillis", getElapsedMillis())
+                .add("dataverseCount", getDataverseCount())
+                .add("dataversesIndexed", getDataversesIndexed())
+                .add("dataverseFailures", getDataverseFailures())
+                .add("datasetCount", getDatasetCount())
+                .add("datasetsIndexed", getDatasetsIndexed())
+                .add("datasetFailures", getDatasetFailures())
+                .add("datasetsPerMinute", Math.round(getDatasetsPerMinute()));
+        long remaining = getDatasetCount() - getDatasetsIndexed();
+        double perMinute = getDatasetsPerMinute();
+        if (!isFinished() && perMinute > 0) {
+            job.add("estimatedMinutesRemaining", Math.round(remaining / perMinute));
+        }
+        return job;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexBatchProgress{" + "partition=" + partitionId + "/" + numPartitions
+                + ", dataverses=" + getDataversesIndexed() + "/" + getDataverseCount()
+                + ", datasets=" + getDatasetsIndexed() + "/" + getDatasetCount()
+                + ", failures=" + (getDataverseFailures() + getDatasetFailures())
+                + ", datasetsPerMinute=" + Math.round(getDatasetsPerMinute()) + '}';
+    }
+}
@@ -5,19 +5,29 @@ import edu.harvard.iq.dataverse.DatasetServiceBean;
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
 import edu.harvard.iq.dataverse.DvObjectServiceBean;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Resource;
 import javax.ejb.AsyncResult;
 import javax.ejb.Asynchronous;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.inject.Named;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
@@ -47,7 +57,22 @@ public class IndexBatchServiceBean {
     @EJB
     DvObjectServiceBean dvObjectService;
     @EJB
+    SearchPermissionsServiceBean searchPermissionsService;
+    @EJB
     SystemConfig systemConfig;
+    @Resource
+    ManagedThreadFactory threadFactory;
+    
+    private static final int DEFAULT_INDEX_ALL_WORKERS = 4;
+    
+    private static volatile IndexBatchProgress currentIndexAllProgress;
+
+    /**
+     * Number of datasets whose permissions are indexed in one transaction.
+     */
+    private static final int PERMISSION_INDEX_CHUNK_SIZE = 50;
+
+    private static volatile IndexBatchProgress currentPermissionIndexProgress;
     
     @Asynchronous
     public Future<JsonObjectBuilder> indexStatus() {
@@ -82,28 +107,48 @@ public class IndexBatchServiceBean {
       
         return new AsyncResult<>(data);
     }
+    /**
+     * Number of orphan documents deleted from Solr at once by
+     * {@link #clearOrphans()}.
+     */
+    private static final int ORPHAN_DELETE_CHUNK_SIZE = 1000;
+
     @Asynchronous
     public Future<JsonObjectBuilder> clearOrphans() {
         JsonObjectBuilder response = Json.createObjectBuilder();
+        // the orphans are deleted as they are found, a chunk at a time
         List<String> solrIds = new ArrayList<>();
+        List<String> results = new ArrayList<>();
+        int[] found = {0};
+        Consumer<String> orphans = solrId -> {
+            solrIds.add(solrId);
+            found[0]++;
+            if (solrIds.size() >= ORPHAN_DELETE_CHUNK_SIZE) {
+                results.add(solrIndexService.deleteMultipleSolrIds(new ArrayList<>(solrIds)).getMessage());
+                solrIds.clear();
+            }
+        };
         logger.info("Beginning clearOrphans() to check for orphan Solr documents.");
         try {     
             logger.info("checking for orphans type dataverse");
-            solrIds.addAll(indexService.findDataversesInSolrOnly());
+            indexService.findDvObjectsInSolrOnly(SearchConstants.DATAVERSES, orphans);
             logger.info("checking for orphans type dataset");
-            solrIds.addAll(indexService.findDatasetsInSolrOnly());
+            indexService.findDvObjectsInSolrOnly(SearchConstants.DATASETS, orphans);
             logger.info("checking for orphans file");
-            solrIds.addAll(indexService.findFilesInSolrOnly());
+            indexService.findDvObjectsInSolrOnly(SearchConstants.FILES, orphans);
             logger.info("checking for orphan permissions");
-            solrIds.addAll(indexService.findPermissionsInSolrOnly());
+            indexService.findPermissionsInSolrOnly(orphans);
         } catch (SearchException e) {
             logger.info("SearchException in clearOrphans: " + e.getMessage());
             response.add("response from clearOrphans","SearchException: " + e.getMessage() );
         } 
-        logger.info("found " + solrIds.size()+ " orphan documents");
-        IndexResponse resultOfSolrDeletionAttempt = solrIndexService.deleteMultipleSolrIds(solrIds);
-        logger.info(resultOfSolrDeletionAttempt.getMessage());
-        response.add("resultOfSolrDeletionAttempt", resultOfSolrDeletionAttempt.getMessage());
+        logger.info("found " + found[0] + " orphan documents");
+        if (!solrIds.isEmpty() || results.isEmpty()) {
+            results.add(solrIndexService.deleteMultipleSolrIds(solrIds).getMessage());
+        }
+        String resultOfSolrDeletionAttempt = String.join("; ", results);
+        logger.info(resultOfSolrDeletionAttempt);
+        response.add("resultOfSolrDeletionAttempt", resultOfSolrDeletionAttempt);
         
         return new AsyncResult<>(response);
     }
@@ -123,7 +168,7 @@ public class IndexBatchServiceBean {
         JsonObjectBuilder previewOfWorkload = Json.createObjectBuilder();
         JsonObjectBuilder dvContainerIds = Json.createObjectBuilder();
         
-        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed);
+        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(numPartitions, partitionId, skipIndexed);
         
         JsonArrayBuilder dataverseIdsJson = Json.createArrayBuilder();
         //List<Dataverse> dataverses = dataverseService.findAllOrSubset(numPartitions, partitionId, skipIndexed);
@@ -148,7 +193,6 @@ public class IndexBatchServiceBean {
     }
 
     public Future<String> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed) {
-        long indexAllTimeBegin = System.currentTimeMillis();
         String status;
 
         String resultOfClearingIndexTimes;
@@ -179,55 +223,243 @@ public class IndexBatchServiceBean {
             resultOfClearingIndexTimes = "Solr index was not cleared before indexing.";
         }
 
-        // List<Dataverse> dataverses = dataverseService.findAllOrSubset(numPartitions, partitionId, skipIndexed);
-        // Note: no support for "partitions" in this experimental branch. 
-        // The method below returns the ids of all the unindexed dataverses.
-        List<Long> dataverseIds = dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed);
-        
-        int dataverseIndexCount = 0;
-        int dataverseFailureCount = 0;
-        //for (Dataverse dataverse : dataverses) {
+        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(numPartitions, partitionId, skipIndexed);
+        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(numPartitions, partitionId, skipIndexed);
+
+        int workers = getIndexAllWorkers();
+        IndexBatchProgress progress = new IndexBatchProgress(numPartitions, partitionId, workers);
+        progress.setDataverseCount(dataverseIds.size());
+        progress.setDatasetCount(datasetIds.size());
+        currentIndexAllProgress = progress;
+        logger.info("indexing " + dataverseIds.size() + " dataverses and " + datasetIds.size() + " datasets of partition "
+                + partitionId + " (of " + numPartitions + ") using " + workers + " worker(s)");
+
+        /**
+         * Dataverses are few and cheap to index, so they go one after another
+         * and before the datasets, as before.
+         */
         for (Long id : dataverseIds) {
+            int dataverseIndexCount = progress.getDataversesIndexed() + 1;
             try {
-                dataverseIndexCount++;
                 Dataverse dataverse = dataverseService.find(id);
                 logger.info("indexing dataverse " + dataverseIndexCount + " of " + dataverseIds.size() + " (id=" + id + ", persistentId=" + dataverse.getAlias() + ")");
-                Future<String> result = indexService.indexDataverseInNewTransaction(dataverse);
-                dataverse = null;
+                indexService.indexDataverseInNewTransaction(dataverse);
+                progress.dataverseIndexed();
             } catch (Exception e) {
                 //We want to keep running even after an exception so throw some more info into the log
-                dataverseFailureCount++;
+                progress.dataverseFailed();
                 logger.info("FAILURE indexing dataverse " + dataverseIndexCount + " of " + dataverseIds.size() + " (id=" + id + ") Exception info: " + e.getMessage());
             }
         }
 
-        int datasetIndexCount = 0;
-        int datasetFailureCount = 0;
-        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(skipIndexed);
-        for (Long id : datasetIds) {
-            try {
-                datasetIndexCount++;
-                logger.info("indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ")");
-                Future<String> result = indexService.indexDatasetInNewTransaction(id);
-            } catch (Exception e) {
-                //We want to keep running even after an exception so throw some more info into the log
-                datasetFailureCount++;
-                logger.info("FAILURE indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ") Exception info: " + e.getMessage());
-            }
-        }
+        indexDatasetsInParallel(datasetIds, workers, progress);
         logger.info("done iterating through all datasets");
+        progress.finish();
 
-        long indexAllTimeEnd = System.currentTimeMillis();
-        String timeElapsed = "index all took " + (indexAllTimeEnd - indexAllTimeBegin) + " milliseconds";
+        String timeElapsed = "index all took " + progress.getElapsedMillis() + " milliseconds";
         logger.info(timeElapsed);
+        int datasetFailureCount = progress.getDatasetFailures();
+        int dataverseFailureCount = progress.getDataverseFailures();
         if (datasetFailureCount + dataverseFailureCount > 0){
             String failureMessage = "There were index failures. " + dataverseFailureCount + " dataverse(s) and " + datasetFailureCount + " dataset(s) failed to index. Please check the log for more information.";
             logger.info(failureMessage);            
         }
-        status = dataverseIndexCount + " dataverses and " + datasetIndexCount + " datasets indexed. " + timeElapsed + ". " + resultOfClearingIndexTimes + "\n";
+        status = progress.getDataversesIndexed() + " dataverses and " + progress.getDatasetsIndexed() + " datasets indexed. " + timeElapsed + ". " + resultOfClearingIndexTimes + "\n";
+        logger.info(status);
+        return new AsyncResult<>(status);
+    }
+
+    /**
+     * Indexes the datasets with a fixed number of workers, each running
+     * {@link IndexServiceBean#indexDatasetInNewTransaction(java.lang.Long)}
+     * for the next dataset id in line until there are none left. The biggest
+     * datasets are handed out first, so that no worker is left alone with a
+     * huge dataset at the very end. Each worker sends its documents to Solr in
+     * a {@link SolrUpdateBatch}.
+     *
+     * @param datasetIds ids of the datasets, with the fewest files first.
+     * @param workers number of datasets to index concurrently.
+     * @param progress updated as datasets are done.
+     */
+    private void indexDatasetsInParallel(List<Long> datasetIds, int workers, IndexBatchProgress progress) {
+        Deque<Long> queue = new ConcurrentLinkedDeque<>(datasetIds);
+        int datasetCount = datasetIds.size();
+        long progressInterval = Math.max(1, Math.min(1000, datasetCount / 100));
+
+        Runnable worker = () -> {
+            SolrUpdateBatch batch = indexService.beginBatch();
+            try {
+                Long id;
+                while ((id = queue.pollLast()) != null) {
+                    try {
+                        indexService.indexDatasetInNewTransaction(id);
+                        int done = progress.datasetIndexed();
+                        logger.fine("indexed dataset " + done + " of " + datasetCount + " (id=" + id + ")");
+                        if (done % progressInterval == 0) {
+                            logger.info("index all progress: " + progress);
+                        }
+                    } catch (Exception e) {
+                        //We want to keep running even after an exception so throw some more info into the log
+                        int done = progress.datasetFailed();
+                        logger.info("FAILURE indexing dataset " + done + " of " + datasetCount + " (id=" + id + ") Exception info: " + e.getMessage());
+                    }
+                }
+            } finally {
+                Set<Long> failed = indexService.endBatch(batch);
+                if (!failed.isEmpty()) {
+                    progress.datasetsNotSent(failed.size());
+                    logger.info("FAILURE sending " + failed.size() + " indexed datasets to Solr, their index times were cleared: " + failed);
+                }
+            }
+        };
+
+        runWorkers(worker, workers, queue, "index all");
+    }
+
+    /**
+     * Runs {@code worker} on {@code workers} threads at once, until all are
+     * done with the {@code queue}.
+     */
+    private void runWorkers(Runnable worker, int workers, Deque<Long> queue, String jobName) {
+        if (workers <= 1) {
+            worker.run();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                running.add(executor.submit(worker));
+            }
+            for (Future<?> f : running) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warning(jobName + " was interrupted, " + queue.size() + " datasets were not indexed");
+            queue.clear();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            logger.log(Level.WARNING, jobName + " worker failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Indexes the permissions of all dataverses, datasets and files.
+     *
+     * The dataverses, datasets and role assignments are loaded at once into a
+     * {@link DiscoverabilityTree}, so that who may discover an object is not
+     * looked up in the database again for each object. The datasets are then
+     * handed out in chunks to as many workers as "index all" uses, each one
+     * loading its datasets in a transaction of its own and sending the
+     * documents to Solr in a {@link SolrUpdateBatch}.
+     *
+     * @see #getPermissionIndexProgress()
+     */
+    @Asynchronous
+    public Future<String> indexAllPermissions() {
+        int workers = getIndexAllWorkers();
+        IndexBatchProgress progress = new IndexBatchProgress(1, 0, workers);
+        currentPermissionIndexProgress = progress;
+
+        DiscoverabilityTree tree = searchPermissionsService.loadDiscoverabilityTree();
+        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(false);
+        int dataverseCount = tree.getDataverseIds().size();
+        progress.setDataverseCount(dataverseCount);
+        progress.setDatasetCount(datasetIds.size());
+        logger.info("indexing the permissions of " + dataverseCount + " dataverses and " + datasetIds.size()
+                + " datasets using " + workers + " worker(s)");
+
+        SolrUpdateBatch dataverseBatch = indexService.beginBatch();
+        try {
+            solrIndexService.indexDataversePermissionsInNewTransaction(tree);
+            progress.dataversesIndexed(dataverseCount);
+        } catch (Exception e) {
+            progress.dataversesFailed(dataverseCount);
+            logger.info("FAILURE indexing the permissions of dataverses. Exception info: " + e.getMessage());
+        } finally {
+            if (!indexService.endBatch(dataverseBatch).isEmpty()) {
+                logger.info("FAILURE sending the permissions of dataverses to Solr");
+            }
+        }
+
+        Deque<Long> queue = new ConcurrentLinkedDeque<>(datasetIds);
+        int datasetCount = datasetIds.size();
+        long progressInterval = Math.max(1, Math.min(1000, datasetCount / 100));
+
+        Runnable worker = () -> {
+            SolrUpdateBatch batch = indexService.beginBatch();
+            try {
+                List<Long> chunk;
+                while (!(chunk = pollLast(queue, PERMISSION_INDEX_CHUNK_SIZE)).isEmpty()) {
+                    int done;
+                    try {
+                        solrIndexService.indexDatasetPermissionsInNewTransaction(chunk, tree);
+                        done = progress.datasetsIndexed(chunk.size());
+                    } catch (Exception e) {
+                        done = progress.datasetsFailed(chunk.size());
+                        logger.info("FAILURE indexing the permissions of datasets " + chunk + ". Exception info: " + e.getMessage());
+                    }
+                    if (done / progressInterval != (done - chunk.size()) / progressInterval) {
+                        logger.info("permission indexing progress: " + progress);
+                    }
+                }
+            } finally {
+                Set<Long> failed = indexService.endBatch(batch);
+                if (!failed.isEmpty()) {
+                    progress.datasetsNotSent(failed.size());
+                    logger.info("FAILURE sending the permissions of " + failed.size() + " datasets to Solr, their index times were cleared: " + failed);
+                }
+            }
+        };
+        runWorkers(worker, workers, queue, "permission indexing");
+        progress.finish();
+
+        String status = "indexed the permissions of " + progress.getDataversesIndexed() + " dataverses and "
+                + progress.getDatasetsIndexed() + " datasets in " + progress.getElapsedMillis() + " milliseconds, with "
+                + (progress.getDataverseFailures() + progress.getDatasetFailures()) + " failures";
         logger.info(status);
         return new AsyncResult<>(status);
     }
+
+    /**
+     * @return up to {@code max} ids from the end of {@code queue}.
+     */
+    private static List<Long> pollLast(Deque<Long> queue, int max) {
+        List<Long> ids = new ArrayList<>(max);
+        Long id;
+        while (ids.size() < max && (id = queue.pollLast()) != null) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * @return number of datasets to index concurrently during "index all", see
+     * the JVM option {@code dataverse.solr.index-all.workers}.
+     */
+    int getIndexAllWorkers() {
+        int workers = JvmSettings.SOLR_INDEX_ALL_WORKERS.lookupOptional(Integer.class).orElse(DEFAULT_INDEX_ALL_WORKERS);
+        return Math.max(1, workers);
+    }
+
+    /**
+     * @return progress of the running or last "index all" on this server, or
+     * {@code null} if there was none since startup.
+     */
+    public IndexBatchProgress getIndexAllProgress() {
+        return currentIndexAllProgress;
+    }
+
+    /**
+     * @return progress of the running or last indexing of all permissions on
+     * this server, or {@code null} if there was none since startup.
+     */
+    public IndexBatchProgress getPermissionIndexProgress() {
+        return currentPermissionIndexProgress;
+    }
         
     @Asynchronous
     public void indexDataverseRecursively(Dataverse dataverse) {
@@ -0,0 +1,143 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Compares the objects in the database with the documents in Solr, walking
+ * both in ascending order of id at the same time (a merge join), so that
+ * neither side has to be held in memory. The differences are passed on as
+ * they are found.
+ *
+ * @see IndexServiceBean#findDvObjectsInSolrOnly(String, Consumer)
+ */
+public class IndexReconciler {
+
+    /**
+     * A Solr document, with the id of the object it was made from.
+     */
+    public static final class SolrEntry {
+
+        final String solrId;
+        final long entityId;
+
+        public SolrEntry(String solrId, long entityId) {
+            this.solrId = solrId;
+            this.entityId = entityId;
+        }
+    }
+
+    /**
+     * One page of a sorted stream; an empty page is the end of the stream.
+     */
+    @FunctionalInterface
+    public interface Pager<T> {
+
+        List<T> nextPage() throws SearchException;
+    }
+
+    /**
+     * Thrown from the iterators of {@link #paged(Pager)}, and unwrapped by
+     * {@link #reconcile(Iterator, Iterator, Consumer)}.
+     */
+    private static final class PageException extends RuntimeException {
+
+        PageException(SearchException cause) {
+            super(cause);
+        }
+    }
+
+    private IndexReconciler() {
+    }
+
+    /**
+     * @return an iterator getting the pages of {@code pager} one at a time.
+     */
+    public static <T> Iterator<T> paged(Pager<T> pager) {
+        return new Iterator<T>() {
+
+            Iterator<T> page = Collections.emptyIterator();
+            boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !done) {
+                    List<T> next;
+                    try {
+                        next = pager.nextPage();
+                    } catch (SearchException ex) {
+                        throw new PageException(ex);
+                    }
+                    done = next.isEmpty();
+                    page = next.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Both streams must be sorted by id; an object may have several
+     * documents (e.g. the draft and the published version of a dataset).
+     *
+     * Only the orphans are looked for: the objects that are missing from
+     * Solr, or stale in it, are found from their index times in the database
+     * (see {@link IndexServiceBean#findStaleOrMissingDatasets()}), which does
+     * not need Solr at all. The database ids left once the documents have
+     * run out are therefore not read.
+     *
+     * @param databaseIds the ids of the objects in the database.
+     * @param solrEntries the documents in Solr.
+     * @param solrOnly gets the Solr id of the documents whose object is not
+     * in the database (orphans).
+     * @return the number of documents compared.
+     * @throws IllegalStateException if a stream is not sorted.
+     */
+    public static long reconcile(Iterator<Long> databaseIds, Iterator<SolrEntry> solrEntries,
+            Consumer<String> solrOnly) throws SearchException {
+        try {
+            long compared = 0;
+            Long dbId = next(databaseIds, null);
+            SolrEntry entry = null;
+            while (solrEntries.hasNext()) {
+                SolrEntry previous = entry;
+                entry = solrEntries.next();
+                compared++;
+                if (previous != null && entry.entityId < previous.entityId) {
+                    throw new IllegalStateException("Solr documents not sorted by id: " + entry.entityId + " after " + previous.entityId);
+                }
+                while (dbId != null && dbId < entry.entityId) {
+                    dbId = next(databaseIds, dbId);
+                }
+                if (dbId == null || dbId != entry.entityId) {
+                    solrOnly.accept(entry.solrId);
+                }
+            }
+            return compared;
+        } catch (PageException ex) {
+            throw (SearchException) ex.getCause();
+        }
+    }
+
+    private static Long next(Iterator<Long> ids, Long previous) {
+        if (!ids.hasNext()) {
+            return null;
+        }
+        Long id = ids.next();
+        if (previous != null && id <= previous) {
+            throw new IllegalStateException("Database ids not sorted: " + id + " after " + previous);
+        }
+        return id;
+    }
+}
@@ -43,11 +43,14 @@ import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -55,6 +58,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -100,6 +104,9 @@ public class IndexServiceBean {
     private static final Logger logger = Logger.getLogger(IndexServiceBean.class.getCanonicalName());
     private static final Config config = ConfigProvider.getConfig();
 
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_BATCH_COMMIT_WITHIN_MILLIS = 5000;
+
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
 
@@ -188,6 +195,40 @@ public class IndexServiceBean {
         }
     }
    
+    /**
+     * Begins a {@link SolrUpdateBatch} on the calling thread: until it is
+     * ended, the datasets indexed by this thread are sent to Solr in batches
+     * of {@code dataverse.solr.batch.size} documents and committed according
+     * to {@code dataverse.solr.batch.commit}. Meant for bulk jobs such as
+     * "index all" and harvesting, where nobody waits for a single dataset to
+     * show up in a search.
+     *
+     * @return the batch, to be passed to {@link #endBatch(SolrUpdateBatch)}.
+     */
+    public SolrUpdateBatch beginBatch() {
+        int size = JvmSettings.SOLR_BATCH_SIZE.lookupOptional(Integer.class).orElse(DEFAULT_BATCH_SIZE);
+        SolrUpdateBatch.CommitPolicy commitPolicy = JvmSettings.SOLR_BATCH_COMMIT.lookupOptional()
+                .map(SolrUpdateBatch.CommitPolicy::parse).orElse(SolrUpdateBatch.CommitPolicy.WITHIN);
+        int commitWithin = JvmSettings.SOLR_BATCH_COMMIT_WITHIN.lookupOptional(Integer.class).orElse(DEFAULT_BATCH_COMMIT_WITHIN_MILLIS);
+        return SolrUpdateBatch.begin(solrClientService.getSolrClient(), size, commitPolicy, commitWithin);
+    }
+
+    /**
+     * Sends what is left of the batch and clears the index times of the
+     * datasets that could not be sent, so that they are not skipped by the
+     * next "index all" in continue mode.
+     *
+     * @return the ids of the datasets that could not be sent.
+     */
+    public Set<Long> endBatch(SolrUpdateBatch batch) {
+        batch.close();
+        for (Long datasetId : batch.getFailedDatasetIds()) {
+            dvObjectService.clearIndexTimes(datasetId);
+        }
+        logger.fine("ended " + batch);
+        return batch.getFailedDatasetIds();
+    }
+
     @TransactionAttribute(REQUIRES_NEW)
     public Future<String> indexDataverseInNewTransaction(Dataverse dataverse) throws SolrServerException, IOException{
         return indexDataverse(dataverse, false);
@@ -406,6 +447,19 @@ public class IndexServiceBean {
         int numPublishedVersions = 0;
         List<DatasetVersion> versions = dataset.getVersions();
         List<String> solrIdsOfFilesToDelete = new ArrayList<>();
+        /**
+         * When reindexing a single dataset, only the file documents that have
+         * changed are sent to Solr, and only those that are no longer wanted
+         * are deleted, rather than deleting and rebuilding all of them.
+         */
+        DatasetIndexDiff diff = null;
+        if (doNormalSolrDocCleanUp && isIncrementalReindex()) {
+            try {
+                diff = new DatasetIndexDiff(findFileFingerprintsOfParentDataset(dataset.getId()));
+            } catch (SearchException ex) {
+                logger.fine("could not find the files of the dataset in Solr, reindexing all of them: " + ex);
+            }
+        }
         for (DatasetVersion datasetVersion : versions) {
             Long versionDatabaseId = datasetVersion.getId();
             String versionTitle = datasetVersion.getTitle();
@@ -435,31 +489,33 @@ public class IndexServiceBean {
                 solrIdsOfFilesToDelete.add(solrIdOfPublishedFile);
                 fileInfo.add(fileMetadata.getDataFile().getId() + ":" + fileMetadata.getLabel());
             }
-            try {
-                /**
-                 * Preemptively delete *all* Solr documents for files associated
-                 * with the dataset based on a Solr query.
-                 *
-                 * We must query Solr for this information because the file has
-                 * been deleted from the database ( perhaps when Solr was down,
-                 * as reported in https://github.com/IQSS/dataverse/issues/2086
-                 * ) so the database doesn't even know about the file. It's an
-                 * orphan.
-                 *
-                 * @todo This Solr query should make the iteration above based
-                 * on the database unnecessary because it the Solr query should
-                 * find all files for the dataset. We can probably remove the
-                 * iteration above after an "index all" has been performed.
-                 * Without an "index all" we won't be able to find files based
-                 * on parentId because that field wasn't searchable in 4.0.
-                 *
-                 * @todo We should also delete the corresponding Solr
-                 * "permission" documents for the files.
-                 */
-                List<String> allFilesForDataset = findFilesOfParentDataset(dataset.getId());
-                solrIdsOfFilesToDelete.addAll(allFilesForDataset);
-            } catch (SearchException | NullPointerException ex) {
-                logger.fine("could not run search of files to delete: " + ex);
+            if (diff == null) {
+                try {
+                    /**
+                     * Preemptively delete *all* Solr documents for files associated
+                     * with the dataset based on a Solr query.
+                     *
+                     * We must query Solr for this information because the file has
+                     * been deleted from the database ( perhaps when Solr was down,
+                     * as reported in https://github.com/IQSS/dataverse/issues/2086
+                     * ) so the database doesn't even know about the file. It's an
+                     * orphan.
+                     *
+                     * @todo This Solr query should make the iteration above based
+                     * on the database unnecessary because it the Solr query should
+                     * find all files for the dataset. We can probably remove the
+                     * iteration above after an "index all" has been performed.
+                     * Without an "index all" we won't be able to find files based
+                     * on parentId because that field wasn't searchable in 4.0.
+                     *
+                     * @todo We should also delete the corresponding Solr
+                     * "permission" documents for the files.
+                     */
+                    List<String> allFilesForDataset = findFilesOfParentDataset(dataset.getId());
+                    solrIdsOfFilesToDelete.addAll(allFilesForDataset);
+                } catch (SearchException | NullPointerException ex) {
+                    logger.fine("could not run search of files to delete: " + ex);
+                }
             }
             int numFiles = 0;
             if (fileMetadatas != null) {
@@ -468,7 +524,7 @@ public class IndexServiceBean {
             debug.append("- files: " + numFiles + " " + fileInfo.toString() + "\n");
         }
         debug.append("numPublishedVersions: " + numPublishedVersions + "\n");
-        if (doNormalSolrDocCleanUp) {
+        if (doNormalSolrDocCleanUp && diff == null) {
             IndexResponse resultOfAttemptToPremptivelyDeletePublishedFiles = solrIndexService.deleteMultipleSolrIds(solrIdsOfFilesToDelete);
             debug.append("result of attempt to premptively deleted published files before reindexing: " + resultOfAttemptToPremptivelyDeletePublishedFiles + "\n");
         }
@@ -497,7 +553,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, true);
                 IndexableDataset indexableDraftVersion = new IndexableDataset(latestVersion);
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, diff);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and indexing was attempted for ")
                         .append(solrIdDraftDataset).append(" (limited discoverability). Result: ")
@@ -546,13 +602,13 @@ public class IndexServiceBean {
                  */
                 String result = getDesiredCardState(desiredCards) + results.toString() + debug.toString();
                 logger.fine(result);
-                indexDatasetPermissions(dataset);
+                indexDatasetPermissions(dataset, diff);
                 return new AsyncResult<>(result);
             } else if (latestVersionState.equals(DatasetVersion.VersionState.DEACCESSIONED)) {
 
                 desiredCards.put(DatasetVersion.VersionState.DEACCESSIONED, true);
                 IndexableDataset indexableDeaccessionedVersion = new IndexableDataset(latestVersion);
-                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion);
+                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion, diff);
                 results.append("No draft version. Attempting to index as deaccessioned. Result: ").append(indexDeaccessionedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, false);
@@ -593,7 +649,7 @@ public class IndexServiceBean {
                  */
                 String result = getDesiredCardState(desiredCards) + results.toString() + debug.toString();
                 logger.fine(result);
-                indexDatasetPermissions(dataset);
+                indexDatasetPermissions(dataset, diff);
                 return new AsyncResult<>(result);
             } else {
                 String result = "No-op. Unexpected condition reached: No released version and latest version is neither draft nor deaccessioned";
@@ -608,7 +664,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, diff);
                 results.append("Attempted to index " + solrIdPublished).append(". Result: ").append(indexReleasedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, false);
@@ -650,7 +706,7 @@ public class IndexServiceBean {
                  */
                 String result = getDesiredCardState(desiredCards) + results.toString() + debug.toString();
                 logger.fine(result);
-                indexDatasetPermissions(dataset);
+                indexDatasetPermissions(dataset, diff);
                 return new AsyncResult<>(result);
             } else if (latestVersionState.equals(DatasetVersion.VersionState.DRAFT)) {
 
@@ -664,10 +720,10 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion, diff);
                 results.append("There is a published version we will attempt to index. Result: ").append(indexReleasedVersionResult).append("\n");
 
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, diff);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and will be indexed as ")
                         .append(solrIdDraftDataset).append(" (limited visibility). Result: ").append(indexDraftResult).append("\n");
@@ -704,7 +760,7 @@ public class IndexServiceBean {
                  */
                 String result = getDesiredCardState(desiredCards) + results.toString() + debug.toString();
                 logger.fine(result);
-                indexDatasetPermissions(dataset);
+                indexDatasetPermissions(dataset, diff);
                 return new AsyncResult<>(result);
             } else {
                 String result = "No-op. Unexpected condition reached: There is at least one published version but the latest version is neither published nor draft";
@@ -725,6 +781,18 @@ public class IndexServiceBean {
         return deleteDraftFilesResults;
     }
 
+    private IndexResponse indexDatasetPermissions(Dataset dataset, DatasetIndexDiff diff) {
+        if (diff != null) {
+            List<String> staleSolrIds = diff.getStaleSolrIds();
+            if (!staleSolrIds.isEmpty()) {
+                solrIndexService.deleteMultipleSolrIds(staleSolrIds);
+            }
+            logger.fine("incremental reindex of dataset " + dataset.getId() + ": " + diff);
+            return solrIndexService.indexPermissionsOnSelfAndChangedFiles(dataset, diff.getChangedFileIds());
+        }
+        return indexDatasetPermissions(dataset);
+    }
+
     private IndexResponse indexDatasetPermissions(Dataset dataset) {
         boolean disabledForDebugging = false;
         if (disabledForDebugging) {
@@ -739,11 +807,20 @@ public class IndexServiceBean {
         return indexResponse;
     }
 
-    private String addOrUpdateDataset(IndexableDataset indexableDataset) throws  SolrServerException, IOException {
-        return addOrUpdateDataset(indexableDataset, null);
+    private String addOrUpdateDataset(IndexableDataset indexableDataset, DatasetIndexDiff diff) throws  SolrServerException, IOException {
+        return addOrUpdateDataset(indexableDataset, null, diff);
+    }
+
+    public SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {
+        return toSolrDocs(indexableDataset, datafilesInDraftVersion, null);
     }
 
-    public SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {        
+    /**
+     * @param diff if not {@code null}, the file documents that Solr already
+     * has with the same fingerprint are left out (and their full text is not
+     * extracted again).
+     */
+    SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion, DatasetIndexDiff diff) throws  SolrServerException, IOException {
         IndexableDataset.DatasetState state = indexableDataset.getDatasetState();
         Dataset dataset = indexableDataset.getDatasetVersion().getDataset();
         logger.fine("adding or updating Solr document for dataset id " + dataset.getId());
@@ -1111,54 +1188,8 @@ public class IndexServiceBean {
                         datafileSolrInputDocument.addField(SearchFields.EMBARGO_END_DATE, end.toEpochDay()); 
                     }
                     
-                    /* Full-text indexing using Apache Tika */
-                    if (doFullTextIndexing) {
-                        if (!dataset.isHarvested() && !fileMetadata.getDataFile().isRestricted() && !fileMetadata.getDataFile().isFilePackage()) {
-                            StorageIO<DataFile> accessObject = null;
-                            InputStream instream = null;
-                            ContentHandler textHandler = null;
-                            try {
-                                accessObject = DataAccess.getStorageIO(fileMetadata.getDataFile(),
-                                        new DataAccessRequest());
-                                if (accessObject != null) {
-                                    accessObject.open();
-                                    // If the size is >max, we don't use the stream. However, for S3, the stream is
-                                    // currently opened in the call above (see
-                                    // https://github.com/IQSS/dataverse/issues/5165), so we want to get a handle so
-                                    // we can close it below.
-                                    instream = accessObject.getInputStream();
-                                    if (accessObject.getSize() <= maxSize) {
-                                        AutoDetectParser autoParser = new AutoDetectParser();
-                                        textHandler = new BodyContentHandler(-1);
-                                        Metadata metadata = new Metadata();
-                                        ParseContext context = new ParseContext();
-                                        /*
-                                         * Try parsing the file. Note that, other than by limiting size, there's been no
-                                         * check see whether this file is a good candidate for text extraction (e.g.
-                                         * based on type).
-                                         */
-                                        autoParser.parse(instream, textHandler, metadata, context);
-                                        datafileSolrInputDocument.addField(SearchFields.FULL_TEXT,
-                                                textHandler.toString());
-                                    }
-                                }
-                            } catch (Exception e) {
-                                // Needs better logging of what went wrong in order to
-                                // track down "bad" documents.
-                                logger.warning(String.format("Full-text indexing for %s failed",
-                                        fileMetadata.getDataFile().getDisplayName()));
-                                e.printStackTrace();
-                                continue;
-                            } catch (OutOfMemoryError e) {
-                                textHandler = null;
-                                logger.warning(String.format("Full-text indexing for %s failed due to OutOfMemoryError",
-                                        fileMetadata.getDataFile().getDisplayName()));
-                                continue;
-                            } finally {
-                                IOUtils.closeQuietly(instream);
-                            }
-                        }
-                    }
+                    boolean doFullTextIndexingOfThisFile = doFullTextIndexing && !dataset.isHarvested()
+                            && !fileMetadata.getDataFile().isRestricted() && !fileMetadata.getDataFile().isFilePackage();
 
                     String filenameCompleteFinal = "";
                     if (fileMetadata != null) {
@@ -1375,8 +1406,65 @@ public class IndexServiceBean {
                     }
 
                     if (indexableDataset.isFilesShouldBeIndexed()) {
+                        String fingerprint = IndexUtil.fingerprint(datafileSolrInputDocument, doFullTextIndexingOfThisFile ? "fullText<=" + maxSize : "");
+                        datafileSolrInputDocument.addField(SearchFields.INDEX_FINGERPRINT, fingerprint);
+                        if (diff != null && diff.isUnchanged(fileSolrDocId, fingerprint)) {
+                            logger.fine("Solr document " + fileSolrDocId + " is up to date; skipping indexing.");
+                            continue;
+                        }
+
+                        /* Full-text indexing using Apache Tika */
+                        if (doFullTextIndexingOfThisFile) {
+                            StorageIO<DataFile> accessObject = null;
+                            InputStream instream = null;
+                            ContentHandler textHandler = null;
+                            try {
+                                accessObject = DataAccess.getStorageIO(fileMetadata.getDataFile(),
+                                        new DataAccessRequest());
+                                if (accessObject != null) {
+                                    accessObject.open();
+                                    // If the size is >max, we don't use the stream. However, for S3, the stream is
+                                    // currently opened in the call above (see
+                                    // https://github.com/IQSS/dataverse/issues/5165), so we want to get a handle so
+                                    // we can close it below.
+                                    instream = accessObject.getInputStream();
+                                    if (accessObject.getSize() <= maxSize) {
+                                        AutoDetectParser autoParser = new AutoDetectParser();
+                                        textHandler = new BodyContentHandler(-1);
+                                        Metadata metadata = new Metadata();
+                                        ParseContext context = new ParseContext();
+                                        /*
+                                         * Try parsing the file. Note that, other than by limiting size, there's been no
+                                         * check see whether this file is a good candidate for text extraction (e.g.
+                                         * based on type).
+                                         */
+                                        autoParser.parse(instream, textHandler, metadata, context);
+                                        datafileSolrInputDocument.addField(SearchFields.FULL_TEXT,
+                                                textHandler.toString());
+                                    }
+                                }
+                            } catch (Exception e) {
+                                // Needs better logging of what went wrong in order to
+                                // track down "bad" documents.
+                                logger.warning(String.format("Full-text indexing for %s failed",
+                                        fileMetadata.getDataFile().getDisplayName()));
+                                e.printStackTrace();
+                                continue;
+                            } catch (OutOfMemoryError e) {
+                                textHandler = null;
+                                logger.warning(String.format("Full-text indexing for %s failed due to OutOfMemoryError",
+                                        fileMetadata.getDataFile().getDisplayName()));
+                                continue;
+                            } finally {
+                                IOUtils.closeQuietly(instream);
+                            }
+                        }
+
                         filesIndexed.add(fileSolrDocId);
                         docs.add(datafileSolrInputDocument);
+                        if (diff != null) {
+                            diff.sent(fileSolrDocId, fileEntityId);
+                        }
                     }
                 }
             }
@@ -1389,17 +1477,22 @@ public class IndexServiceBean {
         return new SolrInputDocuments(docs, msg, datasetId);
     }
     
-    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {   
-        final SolrInputDocuments docs = toSolrDocs(indexableDataset, datafilesInDraftVersion);
+    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion, DatasetIndexDiff diff) throws  SolrServerException, IOException {   
+        final SolrInputDocuments docs = toSolrDocs(indexableDataset, datafilesInDraftVersion, diff);
 
-        try {
-            solrClientService.getSolrClient().add(docs.getDocuments());
-            solrClientService.getSolrClient().commit();
-        } catch (SolrServerException | IOException ex) {
-            if (ex.getCause() instanceof SolrServerException) {
-                throw new SolrServerException(ex);
-            } else if (ex.getCause() instanceof IOException) {
-                throw new IOException(ex);
+        SolrUpdateBatch batch = SolrUpdateBatch.current();
+        if (batch != null) {
+            batch.add(docs.getDocuments(), docs.getDatasetId());
+        } else {
+            try {
+                solrClientService.getSolrClient().add(docs.getDocuments());
+                solrClientService.getSolrClient().commit();
+            } catch (SolrServerException | IOException ex) {
+                if (ex.getCause() instanceof SolrServerException) {
+                    throw new SolrServerException(ex);
+                } else if (ex.getCause() instanceof IOException) {
+                    throw new IOException(ex);
+                }
             }
         }
         /// Dataset updatedDataset =
@@ -1695,6 +1788,11 @@ public class IndexServiceBean {
     public String removeSolrDocFromIndex(String doomed) {
 
         logger.fine("deleting Solr document: " + doomed);
+        SolrUpdateBatch batch = SolrUpdateBatch.current();
+        if (batch != null) {
+            batch.deleteById(Collections.singletonList(doomed));
+            return "Queued deletion of " + doomed + " from Solr index.";
+        }
         UpdateResponse updateResponse;
         try {
             updateResponse = solrClientService.getSolrClient().deleteById(doomed);
@@ -1847,38 +1945,29 @@ public class IndexServiceBean {
     }
 
   
+    /**
+     * Number of ids read at once from each side when looking for orphans.
+     */
+    private static final int RECONCILE_PAGE_SIZE = 1000;
+
     public List<String> findDataversesInSolrOnly() throws SearchException {
-        try {
-            /**
-             * @todo define this centrally and statically
-             */
-            return findDvObjectInSolrOnly("dataverses");
-        } catch (SearchException ex) {
-            throw ex;
-        }
+        List<String> solrOnly = new ArrayList<>();
+        findDvObjectsInSolrOnly(SearchConstants.DATAVERSES, solrOnly::add);
+        return solrOnly;
     }
 
     public List<String> findDatasetsInSolrOnly() throws SearchException {
-        try {
-            /**
-             * @todo define this centrally and statically
-             */
-            return findDvObjectInSolrOnly("datasets");
-        } catch (SearchException ex) {
-            throw ex;
-        }
+        List<String> solrOnly = new ArrayList<>();
+        findDvObjectsInSolrOnly(SearchConstants.DATASETS, solrOnly::add);
+        return solrOnly;
     }
 
     public List<String> findFilesInSolrOnly() throws SearchException {
-        try {
-            /**
-             * @todo define this centrally and statically
-             */
-            return findDvObjectInSolrOnly("files");
-        } catch (SearchException ex) {
-            throw ex;
-        }
+        List<String> solrOnly = new ArrayList<>();
+        findDvObjectsInSolrOnly(SearchConstants.FILES, solrOnly::add);
+        return solrOnly;
     }
+
     /**
      * Finds permissions documents in Solr that don't have corresponding dvObjects
      * in the database, and returns a list of their Solr "id" field.
@@ -1886,23 +1975,44 @@ public class IndexServiceBean {
      * @throws SearchException 
      */
     public List<String> findPermissionsInSolrOnly() throws SearchException {
-        List<String> permissionInSolrOnly = new ArrayList<>();
+        List<String> solrOnly = new ArrayList<>();
+        findPermissionsInSolrOnly(solrOnly::add);
+        return solrOnly;
+    }
+
+    /**
+     * Finds the permission documents whose object is not in the database, a
+     * page at a time. The definition points are strings in Solr, so the
+     * documents cannot be sorted by id: the objects of each page are looked
+     * up with a single query instead.
+     * @param solrOnly gets the Solr id of each orphan, as it is found.
+     * @return the number of documents looked at.
+     */
+    public long findPermissionsInSolrOnly(Consumer<String> solrOnly) throws SearchException {
+        long compared = 0;
         try {
-            int rows = 100;
-            SolrQuery q = (new SolrQuery(SearchFields.DEFINITION_POINT_DVOBJECT_ID+":*")).setRows(rows).setSort(SortClause.asc(SearchFields.ID));
+            SolrQuery q = new SolrQuery(SearchFields.DEFINITION_POINT_DVOBJECT_ID + ":*")
+                    .setFields(SearchFields.ID, SearchFields.DEFINITION_POINT_DVOBJECT_ID)
+                    .setRows(RECONCILE_PAGE_SIZE)
+                    .setSort(SortClause.asc(SearchFields.ID));
             String cursorMark = CursorMarkParams.CURSOR_MARK_START;
             boolean done = false;
             while (!done) {
                 q.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
                 QueryResponse rsp = solrServer.query(q);
                 String nextCursorMark = rsp.getNextCursorMark();
-                SolrDocumentList list = rsp.getResults();
-                for (SolrDocument doc: list) {
-                    long id = Long.parseLong((String) doc.getFieldValue(SearchFields.DEFINITION_POINT_DVOBJECT_ID));
-                    if(!dvObjectService.checkExists(id)) {
-                        permissionInSolrOnly.add((String)doc.getFieldValue(SearchFields.ID));
-                    }
+                Map<String, Long> definitionPoints = new LinkedHashMap<>();
+                for (SolrDocument doc : rsp.getResults()) {
+                    definitionPoints.put((String) doc.getFieldValue(SearchFields.ID),
+                            Long.parseLong((String) doc.getFieldValue(SearchFields.DEFINITION_POINT_DVOBJECT_ID)));
                 }
+                Set<Long> existing = dvObjectService.findExistingIds(new HashSet<>(definitionPoints.values()));
+                definitionPoints.forEach((solrId, id) -> {
+                    if (!existing.contains(id)) {
+                        solrOnly.accept(solrId);
+                    }
+                });
+                compared += definitionPoints.size();
                 if (cursorMark.equals(nextCursorMark)) {
                     done = true;
                 }
@@ -1910,52 +2020,118 @@ public class IndexServiceBean {
             }
         } catch (SolrServerException | IOException ex) {
            throw new SearchException("Error searching Solr for permissions" , ex);
- 
         }
-        return permissionInSolrOnly;
+        return compared;
     }
-    
-    private List<String> findDvObjectInSolrOnly(String type) throws SearchException {
-        SolrQuery solrQuery = new SolrQuery();
-        int rows = 100;
-     
-        solrQuery.setQuery("*").setRows(rows).setSort(SortClause.asc(SearchFields.ID));
+
+    /**
+     * Finds the documents of a type whose object is not in the database, by
+     * going through the documents sorted by {@link SearchFields#ENTITY_ID}
+     * along with the ids in the database, see {@link IndexReconciler}. Only
+     * a page of each is held in memory.
+     * @param type {@link SearchConstants#DATAVERSES},
+     * {@link SearchConstants#DATASETS} or {@link SearchConstants#FILES}.
+     * @param solrOnly gets the Solr id of each orphan, as it is found.
+     * @return the number of documents looked at.
+     */
+    public long findDvObjectsInSolrOnly(String type, Consumer<String> solrOnly) throws SearchException {
+        String dtype;
+        switch (type) {
+            case SearchConstants.DATAVERSES:
+                dtype = "Dataverse";
+                break;
+            case SearchConstants.DATASETS:
+                dtype = "Dataset";
+                break;
+            case SearchConstants.FILES:
+                dtype = "DataFile";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+
+        long[] lastId = {0};
+        Iterator<Long> databaseIds = IndexReconciler.paged(() -> {
+            List<Long> page = dvObjectService.findIdsAfter(dtype, lastId[0], RECONCILE_PAGE_SIZE);
+            if (!page.isEmpty()) {
+                lastId[0] = page.get(page.size() - 1);
+            }
+            return page;
+        });
+
+        SolrQuery solrQuery = new SolrQuery("*")
+                .setFields(SearchFields.ID, SearchFields.ENTITY_ID)
+                .setRows(RECONCILE_PAGE_SIZE)
+                .setSorts(Arrays.asList(SortClause.asc(SearchFields.ENTITY_ID), SortClause.asc(SearchFields.ID)));
         solrQuery.addFilterQuery(SearchFields.TYPE + ":" + type);
-        List<String> dvObjectInSolrOnly = new ArrayList<>();
-       
-        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
-        boolean done = false;
-        while (!done) {
-            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
-            QueryResponse rsp = null;
+        solrQuery.addFilterQuery(SearchFields.ENTITY_ID + ":[* TO *]");
+        String[] cursorMark = {CursorMarkParams.CURSOR_MARK_START};
+        Iterator<IndexReconciler.SolrEntry> solrEntries = IndexReconciler.paged(() -> {
+            if (cursorMark[0] == null) {
+                return Collections.emptyList();
+            }
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark[0]);
+            QueryResponse rsp;
             try {
                 rsp = solrServer.query(solrQuery);
-             } catch (SolrServerException | IOException ex) {
+            } catch (SolrServerException | IOException ex) {
                 throw new SearchException("Error searching Solr type: " + type, ex);
-
             }
             String nextCursorMark = rsp.getNextCursorMark();
-            SolrDocumentList list = rsp.getResults();
-            for (SolrDocument doc: list) {
+            cursorMark[0] = cursorMark[0].equals(nextCursorMark) ? null : nextCursorMark;
+            List<IndexReconciler.SolrEntry> page = new ArrayList<>();
+            for (SolrDocument doc : rsp.getResults()) {
                 Object idObject = doc.getFieldValue(SearchFields.ENTITY_ID);
-                if (idObject != null) {
-                    try {
-                        long id = (Long) idObject;
-                        if (!dvObjectService.checkExists(id)) {
-                            dvObjectInSolrOnly.add((String)doc.getFieldValue(SearchFields.ID));
-                        }
-                    } catch (ClassCastException ex) {
-                        throw new SearchException("Found " + SearchFields.ENTITY_ID + " but error casting " + idObject + " to long", ex);
-                    }
+                try {
+                    page.add(new IndexReconciler.SolrEntry((String) doc.getFieldValue(SearchFields.ID), (Long) idObject));
+                } catch (ClassCastException ex) {
+                    throw new SearchException("Found " + SearchFields.ENTITY_ID + " but error casting " + idObject + " to long", ex);
                 }
             }
-            if (cursorMark.equals(nextCursorMark)) {
-                done = true;
+            return page;
+        });
+
+        return IndexReconciler.reconcile(databaseIds, solrEntries, solrOnly);
+    }
+
+    /**
+     * @return whether a dataset reindexed on its own only sends the file
+     * documents that have changed, see the JVM option
+     * {@code dataverse.solr.incremental-reindex}. Bulk jobs running a
+     * {@link SolrUpdateBatch} always send everything, since Solr may not have
+     * seen their earlier updates yet.
+     */
+    private boolean isIncrementalReindex() {
+        return SolrUpdateBatch.current() == null
+                && JvmSettings.SOLR_INCREMENTAL_REINDEX.lookupOptional(Boolean.class).orElse(true);
+    }
+
+    /**
+     * @return the file documents of a dataset in Solr, by id, with their
+     * fingerprint or {@code null} if they have none.
+     */
+    private Map<String, String> findFileFingerprintsOfParentDataset(long parentDatasetId) throws SearchException {
+        SolrQuery solrQuery = new SolrQuery();
+        solrQuery.setQuery("*");
+        solrQuery.setRows(Integer.MAX_VALUE);
+        solrQuery.setFields(SearchFields.ID, SearchFields.INDEX_FINGERPRINT);
+        solrQuery.addFilterQuery(SearchFields.PARENT_ID + ":" + parentDatasetId);
+        solrQuery.addFilterQuery(SearchFields.TYPE + ":" + "files");
+        QueryResponse queryResponse = null;
+        try {
+            queryResponse = solrClientService.getSolrClient().query(solrQuery);
+        } catch (SolrServerException | IOException ex) {
+            throw new SearchException("Error searching Solr for dataset parent id " + parentDatasetId, ex);
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        for (SolrDocument solrDocument : queryResponse.getResults()) {
+            Object idObject = solrDocument.getFieldValue(SearchFields.ID);
+            if (idObject != null) {
+                Object fingerprint = solrDocument.getFieldValue(SearchFields.INDEX_FINGERPRINT);
+                fingerprints.put((String) idObject, fingerprint != null ? fingerprint.toString() : null);
             }
-            cursorMark = nextCursorMark;
         }
-
-        return dvObjectInSolrOnly;
+        return fingerprints;
     }
 
     private List<String> findFilesOfParentDataset(long parentDatasetId) throws SearchException {
@@ -1,7 +1,12 @@
 package edu.harvard.iq.dataverse.search;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.TreeSet;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.solr.common.SolrInputDocument;
 
 public class IndexUtil {
 
@@ -16,4 +21,31 @@ public class IndexUtil {
         return subsetToProcess;
     }
 
+    /**
+     * A hash of the fields of a Solr document, in a stable order. The full
+     * text and the fingerprint itself are left out.
+     *
+     * @param doc the document.
+     * @param extra anything else the document depends on but that is not in
+     * its fields, e.g. whether its full text is indexed.
+     */
+    public static String fingerprint(SolrInputDocument doc, String extra) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : new TreeSet<>(doc.getFieldNames())) {
+            if (name.equals(SearchFields.FULL_TEXT) || name.equals(SearchFields.INDEX_FINGERPRINT)) {
+                continue;
+            }
+            sb.append(name).append('=');
+            Collection<Object> values = doc.getFieldValues(name);
+            if (values != null) {
+                for (Object value : values) {
+                    sb.append(value).append('\u001f');
+                }
+            }
+            sb.append('\u001e');
+        }
+        sb.append(extra);
+        return DigestUtils.sha256Hex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
 }
@@ -61,6 +61,12 @@ public class SearchFields {
      * an upgrade such as between Dataverse 4.2 and 4.3.
      */
     public static final String DATAVERSE_VERSION_INDEXED_BY = "dataverseVersionIndexedBy_s";
+    /**
+     * Hash of the other fields of a file document (except the full text), see
+     * {@link IndexUtil#fingerprint}. Used to leave unchanged files alone when
+     * a dataset is reindexed.
+     */
+    public static final String INDEX_FINGERPRINT = "indexFingerprint_s";
     public static final String NAME = "name";
     /**
      * @todo Do we want to support finding dataverses, datasets, and files with
@@ -16,7 +16,10 @@ import edu.harvard.iq.dataverse.authorization.groups.Group;
 import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
+import edu.harvard.iq.dataverse.util.BitSet;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +28,8 @@ import java.util.logging.Logger;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 /**
  * Determine whether items should be searchable.
@@ -35,6 +40,8 @@ public class SearchPermissionsServiceBean {
 
     private static final Logger logger = Logger.getLogger(SearchPermissionsServiceBean.class.getCanonicalName());
 
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
     @EJB
     AuthenticationServiceBean userServiceBean;
     @EJB
@@ -100,6 +107,48 @@ public class SearchPermissionsServiceBean {
         return permStrings;
     }
 
+    /**
+     * Loads all dataverses and datasets, and the role assignments that allow
+     * to discover them, in three queries.
+     */
+    public DiscoverabilityTree loadDiscoverabilityTree() {
+        DiscoverabilityTree tree = new DiscoverabilityTree();
+        Set<Long> permissionRoots = new HashSet<>(em.createQuery(
+                "SELECT d.id FROM Dataverse d WHERE d.permissionRoot = true", Long.class).getResultList());
+        List<Object[]> objects = em.createQuery(
+                "SELECT o.id, ow.id, o.dtype, o.publicationDate FROM DvObject o LEFT JOIN o.owner ow WHERE o.dtype IN ('Dataverse', 'Dataset')",
+                Object[].class).getResultList();
+        for (Object[] object : objects) {
+            Long id = (Long) object[0];
+            Long ownerId = (Long) object[1];
+            if ("Dataverse".equals(object[2])) {
+                tree.addDataverse(id, ownerId, permissionRoots.contains(id), object[3] != null);
+            } else {
+                tree.addDataset(id, ownerId);
+            }
+        }
+
+        long searchPermissions = new BitSet().set(Permission.ViewUnpublishedDataverse.ordinal())
+                .set(Permission.ViewUnpublishedDataset.ordinal()).getBits();
+        List<Object[]> assignments = em.createQuery(
+                "SELECT ra.definitionPoint.id, ra.assigneeIdentifier, ra.role.permissionBits FROM RoleAssignment ra",
+                Object[].class).getResultList();
+        Map<String, String> indexableStrings = new HashMap<>();
+        for (Object[] assignment : assignments) {
+            long permissionBits = (Long) assignment[2];
+            if ((permissionBits & searchPermissions) == 0) {
+                continue;
+            }
+            String indexableString = indexableStrings.computeIfAbsent((String) assignment[1],
+                    idtf -> getIndexableStringForUserOrGroup(roleAssigneeService.getRoleAssignee(idtf)));
+            if (indexableString != null) {
+                tree.addAssignment((Long) assignment[0], permissionBits, indexableString);
+            }
+        }
+        logger.info("loaded " + objects.size() + " dataverses and datasets and " + assignments.size() + " role assignments for indexing permissions");
+        return tree;
+    }
+
     private void resetRoleAssigneeCache() {
         roleAssigneeCache.clear();
     }
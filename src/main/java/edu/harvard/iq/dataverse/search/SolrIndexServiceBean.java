@@ -10,6 +10,7 @@ import edu.harvard.iq.dataverse.DataverseServiceBean;
 import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.DvObjectServiceBean;
 import edu.harvard.iq.dataverse.FileMetadata;
+import edu.harvard.iq.dataverse.authorization.Permission;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -22,11 +23,15 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import static javax.ejb.TransactionAttributeType.REQUIRES_NEW;
 import javax.inject.Named;
 import javax.json.Json;
 import javax.json.JsonObjectBuilder;
+import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
 
 @Named
@@ -89,7 +94,7 @@ public class SolrIndexServiceBean {
             DvObjectSolrDoc dataverseSolrDoc = constructDataverseSolrDoc((Dataverse) dvObject);
             solrDocs.add(dataverseSolrDoc);
         } else if (dvObject.isInstanceofDataset()) {
-            List<DvObjectSolrDoc> datasetSolrDocs = constructDatasetSolrDocs((Dataset) dvObject);
+            List<DvObjectSolrDoc> datasetSolrDocs = constructDatasetSolrDocs((Dataset) dvObject, null);
             solrDocs.addAll(datasetSolrDocs);
         } else if (dvObject.isInstanceofDataFile()) {
             Map<Long, List<String>> permStringByDatasetVersion = new HashMap<>();
@@ -101,20 +106,6 @@ public class SolrIndexServiceBean {
         return solrDocs;
     }
 
-    private List<DvObjectSolrDoc> determineSolrDocsForFilesFromDataset(Map.Entry<Long, List<Long>> datasetHash) {
-        List<DvObjectSolrDoc> emptyList = new ArrayList<>();
-        List<DvObjectSolrDoc> solrDocs = emptyList;
-        DvObject dvObject = dvObjectService.findDvObject(datasetHash.getKey());
-        if (dvObject == null) {
-            return emptyList;
-        }
-        if (dvObject.isInstanceofDataset()) {
-            Dataset dataset = (Dataset) dvObject;
-            solrDocs.addAll(constructDatafileSolrDocsFromDataset(dataset));
-        }
-        return solrDocs;
-    }
-
     /**
      * @todo should this method return a List? The equivalent methods for
      * datasets and files return lists.
@@ -135,14 +126,14 @@ public class SolrIndexServiceBean {
         return dvDoc;
     }
 
-    private List<DvObjectSolrDoc> constructDatasetSolrDocs(Dataset dataset) {
+    private List<DvObjectSolrDoc> constructDatasetSolrDocs(Dataset dataset, DiscoverabilityTree tree) {
         List<DvObjectSolrDoc> emptyList = new ArrayList<>();
         List<DvObjectSolrDoc> solrDocs = emptyList;
         Map<DatasetVersion.VersionState, Boolean> desiredCards = searchPermissionsService.getDesiredCards(dataset);
         for (DatasetVersion version : datasetVersionsToBuildCardsFor(dataset)) {
             boolean cardShouldExist = desiredCards.get(version.getVersionState());
             if (cardShouldExist) {
-                DvObjectSolrDoc datasetSolrDoc = makeDatasetSolrDoc(version);
+                DvObjectSolrDoc datasetSolrDoc = makeDatasetSolrDoc(version, tree);
                 solrDocs.add(datasetSolrDoc);
             }
         }
@@ -188,22 +179,13 @@ public class SolrIndexServiceBean {
         return datafileSolrDocs;
     }
 
-    private List<DvObjectSolrDoc> constructDatafileSolrDocsFromDataset(Dataset dataset) {
+    private List<DvObjectSolrDoc> constructDatafileSolrDocsFromDataset(Dataset dataset, DiscoverabilityTree tree) {
         List<DvObjectSolrDoc> datafileSolrDocs = new ArrayList<>();
         Map<DatasetVersion.VersionState, Boolean> desiredCards = searchPermissionsService.getDesiredCards(dataset);
         for (DatasetVersion datasetVersionFileIsAttachedTo : datasetVersionsToBuildCardsFor(dataset)) {
             boolean cardShouldExist = desiredCards.get(datasetVersionFileIsAttachedTo.getVersionState());
             if (cardShouldExist) {
-                List<String> perms = new ArrayList<>();
-                if (unpublishedDataRelatedToMeModeEnabled) {
-                    if (datasetVersionFileIsAttachedTo.isReleased()) {
-                        perms.add(IndexServiceBean.getPublicGroupString());
-                    } else {
-                        perms = searchPermissionsService.findDatasetVersionPerms(datasetVersionFileIsAttachedTo);
-                    }
-                } else {
-                    perms = searchPermissionsService.findDatasetVersionPerms(datasetVersionFileIsAttachedTo);
-                }
+                List<String> perms = datasetVersionPerms(datasetVersionFileIsAttachedTo, tree);
                 for (FileMetadata fileMetadata : datasetVersionFileIsAttachedTo.getFileMetadatas()) {
                     Long fileId = fileMetadata.getDataFile().getId();
                     String solrIdStart = IndexServiceBean.solrDocIdentifierFile + fileId;
@@ -231,22 +213,33 @@ public class SolrIndexServiceBean {
         return datasetVersions;
     }
 
-    private DvObjectSolrDoc makeDatasetSolrDoc(DatasetVersion version) {
+    private DvObjectSolrDoc makeDatasetSolrDoc(DatasetVersion version, DiscoverabilityTree tree) {
         String solrIdStart = IndexServiceBean.solrDocIdentifierDataset + version.getDataset().getId().toString();
         String solrIdEnd = getDatasetOrDataFileSolrEnding(version.getVersionState());
         String solrId = solrIdStart + solrIdEnd;
         String name = version.getTitle();
+        List<String> perms = datasetVersionPerms(version, tree);
+        return new DvObjectSolrDoc(version.getDataset().getId().toString(), solrId, version.getId(), name, perms);
+    }
+
+    /**
+     * @param tree if not {@code null}, who may discover an unpublished
+     * version is looked up there rather than in the database.
+     */
+    private List<String> datasetVersionPerms(DatasetVersion version, DiscoverabilityTree tree) {
         List<String> perms = new ArrayList<>();
         if (unpublishedDataRelatedToMeModeEnabled) {
             if (version.isReleased()) {
                 perms.add(IndexServiceBean.getPublicGroupString());
+            } else if (tree != null) {
+                perms.addAll(tree.findPerms(version.getDataset().getId(), Permission.ViewUnpublishedDataset));
             } else {
                 perms = searchPermissionsService.findDatasetVersionPerms(version);
             }
         } else {
             perms = searchPermissionsService.findDatasetVersionPerms(version);
         }
-        return new DvObjectSolrDoc(version.getDataset().getId().toString(), solrId, version.getId(), name, perms);
+        return perms;
     }
 
     private String getDatasetOrDataFileSolrEnding(DatasetVersion.VersionState versionState) {
@@ -261,60 +254,64 @@ public class SolrIndexServiceBean {
         }
     }
 
-    public IndexResponse indexAllPermissions() {
-        Collection<SolrInputDocument> docs = new ArrayList<>();
-
-        List<DvObjectSolrDoc> definitionPoints = new ArrayList<>();
-        Map<Long, List<Long>> filesPerDataset = new HashMap<>();
-        List<DvObject> allExceptFiles = dvObjectService.findAll();
-        for (DvObject dvObject : allExceptFiles) {
-            logger.info("determining definition points for dvobject id " + dvObject.getId());
-            if (dvObject.isInstanceofDataFile()) {
-                Long dataset = dvObject.getOwner().getId();
-                Long datafile = dvObject.getId();
-
-                List<Long> files = filesPerDataset.get(dataset);
-                if (files == null) {
-                    files = new ArrayList<>();
-                    filesPerDataset.put(dataset, files);
-                }
-                files.add(datafile);
+    /**
+     * Indexes the permissions of all dataverses, looking up who may discover
+     * them in {@code tree}, and updates their permission index times, in a
+     * transaction of its own.
+     *
+     * @return the number of dataverses.
+     * @see IndexBatchServiceBean#indexAllPermissions()
+     */
+    @TransactionAttribute(REQUIRES_NEW)
+    public int indexDataversePermissionsInNewTransaction(DiscoverabilityTree tree) throws SolrServerException, IOException {
+        List<SolrInputDocument> docs = new ArrayList<>();
+        for (Long id : tree.getDataverseIds()) {
+            List<String> perms = new ArrayList<>();
+            if (tree.isReleased(id)) {
+                perms.add(IndexServiceBean.getPublicGroupString());
             } else {
-                definitionPoints.addAll(determineSolrDocs(dvObject));
+                perms.addAll(tree.findPerms(id, Permission.ViewUnpublishedDataverse));
             }
+            Long noDatasetVersionForDataverses = null;
+            DvObjectSolrDoc dvDoc = new DvObjectSolrDoc(id.toString(), IndexServiceBean.solrDocIdentifierDataverse + id, noDatasetVersionForDataverses, null, perms);
+            docs.add(SearchUtil.createSolrDoc(dvDoc));
         }
+        persistToSolr(docs);
+        dvObjectService.updatePermissionIndexTimes(tree.getDataverseIds(), false);
+        return docs.size();
+    }
 
-        List<DvObject> all = allExceptFiles;
-        for (Map.Entry<Long, List<Long>> filePerDataset : filesPerDataset.entrySet()) {
-            definitionPoints.addAll(determineSolrDocsForFilesFromDataset(filePerDataset));
-            for (long fileId : filePerDataset.getValue()) {
-                DvObject file = dvObjectService.findDvObject(fileId);
-                if (file != null) {
-                    all.add(file);
-                }
+    /**
+     * Indexes the permissions of these datasets and of their files, looking
+     * up who may discover them in {@code tree}, and updates their permission
+     * index times, all in a transaction of its own.
+     *
+     * @return the number of Solr documents.
+     * @see IndexBatchServiceBean#indexAllPermissions()
+     */
+    @TransactionAttribute(REQUIRES_NEW)
+    public int indexDatasetPermissionsInNewTransaction(List<Long> datasetIds, DiscoverabilityTree tree) throws SolrServerException, IOException {
+        int docCount = 0;
+        List<Long> indexed = new ArrayList<>();
+        for (Long id : datasetIds) {
+            Dataset dataset = datasetService.find(id);
+            if (dataset == null) {
+                logger.fine("dataset " + id + " is gone, not indexing its permissions");
+                continue;
             }
-        }
-
-        for (DvObjectSolrDoc dvObjectSolrDoc : definitionPoints) {
-            logger.info("creating solr doc in memory for " + dvObjectSolrDoc.getSolrId());
-            SolrInputDocument solrInputDocument = SearchUtil.createSolrDoc(dvObjectSolrDoc);
-            logger.info("adding to list of docs to index " + dvObjectSolrDoc.getSolrId());
-            docs.add(solrInputDocument);
-        }
-        try {
-            persistToSolr(docs);
-            /**
-             * @todo Do we need a separate permissionIndexTime timestamp?
-             * Probably. Update it here.
-             */
-            for (DvObject dvObject : all) {
-                dvObjectService.updatePermissionIndexTime(dvObject);
+            Collection<SolrInputDocument> docs = new ArrayList<>();
+            for (DvObjectSolrDoc dvObjectSolrDoc : constructDatasetSolrDocs(dataset, tree)) {
+                docs.add(SearchUtil.createSolrDoc(dvObjectSolrDoc));
             }
-            return new IndexResponse("indexed all permissions");
-        } catch (SolrServerException | IOException ex) {
-            return new IndexResponse("problem indexing");
+            for (DvObjectSolrDoc dvObjectSolrDoc : constructDatafileSolrDocsFromDataset(dataset, tree)) {
+                docs.add(SearchUtil.createSolrDoc(dvObjectSolrDoc));
+            }
+            persistToSolr(docs, id);
+            docCount += docs.size();
+            indexed.add(id);
         }
-
+        dvObjectService.updatePermissionIndexTimes(indexed, true);
+        return docCount;
     }
 
     public IndexResponse indexPermissionsForOneDvObject(DvObject dvObject) {
@@ -347,11 +344,24 @@ public class SolrIndexServiceBean {
     }
 
     private void persistToSolr(Collection<SolrInputDocument> docs) throws SolrServerException, IOException {
+        persistToSolr(docs, null);
+    }
+
+    /**
+     * @param datasetId the dataset the documents belong to, to be reported if
+     * the {@link SolrUpdateBatch} of this thread fails to send them.
+     */
+    private void persistToSolr(Collection<SolrInputDocument> docs, Long datasetId) throws SolrServerException, IOException {
         if (docs.isEmpty()) {
             // This method is routinely called with an empty list of docs.
             logger.fine("nothing to persist");
             return;
         }
+        SolrUpdateBatch batch = SolrUpdateBatch.current();
+        if (batch != null) {
+            batch.add(docs, datasetId);
+            return;
+        }
         logger.fine("persisting to Solr...");
         /**
          * @todo Do something with these responses from Solr.
@@ -427,6 +437,67 @@ public class SolrIndexServiceBean {
         );
     }
 
+    /**
+     * Indexes the permissions of a dataset and of those of its files that are
+     * given, leaving the permission documents of the other files alone. This
+     * is only done when the permissions of the dataset versions are still
+     * the same as those in Solr, otherwise all the files of the dataset are
+     * indexed as in {@link #indexPermissionsOnSelfAndChildren(DvObject)}.
+     *
+     * @param changedFileIds ids of the files whose content documents have
+     * just been (re)indexed, e.g. files that have been added.
+     */
+    public IndexResponse indexPermissionsOnSelfAndChangedFiles(Dataset dataset, Set<Long> changedFileIds) {
+        if (!permissionsUnchangedInSolr(constructDatasetSolrDocs(dataset, null))) {
+            return indexPermissionsOnSelfAndChildren(dataset);
+        }
+        List<DataFile> filesToReindexAsBatch = new ArrayList<>();
+        for (DataFile datafile : filesToReIndexPermissionsFor(dataset)) {
+            if (changedFileIds.contains(datafile.getId())) {
+                filesToReindexAsBatch.add(datafile);
+            }
+        }
+        String response = reindexFilesInBatches(filesToReindexAsBatch);
+        IndexResponse indexResponse = indexPermissionsForOneDvObject(dataset);
+        return new IndexResponse("Permissions of dataset " + dataset.getId() + " unchanged, indexed permissions of changed files:"
+                + response + indexResponse.getMessage());
+    }
+
+    /**
+     * @return {@code true} if Solr has exactly these permission documents,
+     * with the same permissions.
+     */
+    private boolean permissionsUnchangedInSolr(List<DvObjectSolrDoc> solrDocs) {
+        if (solrDocs.isEmpty()) {
+            return false;
+        }
+        Map<String, Set<String>> wanted = new HashMap<>();
+        for (DvObjectSolrDoc solrDoc : solrDocs) {
+            wanted.put(solrDoc.getSolrId() + IndexServiceBean.discoverabilityPermissionSuffix, new HashSet<>(solrDoc.getPermissions()));
+        }
+        SolrQuery solrQuery = new SolrQuery();
+        solrQuery.setQuery("{!terms f=" + SearchFields.ID + "}" + String.join(",", wanted.keySet()));
+        solrQuery.setRows(wanted.size() + 1);
+        solrQuery.setFields(SearchFields.ID, SearchFields.DISCOVERABLE_BY);
+        Map<String, Set<String>> inSolr = new HashMap<>();
+        try {
+            for (SolrDocument solrDocument : solrClientService.getSolrClient().query(solrQuery).getResults()) {
+                Set<String> perms = new HashSet<>();
+                Collection<Object> values = solrDocument.getFieldValues(SearchFields.DISCOVERABLE_BY);
+                if (values != null) {
+                    for (Object value : values) {
+                        perms.add(value.toString());
+                    }
+                }
+                inSolr.put((String) solrDocument.getFieldValue(SearchFields.ID), perms);
+            }
+        } catch (SolrServerException | IOException ex) {
+            logger.fine("could not compare permissions with Solr: " + ex);
+            return false;
+        }
+        return wanted.equals(inSolr);
+    }
+
     private String reindexFilesInBatches(List<DataFile> filesToReindexPermissionsFor) {
         List<SolrInputDocument> docs = new ArrayList<>();
         Map<Long, List<Long>> byParentId = new HashMap<>();
@@ -496,6 +567,11 @@ public class SolrIndexServiceBean {
         if (solrIdsToDelete.isEmpty()) {
             return new IndexResponse("nothing to delete");
         }
+        SolrUpdateBatch batch = SolrUpdateBatch.current();
+        if (batch != null) {
+            batch.deleteById(solrIdsToDelete);
+            return new IndexResponse("queued deletion of the following documents from Solr: " + solrIdsToDelete);
+        }
         try {
             solrClientService.getSolrClient().deleteById(solrIdsToDelete);
         } catch (SolrServerException | IOException ex) {
@@ -0,0 +1,250 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Collects the Solr documents and deletions of many datasets and sends them in
+ * a few big update requests, instead of one add, one delete and one commit per
+ * dataset.
+ *
+ * A batch is bound to the thread that began it. While it is open,
+ * {@link IndexServiceBean} and {@link SolrIndexServiceBean} hand their updates
+ * to it (see {@link #current()}) rather than talking to Solr directly. Work
+ * done on other threads, e.g. by {@code @Asynchronous} methods, is not part of
+ * the batch and is committed right away as before.
+ *
+ * Solr applies the additions of an update request before its deletions. To
+ * keep the order in which they were asked for, a deletion of a document that
+ * is still waiting to be added flushes the batch first, and an addition of a
+ * document that is waiting to be deleted drops the deletion, the addition
+ * replacing the document anyway.
+ *
+ * A failed request does not throw: the datasets it contained are remembered
+ * (see {@link #getFailedDatasetIds()}) so that the caller can clear their
+ * index times and have them picked up again by the next "index all".
+ *
+ * @see IndexServiceBean#beginBatch()
+ * @see IndexServiceBean#endBatch(SolrUpdateBatch)
+ */
+public class SolrUpdateBatch implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SolrUpdateBatch.class.getCanonicalName());
+
+    private static final ThreadLocal<SolrUpdateBatch> current = new ThreadLocal<>();
+
+    /**
+     * How the documents of a batch are made visible to searches.
+     */
+    public enum CommitPolicy {
+        /**
+         * Each update request asks Solr to commit within a given time, Solr
+         * coalesces the commits of concurrent requests.
+         */
+        WITHIN,
+        /**
+         * Each update request is followed by a soft commit: visible right
+         * away, made durable by Solr's own autoCommit.
+         */
+        SOFT,
+        /**
+         * Each update request is followed by a hard commit.
+         */
+        HARD;
+
+        public static CommitPolicy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                logger.warning("Unknown Solr commit policy '" + value + "', using " + WITHIN);
+                return WITHIN;
+            }
+        }
+    }
+
+    private final SolrClient solrClient;
+    private final int maxDocs;
+    private final CommitPolicy commitPolicy;
+    private final int commitWithinMillis;
+
+    private final List<SolrInputDocument> pendingDocs = new ArrayList<>();
+    private final Set<String> pendingDocIds = new HashSet<>();
+    private final Set<String> pendingDeletes = new LinkedHashSet<>();
+    private final Set<Long> pendingDatasetIds = new LinkedHashSet<>();
+    private final Set<Long> failedDatasetIds = new LinkedHashSet<>();
+
+    private int docsSent = 0;
+    private int deletesSent = 0;
+    private int requestsSent = 0;
+    private int failedRequests = 0;
+
+    SolrUpdateBatch(SolrClient solrClient, int maxDocs, CommitPolicy commitPolicy, int commitWithinMillis) {
+        this.solrClient = solrClient;
+        this.maxDocs = Math.max(1, maxDocs);
+        this.commitPolicy = commitPolicy;
+        this.commitWithinMillis = Math.max(0, commitWithinMillis);
+    }
+
+    /**
+     * Begins a batch on the calling thread.
+     *
+     * @throws IllegalStateException if this thread already has an open batch.
+     */
+    public static SolrUpdateBatch begin(SolrClient solrClient, int maxDocs, CommitPolicy commitPolicy, int commitWithinMillis) {
+        if (current.get() != null) {
+            throw new IllegalStateException("A Solr update batch is already open on this thread");
+        }
+        SolrUpdateBatch batch = new SolrUpdateBatch(solrClient, maxDocs, commitPolicy, commitWithinMillis);
+        current.set(batch);
+        return batch;
+    }
+
+    /**
+     * @return the batch open on the calling thread, or {@code null}.
+     */
+    public static SolrUpdateBatch current() {
+        return current.get();
+    }
+
+    /**
+     * Queues documents for addition.
+     *
+     * @param docs documents to add or replace.
+     * @param datasetId dataset the documents belong to, or {@code null} if they
+     * should not be reported as failed.
+     */
+    public void add(Collection<SolrInputDocument> docs, Long datasetId) {
+        for (SolrInputDocument doc : docs) {
+            pendingDocs.add(doc);
+            Object id = doc.getFieldValue(SearchFields.ID);
+            if (id != null) {
+                pendingDocIds.add(id.toString());
+                pendingDeletes.remove(id.toString());
+            }
+        }
+        if (datasetId != null) {
+            pendingDatasetIds.add(datasetId);
+        }
+        if (pendingDocs.size() >= maxDocs) {
+            flush();
+        }
+    }
+
+    /**
+     * Queues documents for deletion.
+     */
+    public void deleteById(Collection<String> solrIds) {
+        for (String solrId : solrIds) {
+            if (pendingDocIds.contains(solrId)) {
+                flush();
+                break;
+            }
+        }
+        pendingDeletes.addAll(solrIds);
+        if (pendingDeletes.size() >= maxDocs) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends everything queued so far in one update request and commits it
+     * according to the commit policy.
+     */
+    public void flush() {
+        if (pendingDocs.isEmpty() && pendingDeletes.isEmpty()) {
+            return;
+        }
+        UpdateRequest request = new UpdateRequest();
+        if (!pendingDeletes.isEmpty()) {
+            request.deleteById(new ArrayList<>(pendingDeletes));
+        }
+        if (!pendingDocs.isEmpty()) {
+            request.add(pendingDocs);
+        }
+        if (commitPolicy == CommitPolicy.WITHIN) {
+            request.setCommitWithin(commitWithinMillis);
+        }
+        try {
+            request.process(solrClient);
+            switch (commitPolicy) {
+                case SOFT:
+                    solrClient.commit(true, true, true);
+                    break;
+                case HARD:
+                    solrClient.commit();
+                    break;
+                default:
+                    break;
+            }
+            docsSent += pendingDocs.size();
+            deletesSent += pendingDeletes.size();
+            logger.fine("sent " + pendingDocs.size() + " documents and " + pendingDeletes.size() + " deletions to Solr");
+        } catch (SolrServerException | IOException | RuntimeException ex) {
+            failedRequests++;
+            failedDatasetIds.addAll(pendingDatasetIds);
+            logger.log(Level.WARNING, "Solr update of " + pendingDocs.size() + " documents and " + pendingDeletes.size()
+                    + " deletions failed, datasets affected: " + pendingDatasetIds, ex);
+        } finally {
+            requestsSent++;
+            pendingDocs.clear();
+            pendingDocIds.clear();
+            pendingDeletes.clear();
+            pendingDatasetIds.clear();
+        }
+    }
+
+    /**
+     * Flushes the batch and unbinds it from the calling thread.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (current.get() == this) {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * @return ids of the datasets whose documents could not be sent.
+     */
+    public Set<Long> getFailedDatasetIds() {
+        return failedDatasetIds;
+    }
+
+    public int getDocsSent() {
+        return docsSent;
+    }
+
+    public int getDeletesSent() {
+        return deletesSent;
+    }
+
+    public int getRequestsSent() {
+        return requestsSent;
+    }
+
+    public int getFailedRequests() {
+        return failedRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "SolrUpdateBatch{" + "commitPolicy=" + commitPolicy + ", docsSent=" + docsSent + ", deletesSent=" + deletesSent
+                + ", requestsSent=" + requestsSent + ", failedRequests=" + failedRequests + '}';
+    }
+}
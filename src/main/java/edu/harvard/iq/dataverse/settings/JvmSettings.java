@@ -51,6 +51,21 @@ public enum JvmSettings {
     SOLR_PROT(SCOPE_SOLR, "protocol"),
     SOLR_CORE(SCOPE_SOLR, "core"),
     SOLR_PATH(SCOPE_SOLR, "path"),
+    SCOPE_SOLR_INDEX_ALL(SCOPE_SOLR, "index-all"),
+    SOLR_INDEX_ALL_WORKERS(SCOPE_SOLR_INDEX_ALL, "workers"),
+    SOLR_INCREMENTAL_REINDEX(SCOPE_SOLR, "incremental-reindex"),
+    SCOPE_SOLR_BATCH(SCOPE_SOLR, "batch"),
+    SOLR_BATCH_SIZE(SCOPE_SOLR_BATCH, "size"),
+    SOLR_BATCH_COMMIT(SCOPE_SOLR_BATCH, "commit"),
+    SOLR_BATCH_COMMIT_WITHIN(SCOPE_SOLR_BATCH, "commit-within"),
+
+    // INGEST SETTINGS
+    SCOPE_INGEST(PREFIX, "ingest"),
+    INGEST_MAX_CELLS_PER_PASS(SCOPE_INGEST, "max-cells-per-pass"),
+    INGEST_MAX_STRING_CELLS_PER_PASS(SCOPE_INGEST, "max-string-cells-per-pass"),
+    SCOPE_INGEST_COLUMN_STORE(SCOPE_INGEST, "column-store"),
+    INGEST_COLUMN_STORE_ENABLED(SCOPE_INGEST_COLUMN_STORE, "enabled"),
+    INGEST_COLUMN_STORE_COMPRESSION(SCOPE_INGEST_COLUMN_STORE, "compression"),
 
     // RSERVE CONNECTION
     SCOPE_RSERVE(PREFIX, "rserve"),
@@ -59,11 +74,41 @@ public enum JvmSettings {
     RSERVE_USER(SCOPE_RSERVE, "user"),
     RSERVE_PASSWORD(SCOPE_RSERVE, "password"),
     RSERVE_TEMPDIR(SCOPE_RSERVE, "tempdir"),
+    RSERVE_MAX_CONVERSIONS(SCOPE_RSERVE, "max-conversions"),
+    RSERVE_CONVERSION_TIMEOUT(SCOPE_RSERVE, "conversion-timeout"),
+    RSERVE_POOL_SIZE(SCOPE_RSERVE, "pool-size"),
+    RSERVE_POOL_BORROW_TIMEOUT(SCOPE_RSERVE, "pool-borrow-timeout"),
+    RSERVE_POOL_MAX_IDLE(SCOPE_RSERVE, "pool-max-idle"),
     
     // API SETTINGS
     SCOPE_API(PREFIX, "api"),
     API_SIGNING_SECRET(SCOPE_API, "signing-secret"),
-    
+
+    // IN-MEMORY CACHES
+    SCOPE_CACHE(PREFIX, "cache"),
+    SCOPE_CACHE_NAMED(SCOPE_CACHE),
+    CACHE_MAX_SIZE(SCOPE_CACHE_NAMED, "max-size"),
+    CACHE_EXPIRE_AFTER_WRITE(SCOPE_CACHE_NAMED, "expire-after-write"),
+
+    // HARVESTING CLIENT
+    SCOPE_HARVEST(PREFIX, "harvest"),
+    SCOPE_HARVEST_CLIENT(SCOPE_HARVEST, "client"),
+    HARVEST_CLIENT_CONNECTIONS(SCOPE_HARVEST_CLIENT, "connections"),
+    HARVEST_CLIENT_LIST_RECORDS(SCOPE_HARVEST_CLIENT, "list-records"),
+
+    // METADATA EXPORTS
+    SCOPE_EXPORT(PREFIX, "export"),
+    EXPORT_CACHE_DIRECTORY(SCOPE_EXPORT, "cache-directory"),
+    EXPORT_CACHE_MAX_SIZE(SCOPE_EXPORT, "cache-max-size"),
+
+    // THUMBNAILS
+    SCOPE_THUMBNAILS(PREFIX, "thumbnails"),
+    THUMBNAILS_RENDER_THREADS(SCOPE_THUMBNAILS, "render-threads"),
+
+    // DATABASE SETTINGS CACHE
+    SCOPE_SETTINGS_CACHE(PREFIX, "settings-cache"),
+    SETTINGS_CACHE_CHECK_INTERVAL(SCOPE_SETTINGS_CACHE, "check-interval"),
+
     ;
     
     private static final String SCOPE_SEPARATOR = ".";
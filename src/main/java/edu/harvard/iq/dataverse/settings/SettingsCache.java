@@ -0,0 +1,177 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory, read-through copy of the complete {@code setting} table.
+ *
+ * The table is small and read all the time, so instead of querying single rows
+ * we hold an immutable snapshot of all rows and swap it as a whole. Each snapshot
+ * carries the version stamp of the table it was loaded from (see the
+ * {@code settingversion} table, bumped by a trigger on every change). Once per
+ * check interval, the stamp is compared with the one in the database; this is how
+ * changes made by other application servers in a cluster become visible here.
+ * Changes made through this server invalidate the snapshot right away, and again
+ * once the transaction that made them is over.
+ *
+ * The cache is meant to outlive the beans using it, so it does not hold on to any
+ * database resources itself. Rather, every read is handed a {@link Source} by the
+ * caller, which is used in case the table needs to be (re)read.
+ *
+ * @see SettingsServiceBean
+ */
+public class SettingsCache {
+
+    private static final Logger logger = Logger.getLogger(SettingsCache.class.getCanonicalName());
+
+    /**
+     * Access to the settings table, used when the cache needs to be (re)loaded.
+     */
+    public interface Source {
+        /**
+         * @return All rows of the settings table.
+         */
+        Collection<Setting> loadAll();
+
+        /**
+         * @return The current version stamp of the settings table.
+         */
+        long readVersion();
+    }
+
+    private final LongSupplier clock;
+    private volatile long checkIntervalMillis;
+
+    private volatile Snapshot snapshot;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder versionChecks = new LongAdder();
+
+    /**
+     * @param checkIntervalMillis How long to trust a snapshot before comparing its version with the database.
+     */
+    public SettingsCache(long checkIntervalMillis) {
+        this(checkIntervalMillis, System::currentTimeMillis);
+    }
+
+    SettingsCache(long checkIntervalMillis, LongSupplier clock) {
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param source Used to read the settings table, if needed.
+     * @param name Name of the setting.
+     * @param lang Language of the setting, or {@code null} for the non-localized one.
+     * @return The value of the setting, or {@code null}.
+     */
+    public String get(Source source, String name, String lang) {
+        return current(source).values.get(keyFor(name, lang));
+    }
+
+    /**
+     * Drops the current snapshot, so the next read loads the table again.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return (current != null) ? current.version : -1;
+    }
+
+    /**
+     * @return Number of reads answered from memory (including those that had to
+     *         check the version stamp in the database).
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of reads that had to (re)load the settings table.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getVersionChecks() {
+        return versionChecks.sum();
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return (current != null) ? current.values.size() : 0;
+    }
+
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    public void setCheckIntervalMillis(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    private Snapshot current(Source source) {
+        Snapshot current = snapshot;
+        long now = clock.getAsLong();
+        if (current != null && now < current.nextCheck) {
+            hits.increment();
+            return current;
+        }
+        synchronized (this) {
+            // someone else may have done the work while we were waiting
+            current = snapshot;
+            if (current != null && now < current.nextCheck) {
+                hits.increment();
+                return current;
+            }
+            long dbVersion = source.readVersion();
+            versionChecks.increment();
+            if (current != null && current.version == dbVersion) {
+                current.nextCheck = now + checkIntervalMillis;
+                hits.increment();
+                return current;
+            }
+            // Read the version before the rows: the rows are then at least as new as
+            // the version, so the worst case is an extra reload, never a stale snapshot.
+            Snapshot loaded = new Snapshot(load(source), dbVersion, now + checkIntervalMillis);
+            misses.increment();
+            logger.fine(() -> "Loaded " + loaded.values.size() + " settings, version " + dbVersion);
+            snapshot = loaded;
+            return loaded;
+        }
+    }
+
+    private static Map<String, String> load(Source source) {
+        Map<String, String> values = new HashMap<>();
+        for (Setting s : source.loadAll()) {
+            values.put(keyFor(s.getName(), s.getLang()), s.getContent());
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static String keyFor(String name, String lang) {
+        return (lang == null) ? name : name + "\u0000" + lang;
+    }
+
+    private static class Snapshot {
+        final Map<String, String> values;
+        final long version;
+        volatile long nextCheck;
+
+        Snapshot(Map<String, String> values, long version, long nextCheck) {
+            this.values = values;
+            this.version = version;
+            this.nextCheck = nextCheck;
+        }
+    }
+}
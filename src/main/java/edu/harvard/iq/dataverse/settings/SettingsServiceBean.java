@@ -5,6 +5,7 @@ import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
 import edu.harvard.iq.dataverse.api.ApiBlockingFilter;
 import edu.harvard.iq.dataverse.util.StringUtil;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.inject.Named;
@@ -15,6 +16,9 @@ import javax.json.JsonReader;
 import javax.json.JsonValue;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -586,28 +590,88 @@ public class SettingsServiceBean {
         }
     }
     
+    private static final long DEFAULT_CACHE_CHECK_INTERVAL_SECONDS = 5;
+    
+    private static volatile SettingsCache cache;
+    
     @PersistenceContext
     EntityManager em;
     
     @EJB
     ActionLogServiceBean actionLogSvc;
     
+    @Resource
+    TransactionSynchronizationRegistry transactionRegistry;
+    
     /**
      * Basic functionality - get the name, return the setting, or {@code null}.
      * @param name of the setting
      * @return the actual setting, or {@code null}.
      */
     public String get( String name ) {
-        List<Setting> tokens = em.createNamedQuery("Setting.findByName", Setting.class)
-                .setParameter("name", name )
-                .getResultList();
-        String val = null;
-        if(tokens.size() > 0) {
-            val = tokens.get(0).getContent();
+        return getCache().get(cacheSource, name, null);
+    }
+    
+    /**
+     * The settings are read from an in-memory copy of the settings table, shared
+     * by all instances of this bean. See {@link SettingsCache} for how it is kept
+     * current, also across the servers of a cluster.
+     * @return the cache of all settings.
+     */
+    public static SettingsCache getCache() {
+        SettingsCache c = cache;
+        if (c == null) {
+            synchronized (SettingsServiceBean.class) {
+                if (cache == null) {
+                    long checkInterval = JvmSettings.SETTINGS_CACHE_CHECK_INTERVAL.lookupOptional(Long.class)
+                                                   .orElse(DEFAULT_CACHE_CHECK_INTERVAL_SECONDS);
+                    cache = new SettingsCache(checkInterval * 1000);
+                }
+                c = cache;
+            }
         }
-        return (val!=null) ? val : null;
+        return c;
     }
     
+    /**
+     * Drops the in-memory copy of the settings on this server. Within a
+     * transaction, it is dropped again once the transaction is over: until
+     * then, other requests may load the settings as they were before it, and
+     * if it is rolled back, the changes it made may have been loaded.
+     */
+    public void invalidateCache() {
+        getCache().invalidate();
+        if (transactionRegistry != null && transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    getCache().invalidate();
+                }
+            });
+        }
+    }
+    
+    private final SettingsCache.Source cacheSource = new SettingsCache.Source() {
+        @Override
+        public List<Setting> loadAll() {
+            return em.createNamedQuery("Setting.findAll", Setting.class).getResultList();
+        }
+        
+        /**
+         * The settings table is versioned by a database trigger, bumping the
+         * stamp in {@code settingversion} on every change.
+         */
+        @Override
+        public long readVersion() {
+            Object version = em.createNativeQuery("SELECT version FROM settingversion WHERE id = 1").getSingleResult();
+            return ((Number) version).longValue();
+        }
+    };
+    
     /**
      * Same as {@link #get(String)}, but with static checking.
      * @param key Enum value of the name.
@@ -730,14 +794,7 @@ public class SettingsServiceBean {
     }
 
     public String get(String name, String lang, String defaultValue ) {
-        List<Setting> tokens = em.createNamedQuery("Setting.findByNameAndLang", Setting.class)
-                .setParameter("name", name )
-                .setParameter("lang", lang )
-                .getResultList();
-        String val = null;
-        if(tokens.size() > 0) {
-            val = tokens.get(0).getContent();
-        }
+        String val = getCache().get(cacheSource, name, lang);
         return (val!=null) ? val : defaultValue;
     }
     
@@ -767,6 +824,7 @@ public class SettingsServiceBean {
         }
         
         s = em.merge(s);
+        invalidateCache();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                             .setInfo(name + ": " + content));
         return s;
@@ -791,6 +849,7 @@ public class SettingsServiceBean {
         }
         
         em.merge(s);
+        invalidateCache();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                 .setInfo(name + ": " +lang + ": " + content));
         return s;
@@ -839,6 +898,7 @@ public class SettingsServiceBean {
         em.createNamedQuery("Setting.deleteByName")
                 .setParameter("name", name)
                 .executeUpdate();
+        invalidateCache();
     }
 
     public void delete( String name, String lang ) {
@@ -848,6 +908,7 @@ public class SettingsServiceBean {
                 .setParameter("name", name)
                 .setParameter("lang", lang)
                 .executeUpdate();
+        invalidateCache();
     }
     
     public Set<Setting> listAll() {
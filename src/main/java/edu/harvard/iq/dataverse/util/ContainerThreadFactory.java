@@ -0,0 +1,57 @@
+package edu.harvard.iq.dataverse.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+/**
+ * Makes the threads of the shared pools of classes that are not beans (e.g.
+ * the zip read-ahead, or the thumbnail renderers) with the default
+ * {@code ManagedThreadFactory} of the container, so that they are managed by
+ * the container and run with the context of the application. Outside of a
+ * container, e.g. in unit tests, they are plain daemon threads.
+ *
+ * The factory is looked up when this is created, which has to happen on a
+ * thread of the application, e.g. a request thread.
+ */
+public class ContainerThreadFactory implements ThreadFactory {
+
+    private static final Logger logger = Logger.getLogger(ContainerThreadFactory.class.getCanonicalName());
+
+    static final String DEFAULT_MANAGED_THREAD_FACTORY = "java:comp/DefaultManagedThreadFactory";
+
+    private final String name;
+    private final ThreadFactory managed;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param name the threads are named after it, and numbered.
+     */
+    public ContainerThreadFactory(String name) {
+        this.name = name;
+        ThreadFactory factory = null;
+        try {
+            factory = (ThreadFactory) new InitialContext().lookup(DEFAULT_MANAGED_THREAD_FACTORY);
+        } catch (NamingException | RuntimeException e) {
+            // not in a container, e.g. in unit tests
+            logger.log(Level.FINE, "No managed thread factory, using plain threads for " + name, e);
+        }
+        this.managed = factory;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        String threadName = name + "-" + count.incrementAndGet();
+        if (managed != null) {
+            Thread thread = managed.newThread(r);
+            thread.setName(threadName);
+            return thread;
+        }
+        Thread thread = new Thread(r, threadName);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
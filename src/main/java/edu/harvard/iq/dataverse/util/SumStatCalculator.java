@@ -39,24 +39,32 @@ public class SumStatCalculator {
     public static double[] calculateSummaryStatistics(Number[] x){
         logger.fine("entering calculate summary statistics ("+x.length+" Number values);");
         
+        double[] dx = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            dx[i] = x[i] != null ? x[i].doubleValue() : Double.NaN;
+        }
+        return calculateSummaryStatistics(dx);
+    }
+
+    /**
+     * Same as {@link #calculateSummaryStatistics(Number[])}, for a vector
+     * that is already held as primitive doubles, with missing values stored
+     * as {@code Double.NaN} (NaNs and missing values are both counted as
+     * invalid).
+     */
+    public static double[] calculateSummaryStatistics(double[] x){
+        logger.fine("entering calculate summary statistics ("+x.length+" double values);");
+        
         double[] nx = new double[8];
         //("mean", "medn", "mode", "vald", "invd", "min", "max", "stdev");
 
-        Float testNanValue = new Float(Float.NaN);
-        Number testNumberValue = testNanValue;
-        if (Double.isNaN(testNumberValue.doubleValue())) {
-            logger.fine("Float test NaN value is still recognized as a Double NaN.");
-        }
-        
-        int invalid = countInvalidValues(x);
+        int invalid = countNaNs(x);
         nx[4] = invalid;
         logger.fine("counted invalid values: "+nx[4]);
         nx[3] = x.length - invalid;
         logger.fine("counted valid values: "+nx[3]);
         
-        
-        //double[] newx = prepareForSummaryStats(x);
-        double[] newx = prepareForSummaryStatsAlternative(x, x.length - invalid);
+        double[] newx = removeNaNs(x, x.length - invalid);
         logger.fine("prepared double vector for summary stats calculation ("+newx.length+" double values);");        
         
         ////nx[0] = StatUtils.mean(newx);
@@ -81,24 +89,18 @@ public class SumStatCalculator {
         return removeInvalidValues(z);
     }
 
-    private static double[] prepareForSummaryStatsAlternative(Number[] x, int length) {
+    private static double[] removeNaNs(double[] x, int length) {
         double[] retvector = new double[length];
 
         int c = 0;
         for (int i = 0; i < x.length; i++) {
-            if (x[i] != null) {
-                double xvalue = x[i].doubleValue();
-                if (!Double.isNaN(xvalue)) {
-                    retvector[c++] = xvalue; 
-                }
+            if (!Double.isNaN(x[i])) {
+                retvector[c++] = x[i];
             }
         }
-        
-        // Throw exception if c != length in the end?
-        
         return retvector;
     }
-    
+
     /**
      * Converts an array of primitive Number types to doubles
      *
@@ -129,21 +131,6 @@ public class SumStatCalculator {
             dl.toArray(new Double[dl.size()]));
     }
     
-    /**
-     * Returns the number of Double.NaNs (or nulls) in a double-type array
-     *
-     */
-    private static int countInvalidValues(Number[] x){
-        int counter=0;
-        for (int i=0; i<x.length;i++){
-            ////if ( x[i] == null || x[i].equals(Double.NaN) ) {
-            if ( x[i] == null || (Double.isNaN(x[i].doubleValue())) ) {
-                counter++;
-            }
-        }
-        return counter;
-    }
-    
     /**
      * Returns the number of Double.NaNs in a double-type array
      *
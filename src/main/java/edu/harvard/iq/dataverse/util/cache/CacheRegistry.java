@@ -0,0 +1,52 @@
+package edu.harvard.iq.dataverse.util.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * All the {@link NamedCache}s of this application, by name.
+ *
+ * @see edu.harvard.iq.dataverse.api.Admin#listCaches()
+ */
+public class CacheRegistry {
+
+    private static final Logger logger = Logger.getLogger(CacheRegistry.class.getCanonicalName());
+
+    private static final Map<String, NamedCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private CacheRegistry() {
+    }
+
+    static void register(NamedCache<?, ?> cache) {
+        if (caches.put(cache.getName(), cache) != null) {
+            logger.fine("Replaced the registered cache " + cache.getName());
+        }
+    }
+
+    /**
+     * @return the cache, or {@code null} if there is none by that name.
+     */
+    public static NamedCache<?, ?> get(String name) {
+        return caches.get(name);
+    }
+
+    /**
+     * @return all caches, ordered by name.
+     */
+    public static List<NamedCache<?, ?>> list() {
+        List<NamedCache<?, ?>> list = new ArrayList<>(caches.values());
+        list.sort(Comparator.comparing(NamedCache::getName));
+        return list;
+    }
+
+    /**
+     * Empties all caches.
+     */
+    public static void invalidateAll() {
+        caches.values().forEach(NamedCache::invalidate);
+    }
+}
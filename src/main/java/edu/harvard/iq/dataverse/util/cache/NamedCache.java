@@ -0,0 +1,206 @@
+package edu.harvard.iq.dataverse.util.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * A thread-safe, size-capped in-memory cache with a name, listed in the
+ * {@link CacheRegistry} so that it can be inspected and flushed through the
+ * Admin API.
+ *
+ * Entries live in a striped Guava {@link Cache}: reads do not take a lock,
+ * writes lock one segment only. Entries are evicted, least recently used
+ * first, when the cache grows beyond its maximum size (or total weight, when
+ * a {@link Weigher} is given), and optionally a fixed time after they were
+ * written.
+ *
+ * The maximum size and the expiry can be overridden per cache with the JVM
+ * options {@code dataverse.cache.<name>.max-size} and
+ * {@code dataverse.cache.<name>.expire-after-write} (in seconds). They are
+ * read when the cache is first used, as caches are usually created while
+ * classes are being loaded.
+ *
+ * @param <K> Class for the cache keys
+ * @param <V> Class for the cache values
+ */
+public class NamedCache<K, V> {
+
+    private static final Logger logger = Logger.getLogger(NamedCache.class.getCanonicalName());
+
+    private final String name;
+    private final long maxSize;
+    private final Weigher<? super K, ? super V> weigher;
+    private final Duration expireAfterWrite;
+
+    private volatile Cache<K, V> cache;
+    private volatile Duration effectiveExpiry;
+
+    private NamedCache(Builder<K, V> builder) {
+        this.name = builder.name;
+        this.maxSize = builder.maxSize;
+        this.weigher = builder.weigher;
+        this.expireAfterWrite = builder.expireAfterWrite;
+    }
+
+    /**
+     * Starts building a cache, which will be registered in the
+     * {@link CacheRegistry} under {@code name}.
+     */
+    public static <K, V> Builder<K, V> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public static class Builder<K, V> {
+
+        private final String name;
+        private long maxSize = 128;
+        private Weigher<? super K, ? super V> weigher = null;
+        private Duration expireAfterWrite = null;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param maxSize maximum number of entries; or maximum total weight,
+         * if there is a weigher.
+         */
+        public Builder<K, V> maxSize(long maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("Max cache size can't be less than 1");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Caps the total weight of the entries instead of their number.
+         */
+        public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        public NamedCache<K, V> build() {
+            NamedCache<K, V> namedCache = new NamedCache<>(this);
+            CacheRegistry.register(namedCache);
+            return namedCache;
+        }
+    }
+
+    private Cache<K, V> cache() {
+        Cache<K, V> c = cache;
+        if (c == null) {
+            synchronized (this) {
+                c = cache;
+                if (c == null) {
+                    c = cache = createCache();
+                }
+            }
+        }
+        return c;
+    }
+
+    private Cache<K, V> createCache() {
+        long size = maxSize;
+        Duration expiry = expireAfterWrite;
+        try {
+            size = JvmSettings.CACHE_MAX_SIZE.lookupOptional(Long.class, name).orElse(maxSize);
+            expiry = JvmSettings.CACHE_EXPIRE_AFTER_WRITE.lookupOptional(Long.class, name)
+                    .map(Duration::ofSeconds).orElse(expireAfterWrite);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not read the configuration of cache " + name + ", using the defaults", e);
+        }
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (weigher != null) {
+            builder.maximumWeight(Math.max(1, size)).weigher(weigher);
+        } else {
+            builder.maximumSize(Math.max(1, size));
+        }
+        if (expiry != null && !expiry.isZero() && !expiry.isNegative()) {
+            builder.expireAfterWrite(expiry.toMillis(), TimeUnit.MILLISECONDS);
+            effectiveExpiry = expiry;
+        }
+        logger.fine("created cache " + name + ", max " + (weigher != null ? "weight " : "size ") + size + ", expiry " + expiry);
+        return builder.build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param k The key to get
+     * @return The value associated with {@code k}, or {@code null}, if there isn't any.
+     */
+    public V get(K k) {
+        return cache().getIfPresent(k);
+    }
+
+    /**
+     * Associates {@code k} with {@code v}.
+     * @param k the key
+     * @param v the value
+     * @return {@code v}, to allow method call chaining.
+     */
+    public V put(K k, V v) {
+        cache().put(k, v);
+        return v;
+    }
+
+    /**
+     * @return the time entries live after they were written, as configured
+     * for this cache, or {@code null} if they do not expire.
+     */
+    public Duration getExpireAfterWrite() {
+        cache();
+        return effectiveExpiry;
+    }
+
+    public long size() {
+        return cache().size();
+    }
+
+    public void invalidate() {
+        cache().invalidateAll();
+    }
+
+    public void invalidate(K k) {
+        cache().invalidate(k);
+    }
+
+    public CacheStats getStats() {
+        return cache().stats();
+    }
+
+    public JsonObjectBuilder toJson() {
+        CacheStats stats = getStats();
+        return Json.createObjectBuilder()
+                .add("name", name)
+                .add("size", size())
+                .add("hits", stats.hitCount())
+                .add("misses", stats.missCount())
+                .add("hitRate", stats.hitRate())
+                .add("evictions", stats.evictionCount());
+    }
+
+    @Override
+    public String toString() {
+        return "NamedCache{" + "name=" + name + ", stats=" + getStats() + '}';
+    }
+}
@@ -0,0 +1,22 @@
+-- A version stamp for the setting table. Each application server keeps the settings in
+-- memory (see SettingsCache) and compares this stamp with the one of its copy to find out
+-- whether the settings have been changed by another server of a cluster (or by hand).
+CREATE TABLE IF NOT EXISTS settingversion (
+    id INTEGER PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO settingversion (id, version) VALUES (1, 0) ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bumpsettingversion()
+RETURNS trigger AS $$
+BEGIN
+    UPDATE settingversion SET version = version + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS settingversion_bump ON setting;
+CREATE TRIGGER settingversion_bump
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON setting
+    FOR EACH STATEMENT EXECUTE PROCEDURE bumpsettingversion();
@@ -0,0 +1,39 @@
+-- Rollups of the tables behind the download and file metrics (see MetricsRollupServiceBean),
+-- so that the metrics API sums a few rows per dataset and month instead of scanning
+-- guestbookresponse and datafile.
+
+-- Guestbook responses (downloads) per dataset and day; day is NULL for the historic
+-- responses recorded without a time.
+CREATE TABLE IF NOT EXISTS downloadrollup (
+    day DATE,
+    dataset_id BIGINT,
+    count BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS index_downloadrollup_day ON downloadrollup (day);
+CREATE INDEX IF NOT EXISTS index_downloadrollup_dataset_id ON downloadrollup (dataset_id);
+
+-- Files per dataset, content type and month (YYYY-MM) of their creation, or of their
+-- publication if published is true.
+CREATE TABLE IF NOT EXISTS filerollup (
+    month VARCHAR(7) NOT NULL,
+    published BOOLEAN NOT NULL,
+    dataset_id BIGINT,
+    contenttype VARCHAR(255),
+    count BIGINT NOT NULL,
+    size BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS index_filerollup_month ON filerollup (month);
+CREATE INDEX IF NOT EXISTS index_filerollup_dataset_id ON filerollup (dataset_id);
+
+-- When the rollups were last brought up to date, and last rebuilt from scratch.
+CREATE TABLE IF NOT EXISTS metricsrollupstate (
+    id INTEGER PRIMARY KEY,
+    refreshtime TIMESTAMP,
+    rebuildtime TIMESTAMP
+);
+INSERT INTO metricsrollupstate (id) VALUES (1) ON CONFLICT DO NOTHING;
+
+-- The rollups are refreshed from the current month on:
+CREATE INDEX IF NOT EXISTS index_guestbookresponse_responsetime ON guestbookresponse (responsetime);
+CREATE INDEX IF NOT EXISTS index_dvobject_createdate ON dvobject (createdate);
+CREATE INDEX IF NOT EXISTS index_dvobject_publicationdate ON dvobject (publicationdate);
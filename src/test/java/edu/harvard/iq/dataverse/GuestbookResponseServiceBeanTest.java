@@ -0,0 +1,105 @@
+package edu.harvard.iq.dataverse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GuestbookResponseServiceBeanTest {
+
+    static final int RESPONSES = GuestbookResponseServiceBean.CSV_PAGE_SIZE + 500;
+
+    @Mock
+    EntityManager em;
+    @Mock
+    DataverseServiceBean dataverseService;
+    @InjectMocks
+    GuestbookResponseServiceBean guestbookResponseService;
+
+    List<String> queries = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(dataverseService.getDatasetTitlesWithinDataverse(anyLong()))
+                .thenReturn(Collections.singletonList(new Object[]{"Trees, and forests", 7}));
+        when(em.createNativeQuery(anyString())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            queries.add(sql);
+            Query query = mock(Query.class);
+            when(query.getResultList()).thenReturn(sql.contains("customquestionresponse") ? answers(sql) : responses(sql));
+            return query;
+        });
+    }
+
+    // responses 1 to RESPONSES, newest first
+    private static List<Object[]> responses(String sql) {
+        int before = RESPONSES + 1;
+        Matcher matcher = Pattern.compile("r\\.id < (\\d+)").matcher(sql);
+        if (matcher.find()) {
+            before = Integer.parseInt(matcher.group(1));
+        }
+        List<Object[]> page = new ArrayList<>();
+        for (int id = before - 1; id > 0 && page.size() < GuestbookResponseServiceBean.CSV_PAGE_SIZE; id--) {
+            page.add(new Object[]{id, "Guestbook", 7, null, "Download", "file.csv", 100, "Name " + id, null, null, null,
+                "doi", "10.5072", "FK2/ABC", null, null, null});
+        }
+        return page;
+    }
+
+    // two answers for every third response
+    private static List<Object[]> answers(String sql) {
+        Matcher matcher = Pattern.compile("g\\.id >= (\\d+) and g\\.id <= (\\d+)").matcher(sql);
+        matcher.find();
+        int first = Integer.parseInt(matcher.group(1));
+        int last = Integer.parseInt(matcher.group(2));
+        List<Object[]> answers = new ArrayList<>();
+        for (int id = last; id >= first; id--) {
+            if (id % 3 == 0) {
+                answers.add(new Object[]{"Why?", "Because " + id, id});
+                answers.add(new Object[]{"How?", null, id});
+            }
+        }
+        return answers;
+    }
+
+    @Test
+    void streamsAllResponsesPageByPage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        guestbookResponseService.streamResponsesByDataverseIdAndGuestbookId(out, 1L, 2L);
+
+        List<String> lines = new String(out.toByteArray(), StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+        assertEquals(RESPONSES + 1, lines.size());
+        assertEquals("Guestbook,\"Trees, and forests\",doi:10.5072/FK2/ABC,N/A,Download,file.csv,100,N/A,Name 1500,,,,Why?,Because 1500,How?,",
+                lines.get(1));
+        assertEquals("Guestbook,\"Trees, and forests\",doi:10.5072/FK2/ABC,N/A,Download,file.csv,100,N/A,Name 1499,,,",
+                lines.get(2));
+        assertEquals("Guestbook,\"Trees, and forests\",doi:10.5072/FK2/ABC,N/A,Download,file.csv,100,N/A,Name 1,,,",
+                lines.get(RESPONSES));
+        for (int i = 1; i <= RESPONSES; i++) {
+            int id = RESPONSES + 1 - i;
+            assertEquals(id % 3 == 0, lines.get(i).endsWith(",Why?,Because " + id + ",How?,"), lines.get(i));
+        }
+        // two pages of responses, each followed by its answers
+        assertEquals(4, queries.size());
+    }
+}
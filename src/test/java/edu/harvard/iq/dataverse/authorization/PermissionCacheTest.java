@@ -0,0 +1,88 @@
+package edu.harvard.iq.dataverse.authorization;
+
+import edu.harvard.iq.dataverse.Dataverse;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import edu.harvard.iq.dataverse.authorization.users.GuestUser;
+import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PermissionCacheTest {
+
+    Dataverse dataverse;
+    AtomicInteger computed;
+
+    @BeforeEach
+    void setUp() {
+        PermissionCache.invalidate();
+        dataverse = new Dataverse();
+        dataverse.setId(42L);
+        computed = new AtomicInteger();
+    }
+
+    private long compute(long bits) {
+        computed.incrementAndGet();
+        return bits;
+    }
+
+    @Test
+    void calculatesOncePerUserAddressAndObject() {
+        DataverseRequest req = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("1.2.3.4"));
+        assertEquals(5L, PermissionCache.granted(req, dataverse, () -> compute(5L)));
+        assertEquals(5L, PermissionCache.granted(req, dataverse, () -> compute(6L)));
+        assertEquals(1, computed.get());
+
+        // a later request of the same user, from the same address
+        DataverseRequest next = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("1.2.3.4"));
+        assertEquals(5L, PermissionCache.granted(next, dataverse, () -> compute(6L)));
+        assertEquals(1, computed.get());
+
+        // IP groups may differ
+        DataverseRequest elsewhere = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("4.3.2.1"));
+        assertEquals(6L, PermissionCache.granted(elsewhere, dataverse, () -> compute(6L)));
+        assertEquals(2, computed.get());
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setUserIdentifier("jdoe");
+        assertEquals(7L, PermissionCache.granted(user, dataverse, () -> compute(7L)));
+        assertEquals(7L, PermissionCache.granted(user, dataverse, () -> compute(8L)));
+        assertEquals(3, computed.get());
+    }
+
+    @Test
+    void invalidateForgetsEverything() {
+        DataverseRequest req = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("1.2.3.4"));
+        PermissionCache.granted(req, dataverse, () -> compute(5L));
+        long generation = PermissionCache.getGeneration();
+
+        PermissionCache.invalidate();
+
+        assertEquals(generation + 1, PermissionCache.getGeneration());
+        assertEquals(6L, PermissionCache.granted(req, dataverse, () -> compute(6L)));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void doesNotKeepResultsCalculatedDuringAChange() {
+        DataverseRequest req = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("1.2.3.4"));
+        PermissionCache.granted(req, dataverse, () -> {
+            PermissionCache.invalidate();
+            return compute(5L);
+        });
+        assertEquals(6L, PermissionCache.granted(req, dataverse, () -> compute(6L)));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void doesNotCacheUnsavedObjects() {
+        DataverseRequest req = new DataverseRequest(GuestUser.get(), IpAddress.valueOf("1.2.3.4"));
+        Dataverse unsaved = new Dataverse();
+        PermissionCache.granted(req, unsaved, () -> compute(5L));
+        PermissionCache.granted(req, unsaved, () -> compute(5L));
+        assertEquals(2, computed.get());
+    }
+}
@@ -59,4 +59,21 @@ public class DataAccessTest {
     StorageIO<Dataset> storageIo = DataAccess.createNewStorageIO(dataset, "valid-tag");
     assertTrue(storageIo.getClass().equals(FileAccessIO.class));
   }
+
+  @Test
+  void testGetZipPrefetch() {
+    System.setProperty("dataverse.files.prefetch-s3.type", "s3");
+    try {
+      assertEquals(S3AccessIO.DEFAULT_ZIP_PREFETCH, DataAccess.getZipPrefetch("prefetch-s3"));
+      System.setProperty("dataverse.files.prefetch-s3.zip-prefetch", "16");
+      assertEquals(16, DataAccess.getZipPrefetch("prefetch-s3"));
+      System.setProperty("dataverse.files.prefetch-s3.connection-pool-size", "4");
+      assertEquals(4, DataAccess.getZipPrefetch("prefetch-s3"));
+      assertEquals(1, DataAccess.getZipPrefetch("file"));
+    } finally {
+      System.clearProperty("dataverse.files.prefetch-s3.type");
+      System.clearProperty("dataverse.files.prefetch-s3.zip-prefetch");
+      System.clearProperty("dataverse.files.prefetch-s3.connection-pool-size");
+    }
+  }
 }
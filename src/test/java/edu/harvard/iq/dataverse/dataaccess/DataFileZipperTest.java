@@ -0,0 +1,172 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.mocks.MocksFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataFileZipperTest {
+
+    static final String DRIVER = "ziptest";
+
+    @TempDir
+    Path filesRoot;
+
+    Dataset dataset;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("dataverse.files." + DRIVER + ".type", DataAccess.FILE);
+        System.setProperty("dataverse.files." + DRIVER + ".directory", filesRoot.toString());
+        dataset = MocksFactory.makeDataset();
+        dataset.setAuthority("tmp");
+        dataset.setIdentifier("zipped");
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("dataverse.files." + DRIVER + ".type");
+        System.clearProperty("dataverse.files." + DRIVER + ".directory");
+    }
+
+    private DataFile store(String label, String contentType, String folder, byte[] content) throws IOException {
+        DataFile dataFile = MocksFactory.makeDataFile();
+        dataFile.setOwner(dataset);
+        dataFile.setContentType(contentType);
+        dataFile.setStorageIdentifier(DRIVER + DataAccess.SEPARATOR + "file" + dataFile.getId());
+        dataFile.getFileMetadata().setLabel(label);
+        dataFile.getFileMetadata().setDirectoryLabel(folder);
+        Path location = filesRoot.resolve("tmp/zipped/file" + dataFile.getId());
+        Files.createDirectories(location.getParent());
+        Files.write(location, content);
+        return dataFile;
+    }
+
+    @Test
+    void zipsAllFilesReadAhead() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2.5 * DataFileZipper.BUFFER_SIZE) {
+            text.append("All work and no play makes Jack a dull boy.\n");
+        }
+        byte[] textBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] imageBytes = new byte[300 * 1024];
+        new Random(42).nextBytes(imageBytes);
+
+        List<DataFile> files = List.of(
+                store("story.txt", "text/plain", null, textBytes),
+                store("picture.png", "image/png", "/images", imageBytes),
+                store("empty.txt", "text/plain", null, new byte[0]),
+                store("story.txt", "text/plain", null, "again".getBytes(StandardCharsets.UTF_8)));
+
+        Path zip = filesRoot.resolve("out.zip");
+        long written;
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            DataFileZipper zipper = new DataFileZipper(out);
+            written = zipper.addFilesToZipStream(files, false);
+            zipper.finalizeZipStream();
+        }
+
+        assertEquals(textBytes.length + imageBytes.length + 5, written);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            ZipEntry story = zipFile.getEntry("story.txt");
+            assertArrayEquals(textBytes, read(zipFile, story));
+            assertTrue(story.getCompressedSize() < textBytes.length / 10);
+
+            assertNotNull(zipFile.getEntry("images/"));
+            ZipEntry picture = zipFile.getEntry("images/picture.png");
+            assertArrayEquals(imageBytes, read(zipFile, picture));
+            // not deflated again
+            assertTrue(picture.getCompressedSize() >= imageBytes.length);
+
+            assertEquals(0, read(zipFile, zipFile.getEntry("empty.txt")).length);
+            assertEquals("again", new String(read(zipFile, zipFile.getEntry("story_1.txt")), StandardCharsets.UTF_8));
+
+            String manifest = new String(read(zipFile, zipFile.getEntry("MANIFEST.TXT")), StandardCharsets.UTF_8);
+            assertTrue(manifest.contains("images/picture.png (image/png) " + imageBytes.length + " bytes."));
+        }
+    }
+
+    @Test
+    void readsOnTheRequestThreadWhenNoReaderIsFree() throws IOException {
+        byte[] bigBytes = new byte[DataFileZipper.BUFFER_SIZE + 10];
+        new Random(7).nextBytes(bigBytes);
+        List<DataFile> files = List.of(
+                store("big.bin", "application/octet-stream", null, bigBytes),
+                store("small.txt", "text/plain", null, "small".getBytes(StandardCharsets.UTF_8)));
+
+        // all taken by other downloads
+        DataFileZipper.readAheadPermits.acquireUninterruptibly(DataFileZipper.READ_AHEAD_THREADS);
+        Path zip = filesRoot.resolve("inline.zip");
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            DataFileZipper zipper = new DataFileZipper(out);
+            assertEquals(bigBytes.length + 5, zipper.addFilesToZipStream(files, false));
+            zipper.finalizeZipStream();
+        } finally {
+            DataFileZipper.readAheadPermits.release(DataFileZipper.READ_AHEAD_THREADS);
+        }
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertArrayEquals(bigBytes, read(zipFile, zipFile.getEntry("big.bin")));
+            assertEquals("small", new String(read(zipFile, zipFile.getEntry("small.txt")), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void giveBackTheirReaders() throws IOException, InterruptedException {
+        DataFileZipper zipper = new DataFileZipper(OutputStream.nullOutputStream());
+        zipper.addFilesToZipStream(List.of(
+                store("one.txt", "text/plain", null, new byte[10]),
+                store("two.txt", "text/plain", null, new byte[20])), false);
+        // the readers may still be returning from the last file
+        for (int i = 0; i < 100 && DataFileZipper.readAheadPermits.availablePermits() < DataFileZipper.READ_AHEAD_THREADS; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(DataFileZipper.READ_AHEAD_THREADS, DataFileZipper.readAheadPermits.availablePermits());
+    }
+
+    @Test
+    void failsOnMissingFiles() throws IOException {
+        DataFile missing = store("gone.txt", "text/plain", null, new byte[0]);
+        Files.delete(filesRoot.resolve("tmp/zipped/file" + missing.getId()));
+        DataFileZipper zipper = new DataFileZipper(OutputStream.nullOutputStream());
+
+        assertThrows(IOException.class, () -> zipper.addFilesToZipStream(List.of(missing), false));
+    }
+
+    @Test
+    void isCompressed() {
+        assertTrue(DataFileZipper.isCompressed("application/zip"));
+        assertTrue(DataFileZipper.isCompressed("image/PNG"));
+        assertTrue(DataFileZipper.isCompressed("application/gzip; charset=binary"));
+        assertTrue(DataFileZipper.isCompressed("video/mp4"));
+        assertFalse(DataFileZipper.isCompressed("text/csv"));
+        assertFalse(DataFileZipper.isCompressed(null));
+    }
+
+    private static byte[] read(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FormatConversionServiceTest {
+
+    static final File CONVERTED = new File("converted.RData");
+
+    // one conversion at a time, one queued
+    ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger conversions = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private static File await(CompletableFuture<File> result) {
+        return FormatConversionService.await("test", result, 10000);
+    }
+
+    private File blockedConversion() throws InterruptedException {
+        conversions.incrementAndGet();
+        release.await(10, TimeUnit.SECONDS);
+        return CONVERTED;
+    }
+
+    @Test
+    void coalescesRequestsForTheSameConversion() {
+        CompletableFuture<File> first = FormatConversionService.submit("1:RData", this::blockedConversion, executor);
+        CompletableFuture<File> second = FormatConversionService.submit("1:RData", this::blockedConversion, executor);
+        assertSame(first, second);
+
+        release.countDown();
+        assertEquals(CONVERTED, await(first));
+        assertEquals(CONVERTED, await(second));
+        assertEquals(1, conversions.get());
+
+        // done, the next request starts another conversion
+        CompletableFuture<File> third = FormatConversionService.submit("1:RData", () -> CONVERTED, executor);
+        assertEquals(CONVERTED, await(third));
+        assertNotSame(first, third);
+    }
+
+    @Test
+    void queuesAndRejects() {
+        CompletableFuture<File> running = FormatConversionService.submit("2:RData", this::blockedConversion, executor);
+        CompletableFuture<File> queued = FormatConversionService.submit("3:RData", () -> CONVERTED, executor);
+        CompletableFuture<File> rejected = FormatConversionService.submit("4:RData", () -> CONVERTED, executor);
+
+        assertNull(await(rejected));
+        assertFalse(queued.isDone());
+        release.countDown();
+        assertEquals(CONVERTED, await(running));
+        assertEquals(CONVERTED, await(queued));
+    }
+
+    @Test
+    void givesUpWaitingAfterTheTimeout() {
+        CompletableFuture<File> running = FormatConversionService.submit("7:RData", this::blockedConversion, executor);
+        assertNull(FormatConversionService.await("7:RData", running, 50));
+
+        // still running, and cached for whoever asks next
+        assertFalse(running.isDone());
+        release.countDown();
+        assertEquals(CONVERTED, await(running));
+    }
+
+    @Test
+    void failures() {
+        CompletableFuture<File> failed = FormatConversionService.submit("5:RData", () -> {
+            throw new IllegalStateException("Rserve is down");
+        }, executor);
+        assertNull(await(failed));
+        assertNull(await(FormatConversionService.submit("6:prep", () -> null, executor)));
+    }
+}
@@ -0,0 +1,120 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangedInputStreamTest {
+
+    byte[] object = new byte[1050];
+    List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        new Random(7).nextBytes(object);
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private InputStream open(long start, long end) {
+        requests.add(start + "-" + end);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        int to = end < 0 ? object.length : (int) end + 1;
+        return new ByteArrayInputStream(Arrays.copyOfRange(object, (int) start, to)) {
+            @Override
+            public void close() {
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    private RangedInputStream stream(int connections, int partSize) {
+        return new RangedInputStream(this::open, object.length, connections, partSize, executor);
+    }
+
+    @Test
+    void smallObjectsInOneRequest() throws IOException {
+        try (RangedInputStream in = stream(4, 1000)) {
+            assertArrayEquals(object, in.readAllBytes());
+        }
+        assertEquals(List.of("0-1049"), requests);
+    }
+
+    @Test
+    void largeObjectsInParallelParts() throws IOException {
+        try (RangedInputStream in = stream(3, 100)) {
+            assertArrayEquals(object, in.readAllBytes());
+            assertEquals(-1, in.read());
+        }
+        assertEquals(11, requests.size());
+        assertTrue(requests.contains("1000-1049"));
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    void onlyRequestsTheRange() throws IOException {
+        try (RangedInputStream in = stream(3, 100)) {
+            in.limit(700);
+            in.seek(500);
+            assertArrayEquals(Arrays.copyOfRange(object, 500, 700), in.readAllBytes());
+        }
+        assertEquals(List.of("500-599", "600-699"), requests);
+    }
+
+    @Test
+    void skipsWithoutReading() throws IOException {
+        try (RangedInputStream in = stream(1, 100)) {
+            assertEquals(1000, in.skip(1000));
+            assertEquals(object[1000], (byte) in.read());
+            assertEquals(49, in.skip(100));
+            assertEquals(-1, in.read());
+        }
+        assertEquals(List.of("1000-1049"), requests);
+    }
+
+    @Test
+    void unknownSize() throws IOException {
+        try (RangedInputStream in = new RangedInputStream(this::open, -1, 4, 100, executor)) {
+            in.seek(50);
+            assertArrayEquals(Arrays.copyOfRange(object, 50, object.length), in.readAllBytes());
+        }
+        assertEquals(List.of("50--1"), requests);
+    }
+
+    @Test
+    void failedPartsFailTheStream() {
+        RangedInputStream in = new RangedInputStream((start, end) -> {
+            if (start >= 500) {
+                throw new IOException("gone");
+            }
+            return open(start, end);
+        }, object.length, 2, 100, executor);
+
+        IOException thrown = assertThrows(IOException.class, in::readAllBytes);
+        assertEquals("gone", thrown.getMessage());
+    }
+}
@@ -0,0 +1,105 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabularProjectionInputStreamTest {
+
+    private static InputStream tab(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        return new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void projectsTheRequestedColumns() throws IOException {
+        String content = "1\ta\t1.5\n22\t\"b b\"\t\n333\tccc\t3.25\n";
+
+        assertEquals("1.5\t1\n\t22\n3.25\t333\n", read(new TabularProjectionInputStream(tab(content), List.of(2, 0), 3, null)));
+        assertEquals("\"b b\"\n", read(new TabularProjectionInputStream(tab(content.substring(8)), List.of(1), 1, null)));
+        // a last line without a newline, and rows beyond the number of cases
+        assertEquals("a\na\n", read(new TabularProjectionInputStream(tab("1\ta\n2\ta\n3\tc"), List.of(1), 2, null)));
+        assertEquals("1\ta\t1\n", read(new TabularProjectionInputStream(tab("1\ta"), List.of(0, 1, 0), 1, null)));
+    }
+
+    @Test
+    void recordsTheOffsetsOfSubsetsNotReadYet() throws IOException {
+        String content = "1\ta\t1.5\n22\tbb\t\n333\tccc\t3.25\n";
+        String key = UUID.randomUUID().toString();
+
+        assertEquals("1.5\t1\n\t22\n3.25\t333\n".length(),
+                TabularProjectionInputStream.recordRowOffsets(tab(content), List.of(2, 0), 3, key));
+        TabularProjectionInputStream subset = new TabularProjectionInputStream(tab(content), List.of(2, 0), 3, key);
+        assertEquals("1.5\t1\n\t22\n3.25\t333\n".length(), subset.getLength());
+        assertEquals(7, subset.skip(7));
+        assertEquals("22\n3.25\t333\n", read(subset));
+        // known already
+        assertEquals(subset.getLength(), TabularProjectionInputStream.recordRowOffsets(tab(""), List.of(2, 0), 3, key));
+    }
+
+    @Test
+    void failsOnShortFiles() {
+        assertThrows(IOException.class, () -> read(new TabularProjectionInputStream(tab("1\ta\n"), List.of(0), 2, null)));
+        assertThrows(IOException.class, () -> read(new TabularProjectionInputStream(tab("1\ta\n2\n"), List.of(1), 2, null)));
+    }
+
+    @Test
+    void skipsToRangesOfKnownSubsets() throws IOException {
+        StringBuilder content = new StringBuilder();
+        StringBuilder subset = new StringBuilder();
+        int rows = 300000;
+        for (int i = 0; i < rows; i++) {
+            content.append(i).append("\tsome text that is not in the subset\t").append(i % 7).append('\n');
+            subset.append(i % 7).append('\t').append(i).append('\n');
+        }
+        String key = UUID.randomUUID().toString();
+        List<Integer> columns = List.of(2, 0);
+
+        TabularProjectionInputStream first = new TabularProjectionInputStream(tab(content.toString()), columns, rows, key);
+        assertEquals(-1, first.getLength());
+        assertEquals(subset.toString(), read(first));
+
+        // the same subset again
+        // counting the bytes read, not skipped
+        AtomicLong bytesRead = new AtomicLong();
+        InputStream file = new FilterInputStream(tab(content.toString())) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                bytesRead.addAndGet(Math.max(n, 0));
+                return n;
+            }
+        };
+        TabularProjectionInputStream second = new TabularProjectionInputStream(file, columns, rows, key);
+        assertEquals(subset.length(), second.getLength());
+
+        long offset = subset.length() - 1000;
+        assertEquals(offset, second.skip(offset));
+        assertEquals(subset.substring((int) offset), read(second));
+        // the rows before the last recorded one (at 2 of 2.5 MB) were not read
+        assertTrue(subset.length() > 2 * TabularProjectionInputStream.CHECKPOINT_BYTES);
+        assertTrue(bytesRead.get() < content.length() / 2, "read " + bytesRead.get() + " of " + content.length() + " bytes");
+
+        // skipping within the row being read, and past the end
+        TabularProjectionInputStream third = new TabularProjectionInputStream(tab(content.toString()), columns, rows, key);
+        assertEquals(2, third.skip(2));
+        assertEquals('0', third.read());
+        assertEquals(subset.length() - 3, third.skip(Long.MAX_VALUE / 2));
+        assertEquals(-1, third.read());
+    }
+}
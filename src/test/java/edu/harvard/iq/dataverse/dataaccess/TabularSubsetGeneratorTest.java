@@ -0,0 +1,160 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.testing.JvmSetting;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TabularSubsetGeneratorTest {
+
+    static final String TAB = "1\ta\t1.5\n22\tbb\t\n333\tccc\t3.25\n";
+
+    @TempDir
+    Path tempDir;
+
+    Path tabFile;
+    Path columnStore;
+    String savedTag;
+    // the byte ranges read from the column store:
+    List<long[]> reads = new ArrayList<>();
+
+    DataFile dataFile = new DataFile();
+    List<DataVariable> variables = new ArrayList<>();
+    StorageIO<DataFile> storageIO;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        tabFile = Files.write(tempDir.resolve("file.tab"), TAB.getBytes(StandardCharsets.UTF_8));
+        columnStore = tempDir.resolve("store");
+
+        DataTable dataTable = new DataTable();
+        dataTable.setId(1L);
+        dataTable.setVarQuantity(3L);
+        dataTable.setCaseQuantity(3L);
+        dataFile.setDataTable(dataTable);
+        for (int i = 0; i < 3; i++) {
+            DataVariable variable = new DataVariable();
+            variable.setDataTable(dataTable);
+            variable.setFileOrder(i);
+            variables.add(variable);
+        }
+
+        // a remote store
+        storageIO = mock(StorageIO.class);
+        when(storageIO.isLocalFile()).thenReturn(false);
+        doAnswer(invocation -> {
+            Files.copy((Path) invocation.getArgument(0), columnStore, StandardCopyOption.REPLACE_EXISTING);
+            savedTag = invocation.getArgument(1);
+            return null;
+        }).when(storageIO).savePathAsAux(any(Path.class), anyString());
+        when(storageIO.isAuxObjectCached(anyString())).thenAnswer(invocation -> invocation.getArgument(0).equals(savedTag));
+        when(storageIO.getAuxFileAsInputStream(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            reads.add(new long[]{offset, length});
+            InputStream in = Files.newInputStream(columnStore);
+            in.skip(offset);
+            return new BoundedInputStream(in, length);
+        });
+    }
+
+    private List<String> readLines(TabularSubsetGenerator generator) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            lines.add(new String(generator.readSubsetLineBytes(), StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    @Test
+    void subsetsFromTheColumnStore() throws IOException {
+        TabularSubsetGenerator.saveColumnStore(storageIO, tabFile.toFile(), 3, 3);
+        assertEquals(TabularSubsetGenerator.COLUMN_STORE_TAG, savedTag);
+
+        TabularSubsetGenerator generator = new TabularSubsetGenerator(dataFile, storageIO, List.of(variables.get(1), variables.get(0)));
+        assertEquals(List.of("a\t1\n", "bb\t22\n", "ccc\t333\n"), readLines(generator));
+        generator.close();
+
+        // the offset header, then the two columns, and nothing else
+        assertEquals(3, reads.size());
+        assertEquals(0, reads.get(0)[0]);
+        assertEquals(24, reads.get(0)[1]);
+        assertEquals(24 + "1\n22\n333\n".length(), reads.get(1)[0]);
+        assertEquals("a\nbb\nccc\n".length(), reads.get(1)[1]);
+        assertEquals(24, reads.get(2)[0]);
+    }
+
+    @Test
+    @JvmSetting(key = JvmSettings.INGEST_COLUMN_STORE_COMPRESSION, value = "gzip")
+    void subsetsFromCompressedColumns() throws IOException {
+        TabularSubsetGenerator.saveColumnStore(storageIO, tabFile.toFile(), 3, 3);
+        assertEquals(TabularSubsetGenerator.GZIP_COLUMN_STORE_TAG, savedTag);
+
+        TabularSubsetGenerator generator = new TabularSubsetGenerator(dataFile, storageIO, List.of(variables.get(2)));
+        byte[] buffer = new byte[1024];
+        int length = generator.readSingleColumnSubset(buffer);
+        assertEquals("1.5\n\n3.25\n", new String(buffer, 0, length, StandardCharsets.UTF_8));
+        assertEquals(-1, generator.readSingleColumnSubset(buffer));
+        generator.close();
+
+        generator = new TabularSubsetGenerator(dataFile, storageIO, variables);
+        assertEquals(List.of("1\ta\t1.5\n", "22\tbb\t\n", "333\tccc\t3.25\n"), readLines(generator));
+        generator.close();
+    }
+
+    @Test
+    @JvmSetting(key = JvmSettings.INGEST_COLUMN_STORE_COMPRESSION, value = "gzip")
+    void knowsTheLengthOfSubsetsAndSkipsIntoThem() throws IOException {
+        TabularSubsetGenerator.saveColumnStore(storageIO, tabFile.toFile(), 3, 3);
+
+        try (TabularSubsetInputStream subset = new TabularSubsetInputStream(dataFile, storageIO, List.of(variables.get(1), variables.get(0)))) {
+            assertEquals("a\t1\nbb\t22\nccc\t333\n".length(), subset.getLength());
+            assertEquals(7, subset.skip(7));
+            byte[] buffer = new byte[1024];
+            int length = subset.read(buffer);
+            assertEquals("22\nccc\t333\n", new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+
+        try (TabularSubsetInputStream subset = new TabularSubsetInputStream(dataFile, storageIO, List.of(variables.get(2)))) {
+            assertEquals("1.5\n\n3.25\n".length(), subset.getLength());
+            assertEquals(5, subset.skip(5));
+            byte[] buffer = new byte[1024];
+            int length = subset.read(buffer);
+            assertEquals("3.25\n", new String(buffer, 0, length, StandardCharsets.UTF_8));
+            assertEquals(0, subset.skip(10));
+        }
+    }
+
+    @Test
+    @JvmSetting(key = JvmSettings.INGEST_COLUMN_STORE_ENABLED, value = "false")
+    void remoteFilesWithoutAColumnStore() throws IOException {
+        TabularSubsetGenerator.saveColumnStore(storageIO, tabFile.toFile(), 3, 3);
+
+        assertEquals(null, TabularSubsetGenerator.findColumnStore(storageIO));
+        assertThrows(IOException.class, () -> new TabularSubsetGenerator(dataFile, storageIO, variables));
+    }
+}
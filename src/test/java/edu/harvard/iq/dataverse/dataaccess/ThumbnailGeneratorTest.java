@@ -0,0 +1,84 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailGeneratorTest {
+
+    // one thread, one queued generation
+    ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger renders = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private boolean blockedRender() throws InterruptedException {
+        renders.incrementAndGet();
+        return release.await(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void coalescesRequestsForTheSameThumbnail() {
+        CompletableFuture<Boolean> first = ThumbnailGenerator.submit("1:file1", this::blockedRender, executor);
+        CompletableFuture<Boolean> second = ThumbnailGenerator.submit("1:file1", this::blockedRender, executor);
+        assertSame(first, second);
+
+        release.countDown();
+        assertTrue(ThumbnailGenerator.await(first, 10));
+        assertEquals(1, renders.get());
+
+        // done, the next request starts another generation
+        CompletableFuture<Boolean> third = ThumbnailGenerator.submit("1:file1", () -> true, executor);
+        assertTrue(ThumbnailGenerator.await(third, 10));
+        assertNotSame(first, third);
+    }
+
+    @Test
+    void boundedQueue() {
+        CompletableFuture<Boolean> running = ThumbnailGenerator.submit("2:file2", this::blockedRender, executor);
+        CompletableFuture<Boolean> queued = ThumbnailGenerator.submit("3:file3", () -> true, executor);
+        CompletableFuture<Boolean> rejected = ThumbnailGenerator.submit("4:file4", () -> true, executor);
+
+        assertFalse(ThumbnailGenerator.await(rejected, 0));
+        assertFalse(queued.isDone());
+        release.countDown();
+        assertTrue(ThumbnailGenerator.await(running, 10));
+        assertTrue(ThumbnailGenerator.await(queued, 10));
+    }
+
+    @Test
+    void requestsDoNotWaitForever() {
+        CompletableFuture<Boolean> generation = ThumbnailGenerator.submit("5:file5", this::blockedRender, executor);
+
+        assertFalse(ThumbnailGenerator.await(generation, 0));
+        release.countDown();
+        assertTrue(ThumbnailGenerator.await(generation, 10));
+    }
+
+    @Test
+    void failures() {
+        CompletableFuture<Boolean> generation = ThumbnailGenerator.submit("6:file6", () -> {
+            throw new IllegalStateException("not an image");
+        }, executor);
+
+        assertFalse(ThumbnailGenerator.await(generation, 10));
+    }
+}
@@ -0,0 +1,146 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.Dataset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportCacheTest {
+
+    // the memory tier is shared by all caches, so every test has its own dataset
+    static long nextDatasetId = 90000;
+
+    @TempDir
+    Path directory;
+
+    Dataset dataset;
+    AtomicInteger opened = new AtomicInteger();
+    byte[] export = "<oai_dc/>".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() {
+        dataset = new Dataset();
+        dataset.setId(nextDatasetId++);
+        dataset.setLastExportTime(new Date(1000));
+    }
+
+    private InputStream source() {
+        opened.incrementAndGet();
+        return new ByteArrayInputStream(export);
+    }
+
+    private byte[] read(ExportCache cache) throws Exception {
+        try (InputStream in = cache.open(dataset, "oai_dc", this::source)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private Path copy(long lastExportTime) {
+        return directory.resolve(dataset.getId() + "/export_oai_dc." + lastExportTime + ".cached");
+    }
+
+    @Test
+    void readsTheStorageOnce() throws Exception {
+        ExportCache cache = new ExportCache(directory);
+
+        assertArrayEquals(export, read(cache));
+        assertArrayEquals(export, read(cache));
+        assertEquals(1, opened.get());
+        assertTrue(Files.isRegularFile(copy(1000)));
+    }
+
+    @Test
+    void replacesTheCopyOfAnOlderExport() throws Exception {
+        ExportCache cache = new ExportCache(directory);
+        read(cache);
+
+        dataset.setLastExportTime(new Date(2000));
+        export = "<oai_dc>new</oai_dc>".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(export, read(cache));
+
+        assertEquals(2, opened.get());
+        assertFalse(Files.exists(copy(1000)));
+        assertTrue(Files.isRegularFile(copy(2000)));
+    }
+
+    @Test
+    void invalidate() throws Exception {
+        ExportCache cache = new ExportCache(directory);
+        read(cache);
+
+        cache.invalidate(dataset, "oai_dc");
+        assertFalse(Files.exists(copy(1000)));
+        read(cache);
+        assertEquals(2, opened.get());
+    }
+
+    @Test
+    void largeExportsOnlyOnDisk() throws Exception {
+        export = new byte[ExportCache.MAX_MEMORY_ENTRY_SIZE + 10];
+        ExportCache cache = new ExportCache(directory);
+
+        assertArrayEquals(export, read(cache));
+        Files.write(copy(1000), "changed on disk".getBytes(StandardCharsets.UTF_8));
+        assertEquals("changed on disk", new String(read(cache), StandardCharsets.UTF_8));
+        assertEquals(1, opened.get());
+    }
+
+    @Test
+    void deletesTheCopiesReadLeastRecentlyWhenFull() throws Exception {
+        // room for two copies of 9 bytes
+        ExportCache cache = new ExportCache(directory, 20);
+        Path[] copies = new Path[3];
+        for (int i = 0; i < copies.length; i++) {
+            if (i > 0) {
+                setUp();
+            }
+            read(cache);
+            copies[i] = copy(1000);
+            Files.setLastModifiedTime(copies[i], FileTime.fromMillis(1000L * (copies.length - i)));
+        }
+
+        assertTrue(Files.isRegularFile(copies[0]));
+        assertFalse(Files.exists(copies[1]));
+        assertTrue(Files.isRegularFile(copies[2]));
+    }
+
+    @Test
+    void memoryOnlyWithoutADirectory() throws Exception {
+        ExportCache cache = new ExportCache(null);
+
+        assertArrayEquals(export, read(cache));
+        assertArrayEquals(export, read(cache));
+        assertEquals(1, opened.get());
+    }
+
+    @Test
+    void notCachedBeforeTheFirstExport() throws Exception {
+        dataset.setLastExportTime(null);
+        ExportCache cache = new ExportCache(directory);
+
+        read(cache);
+        read(cache);
+        assertEquals(2, opened.get());
+        assertNull(cache.open(dataset, "dcterms", () -> null));
+    }
+
+    @Test
+    void missingExports() throws Exception {
+        assertNull(new ExportCache(directory).open(dataset, "dcterms", () -> null));
+    }
+}
@@ -0,0 +1,113 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastListRecordsTest {
+
+    static final String PAGE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+            + "<responseDate>2023-01-01T00:00:00Z</responseDate>"
+            + "<request verb=\"ListRecords\">https://demo.example.edu/oai</request>"
+            + "<ListRecords>"
+            + "<record><header><identifier>doi:10.5072/FK2/AAA</identifier><datestamp>2022-12-01T10:00:00Z</datestamp>"
+            + "<setSpec>trees</setSpec></header>"
+            + "<metadata><oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\" "
+            + "xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd\">"
+            + "<dc:title>Trees &amp; Forests</dc:title><dc:identifier>doi:10.5072/FK2/AAA</dc:identifier></oai_dc:dc></metadata>"
+            + "<about><provenance><originDescription><identifier>somewhere:else</identifier></originDescription></provenance></about>"
+            + "</record>"
+            + "<record><header status=\"deleted\"><identifier>doi:10.5072/FK2/BBB</identifier><datestamp>2022-12-02</datestamp></header></record>"
+            + "<resumptionToken completeListSize=\"3\" cursor=\"0\">MToxMHxvYWlfZGM=</resumptionToken>"
+            + "</ListRecords></OAI-PMH>";
+
+    List<HarvestedRecord> records = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        records.forEach(HarvestedRecord::deleteMetadataFile);
+    }
+
+    private static InputStream xml(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void readsAPage() throws IOException {
+        FastListRecords listRecords = new FastListRecords("https://demo.example.edu/oai", "oai_dc", "trees", null);
+        records = listRecords.parsePage(xml(PAGE));
+
+        assertEquals(2, records.size());
+        HarvestedRecord first = records.get(0);
+        assertEquals("doi:10.5072/FK2/AAA", first.identifier);
+        assertEquals(Date.from(Instant.parse("2022-12-01T10:00:00Z")), first.dateStamp);
+        assertFalse(first.deleted);
+        String metadata = Files.readString(first.metadataFile.toPath());
+        assertTrue(metadata.startsWith("<oai_dc:dc"), metadata);
+        assertTrue(metadata.contains("Trees &amp; Forests"), metadata);
+        // declared on the enclosing OAI-PMH element, declared again on the record:
+        assertTrue(metadata.contains("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""), metadata);
+        assertFalse(metadata.contains("somewhere:else"), metadata);
+
+        HarvestedRecord second = records.get(1);
+        assertEquals("doi:10.5072/FK2/BBB", second.identifier);
+        assertTrue(second.deleted);
+        assertNull(second.metadataFile);
+        assertEquals(Date.from(Instant.parse("2022-12-02T00:00:00Z")), second.dateStamp);
+
+        assertTrue(listRecords.hasMorePages());
+        assertEquals("https://demo.example.edu/oai?verb=ListRecords&resumptionToken=MToxMHxvYWlfZGM%3D", listRecords.getRequestURL());
+    }
+
+    @Test
+    void firstRequest() {
+        FastListRecords listRecords = new FastListRecords("https://demo.example.edu/oai", "oai_ddi", "a set", Date.from(Instant.parse("2022-01-02T03:04:05Z")));
+
+        assertEquals("https://demo.example.edu/oai?verb=ListRecords&metadataPrefix=oai_ddi&set=a+set&from=2022-01-02T03:04:05Z", listRecords.getRequestURL());
+    }
+
+    @Test
+    void lastPage() throws IOException {
+        FastListRecords listRecords = new FastListRecords("https://demo.example.edu/oai", "oai_dc", null, null);
+        records = listRecords.parsePage(xml(PAGE.replaceFirst("<resumptionToken.*</resumptionToken>", "<resumptionToken completeListSize=\"3\" cursor=\"2\"/>")));
+
+        assertEquals(2, records.size());
+        assertFalse(listRecords.hasMorePages());
+    }
+
+    @Test
+    void noRecordsMatch() throws IOException {
+        FastListRecords listRecords = new FastListRecords("https://demo.example.edu/oai", "oai_dc", null, null);
+        records = listRecords.parsePage(xml("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<error code=\"noRecordsMatch\">No records</error></OAI-PMH>"));
+
+        assertTrue(records.isEmpty());
+        assertFalse(listRecords.hasMorePages());
+    }
+
+    @Test
+    void errors() {
+        FastListRecords listRecords = new FastListRecords("https://demo.example.edu/oai", "oai_dc", null, null);
+
+        IOException thrown = assertThrows(IOException.class, () -> listRecords.parsePage(xml("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<error code=\"badResumptionToken\">expired</error></OAI-PMH>")));
+        assertEquals("ListRecords error code: badResumptionToken; ListRecords error message: expired", thrown.getMessage());
+        assertThrows(IOException.class, () -> listRecords.parsePage(xml(PAGE.substring(0, PAGE.indexOf("</dc:title>")))));
+    }
+}
@@ -0,0 +1,104 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import edu.harvard.iq.dataverse.harvest.server.OAIRecord;
+import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
+import io.gdcc.xoai.dataprovider.model.ItemIdentifier;
+import io.gdcc.xoai.dataprovider.model.Set;
+import io.gdcc.xoai.dataprovider.repository.ResultsPage;
+import io.gdcc.xoai.model.oaipmh.ResumptionToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DataverseXoaiItemRepositoryTest {
+
+    static final String SET = "cursortest";
+
+    @Mock
+    OAIRecordServiceBean recordService;
+
+    DataverseXoaiItemRepository repository;
+    List<OAIRecord> records = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        DataverseXoaiItemRepository.pageCursors.invalidate();
+        for (int i = 1; i <= 5; i++) {
+            records.add(new OAIRecord(SET, "doi:10.5072/FK2/" + i, new Date()));
+        }
+        lenient().when(recordService.findOaiRecordsPageBySetName(eq(SET), isNull(), isNull(), any(), anyInt(), anyInt()))
+                .thenAnswer(call -> {
+                    String after = call.getArgument(3);
+                    int offset = call.getArgument(4);
+                    int max = call.getArgument(5);
+                    List<OAIRecord> page = records.stream()
+                            .filter(r -> after == null || r.getGlobalId().compareTo(after) > 0)
+                            .collect(Collectors.toList());
+                    int first = after == null ? Math.min(offset, page.size()) : 0;
+                    return new ArrayList<>(page.subList(first, Math.min(first + max, page.size())));
+                });
+        lenient().when(recordService.countOaiRecordsBySetName(SET, null, null)).thenReturn((long) records.size());
+        lenient().when(recordService.findOaiRecordsNotInThisSet(eq(SET), isNull(), isNull(), any(Collection.class)))
+                .thenReturn(List.of(new OAIRecord("other", "doi:10.5072/FK2/3", new Date())));
+        repository = new DataverseXoaiItemRepository(recordService, null, "http://localhost");
+    }
+
+    private static ResumptionToken.Value token(long offset) {
+        return new ResumptionToken.ValueBuilder().withSetSpec(SET).withMetadataPrefix("oai_dc").withOffset(offset).build();
+    }
+
+    private static List<String> ids(ResultsPage<ItemIdentifier> page) {
+        return page.getList().stream().map(ItemIdentifier::getIdentifier).collect(Collectors.toList());
+    }
+
+    @Test
+    void pagesAfterTheLastKey() throws Exception {
+        ResultsPage<ItemIdentifier> first = repository.getItemIdentifiers(null, null, 2, token(0));
+        assertEquals(List.of("doi:10.5072/FK2/1", "doi:10.5072/FK2/2"), ids(first));
+        assertTrue(first.hasMore());
+        assertEquals(5, first.getTotal());
+
+        ResultsPage<ItemIdentifier> second = repository.getItemIdentifiers(null, null, 2, first.getResponseTokenValue());
+        assertEquals(List.of("doi:10.5072/FK2/3", "doi:10.5072/FK2/4"), ids(second));
+        assertEquals(5, second.getTotal());
+        List<Set> sets = second.getList().get(0).getSets();
+        assertEquals("other", sets.get(sets.size() - 1).getSpec());
+
+        ResultsPage<ItemIdentifier> last = repository.getItemIdentifiers(null, null, 2, second.getResponseTokenValue());
+        assertEquals(List.of("doi:10.5072/FK2/5"), ids(last));
+        assertFalse(last.hasMore());
+
+        verify(recordService).findOaiRecordsPageBySetName(SET, null, null, "doi:10.5072/FK2/2", 2, 3);
+        verify(recordService).findOaiRecordsPageBySetName(SET, null, null, "doi:10.5072/FK2/4", 4, 3);
+        verify(recordService, times(1)).countOaiRecordsBySetName(SET, null, null);
+    }
+
+    @Test
+    void fallsBackToTheOffsetWithoutACursor() throws Exception {
+        ResultsPage<ItemIdentifier> page = repository.getItemIdentifiers(null, null, 2, token(2));
+
+        assertEquals(List.of("doi:10.5072/FK2/3", "doi:10.5072/FK2/4"), ids(page));
+        assertEquals(5, page.getTotal());
+        verify(recordService).findOaiRecordsPageBySetName(SET, null, null, null, 2, 3);
+    }
+}
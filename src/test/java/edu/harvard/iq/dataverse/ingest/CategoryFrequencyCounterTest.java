@@ -0,0 +1,105 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CategoryFrequencyCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    DataTable dataTable = new DataTable();
+
+    private DataVariable variable(int order, boolean numeric, String... values) {
+        DataVariable var = new DataVariable(order, dataTable);
+        if (numeric) {
+            var.setTypeNumeric();
+        } else {
+            var.setTypeCharacter();
+        }
+        List<VariableCategory> cats = new ArrayList<>();
+        for (String value : values) {
+            VariableCategory cat = new VariableCategory();
+            cat.setValue(value);
+            cat.setDataVariable(var);
+            cats.add(cat);
+        }
+        var.setCategories(cats);
+        return var;
+    }
+
+    private static double frequency(DataVariable var, String value) {
+        return var.getCategories().stream().filter(c -> value.equals(c.getValue())).findFirst().get().getFrequency();
+    }
+
+    @Test
+    void countsDeclaredCategoriesOnly() throws IOException {
+        Path tab = tempDir.resolve("test.tab");
+        Files.write(tab, String.join("\n",
+                "1\t\"yes\"\t0.5\t7",
+                "2\t\"no\"\t\t7",
+                "1.0\t\"yes\"\tNaN\t8",
+                "\t\t0.5\t9",
+                "3\t\"maybe\\tnot\"\tinf\t9",
+                "").getBytes(StandardCharsets.UTF_8));
+        dataTable.setCaseQuantity(5L);
+
+        DataVariable first = variable(0, true, "1", "2", "4");
+        DataVariable second = variable(1, false, "yes", "no", "maybe\tnot", "");
+        DataVariable third = variable(2, true, "0.5", "NaN", "x");
+        DataVariable fourth = variable(3, true);
+
+        CategoryFrequencyCounter counter = new CategoryFrequencyCounter(List.of(first, second, third, fourth));
+        assertFalse(counter.isEmpty());
+        counter.count(tab.toFile(), 5);
+
+        assertEquals(2.0, frequency(first, "1"));
+        assertEquals(1.0, frequency(first, "2"));
+        assertEquals(0.0, frequency(first, "4"));
+        assertEquals(2.0, frequency(second, "yes"));
+        assertEquals(1.0, frequency(second, "no"));
+        assertEquals(1.0, frequency(second, "maybe\tnot"));
+        assertEquals(0.0, frequency(second, ""));
+        assertEquals(2.0, frequency(third, "0.5"));
+        assertEquals(1.0, frequency(third, "NaN"));
+        assertEquals(0.0, frequency(third, "x"));
+    }
+
+    @Test
+    void nothingToCount() {
+        assertTrue(new CategoryFrequencyCounter(List.of(variable(0, true))).isEmpty());
+    }
+
+    @Test
+    void floatSlotsCompareLikeFloatEquals() {
+        CategoryFrequencyCounter.FloatSlots slots = new CategoryFrequencyCounter.FloatSlots(3);
+        assertEquals(0, slots.putIfAbsent(1f, 0));
+        assertEquals(1, slots.putIfAbsent(Float.NaN, 1));
+        assertEquals(0, slots.putIfAbsent(1.0f, 2));
+        assertEquals(1, slots.get(0f / 0f));
+        assertEquals(-1, slots.get(-0f));
+
+        slots = new CategoryFrequencyCounter.FloatSlots(100);
+        for (int i = 0; i < 100; i++) {
+            slots.putIfAbsent(i, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, slots.get(i));
+        }
+        assertEquals(-1, slots.get(100));
+    }
+}
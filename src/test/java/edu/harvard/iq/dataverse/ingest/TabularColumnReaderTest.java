@@ -0,0 +1,106 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
+import edu.harvard.iq.dataverse.ingest.TabularColumnReader.Column;
+import edu.harvard.iq.dataverse.ingest.TabularColumnReader.ColumnType;
+import edu.harvard.iq.dataverse.util.SumStatCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TabularColumnReaderTest {
+
+    static final String TAB = String.join("\n",
+            "1\t2.5\t\"foo\"\t1.1",
+            "\tinf\t\"a\\tb\\\\n\"\t",
+            "3\tNaN\t\t-Inf",
+            "x\t-0.25\t\"\"\t3.14159265",
+            "");
+    static final ColumnType[] TYPES = {ColumnType.LONG, ColumnType.DOUBLE, ColumnType.STRING, ColumnType.FLOAT};
+
+    @TempDir
+    Path tempDir;
+
+    private Path tabFile(String content) throws IOException {
+        Path tab = tempDir.resolve("test.tab");
+        Files.write(tab, content.getBytes(StandardCharsets.UTF_8));
+        return tab;
+    }
+
+    private List<Column> readAll(Path tab, int numCases, long maxCellsPerPass, ColumnType[] types) throws IOException {
+        List<Column> columns = new ArrayList<>();
+        new TabularColumnReader(tab.toFile(), numCases, maxCellsPerPass).read(types, columns::add);
+        return columns;
+    }
+
+    @Test
+    void sameValuesAsSubsettingColumnByColumn() throws IOException {
+        Path tab = tabFile(TAB);
+        TabularColumnReader reader = new TabularColumnReader(tab.toFile(), 4, TabularColumnReader.DEFAULT_MAX_CELLS_PER_PASS);
+        List<Column> columns = new ArrayList<>();
+        reader.read(TYPES, columns::add);
+
+        assertEquals(1, reader.getPasses());
+        assertEquals(4, columns.size());
+        assertArrayEquals(TabularSubsetGenerator.subsetLongVector(new FileInputStream(tab.toFile()), 0, 4), columns.get(0).toLongArray());
+        assertArrayEquals(TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(tab.toFile()), 1, 4), columns.get(1).toDoubleArray());
+        assertArrayEquals(TabularSubsetGenerator.subsetStringVector(new FileInputStream(tab.toFile()), 2, 4), columns.get(2).getStrings());
+        assertArrayEquals(TabularSubsetGenerator.subsetFloatVector(new FileInputStream(tab.toFile()), 3, 4), columns.get(3).toFloatArray());
+        assertEquals("a\tb\\n", columns.get(2).getStrings()[1]);
+    }
+
+    @Test
+    void sameSummaryStatistics() throws IOException {
+        Path tab = tabFile(TAB);
+        List<Column> columns = readAll(tab, 4, 100, TYPES);
+
+        assertArrayEquals(SumStatCalculator.calculateSummaryStatistics(TabularSubsetGenerator.subsetLongVector(new FileInputStream(tab.toFile()), 0, 4)),
+                SumStatCalculator.calculateSummaryStatistics(columns.get(0).toDoublesWithNaN()));
+        assertArrayEquals(SumStatCalculator.calculateSummaryStatistics(TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(tab.toFile()), 1, 4)),
+                SumStatCalculator.calculateSummaryStatistics(columns.get(1).toDoublesWithNaN()));
+        assertArrayEquals(SumStatCalculator.calculateSummaryStatistics(TabularSubsetGenerator.subsetFloatVector(new FileInputStream(tab.toFile()), 3, 4)),
+                SumStatCalculator.calculateSummaryStatistics(columns.get(3).toDoublesWithNaN()));
+    }
+
+    @Test
+    void splitsColumnsIntoPassesWithinBudget() throws IOException {
+        Path tab = tabFile(TAB);
+        TabularColumnReader reader = new TabularColumnReader(tab.toFile(), 4, 8);
+        List<Integer> seen = new ArrayList<>();
+        reader.read(new ColumnType[]{ColumnType.LONG, null, ColumnType.STRING, ColumnType.FLOAT}, c -> seen.add(c.getIndex()));
+
+        assertEquals(List.of(0, 2, 3), seen);
+        assertEquals(2, reader.getPasses());
+    }
+
+    @Test
+    void keepsFewerCharacterValuesPerPass() throws IOException {
+        Path tab = tabFile(TAB);
+        ColumnType[] types = {ColumnType.STRING, ColumnType.DOUBLE, ColumnType.STRING, ColumnType.FLOAT};
+        // room for all four columns, but for one character column only
+        TabularColumnReader reader = new TabularColumnReader(tab.toFile(), 4, 100, 4);
+        List<Integer> seen = new ArrayList<>();
+        reader.read(types, c -> seen.add(c.getIndex()));
+
+        assertEquals(List.of(0, 1, 2, 3), seen);
+        assertEquals(2, reader.getPasses());
+    }
+
+    @Test
+    void wrongNumberOfRows() throws IOException {
+        Path tab = tabFile(TAB);
+        assertThrows(IOException.class, () -> readAll(tab, 5, 100, TYPES));
+        assertThrows(IOException.class, () -> readAll(tab, 3, 100, TYPES));
+    }
+}
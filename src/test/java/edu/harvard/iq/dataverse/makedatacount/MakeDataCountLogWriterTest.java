@@ -0,0 +1,85 @@
+package edu.harvard.iq.dataverse.makedatacount;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.json.JsonObject;
+
+import static edu.harvard.iq.dataverse.makedatacount.MakeDataCountUtil.LOG_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MakeDataCountLogWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesAllEntriesWithOneHeader() throws Exception {
+        MakeDataCountLogWriter writer = new MakeDataCountLogWriter(MakeDataCountLogWriter.QUEUE_CAPACITY);
+        writer.start(Thread::new);
+
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 2000; i++) {
+            String line = "entry " + i + "\n";
+            requests.submit(() -> writer.log(directory.toString(), "counter_2023-01-01.log", line));
+        }
+        requests.shutdown();
+        assertTrue(requests.awaitTermination(10, TimeUnit.SECONDS));
+        writer.shutdown();
+
+        String log = Files.readString(directory.resolve("counter_2023-01-01.log"));
+        assertTrue(log.startsWith(LOG_HEADER));
+        assertEquals(LOG_HEADER.length(), log.lastIndexOf(LOG_HEADER) + LOG_HEADER.length());
+        List<String> lines = log.substring(LOG_HEADER.length()).lines().collect(Collectors.toList());
+        assertEquals(2000, lines.size());
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(lines.contains("entry " + i));
+        }
+
+        JsonObject status = writer.getStatus().build();
+        assertEquals(2000, status.getJsonNumber("queued").longValue());
+        assertEquals(2000, status.getJsonNumber("written").longValue());
+        assertEquals(0, status.getJsonNumber("dropped").longValue());
+        assertFalse(status.getBoolean("running"));
+    }
+
+    @Test
+    void rotatesAndAppends() throws Exception {
+        Path day1 = directory.resolve("mdc/counter_2023-01-01.log");
+        Files.createDirectories(day1.getParent());
+        Files.writeString(day1, LOG_HEADER + "earlier\n");
+
+        MakeDataCountLogWriter writer = new MakeDataCountLogWriter(16);
+        writer.start(Thread::new);
+        writer.log(directory.resolve("mdc").toString(), "counter_2023-01-01.log", "first\n");
+        writer.log(directory.resolve("mdc").toString(), "counter_2023-01-02.log", "second\n");
+        writer.shutdown();
+
+        assertEquals(LOG_HEADER + "earlier\nfirst\n", Files.readString(day1));
+        assertEquals(LOG_HEADER + "second\n", Files.readString(directory.resolve("mdc/counter_2023-01-02.log")));
+    }
+
+    @Test
+    void dropsEntriesWhenFull() {
+        MakeDataCountLogWriter writer = new MakeDataCountLogWriter(2);
+        // not started, nothing takes the entries off the queue
+
+        assertTrue(writer.log(directory.toString(), "counter.log", "1\n"));
+        assertTrue(writer.log(directory.toString(), "counter.log", "2\n"));
+        assertFalse(writer.log(directory.toString(), "counter.log", "3\n"));
+
+        JsonObject status = writer.getStatus().build();
+        assertEquals(2, status.getInt("queueDepth"));
+        assertEquals(2, status.getInt("maxQueueDepth"));
+        assertEquals(1, status.getJsonNumber("dropped").longValue());
+    }
+}
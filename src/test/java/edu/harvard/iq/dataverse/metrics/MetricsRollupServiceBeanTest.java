@@ -0,0 +1,125 @@
+package edu.harvard.iq.dataverse.metrics;
+
+import edu.harvard.iq.dataverse.util.SystemConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MetricsRollupServiceBeanTest {
+
+    static final Timestamp MONTH = Timestamp.valueOf("2023-05-01 00:00:00");
+
+    @Mock
+    EntityManager em;
+    @Mock
+    SystemConfig systemConfig;
+    @InjectMocks
+    MetricsRollupServiceBean rollups;
+
+    List<String> updates = new ArrayList<>();
+    boolean locked = true;
+    Object[] state;
+
+    @BeforeEach
+    void setUp() {
+        MetricsRollupServiceBean.lastRefresh = 0;
+        when(em.createNativeQuery(anyString())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Query query = mock(Query.class);
+            when(query.getSingleResult()).thenReturn(locked);
+            when(query.getResultList()).thenReturn(Collections.singletonList(state));
+            when(query.executeUpdate()).thenAnswer(i -> {
+                updates.add(sql.replace('\n', ' '));
+                return 1;
+            });
+            return query;
+        });
+    }
+
+    private List<String> updates(String prefix) {
+        return updates.stream().filter(sql -> sql.startsWith(prefix)).collect(Collectors.toList());
+    }
+
+    @Test
+    void rebuildsWhenNeverBuilt() {
+        state = new Object[]{null, null, null};
+        rollups.refreshIfStale();
+
+        assertEquals(List.of("DELETE FROM downloadrollup;", "DELETE FROM filerollup WHERE published = false;", "DELETE FROM filerollup WHERE published = true;"),
+                updates("DELETE"));
+        assertEquals(3, updates("INSERT").size());
+        updates("INSERT").forEach(sql -> assertTrue(!sql.contains("?1"), sql));
+        assertEquals(List.of("UPDATE metricsrollupstate SET refreshtime = now(), rebuildtime = now() WHERE id = 1;"), updates("UPDATE"));
+    }
+
+    @Test
+    void refreshesTheCurrentMonth() {
+        state = new Object[]{MONTH, false, true};
+        rollups.refreshIfStale();
+
+        assertEquals(3, updates("DELETE").size());
+        updates("DELETE").forEach(sql -> assertTrue(sql.contains("?1"), sql));
+        updates("INSERT").forEach(sql -> assertTrue(sql.contains(">= ?1"), sql));
+        assertEquals(List.of("UPDATE metricsrollupstate SET refreshtime = now() WHERE id = 1;"), updates("UPDATE"));
+    }
+
+    @Test
+    void leavesTheRebuildToTheTimer() {
+        // built, but not today
+        state = new Object[]{MONTH, false, true};
+        rollups.refreshIfStale();
+        assertTrue(updates.stream().noneMatch(sql -> sql.contains("rebuildtime")));
+
+        updates.clear();
+        when(systemConfig.isTimerServer()).thenReturn(true);
+        rollups.rebuildTimer();
+        assertEquals(List.of("DELETE FROM downloadrollup;", "DELETE FROM filerollup WHERE published = false;", "DELETE FROM filerollup WHERE published = true;"),
+                updates("DELETE"));
+        assertEquals(List.of("UPDATE metricsrollupstate SET refreshtime = now(), rebuildtime = now() WHERE id = 1;"), updates("UPDATE"));
+
+        updates.clear();
+        when(systemConfig.isTimerServer()).thenReturn(false);
+        rollups.rebuildTimer();
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    void skipsWhenUpToDateOrBusy() {
+        state = new Object[]{MONTH, true, true};
+        rollups.refreshIfStale();
+        assertTrue(updates.isEmpty());
+
+        // another server (or request) is refreshing
+        MetricsRollupServiceBean.lastRefresh = 0;
+        state = new Object[]{null, null, null};
+        locked = false;
+        rollups.refreshIfStale();
+        assertTrue(updates.isEmpty());
+
+        // at most once a minute on this server
+        locked = true;
+        rollups.refreshIfStale();
+        assertTrue(updates.isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package edu.harvard.iq.dataverse.rserve;
+
+import org.junit.jupiter.api.Test;
+import org.rosuda.REngine.Rserve.RConnection;
+import org.rosuda.REngine.Rserve.RserveException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RserveConnectionPoolTest {
+
+    List<RConnection> sessions = new ArrayList<>();
+
+    private RConnection openSession() {
+        RConnection connection = mock(RConnection.class);
+        when(connection.isConnected()).thenReturn(true);
+        sessions.add(connection);
+        return connection;
+    }
+
+    @Test
+    void reusesReturnedSessions() throws RserveException {
+        RserveConnectionPool pool = new RserveConnectionPool(2, 100, 60000, this::openSession);
+
+        RConnection first = pool.borrow();
+        verify(first).voidEval(RserveConnectionPool.SAVE_WORKSPACE);
+        pool.release(first, true);
+        verify(first).voidEval(RserveConnectionPool.RESET_WORKSPACE);
+
+        // checked, and lent again
+        assertSame(first, pool.borrow());
+        verify(first).voidEval(RserveConnectionPool.PING);
+        assertEquals(1, sessions.size());
+
+        // a failed conversion does not give its session back
+        pool.release(first, false);
+        verify(first).close();
+        assertNotSame(first, pool.borrow());
+        assertEquals(2, sessions.size());
+    }
+
+    @Test
+    void borrowingTimesOut() throws RserveException {
+        RserveConnectionPool pool = new RserveConnectionPool(1, 50, 60000, this::openSession);
+
+        RConnection borrowed = pool.borrow();
+        assertThrows(RserveException.class, pool::borrow);
+        assertEquals(1, sessions.size());
+
+        pool.release(borrowed, true);
+        assertSame(borrowed, pool.borrow());
+    }
+
+    @Test
+    void closesBrokenAndExpiredSessions() throws RserveException, InterruptedException {
+        RserveConnectionPool pool = new RserveConnectionPool(2, 100, 60000, this::openSession);
+
+        RConnection broken = pool.borrow();
+        pool.release(broken, true);
+        doThrow(new RserveException(broken, "Rserve went away")).when(broken).voidEval(RserveConnectionPool.PING);
+        RConnection next = pool.borrow();
+        assertNotSame(broken, next);
+        verify(broken).close();
+
+        // a session that cannot be reset is not kept either
+        doThrow(new RserveException(next, "Rserve went away")).when(next).voidEval(RserveConnectionPool.RESET_WORKSPACE);
+        pool.release(next, true);
+        verify(next).close();
+
+        pool = new RserveConnectionPool(2, 100, 10, this::openSession);
+        RConnection expired = pool.borrow();
+        pool.release(expired, true);
+        Thread.sleep(50);
+        assertNotSame(expired, pool.borrow());
+        verify(expired).close();
+        verify(expired, never()).voidEval(RserveConnectionPool.PING);
+    }
+
+    @Test
+    void withoutPooling() throws RserveException {
+        RserveConnectionPool pool = new RserveConnectionPool(0, 100, 60000, this::openSession);
+
+        RConnection first = pool.borrow();
+        RConnection second = pool.borrow();
+        pool.release(first, true);
+        pool.release(second, true);
+        verify(first, times(1)).close();
+        verify(second, never()).voidEval(RserveConnectionPool.RESET_WORKSPACE);
+        assertEquals(2, sessions.size());
+    }
+}
@@ -0,0 +1,67 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.util.BitSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscoverabilityTreeTest {
+
+    static final long VIEW_DATAVERSE = new BitSet().set(Permission.ViewUnpublishedDataverse.ordinal()).getBits();
+    static final long VIEW_DATASET = new BitSet().set(Permission.ViewUnpublishedDataset.ordinal()).getBits();
+
+    DiscoverabilityTree tree;
+
+    /**
+     * root (1) > sub (2, permission root) > subsub (3) > dataset (10);
+     * root > dataset (11).
+     */
+    @BeforeEach
+    void setUp() {
+        tree = new DiscoverabilityTree();
+        tree.addDataverse(1, null, false, true);
+        tree.addDataverse(2, 1L, true, false);
+        tree.addDataverse(3, 2L, false, false);
+        tree.addDataset(10, 3L);
+        tree.addDataset(11, 1L);
+        tree.addAssignment(1, VIEW_DATAVERSE | VIEW_DATASET, "group_user1");
+        tree.addAssignment(2, VIEW_DATASET, "group_user2");
+        tree.addAssignment(3, VIEW_DATAVERSE, "group_user3");
+        tree.addAssignment(3, VIEW_DATASET, "group_user2");
+        tree.addAssignment(10, VIEW_DATASET, "group_user4");
+    }
+
+    @Test
+    void inheritsUpToThePermissionRoot() {
+        assertEquals(List.of("group_user4", "group_user2"), tree.findPerms(10, Permission.ViewUnpublishedDataset));
+        assertEquals(List.of("group_user3"), tree.findPerms(3, Permission.ViewUnpublishedDataverse));
+        assertEquals(List.of("group_user1"), tree.findPerms(11, Permission.ViewUnpublishedDataset));
+        assertEquals(List.of(), tree.findPerms(2, Permission.ViewUnpublishedDataverse));
+    }
+
+    @Test
+    void remembersWhatItFound() {
+        List<String> perms = tree.findPerms(10, Permission.ViewUnpublishedDataset);
+        assertSame(perms, tree.findPerms(10, Permission.ViewUnpublishedDataset));
+    }
+
+    @Test
+    void dataverses() {
+        assertEquals(List.of(1L, 2L, 3L), tree.getDataverseIds());
+        assertTrue(tree.isReleased(1));
+        assertFalse(tree.isReleased(2));
+    }
+
+    @Test
+    void onlySearchPermissions() {
+        assertThrows(IllegalArgumentException.class, () -> tree.findPerms(10, Permission.EditDataset));
+    }
+}
@@ -0,0 +1,96 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.search.IndexReconciler.SolrEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IndexReconcilerTest {
+
+    List<String> solrOnly = new ArrayList<>();
+
+    private static Iterator<Long> ids(Long... ids) {
+        return Arrays.asList(ids).iterator();
+    }
+
+    private static Iterator<SolrEntry> docs(SolrEntry... entries) {
+        return Arrays.asList(entries).iterator();
+    }
+
+    @Test
+    void findsTheOrphans() throws SearchException {
+        long compared = IndexReconciler.reconcile(
+                ids(2L, 3L, 5L, 8L),
+                docs(new SolrEntry("dataset_1", 1),
+                        new SolrEntry("dataset_3", 3),
+                        new SolrEntry("dataset_3_draft", 3),
+                        new SolrEntry("dataset_4_draft", 4),
+                        new SolrEntry("dataset_5", 5),
+                        new SolrEntry("dataset_9", 9)),
+                solrOnly::add);
+
+        assertEquals(6, compared);
+        assertEquals(List.of("dataset_1", "dataset_4_draft", "dataset_9"), solrOnly);
+    }
+
+    @Test
+    void emptySides() throws SearchException {
+        IndexReconciler.reconcile(ids(), docs(new SolrEntry("datafile_7", 7)), solrOnly::add);
+        IndexReconciler.reconcile(ids(7L), docs(), solrOnly::add);
+
+        assertEquals(List.of("datafile_7"), solrOnly);
+    }
+
+    @Test
+    void refusesUnsortedStreams() {
+        assertThrows(IllegalStateException.class, () -> IndexReconciler.reconcile(
+                ids(1L, 2L),
+                docs(new SolrEntry("dataverse_2", 2), new SolrEntry("dataverse_1", 1)),
+                solrOnly::add));
+        assertThrows(IllegalStateException.class, () -> IndexReconciler.reconcile(
+                ids(2L, 1L), docs(new SolrEntry("dataverse_3", 3)), solrOnly::add));
+    }
+
+    @Test
+    void readsPagesUntilAnEmptyOne() throws SearchException {
+        List<List<Long>> pages = new ArrayList<>(List.of(List.of(1L, 2L), List.of(3L), Collections.emptyList()));
+        Iterator<Long> paged = IndexReconciler.paged(() -> pages.remove(0));
+
+        IndexReconciler.reconcile(paged, docs(new SolrEntry("dataverse_3", 3), new SolrEntry("dataverse_4", 4)), solrOnly::add);
+
+        assertEquals(List.of("dataverse_4"), solrOnly);
+        assertFalse(paged.hasNext());
+    }
+
+    @Test
+    void stopsReadingTheDatabaseWithTheDocuments() throws SearchException {
+        List<List<Long>> pages = new ArrayList<>(List.of(List.of(1L, 2L), List.of(3L), Collections.emptyList()));
+        Iterator<Long> paged = IndexReconciler.paged(() -> pages.remove(0));
+
+        IndexReconciler.reconcile(paged, docs(new SolrEntry("dataverse_1", 1)), solrOnly::add);
+
+        assertEquals(2, pages.size());
+        assertEquals(List.of(), solrOnly);
+    }
+
+    @Test
+    void passesOnSearchExceptions() {
+        SearchException failure = new SearchException("Solr is down", new RuntimeException());
+        Iterator<SolrEntry> failing = IndexReconciler.paged(() -> {
+            throw failure;
+        });
+
+        SearchException thrown = assertThrows(SearchException.class,
+                () -> IndexReconciler.reconcile(ids(1L), failing, solrOnly::add));
+        assertSame(failure, thrown);
+    }
+}
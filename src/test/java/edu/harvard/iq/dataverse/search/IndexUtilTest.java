@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.search;
 
 import java.util.Arrays;
 import java.util.List;
+import org.apache.solr.common.SolrInputDocument;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -50,4 +51,28 @@ public class IndexUtilTest {
 
     }
 
+    @Test
+    public void testFingerprint() {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(SearchFields.ID, "datafile_2");
+        doc.addField(SearchFields.FILE_TAG, "Data");
+        doc.addField(SearchFields.FILE_TAG, "Code");
+        String fingerprint = IndexUtil.fingerprint(doc, "");
+
+        SolrInputDocument sameFieldsOtherOrder = new SolrInputDocument();
+        sameFieldsOtherOrder.addField(SearchFields.FILE_TAG, "Data");
+        sameFieldsOtherOrder.addField(SearchFields.FILE_TAG, "Code");
+        sameFieldsOtherOrder.addField(SearchFields.ID, "datafile_2");
+        assertEquals(fingerprint, IndexUtil.fingerprint(sameFieldsOtherOrder, ""));
+
+        // neither the full text nor the fingerprint itself count
+        doc.addField(SearchFields.FULL_TEXT, "lorem ipsum");
+        doc.addField(SearchFields.INDEX_FINGERPRINT, fingerprint);
+        assertEquals(fingerprint, IndexUtil.fingerprint(doc, ""));
+
+        assertNotEquals(fingerprint, IndexUtil.fingerprint(doc, "fullText<=1000"));
+        doc.setField(SearchFields.FILE_TAG, "Data");
+        assertNotEquals(fingerprint, IndexUtil.fingerprint(doc, ""));
+    }
+
 }
@@ -0,0 +1,144 @@
+package edu.harvard.iq.dataverse.search;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolrUpdateBatchTest {
+
+    static class RecordingSolrClient extends SolrClient {
+        final List<UpdateRequest> updates = new ArrayList<>();
+        boolean failing = false;
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            if (failing) {
+                throw new IOException("Solr is down");
+            }
+            if (request instanceof UpdateRequest) {
+                updates.add((UpdateRequest) request);
+            }
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    RecordingSolrClient solrClient = new RecordingSolrClient();
+
+    @AfterEach
+    void tearDown() {
+        SolrUpdateBatch batch = SolrUpdateBatch.current();
+        if (batch != null) {
+            batch.close();
+        }
+    }
+
+    private static List<SolrInputDocument> docs(String... ids) {
+        List<SolrInputDocument> docs = new ArrayList<>();
+        for (String id : ids) {
+            SolrInputDocument doc = new SolrInputDocument();
+            doc.addField(SearchFields.ID, id);
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    @Test
+    void sendsDocumentsOfManyDatasetsInOneRequest() {
+        SolrUpdateBatch batch = SolrUpdateBatch.begin(solrClient, 4, SolrUpdateBatch.CommitPolicy.WITHIN, 2000);
+        assertSame(batch, SolrUpdateBatch.current());
+
+        batch.add(docs("dataset_1", "datafile_2"), 1L);
+        batch.add(docs("dataset_3"), 3L);
+        assertTrue(solrClient.updates.isEmpty());
+
+        batch.add(docs("dataset_4", "datafile_5"), 4L);
+        assertEquals(1, solrClient.updates.size());
+        assertEquals(5, solrClient.updates.get(0).getDocuments().size());
+        assertEquals(2000, solrClient.updates.get(0).getCommitWithin());
+
+        batch.add(docs("dataset_6"), 6L);
+        batch.close();
+        assertEquals(2, solrClient.updates.size());
+        assertEquals(6, batch.getDocsSent());
+        assertNull(SolrUpdateBatch.current());
+    }
+
+    @Test
+    void deletingPendingDocumentFlushesFirst() {
+        SolrUpdateBatch batch = SolrUpdateBatch.begin(solrClient, 100, SolrUpdateBatch.CommitPolicy.WITHIN, 1000);
+        batch.deleteById(Collections.singletonList("datafile_9"));
+        batch.add(docs("dataset_7", "datafile_8"), 7L);
+        assertTrue(solrClient.updates.isEmpty());
+
+        batch.deleteById(Collections.singletonList("dataset_7"));
+        assertEquals(1, solrClient.updates.size());
+        assertEquals(List.of("datafile_9"), solrClient.updates.get(0).getDeleteById());
+
+        batch.close();
+        assertEquals(2, solrClient.updates.size());
+        assertEquals(List.of("dataset_7"), solrClient.updates.get(1).getDeleteById());
+        assertNull(solrClient.updates.get(1).getDocuments());
+    }
+
+    @Test
+    void addingDocumentPendingDeletionKeepsIt() {
+        SolrUpdateBatch batch = SolrUpdateBatch.begin(solrClient, 100, SolrUpdateBatch.CommitPolicy.WITHIN, 1000);
+        // as in indexDataset(dataset, true): the files are deleted, then added again
+        batch.deleteById(List.of("datafile_2", "datafile_3"));
+        batch.add(docs("dataset_1", "datafile_2"), 1L);
+        batch.close();
+
+        assertEquals(1, solrClient.updates.size());
+        assertEquals(List.of("datafile_3"), solrClient.updates.get(0).getDeleteById());
+        assertEquals(2, solrClient.updates.get(0).getDocuments().size());
+    }
+
+    @Test
+    void rememberDatasetsOfFailedRequests() {
+        SolrUpdateBatch batch = SolrUpdateBatch.begin(solrClient, 2, SolrUpdateBatch.CommitPolicy.HARD, 0);
+        solrClient.failing = true;
+        batch.add(docs("dataset_1", "datafile_2"), 1L);
+        solrClient.failing = false;
+        batch.add(docs("dataset_3"), 3L);
+        batch.close();
+
+        Set<Long> failed = batch.getFailedDatasetIds();
+        assertEquals(Set.of(1L), failed);
+        assertEquals(1, batch.getFailedRequests());
+        assertEquals(1, batch.getDocsSent());
+    }
+
+    @Test
+    void onlyOneBatchPerThread() {
+        SolrUpdateBatch.begin(solrClient, 10, SolrUpdateBatch.CommitPolicy.SOFT, 0);
+        assertThrows(IllegalStateException.class, () -> SolrUpdateBatch.begin(solrClient, 10, SolrUpdateBatch.CommitPolicy.SOFT, 0));
+    }
+
+    @Test
+    void parseCommitPolicy() {
+        assertEquals(SolrUpdateBatch.CommitPolicy.SOFT, SolrUpdateBatch.CommitPolicy.parse(" soft"));
+        assertEquals(SolrUpdateBatch.CommitPolicy.HARD, SolrUpdateBatch.CommitPolicy.parse("HARD"));
+        assertEquals(SolrUpdateBatch.CommitPolicy.WITHIN, SolrUpdateBatch.CommitPolicy.parse("sometimes"));
+    }
+}
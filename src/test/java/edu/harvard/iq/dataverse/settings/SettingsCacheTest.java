@@ -0,0 +1,93 @@
+package edu.harvard.iq.dataverse.settings;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SettingsCacheTest {
+
+    static class TableSource implements SettingsCache.Source {
+        final List<Setting> rows = new ArrayList<>();
+        long version = 1;
+        int loads = 0;
+
+        @Override
+        public Collection<Setting> loadAll() {
+            loads++;
+            return new ArrayList<>(rows);
+        }
+
+        @Override
+        public long readVersion() {
+            return version;
+        }
+    }
+
+    TableSource table;
+    long now;
+    SettingsCache sut;
+
+    @BeforeEach
+    void setUp() {
+        table = new TableSource();
+        table.rows.add(new Setting(":SiteUrl", "https://example.org"));
+        table.rows.add(new Setting(":Banner", "fr", "Bonjour"));
+        now = 1000;
+        sut = new SettingsCache(5000, () -> now);
+    }
+
+    @Test
+    void readsFromMemory() {
+        assertEquals("https://example.org", sut.get(table, ":SiteUrl", null));
+        assertEquals("Bonjour", sut.get(table, ":Banner", "fr"));
+        assertNull(sut.get(table, ":Banner", null));
+        assertNull(sut.get(table, ":Nope", null));
+
+        assertEquals(1, table.loads);
+        assertEquals(1, sut.getMisses());
+        assertEquals(3, sut.getHits());
+        assertEquals(1, sut.getVersion());
+    }
+
+    @Test
+    void reloadsWhenVersionChanges() {
+        sut.get(table, ":SiteUrl", null);
+        table.rows.set(0, new Setting(":SiteUrl", "https://example.com"));
+        table.version = 2;
+
+        // within the check interval, the old copy is trusted
+        now += 4999;
+        assertEquals("https://example.org", sut.get(table, ":SiteUrl", null));
+
+        now += 1;
+        assertEquals("https://example.com", sut.get(table, ":SiteUrl", null));
+        assertEquals(2, table.loads);
+        assertEquals(2, sut.getVersion());
+    }
+
+    @Test
+    void keepsCopyWhenVersionUnchanged() {
+        sut.get(table, ":SiteUrl", null);
+        now += 10000;
+        sut.get(table, ":SiteUrl", null);
+
+        assertEquals(1, table.loads);
+        assertEquals(2, sut.getVersionChecks());
+    }
+
+    @Test
+    void invalidateForcesReload() {
+        sut.get(table, ":SiteUrl", null);
+        table.rows.clear();
+        sut.invalidate();
+
+        assertNull(sut.get(table, ":SiteUrl", null));
+        assertEquals(2, table.loads);
+    }
+}
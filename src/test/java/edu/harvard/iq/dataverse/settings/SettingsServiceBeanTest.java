@@ -0,0 +1,56 @@
+package edu.harvard.iq.dataverse.settings;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SettingsServiceBeanTest {
+
+    SettingsCacheTest.TableSource table = new SettingsCacheTest.TableSource();
+    SettingsServiceBean sut = new SettingsServiceBean();
+
+    @BeforeEach
+    void setUp() {
+        table.rows.add(new Setting(":SiteUrl", "https://example.org"));
+        sut.transactionRegistry = mock(TransactionSynchronizationRegistry.class);
+    }
+
+    @Test
+    void invalidatesAgainAfterTheTransaction() {
+        when(sut.transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        SettingsServiceBean.getCache().get(table, ":SiteUrl", null);
+
+        sut.invalidateCache();
+        assertEquals(-1, SettingsServiceBean.getCache().getVersion());
+        ArgumentCaptor<Synchronization> afterCommit = ArgumentCaptor.forClass(Synchronization.class);
+        verify(sut.transactionRegistry).registerInterposedSynchronization(afterCommit.capture());
+
+        // another request loads the settings before the change is committed
+        SettingsServiceBean.getCache().get(table, ":SiteUrl", null);
+        assertEquals(1, SettingsServiceBean.getCache().getVersion());
+
+        afterCommit.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(-1, SettingsServiceBean.getCache().getVersion());
+    }
+
+    @Test
+    void withoutTransaction() {
+        when(sut.transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        SettingsServiceBean.getCache().get(table, ":SiteUrl", null);
+
+        sut.invalidateCache();
+        assertEquals(-1, SettingsServiceBean.getCache().getVersion());
+        verify(sut.transactionRegistry, never()).registerInterposedSynchronization(any());
+    }
+}
@@ -1,5 +1,6 @@
-package edu.harvard.iq.dataverse.util;
+package edu.harvard.iq.dataverse.util.cache;
 
+import java.time.Duration;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,22 +10,22 @@ import static org.junit.Assert.*;
  *
  * @author michael
  */
-public class LruCacheTest {
-    
-    LruCache<Long, String> sut;
-    
+public class NamedCacheTest {
+
+    NamedCache<Long, String> sut;
+
     @Before
     public void setUp() {
-        sut = new LruCache<>();
+        sut = NamedCache.<Long, String>builder("test").build();
     }
-    
+
     @After
     public void tearDown() {
         sut = null;
     }
 
     /**
-     * Test of put and get method, of class LruCache.
+     * Test of put and get method, of class NamedCache.
      */
     @Test
     public void testGetSet() {
@@ -33,41 +34,66 @@ public class LruCacheTest {
 
         assertEquals(value1, sut.put(1l, value1));
         assertEquals(value2, sut.put(2l, value2));
-        
+
         assertEquals(value1, sut.get(1l));
         assertEquals(value2, sut.get(2l));
     }
 
-    @Test
-    public void testGetMaxSize() {
-        assertEquals(128, sut.getMaxSize());
-    }
-  
     /**
-     * Test of setMaxSize method, of class LruCache.
+     * Test of the maximum size, of class NamedCache.
      */
     @Test
     public void testLRU() {
         int maxSize = 10;
-        sut.setMaxSize(maxSize);
+        sut = NamedCache.<Long, String>builder("test").maxSize(maxSize).build();
         sut.put(0l, "x");
-        
+
         for ( long l=10; l<20; l++ ) {
             sut.put(l, "filler" + l);
         }
-        
+
         assertEquals(maxSize, sut.size());
         assertNull( sut.get(0l) );
-        
+
         for ( long l=10; l<20; l++ ) {
             assertEquals(sut.get(l), "filler" + l);
         }
-        
+
+        assertEquals(1, sut.getStats().evictionCount());
+    }
+
+    @Test
+    public void testMaxWeight() {
+        sut = NamedCache.<Long, String>builder("test").weigher((k, v) -> v.length()).maxSize(10).build();
+        sut.put(1l, "12345");
+        sut.put(2l, "1234");
+        sut.get(1l);
+        sut.put(3l, "123");
+
+        assertNull(sut.get(2l));
+        assertEquals("12345", sut.get(1l));
+        assertEquals("123", sut.get(3l));
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws InterruptedException {
+        sut = NamedCache.<Long, String>builder("test").expireAfterWrite(Duration.ofMillis(50)).build();
+        assertEquals(Duration.ofMillis(50), sut.getExpireAfterWrite());
+        sut.put(1l, "x");
+        assertEquals("x", sut.get(1l));
+        Thread.sleep(100);
+        assertNull(sut.get(1l));
+    }
+
+    @Test
+    public void testDoesNotExpireWhenZero() {
+        sut = NamedCache.<Long, String>builder("test").expireAfterWrite(Duration.ZERO).build();
+        assertNull(sut.getExpireAfterWrite());
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testSetMaxSizeWithException() {
-        sut.setMaxSize(0l);
+        NamedCache.builder("test").maxSize(0l);
     }
 
     @Test
@@ -105,4 +131,19 @@ public class LruCacheTest {
         assertEquals("verify that value 1 is no longer here", null, sut.get(key1));
         assertEquals("verify that value 2 still exists", value2, sut.get(key2));
     }
+
+    @Test
+    public void testStatsAndRegistry() {
+        sut.put(1l, "x");
+        sut.get(1l);
+        sut.get(2l);
+
+        assertSame(sut, CacheRegistry.get("test"));
+        assertTrue(CacheRegistry.list().contains(sut));
+        assertEquals(1, sut.getStats().hitCount());
+        assertEquals(1, sut.getStats().missCount());
+
+        CacheRegistry.invalidateAll();
+        assertEquals(0, sut.size());
+    }
 }